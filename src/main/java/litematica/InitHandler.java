@@ -16,6 +16,7 @@ import litematica.input.LitematicaHotkeyProvider;
 import litematica.input.MouseScrollHandlerImpl;
 import litematica.network.SchematicSavePacketHandler;
 import litematica.render.infohud.StatusInfoRenderer;
+import litematica.render.infohud.TaskMetricsRenderer;
 import litematica.scheduler.ClientTickHandler;
 
 public class InitHandler implements InitializationHandler
@@ -47,6 +48,7 @@ public class InitHandler implements InitializationHandler
 
         HotkeyCallbacks.init();
         StatusInfoRenderer.init();
+        TaskMetricsRenderer.init();
 
         DataManager.getAreaSelectionsBaseDirectory();
         DataManager.getSchematicsBaseDirectory();
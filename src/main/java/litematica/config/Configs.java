@@ -47,6 +47,7 @@ public class Configs
         public static final BooleanConfig AREAS_PER_WORLD                           = new BooleanConfig("areaSelectionsPerWorld", true);
         public static final BooleanConfig BETTER_RENDER_ORDER                       = new BooleanConfig("betterRenderOrder", true);
         public static final BooleanConfig CHANGE_SELECTED_CORNER                    = new BooleanConfig("changeSelectedCornerOnMove", true);
+        public static final IntegerConfig CHUNK_REBUILD_TIME_BUDGET                 = new IntegerConfig("chunkRebuildTimeBudget", 45, 1, 1000);
         public static final BooleanConfig CLONE_AT_ORIGINAL_POS                     = new BooleanConfig("cloneAtOriginalPosition", true);
         public static final StringConfig  COMMAND_NAME_SETBLOCK                     = new StringConfig("commandNameSetblock", "setblock");
         public static final BooleanConfig DEBUG_MESSAGES                            = new BooleanConfig("debugMessages", false);
@@ -58,15 +59,27 @@ public class Configs
         public static final BooleanConfig LOAD_ENTIRE_SCHEMATICS                    = new BooleanConfig("loadEntireSchematics", false);
         public static final BooleanConfig MATERIAL_LIST_IGNORE_BLOCK_STATE          = new BooleanConfig("materialListIgnoreBlockState", false);
         public static final BooleanConfig MATERIALS_FROM_CONTAINER                  = new BooleanConfig("materialListFromContainer", true);
+        public static final BooleanConfig OFF_HEAP_STORAGE_MAPPED_FILE              = new BooleanConfig("offHeapStorageMappedFile", true);
+        public static final IntegerConfig OFF_HEAP_STORAGE_THRESHOLD                = new IntegerConfig("offHeapStorageThreshold", 0, 0, 1000000);
         public static final IntegerConfig PASTE_COMMAND_INTERVAL                    = new IntegerConfig("pasteCommandInterval", 1, 1, 1000);
         public static final IntegerConfig PASTE_COMMAND_LIMIT                       = new IntegerConfig("pasteCommandLimit", 64, 1, 1000);
+        public static final BooleanConfig PASTE_USE_FILL_COMMANDS                   = new BooleanConfig("pasteUseFillCommands", false);
+        public static final BooleanConfig PERSISTENT_CHUNK_CACHE                    = new BooleanConfig("persistentChunkCache", false);
+        public static final IntegerConfig PERSISTENT_CHUNK_CACHE_MAX_SIZE           = new IntegerConfig("persistentChunkCacheMaxSize", 1024, 1, 1000000);
         public static final BooleanConfig PICK_BLOCK_IGNORE_NBT                     = new BooleanConfig("pickBlockIgnoreNBT", true);
         public static final StringConfig  PICK_BLOCKABLE_SLOTS                      = new StringConfig( "pickBlockableSlots", "6-9");
         public static final BooleanConfig PLACEMENTS_INFRONT                        = new BooleanConfig("placementInfrontOfPlayer", false);
+        public static final BooleanConfig PROCESS_CHUNKS_OFF_THREAD                 = new BooleanConfig("processChunksOffThread", true);
+        public static final IntegerConfig RENDER_BUFFER_CACHE_COUNT                 = new IntegerConfig("renderBufferCacheCount", 0, 0, 1024);
         public static final BooleanConfig RENDER_MATERIALS_IN_GUI                   = new BooleanConfig("renderMaterialListInGuis", true);
+        public static final IntegerConfig RENDER_THREAD_COUNT                       = new IntegerConfig("renderThreadCount", 0, 0, 64);
         public static final BooleanConfig RENDER_THREAD_NO_TIMEOUT                  = new BooleanConfig("renderThreadNoTimeout", true);
         public static final BooleanConfig REQUIRE_ADJACENT_CHUNKS                   = new BooleanConfig("requireAdjacentChunks", true);
+        public static final IntegerConfig SECTIONED_STORAGE_THRESHOLD               = new IntegerConfig("sectionedStorageThreshold", 16, 0, 1000000);
+        public static final IntegerConfig TASK_TIME_BUDGET                          = new IntegerConfig("taskTimeBudget", 20, 1, 1000);
         public static final StringConfig  TOOL_ITEM                                 = new StringConfig( "toolItem", "minecraft:stick");
+        public static final BooleanConfig VERIFIER_INCREMENTAL_UPDATES              = new BooleanConfig("verifierIncrementalUpdates", true);
+        public static final BooleanConfig VIRTUAL_GRID_PLACEMENTS                   = new BooleanConfig("virtualGridPlacements", false);
 
         public static final OptionListConfig<AreaSelectionType>     DEFAULT_AREA_SELECTION_MODE = new OptionListConfig<>("defaultAreaSelectionMode", AreaSelectionType.SIMPLE, AreaSelectionType.VALUES);
         public static final OptionListConfig<ReplaceBehavior>       PASTE_REPLACE_BEHAVIOR      = new OptionListConfig<>("pasteReplaceBehavior", ReplaceBehavior.NONE, ReplaceBehavior.VALUES);
@@ -77,6 +90,7 @@ public class Configs
                 AREAS_PER_WORLD,
                 BETTER_RENDER_ORDER,
                 CHANGE_SELECTED_CORNER,
+                CHUNK_REBUILD_TIME_BUDGET,
                 CLONE_AT_ORIGINAL_POS,
                 COMMAND_NAME_SETBLOCK,
                 CUSTOM_SCHEMATIC_DIRECTORY,
@@ -91,23 +105,35 @@ public class Configs
                 LOAD_ENTIRE_SCHEMATICS,
                 MATERIAL_LIST_IGNORE_BLOCK_STATE,
                 MATERIALS_FROM_CONTAINER,
+                OFF_HEAP_STORAGE_MAPPED_FILE,
+                OFF_HEAP_STORAGE_THRESHOLD,
                 PASTE_REPLACE_BEHAVIOR,
                 PASTE_COMMAND_INTERVAL,
                 PASTE_COMMAND_LIMIT,
+                PASTE_USE_FILL_COMMANDS,
+                PERSISTENT_CHUNK_CACHE,
+                PERSISTENT_CHUNK_CACHE_MAX_SIZE,
                 PICK_BLOCK_AUTO,
                 PICK_BLOCK_ENABLED,
                 PICK_BLOCK_IGNORE_NBT,
                 PICK_BLOCKABLE_SLOTS,
                 PLACEMENT_RESTRICTION,
                 PLACEMENTS_INFRONT,
+                PROCESS_CHUNKS_OFF_THREAD,
+                RENDER_BUFFER_CACHE_COUNT,
                 RENDER_MATERIALS_IN_GUI,
+                RENDER_THREAD_COUNT,
                 RENDER_THREAD_NO_TIMEOUT,
                 REQUIRE_ADJACENT_CHUNKS,
                 SCHEMATIC_BROWSER_COLUMNS,
+                SECTIONED_STORAGE_THRESHOLD,
                 SIGN_TEXT_PASTE,
+                TASK_TIME_BUDGET,
                 TOOL_ITEM_ENABLED,
                 TOOL_ITEM,
-                TOOL_SELECTION_MODE
+                TOOL_SELECTION_MODE,
+                VERIFIER_INCREMENTAL_UPDATES,
+                VIRTUAL_GRID_PLACEMENTS
         );
 
         public static final ImmutableList<HotkeyedBooleanConfig> HOTKEYS = ImmutableList.of(
@@ -223,6 +249,7 @@ public class Configs
         public static final BooleanConfig MATERIAL_LIST_HUD_STACKS                  = new BooleanConfig("materialListHudStacks", true);
         public static final BooleanConfig MATERIAL_LIST_SLOT_HIGHLIGHT              = new BooleanConfig("materialListSlotHighlight", true);
         public static final BooleanConfig STATUS_INFO_HUD_AUTO                      = new BooleanConfig("statusInfoHudAuto", true);
+        public static final BooleanConfig TASK_METRICS_HUD                          = new BooleanConfig("taskMetricsHud", false);
         public static final BooleanConfig TOOL_HUD_ALWAYS_VISIBLE                   = new BooleanConfig("toolHudAlwaysVisible", false);
         public static final Vec2iConfig   TOOL_HUD_OFFSET                           = new Vec2iConfig(  "toolHudOffset", new Vec2i(1, 1));
         public static final DoubleConfig  TOOL_HUD_SCALE                            = new DoubleConfig( "toolHudScale", 1.0, 0.1, 4.0);
@@ -245,6 +272,7 @@ public class Configs
                 MATERIAL_LIST_HUD_STACKS,
                 MATERIAL_LIST_SLOT_HIGHLIGHT,
                 STATUS_INFO_HUD_AUTO,
+                TASK_METRICS_HUD,
                 TOOL_HUD_ALWAYS_VISIBLE,
                 WARN_DISABLED_RENDERING,
 
@@ -14,6 +14,7 @@ import malilib.util.game.wrap.EntityWrap;
 import malilib.util.game.wrap.GameUtils;
 import litematica.data.DataManager;
 import litematica.input.MouseScrollHandlerImpl;
+import litematica.scheduler.CommandRateController;
 import litematica.scheduler.TaskScheduler;
 import litematica.scheduler.tasks.SetSchematicPreviewTask;
 import litematica.schematic.placement.SchematicPlacement;
@@ -213,6 +214,14 @@ public class HotkeyCallbackMisc implements HotkeyCallback
             MouseScrollHandlerImpl.nudgeSelection(amount, mode, GameUtils.getCameraEntity());
             return ActionResult.SUCCESS;
         }
+        else if (key == Hotkeys.PAUSE_COMMAND_TASKS.getKeyBind())
+        {
+            CommandRateController controller = CommandRateController.INSTANCE;
+            controller.setPaused(controller.isPaused() == false);
+            String msgKey = controller.isPaused() ? "litematica.message.command_tasks_paused" : "litematica.message.command_tasks_resumed";
+            MessageDispatcher.generic().customHotbar().translate(msgKey);
+            return ActionResult.SUCCESS;
+        }
         else if (key == Hotkeys.PICK_BLOCK_FIRST.getKeyBind())
         {
             if (EntityUtils.shouldPickBlock() && InventoryUtils.pickBlockFirst())
@@ -50,6 +50,7 @@ public class HotkeyCallbacks
         Hotkeys.MOVE_ENTIRE_SELECTION.getKeyBind().setCallback(hotkeyCallbackMisc);
         Hotkeys.NUDGE_SELECTION_NEGATIVE.getKeyBind().setCallback(hotkeyCallbackMisc);
         Hotkeys.NUDGE_SELECTION_POSITIVE.getKeyBind().setCallback(hotkeyCallbackMisc);
+        Hotkeys.PAUSE_COMMAND_TASKS.getKeyBind().setCallback(hotkeyCallbackMisc);
         Hotkeys.PICK_BLOCK_FIRST.getKeyBind().setCallback(hotkeyCallbackMisc);
         Hotkeys.PICK_BLOCK_LAST.getKeyBind().setCallback(hotkeyCallbackMisc);
         Hotkeys.REMOVE_SELECTED_PLACEMENT.getKeyBind().setCallback(hotkeyCallbackMisc);
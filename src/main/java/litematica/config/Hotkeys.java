@@ -38,6 +38,7 @@ public class Hotkeys
     public static final HotkeyConfig OPEN_SCHEMATIC_VCS_SCREEN              = new HotkeyConfig("openSchematicVCSScreen",            "");
     public static final HotkeyConfig OPEN_SCHEMATIC_VERIFIER_SCREEN         = new HotkeyConfig("openSchematicVerifierScreen",       "M,V");
     public static final HotkeyConfig OPERATION_MODE_CHANGE_MODIFIER         = new HotkeyConfig("operationModeChangeModifier",       "L_CTRL", KeyBindSettings.INGAME_MODIFIER);
+    public static final HotkeyConfig PAUSE_COMMAND_TASKS                    = new HotkeyConfig("pauseCommandTasks",                 "");
     public static final HotkeyConfig PICK_BLOCK_FIRST                       = new HotkeyConfig("pickBlockFirst",                    "MIDDLE_MOUSE", KeyBindSettings.INGAME_EXTRA);
     public static final HotkeyConfig PICK_BLOCK_LAST                        = new HotkeyConfig("pickBlockLast",                     "", KeyBindSettings.builder().extra().noCancel().build());
     public static final HotkeyConfig REMOVE_SELECTED_PLACEMENT              = new HotkeyConfig("removeSelectedPlacement",           "");
@@ -110,6 +111,7 @@ public class Hotkeys
             OPEN_AREA_SELECTION_BROWSER,
             OPEN_CONFIG_SCREEN,
             OPERATION_MODE_CHANGE_MODIFIER,
+            PAUSE_COMMAND_TASKS,
             PICK_BLOCK_FIRST,
             PICK_BLOCK_LAST,
             REMOVE_SELECTED_PLACEMENT,
@@ -40,6 +40,7 @@ import litematica.gui.ConfigScreen;
 import litematica.materials.MaterialListBase;
 import litematica.materials.MaterialListHudRenderer;
 import litematica.render.infohud.InfoHud;
+import litematica.render.infohud.TaskMetricsRenderer;
 import litematica.scheduler.TaskScheduler;
 import litematica.schematic.placement.SchematicPlacementManager;
 import litematica.schematic.projects.SchematicProjectsManager;
@@ -188,6 +189,7 @@ public class DataManager implements DirectoryCache
     {
         TaskScheduler.getInstanceClient().clearTasks();
         InfoHud.getInstance().reset(); // remove the line providers and clear the data
+        TaskMetricsRenderer.init();
 
         getInstance().clearData(true);
     }
@@ -463,6 +465,14 @@ public class DataManager implements DirectoryCache
     }
 
     private static Path getCurrentStorageFile(boolean globalData)
+    {
+        return getCurrentPerWorldDataDirectory().resolve(getStorageFileName(globalData));
+    }
+
+    /**
+     * @return the data directory for the current world or server
+     */
+    public static Path getCurrentPerWorldDataDirectory()
     {
         Path dir;
         String worldName = StringUtils.getWorldOrServerName();
@@ -482,7 +492,7 @@ public class DataManager implements DirectoryCache
             Litematica.logger.warn("Failed to create the config directory '{}'", dir.toAbsolutePath().toString());
         }
 
-        return dir.resolve(getStorageFileName(globalData));
+        return dir;
     }
 
     private static String getStorageFileName(boolean globalData)
@@ -3,16 +3,20 @@ package litematica.data;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import javax.annotation.Nullable;
 
 import litematica.schematic.ISchematic;
-import litematica.schematic.SchematicType;
+import litematica.schematic.util.SchematicLoader;
 
 public class SchematicHolder
 {
     private static final SchematicHolder INSTANCE = new SchematicHolder();
     private final List<ISchematic> schematics = new ArrayList<>();
+    private final Map<Path, CompletableFuture<ISchematic>> pendingLoads = new HashMap<>();
 
     public static SchematicHolder getInstance()
     {
@@ -47,15 +51,62 @@ public class SchematicHolder
             return null;
         }
 
-        for (ISchematic schematic : this.schematics)
+        ISchematic schematic = this.getLoaded(file);
+
+        if (schematic != null)
         {
-            if (file.equals(schematic.getFile()))
-            {
-                return schematic;
-            }
+            return schematic;
+        }
+
+        schematic = SchematicLoader.loadSchematic(file);
+
+        if (schematic != null)
+        {
+            this.schematics.add(schematic);
+        }
+
+        return schematic;
+    }
+
+    /**
+     * Returns a future for the schematic from the given file. If the schematic is already loaded,
+     * then the returned future is already completed. Otherwise the schematic is loaded
+     * in the background, and it gets added to the loaded schematics on the main thread
+     * before the future completes. The future completes with a null value if the loading failed.
+     * <b>Note:</b> This must be called on the main thread, and the returned future must not
+     * be waited on (joined) from the main thread. Poll it or chain a callback for it instead.
+     * @param file
+     * @return a future for the loaded schematic
+     */
+    public CompletableFuture<ISchematic> getOrLoadAsync(Path file)
+    {
+        if (Files.isRegularFile(file) == false || Files.isReadable(file) == false)
+        {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        ISchematic schematic = this.getLoaded(file);
+
+        if (schematic != null)
+        {
+            return CompletableFuture.completedFuture(schematic);
         }
 
-        ISchematic schematic = SchematicType.tryCreateSchematicFrom(file);
+        return this.pendingLoads.computeIfAbsent(file, f -> SchematicLoader.loadSchematicAsync(f).thenApply(s -> this.onAsyncLoadFinished(f, s)));
+    }
+
+    @Nullable
+    private ISchematic onAsyncLoadFinished(Path file, @Nullable ISchematic schematic)
+    {
+        this.pendingLoads.remove(file);
+
+        // The same file may have been loaded synchronously in the meantime
+        ISchematic existing = this.getLoaded(file);
+
+        if (existing != null)
+        {
+            return existing;
+        }
 
         if (schematic != null)
         {
@@ -65,6 +116,20 @@ public class SchematicHolder
         return schematic;
     }
 
+    @Nullable
+    private ISchematic getLoaded(Path file)
+    {
+        for (ISchematic schematic : this.schematics)
+        {
+            if (file.equals(schematic.getFile()))
+            {
+                return schematic;
+            }
+        }
+
+        return null;
+    }
+
     public void addSchematic(ISchematic schematic, boolean allowDuplicates)
     {
         if (allowDuplicates || this.schematics.contains(schematic) == false)
@@ -20,6 +20,7 @@ import litematica.schematic.ISchematic;
 import litematica.schematic.LitematicaSchematic;
 import litematica.schematic.util.SchematicCreationUtils;
 import litematica.schematic.util.SchematicSaveSettings;
+import litematica.schematic.util.SchematicSaver;
 import litematica.selection.AreaSelection;
 import litematica.task.CreateSchematicTask;
 
@@ -195,15 +196,17 @@ public class SaveSchematicFromAreaScreen extends BaseSaveSchematicScreen
 
         SchematicCreationUtils.setSchematicMetadataOnCreation(schematic, this.selection.getName());
 
-        if (schematic.writeToFile(file, overwrite))
-        {
-            this.onSchematicSaved(fileName);
-        }
-        else
-        {
-            SchematicHolder.getInstance().addSchematic(schematic, false);
-            MessageDispatcher.error("litematica.message.error.save_schematic.failed_to_save_from_area", fileName);
-        }
+        SchematicSaver.writeToFileAsync(schematic, file, overwrite).thenAccept(success -> {
+            if (success)
+            {
+                this.onSchematicSaved(fileName);
+            }
+            else
+            {
+                SchematicHolder.getInstance().addSchematic(schematic, false);
+                MessageDispatcher.error("litematica.message.error.save_schematic.failed_to_save_from_area", fileName);
+            }
+        });
     }
 
     protected void onSchematicSaved(String fileName)
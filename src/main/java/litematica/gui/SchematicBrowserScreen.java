@@ -1,7 +1,9 @@
 package litematica.gui;
 
 import java.nio.file.Path;
+import javax.annotation.Nullable;
 
+import malilib.gui.util.GuiUtils;
 import malilib.gui.widget.CheckBoxWidget;
 import malilib.gui.widget.button.GenericButton;
 import malilib.gui.widget.list.BaseFileBrowserWidget.DirectoryEntry;
@@ -13,8 +15,8 @@ import litematica.data.DataManager;
 import litematica.data.SchematicHolder;
 import litematica.materials.MaterialListUtils;
 import litematica.schematic.ISchematic;
-import litematica.schematic.SchematicType;
 import litematica.schematic.placement.SchematicPlacementManager;
+import litematica.schematic.util.SchematicLoader;
 
 public class SchematicBrowserScreen extends BaseSchematicBrowserScreen
 {
@@ -63,25 +65,45 @@ public class SchematicBrowserScreen extends BaseSchematicBrowserScreen
 
     protected void loadSchematic()
     {
-        ISchematic schematic = tryLoadSchematic(this.getListWidget().getEntrySelectionHandler().getLastSelectedEntry());
+        Path file = getSelectedSchematicFile(this.getListWidget().getEntrySelectionHandler().getLastSelectedEntry());
+
+        if (file == null)
+        {
+            return;
+        }
 
+        // Read these at the time of the click, as the schematic is loaded in the background
+        boolean createPlacement = Configs.Internal.CREATE_PLACEMENT_ON_LOAD.getBooleanValue();
+        boolean selectPlacement = isShiftDown() == false;
+
+        MessageDispatcher.generic("litematica.message.info.schematic_loading", file.getFileName().toString());
+        SchematicHolder.getInstance().getOrLoadAsync(file).thenAccept(schematic -> this.onSchematicLoaded(schematic, createPlacement, selectPlacement));
+    }
+
+    protected void onSchematicLoaded(@Nullable ISchematic schematic, boolean createPlacement, boolean selectPlacement)
+    {
         if (schematic == null)
         {
+            MessageDispatcher.error("litematica.message.error.schematic_load.invalid_schematic_file");
             return;
         }
 
-        SchematicHolder.getInstance().addSchematic(schematic, true);
+        // The schematic has already been added to the SchematicHolder at this point
         MessageDispatcher.success("litematica.message.info.schematic_loaded_to_memory",
                                   schematic.getFile().getFileName().toString());
 
         // Clear the parent after loading as schematic, as presumably in most cases
         // the user would just want to close the screen at that point.
-        this.setParent(null);
+        // The screen may have been closed already while the schematic was loading.
+        if (GuiUtils.getCurrentScreen() == this)
+        {
+            this.setParent(null);
+        }
 
-        if (Configs.Internal.CREATE_PLACEMENT_ON_LOAD.getBooleanValue())
+        if (createPlacement)
         {
             SchematicPlacementManager manager = DataManager.getSchematicPlacementManager();
-            manager.createPlacementForNewlyLoadedSchematic(schematic, isShiftDown() == false);
+            manager.createPlacementForNewlyLoadedSchematic(schematic, selectPlacement);
         }
     }
 
@@ -95,17 +117,29 @@ public class SchematicBrowserScreen extends BaseSchematicBrowserScreen
         }
     }
 
-    public static ISchematic tryLoadSchematic(DirectoryEntry entry)
+    @Nullable
+    public static Path getSelectedSchematicFile(@Nullable DirectoryEntry entry)
     {
         Path file = entry != null && entry.getType() == DirectoryEntryType.FILE ? entry.getFullPath() : null;
 
         if (file == null)
         {
             MessageDispatcher.error("litematica.message.error.schematic_load.no_schematic_selected");
+        }
+
+        return file;
+    }
+
+    public static ISchematic tryLoadSchematic(DirectoryEntry entry)
+    {
+        Path file = getSelectedSchematicFile(entry);
+
+        if (file == null)
+        {
             return null;
         }
 
-        ISchematic schematic = SchematicType.tryCreateSchematicFrom(file);
+        ISchematic schematic = SchematicLoader.loadSchematic(file);
 
         if (schematic == null)
         {
@@ -76,7 +76,7 @@ public class SchematicManagerScreen extends BaseSchematicBrowserScreen
 
         SchematicInfo info = this.schematicInfoWidget.getSelectedSchematicInfo();
 
-        if (info != null && info.schematic.getMetadata().getPreviewImagePixelData() != null)
+        if (info != null && info.metadata.getPreviewImagePixelData() != null)
         {
             this.addWidget(this.removePreviewButton);
         }
@@ -118,9 +118,11 @@ public class SchematicManagerScreen extends BaseSchematicBrowserScreen
     {
         SchematicInfo info = this.schematicInfoWidget.getSelectedSchematicInfo();
 
-        if (info != null)
+        ISchematic schematic = info != null ? this.loadSchematic(info) : null;
+
+        if (schematic != null)
         {
-            SaveConvertSchematicScreen screen = new SaveConvertSchematicScreen(info.schematic, false);
+            SaveConvertSchematicScreen screen = new SaveConvertSchematicScreen(schematic, false);
             screen.setParent(this);
             openScreen(screen);
         }
@@ -147,7 +149,7 @@ public class SchematicManagerScreen extends BaseSchematicBrowserScreen
 
         if (info != null)
         {
-            SchematicMetadata meta = info.schematic.getMetadata();
+            SchematicMetadata meta = info.metadata;
             String title = "litematica.title.screen.schematic_manager.edit_description";
             // TODO use a TextAreaWidget once one has been implemented in malilib
             TextInputScreen screen = new TextInputScreen(title, meta.getDescription(), this::setDescription);
@@ -168,7 +170,7 @@ public class SchematicManagerScreen extends BaseSchematicBrowserScreen
         {
             String title = "litematica.title.screen.schematic_manager.confirm_preview_removal";
             String msg = "litematica.info.schematic_manager.confirm_preview_removal";
-            String name = info.schematic.getMetadata().getName();
+            String name = info.metadata.getName();
             ConfirmActionScreen screen = new ConfirmActionScreen(320, title, this::executeRemovePreview, msg, name);
 
             // Opening the popup-screen will remove the current entry
@@ -222,10 +224,10 @@ public class SchematicManagerScreen extends BaseSchematicBrowserScreen
     {
         SchematicInfo info = this.schematicInfoWidget.getSelectedSchematicInfo();
 
-        if (info != null)
-        {
-            ISchematic schematic = info.schematic;
+        ISchematic schematic = info != null ? this.loadSchematic(info) : null;
 
+        if (schematic != null)
+        {
             if (schematic.getType() == SchematicType.LITEMATICA)
             {
                 SetSchematicPreviewTask task = new SetSchematicPreviewTask(schematic);
@@ -248,15 +250,17 @@ public class SchematicManagerScreen extends BaseSchematicBrowserScreen
     {
         SchematicInfo info = this.schematicInfoWidget.getSelectedSchematicInfo();
 
-        if (info != null)
+        ISchematic schematic = info != null ? this.loadSchematic(info) : null;
+
+        if (schematic != null)
         {
-            if (info.schematic.getType().getHasName() == false)
+            if (schematic.getType().getHasName() == false)
             {
                 MessageDispatcher.error("litematica.message.error.schematic_manager.schematic_type_has_no_name");
                 return;
             }
 
-            String oldName = info.schematic.getMetadata().getName();
+            String oldName = schematic.getMetadata().getName();
             String title = "litematica.title.screen.schematic_manager.rename_schematic";
             TextInputScreen screen = new TextInputScreen(title, oldName, this::renameSchematicToName);
             screen.setParent(this);
@@ -277,10 +281,11 @@ public class SchematicManagerScreen extends BaseSchematicBrowserScreen
 
     protected boolean renameSchematicToName(String newName)
     {
-        if (this.selectedSchematic != null)
+        ISchematic schematic = this.selectedSchematic != null ? this.loadSchematic(this.selectedSchematic) : null;
+
+        if (schematic != null)
         {
             SchematicPlacementManager manager = DataManager.getSchematicPlacementManager();
-            ISchematic schematic = this.selectedSchematic.schematic;
             SchematicMetadata meta = schematic.getMetadata();
             String oldName = meta.getName();
             Path file = schematic.getFile();
@@ -324,9 +329,10 @@ public class SchematicManagerScreen extends BaseSchematicBrowserScreen
 
     protected boolean setDescription(String description)
     {
-        if (this.selectedSchematic != null)
+        ISchematic schematic = this.selectedSchematic != null ? this.loadSchematic(this.selectedSchematic) : null;
+
+        if (schematic != null)
         {
-            ISchematic schematic = this.selectedSchematic.schematic;
             SchematicMetadata meta = schematic.getMetadata();
             this.selectedSchematic = null;
 
@@ -355,9 +361,10 @@ public class SchematicManagerScreen extends BaseSchematicBrowserScreen
 
     protected void executeRemovePreview()
     {
-        if (this.selectedSchematic != null)
+        ISchematic schematic = this.selectedSchematic != null ? this.loadSchematic(this.selectedSchematic) : null;
+
+        if (schematic != null)
         {
-            ISchematic schematic = this.selectedSchematic.schematic;
             SchematicMetadata meta = schematic.getMetadata();
             this.selectedSchematic = null;
 
@@ -379,4 +386,22 @@ public class SchematicManagerScreen extends BaseSchematicBrowserScreen
             }
         }
     }
+
+    /**
+     * The info cache only reads the metadata, so the full schematic
+     * needs to be read from the file before it can be modified or saved.
+     */
+    @Nullable
+    protected ISchematic loadSchematic(SchematicInfo info)
+    {
+        ISchematic schematic = info.getOrLoadSchematic();
+
+        if (schematic == null)
+        {
+            MessageDispatcher.error("litematica.error.schematic_read_from_file_failed.cant_read",
+                                    info.file.toAbsolutePath().toString());
+        }
+
+        return schematic;
+    }
 }
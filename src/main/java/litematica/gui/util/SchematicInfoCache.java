@@ -6,14 +6,13 @@ import javax.annotation.Nullable;
 
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.texture.DynamicTexture;
-import net.minecraft.nbt.NBTTagCompound;
 
 import malilib.util.data.Identifier;
-import malilib.util.nbt.NbtUtils;
 import litematica.Reference;
 import litematica.schematic.ISchematic;
 import litematica.schematic.SchematicMetadata;
 import litematica.schematic.SchematicType;
+import litematica.schematic.util.SchematicLoader;
 
 public class SchematicInfoCache
 {
@@ -49,22 +48,16 @@ public class SchematicInfoCache
             return info;
         }
 
-        // TODO Use a partial NBT read method to only read the metadata tag
-        // TODO (that's only beneficial if it's stored before the bulk schematic data in the stream)
-        NBTTagCompound tag = NbtUtils.readNbtFromFile(file);
+        // Only the metadata is read here (when the schematic type supports it),
+        // the full schematic is read on demand via SchematicInfo#getOrLoadSchematic()
+        SchematicMetadata metadata = SchematicType.tryReadMetadataFrom(file);
         SchematicInfo data = null;
 
-        if (tag != null)
+        if (metadata != null)
         {
-            ISchematic schematic = SchematicType.tryCreateSchematicFrom(file, tag);
-
-            if (schematic != null)
-            {
-                SchematicMetadata metadata = schematic.getMetadata();
-                Identifier iconName = new Identifier(Reference.MOD_ID, file.toAbsolutePath().toString());
-                DynamicTexture texture = this.createPreviewImage(iconName, metadata);
-                data = new SchematicInfo(schematic, iconName, texture);
-            }
+            Identifier iconName = new Identifier(Reference.MOD_ID, file.toAbsolutePath().toString());
+            DynamicTexture texture = this.createPreviewImage(iconName, metadata);
+            data = new SchematicInfo(file, metadata, iconName, texture);
         }
 
         this.cachedData.put(file, data);
@@ -105,17 +98,36 @@ public class SchematicInfoCache
 
     public static class SchematicInfo
     {
-        public final ISchematic schematic;
+        public final Path file;
+        public final SchematicMetadata metadata;
         public final Identifier iconName;
         @Nullable public final DynamicTexture texture;
+        @Nullable protected ISchematic schematic;
 
-        protected SchematicInfo(ISchematic schematic,
+        protected SchematicInfo(Path file,
+                                SchematicMetadata metadata,
                                 Identifier iconName,
                                 @Nullable DynamicTexture texture)
         {
-            this.schematic = schematic;
+            this.file = file;
+            this.metadata = metadata;
             this.iconName = iconName;
             this.texture = texture;
         }
+
+        /**
+         * Reads the full schematic from the file, if it hasn't been read yet.
+         * @return the full schematic, or null if it could not be read
+         */
+        @Nullable
+        public ISchematic getOrLoadSchematic()
+        {
+            if (this.schematic == null)
+            {
+                this.schematic = SchematicLoader.loadSchematic(this.file);
+            }
+
+            return this.schematic;
+        }
     }
 }
@@ -184,7 +184,7 @@ public class SchematicInfoWidget extends ContainerWidget
             return;
         }
 
-        SchematicMetadata meta = this.currentInfo.schematic.getMetadata();
+        SchematicMetadata meta = this.currentInfo.metadata;
         List<StyledTextLine> lines = new ArrayList<>();
 
         if (Configs.Internal.SCHEMATIC_INFO_SHOW_NAME.getBooleanValue())
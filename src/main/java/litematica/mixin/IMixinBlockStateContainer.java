@@ -0,0 +1,21 @@
+package litematica.mixin;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+import net.minecraft.util.BitArray;
+import net.minecraft.world.chunk.BlockStateContainer;
+import net.minecraft.world.chunk.IBlockStatePalette;
+
+@Mixin(BlockStateContainer.class)
+public interface IMixinBlockStateContainer
+{
+    @Accessor("bits")
+    int getBits();
+
+    @Accessor("storage")
+    BitArray getStorage();
+
+    @Accessor("palette")
+    IBlockStatePalette getPalette();
+}
@@ -6,9 +6,15 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import net.minecraft.client.network.NetHandlerPlayClient;
+import net.minecraft.network.play.server.SPacketBlockChange;
+import net.minecraft.network.play.server.SPacketChat;
 import net.minecraft.network.play.server.SPacketChunkData;
+import net.minecraft.network.play.server.SPacketMultiBlockChange;
+import net.minecraft.network.play.server.SPacketTimeUpdate;
+import net.minecraft.util.text.ITextComponent;
 
 import litematica.config.Configs;
+import litematica.scheduler.CommandRateController;
 import litematica.schematic.verifier.SchematicVerifierManager;
 import litematica.world.SchematicWorldRenderingNotifier;
 
@@ -25,5 +31,40 @@ public abstract class MixinNetHandlerPlayClient
         }
 
         SchematicVerifierManager.INSTANCE.onChunkChanged(packetIn.getChunkX(), packetIn.getChunkZ());
+
+        CommandRateController.INSTANCE.onChunkData(packetIn.getChunkX(), packetIn.getChunkZ());
+    }
+
+    @Inject(method = "handleTimeUpdate", at = @At("RETURN"))
+    private void onTimeUpdate(SPacketTimeUpdate packetIn, CallbackInfo ci)
+    {
+        CommandRateController.INSTANCE.onTimeUpdate(packetIn.getTotalWorldTime());
+    }
+
+    @Inject(method = "handleBlockChange", at = @At("RETURN"))
+    private void onBlockChange(SPacketBlockChange packetIn, CallbackInfo ci)
+    {
+        CommandRateController.INSTANCE.onBlockChange(packetIn.getPos());
+    }
+
+    @Inject(method = "handleMultiBlockChange", at = @At("RETURN"))
+    private void onMultiBlockChange(SPacketMultiBlockChange packetIn, CallbackInfo ci)
+    {
+        for (SPacketMultiBlockChange.BlockUpdateData data : packetIn.getChangedBlocks())
+        {
+            CommandRateController.INSTANCE.onBlockChange(data.getPos());
+        }
+    }
+
+    @Inject(method = "handleChat", at = @At("RETURN"))
+    private void onChat(SPacketChat packetIn, CallbackInfo ci)
+    {
+        CommandRateController.INSTANCE.onChatMessage(packetIn.getChatComponent(), packetIn.getType());
+    }
+
+    @Inject(method = "onDisconnect", at = @At("HEAD"))
+    private void onDisconnect(ITextComponent reason, CallbackInfo ci)
+    {
+        CommandRateController.INSTANCE.onDisconnect(reason);
     }
 }
@@ -0,0 +1,93 @@
+package litematica.render.infohud;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import malilib.util.StringUtils;
+import litematica.config.Configs;
+import litematica.data.DataManager;
+import litematica.scheduler.CommandRateController;
+import litematica.scheduler.ITask;
+import litematica.scheduler.TaskMetrics;
+import litematica.scheduler.TaskScheduler;
+import litematica.schematic.placement.SchematicPlacementManager;
+
+public class TaskMetricsRenderer implements IInfoHudRenderer
+{
+    public static final TaskMetricsRenderer INSTANCE = new TaskMetricsRenderer();
+
+    public static void init()
+    {
+        InfoHud.getInstance().addInfoHudRenderer(INSTANCE, false);
+    }
+
+    @Override
+    public boolean getShouldRenderText(RenderPhase phase)
+    {
+        return phase == RenderPhase.PRE && Configs.InfoOverlays.TASK_METRICS_HUD.getBooleanValue();
+    }
+
+    @Override
+    public List<String> getText(RenderPhase phase)
+    {
+        List<String> lines = new ArrayList<>();
+
+        this.addSchedulerLines(TaskScheduler.getInstanceClient(), "litematica.hud.task_metrics.scheduler.client", lines);
+        this.addSchedulerLines(TaskScheduler.getInstanceServer(), "litematica.hud.task_metrics.scheduler.server", lines);
+        this.addSchematicChunkLines(lines);
+        this.addCommandRateLines(lines);
+
+        return lines;
+    }
+
+    protected void addCommandRateLines(List<String> lines)
+    {
+        CommandRateController controller = CommandRateController.INSTANCE;
+
+        if (controller.isActive())
+        {
+            String key = controller.isPaused() ? "litematica.hud.task_metrics.command_rate.paused" : "litematica.hud.task_metrics.command_rate";
+            lines.add(StringUtils.translate(key, controller.getRate(), controller.getEstimatedTps(),
+                                            controller.getPendingCommands(), controller.getEtaString()));
+        }
+    }
+
+    protected void addSchematicChunkLines(List<String> lines)
+    {
+        SchematicPlacementManager manager = DataManager.getSchematicPlacementManager();
+        int queued = manager.getQueuedChunkRebuildCount();
+        int building = manager.getPendingChunkBuildCount();
+        int unloading = manager.getQueuedChunkUnloadCount();
+
+        if (queued > 0 || building > 0 || unloading > 0)
+        {
+            lines.add(StringUtils.translate("litematica.hud.task_metrics.schematic_chunks", queued, building,
+                                            unloading, manager.getChunkRebuildsPerSecond()));
+        }
+    }
+
+    protected void addSchedulerLines(TaskScheduler scheduler, String nameKey, List<String> lines)
+    {
+        Map<ITask, TaskMetrics> metrics = scheduler.getTaskMetrics();
+
+        if (metrics.isEmpty())
+        {
+            return;
+        }
+
+        String name = StringUtils.translate(nameKey);
+        double budgetMs = Configs.Generic.TASK_TIME_BUDGET.getIntegerValue();
+        lines.add(StringUtils.translate("litematica.hud.task_metrics.title", name, scheduler.getLastTickNanos() / 1000000.0, budgetMs));
+
+        for (Map.Entry<ITask, TaskMetrics> entry : metrics.entrySet())
+        {
+            ITask task = entry.getKey();
+            TaskMetrics taskMetrics = entry.getValue();
+            double lastMs = taskMetrics.getLastExecutionNanos() / 1000000.0;
+            double avgMs = taskMetrics.getAverageNanos() / 1000000.0;
+            lines.add(StringUtils.translate("litematica.hud.task_metrics.task", task.getDisplayName(),
+                                            task.getPriority().name(), lastMs, avgMs));
+        }
+    }
+}
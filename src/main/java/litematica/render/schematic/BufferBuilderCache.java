@@ -9,6 +9,7 @@ public class BufferBuilderCache
 {
     private final BufferBuilder[] worldRenderers;
     private final BufferBuilder[] overlayBufferBuilders;
+    private final OverlayTypeGrid overlayTypeGrid = new OverlayTypeGrid();
 
     public BufferBuilderCache()
     {
@@ -40,4 +41,9 @@ public class BufferBuilderCache
     {
         return this.overlayBufferBuilders[type.ordinal()];
     }
+
+    public OverlayTypeGrid getOverlayTypeGrid()
+    {
+        return this.overlayTypeGrid;
+    }
 }
@@ -0,0 +1,275 @@
+package litematica.render.schematic;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+
+/**
+ * The queue of the pending chunk compile tasks, sharded into one set of deques per worker thread.
+ * The new tasks are distributed over the shards in a round-robin fashion, and within each shard
+ * they are put into a deque by their distance band, ie. by their distance to the camera in render chunk widths.
+ * A worker takes the task from the closest non-empty distance band over all the shards, preferring its own
+ * shard within the same band, and stealing from the other shards only if they have a closer or the only tasks.
+ * The lowest non-empty band of each shard is published without locking, so finding the closest
+ * shard doesn't touch the other workers' locks. This way the workers mostly don't contend
+ * over the same lock, while the tasks still get compiled closest-first, at the band granularity.
+ * The superseded tasks (ie. ones that have been finished by the render chunk
+ * creating a new task, or by the render chunk moving) are not removed from the queue
+ * when they get finished, instead they are just skipped when they get taken from the queue.
+ */
+public class ChunkCompileScheduler
+{
+    /** The width of one distance band in blocks, ie. one render chunk */
+    private static final int BAND_WIDTH = 16;
+    /** The tasks further away than this many bands all go to the last band */
+    private static final int BAND_COUNT = 64;
+
+    protected final Shard[] shards;
+    /** One permit for each offered task, the taking workers wait on this */
+    protected final Semaphore availableTasks = new Semaphore(0);
+    protected final AtomicInteger nextShard = new AtomicInteger();
+    protected final AtomicInteger queuedCount = new AtomicInteger();
+    protected final AtomicLong skippedCount = new AtomicLong();
+
+    public ChunkCompileScheduler(int shardCount)
+    {
+        this.shards = new Shard[Math.max(1, shardCount)];
+
+        for (int i = 0; i < this.shards.length; ++i)
+        {
+            this.shards[i] = new Shard();
+        }
+    }
+
+    public void offer(ChunkCompileTaskGeneratorSchematic task)
+    {
+        int index = (this.nextShard.getAndIncrement() & Integer.MAX_VALUE) % this.shards.length;
+
+        this.shards[index].add(task, getBand(task));
+        this.queuedCount.incrementAndGet();
+        this.availableTasks.release();
+    }
+
+    /**
+     * Takes the next task for the given worker, waiting until one is available
+     */
+    public ChunkCompileTaskGeneratorSchematic take(int workerIndex) throws InterruptedException
+    {
+        while (true)
+        {
+            this.availableTasks.acquire();
+
+            // The permit may belong to a task that has already been skipped
+            // or cleared, in which case this just waits for the next one
+            ChunkCompileTaskGeneratorSchematic task = this.poll(workerIndex);
+
+            if (task != null)
+            {
+                return task;
+            }
+        }
+    }
+
+    /**
+     * Takes the closest pending task for the given worker without waiting
+     * @return the next task, or null if there are no pending tasks
+     */
+    @Nullable
+    public ChunkCompileTaskGeneratorSchematic poll(int workerIndex)
+    {
+        final int count = this.shards.length;
+        final int ownIndex = workerIndex % count;
+
+        while (true)
+        {
+            // Find the shard with the closest tasks, starting from the worker's own shard
+            int bestIndex = -1;
+            int bestBand = BAND_COUNT;
+
+            for (int i = 0; i < count; ++i)
+            {
+                int index = (ownIndex + i) % count;
+                int band = this.shards[index].lowestBand;
+
+                if (band < bestBand)
+                {
+                    bestBand = band;
+                    bestIndex = index;
+                }
+            }
+
+            if (bestIndex == -1)
+            {
+                return null;
+            }
+
+            Shard shard = this.shards[bestIndex];
+            ChunkCompileTaskGeneratorSchematic task = shard.poll(bestIndex != ownIndex);
+
+            if (task != null)
+            {
+                return task;
+            }
+
+            // The shard got emptied by another worker meanwhile, or it only had superseded tasks,
+            // so look again. The lowest band of that shard has been updated by now.
+        }
+    }
+
+    /**
+     * Removes all the pending tasks, and finishes them
+     */
+    public void clear()
+    {
+        for (Shard shard : this.shards)
+        {
+            shard.clear();
+        }
+    }
+
+    public boolean isEmpty()
+    {
+        return this.queuedCount.get() <= 0;
+    }
+
+    /**
+     * @return the number of queued tasks, including any superseded tasks that have not been skipped yet
+     */
+    public int getQueuedCount()
+    {
+        return Math.max(0, this.queuedCount.get());
+    }
+
+    /**
+     * @return the total number of superseded tasks that were skipped
+     */
+    public long getSkippedCount()
+    {
+        return this.skippedCount.get();
+    }
+
+    private static int getBand(ChunkCompileTaskGeneratorSchematic task)
+    {
+        return (int) Math.min(BAND_COUNT - 1, Math.sqrt(task.getDistanceSq()) / BAND_WIDTH);
+    }
+
+    protected class Shard
+    {
+        protected final ReentrantLock lock = new ReentrantLock();
+        protected final ArrayDeque<ChunkCompileTaskGeneratorSchematic>[] bands;
+        /** The lowest non-empty band, or BAND_COUNT if the shard is empty. Only written while holding the lock. */
+        protected volatile int lowestBand = BAND_COUNT;
+
+        @SuppressWarnings("unchecked")
+        protected Shard()
+        {
+            this.bands = new ArrayDeque[BAND_COUNT];
+
+            for (int i = 0; i < BAND_COUNT; ++i)
+            {
+                this.bands[i] = new ArrayDeque<>();
+            }
+        }
+
+        protected void add(ChunkCompileTaskGeneratorSchematic task, int band)
+        {
+            this.lock.lock();
+
+            try
+            {
+                this.bands[band].addLast(task);
+
+                if (band < this.lowestBand)
+                {
+                    this.lowestBand = band;
+                }
+            }
+            finally
+            {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * Takes the first not finished task from the lowest non-empty band
+         * @param steal if true, then the task is taken from the other end of the deque
+         *              than where the owning worker takes its tasks from
+         */
+        @Nullable
+        protected ChunkCompileTaskGeneratorSchematic poll(boolean steal)
+        {
+            this.lock.lock();
+
+            try
+            {
+                for (int band = this.lowestBand; band < BAND_COUNT; ++band)
+                {
+                    ArrayDeque<ChunkCompileTaskGeneratorSchematic> deque = this.bands[band];
+                    ChunkCompileTaskGeneratorSchematic task;
+
+                    while ((task = (steal ? deque.pollLast() : deque.pollFirst())) != null)
+                    {
+                        ChunkCompileScheduler.this.queuedCount.decrementAndGet();
+
+                        if (task.isFinished() == false)
+                        {
+                            this.lowestBand = deque.isEmpty() ? this.findLowestBand(band + 1) : band;
+                            return task;
+                        }
+
+                        ChunkCompileScheduler.this.skippedCount.incrementAndGet();
+                    }
+                }
+
+                this.lowestBand = BAND_COUNT;
+
+                return null;
+            }
+            finally
+            {
+                this.lock.unlock();
+            }
+        }
+
+        protected void clear()
+        {
+            this.lock.lock();
+
+            try
+            {
+                for (ArrayDeque<ChunkCompileTaskGeneratorSchematic> deque : this.bands)
+                {
+                    ChunkCompileTaskGeneratorSchematic task;
+
+                    while ((task = deque.pollFirst()) != null)
+                    {
+                        ChunkCompileScheduler.this.queuedCount.decrementAndGet();
+                        task.finish();
+                    }
+                }
+
+                this.lowestBand = BAND_COUNT;
+            }
+            finally
+            {
+                this.lock.unlock();
+            }
+        }
+
+        private int findLowestBand(int startBand)
+        {
+            for (int band = startBand; band < BAND_COUNT; ++band)
+            {
+                if (this.bands[band].isEmpty() == false)
+                {
+                    return band;
+                }
+            }
+
+            return BAND_COUNT;
+        }
+    }
+}
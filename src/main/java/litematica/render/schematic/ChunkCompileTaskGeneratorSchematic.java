@@ -2,10 +2,14 @@ package litematica.render.schematic;
 
 import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
 import com.google.common.collect.Lists;
 import com.google.common.primitives.Doubles;
 
 import net.minecraft.client.renderer.chunk.CompiledChunk;
+import net.minecraft.util.math.BlockPos;
+
+import litematica.schematic.placement.SchematicPlacement;
 
 public class ChunkCompileTaskGeneratorSchematic implements Comparable<ChunkCompileTaskGeneratorSchematic>
 {
@@ -18,6 +22,8 @@ public class ChunkCompileTaskGeneratorSchematic implements Comparable<ChunkCompi
     private CompiledChunk compiledChunk;
     private ChunkCompileTaskGeneratorSchematic.Status status = ChunkCompileTaskGeneratorSchematic.Status.PENDING;
     private boolean finished;
+    @Nullable private SchematicPlacement movedPlacement;
+    @Nullable private BlockPos movedContentsOrigin;
 
     public ChunkCompileTaskGeneratorSchematic(RenderChunkSchematicVbo renderChunkIn, ChunkCompileTaskGeneratorSchematic.Type typeIn, double distanceSqIn)
     {
@@ -46,6 +52,27 @@ public class ChunkCompileTaskGeneratorSchematic implements Comparable<ChunkCompi
         this.compiledChunk = compiledChunkIn;
     }
 
+    /**
+     * Sets the moved placement, and its origin that the compiled world contents were built for
+     */
+    public void setMovedContents(SchematicPlacement placement, BlockPos builtOrigin)
+    {
+        this.movedPlacement = placement;
+        this.movedContentsOrigin = builtOrigin;
+    }
+
+    @Nullable
+    public SchematicPlacement getMovedPlacement()
+    {
+        return this.movedPlacement;
+    }
+
+    @Nullable
+    public BlockPos getMovedContentsOrigin()
+    {
+        return this.movedContentsOrigin;
+    }
+
     public BufferBuilderCache getBufferCache()
     {
         return this.bufferBuilderCache;
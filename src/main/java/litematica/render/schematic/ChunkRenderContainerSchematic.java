@@ -4,7 +4,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 import net.minecraft.client.renderer.ChunkRenderContainer;
+import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.client.renderer.chunk.RenderChunk;
+import net.minecraft.util.math.BlockPos;
 
+import litematica.render.schematic.RenderChunkSchematicVbo.MovedGeometry;
 import litematica.render.schematic.RenderChunkSchematicVbo.OverlayRenderType;
 
 public abstract class ChunkRenderContainerSchematic extends ChunkRenderContainer
@@ -19,6 +23,24 @@ public abstract class ChunkRenderContainerSchematic extends ChunkRenderContainer
         this.overlayRenderChunks.clear();
     }
 
+    @Override
+    public void preRenderChunk(RenderChunk renderChunk)
+    {
+        super.preRenderChunk(renderChunk);
+
+        // Render the old geometry of not-yet-recompiled render chunks moved along with the placement
+        MovedGeometry moved = ((RenderChunkSchematicVbo) renderChunk).getMovedGeometry();
+
+        if (moved != null)
+        {
+            BlockPos origin = moved.placement.getOrigin();
+            BlockPos builtOrigin = moved.builtOrigin;
+            GlStateManager.translate(origin.getX() - builtOrigin.getX(),
+                                     origin.getY() - builtOrigin.getY(),
+                                     origin.getZ() - builtOrigin.getZ());
+        }
+    }
+
     public void addOverlayChunk(RenderChunkSchematicVbo renderChunk)
     {
         this.overlayRenderChunks.add(renderChunk);
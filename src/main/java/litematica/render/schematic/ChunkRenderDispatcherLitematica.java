@@ -4,8 +4,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Queues;
 import com.google.common.primitives.Doubles;
@@ -25,10 +26,15 @@ import net.minecraft.client.renderer.WorldVertexBufferUploader;
 import net.minecraft.client.renderer.chunk.CompiledChunk;
 import net.minecraft.client.renderer.chunk.RenderChunk;
 import net.minecraft.client.renderer.vertex.VertexBuffer;
+import net.minecraft.entity.Entity;
 import net.minecraft.util.BlockRenderLayer;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.MathHelper;
 
+import malilib.util.game.wrap.EntityWrap;
+import malilib.util.game.wrap.GameUtils;
 import litematica.Litematica;
+import litematica.config.Configs;
 import litematica.render.schematic.RenderChunkSchematicVbo.OverlayRenderType;
 
 public class ChunkRenderDispatcherLitematica
@@ -38,19 +44,39 @@ public class ChunkRenderDispatcherLitematica
 
     private final List<Thread> listWorkerThreads = Lists.<Thread>newArrayList();
     private final List<ChunkRenderWorkerLitematica> listThreadedWorkers = new ArrayList<>();
-    private final PriorityBlockingQueue<ChunkCompileTaskGeneratorSchematic> queueChunkUpdates = Queues.newPriorityBlockingQueue();
+    private final ChunkCompileScheduler compileScheduler;
     private final BlockingQueue<BufferBuilderCache> queueFreeRenderBuilders;
     private final WorldVertexBufferUploader displayListUploader = new WorldVertexBufferUploader();
     private final VertexBufferUploader vertexBufferUploader = new VertexBufferUploader();
     private final Queue<ChunkRenderDispatcherLitematica.PendingUpload> queueChunkUploads = Queues.newPriorityQueue();
     private final ChunkRenderWorkerLitematica renderWorker;
     private final int countRenderBuilders;
+    private final int configThreadCount;
+    private final int configRenderBuilderCount;
+    private final AtomicInteger runningCount = new AtomicInteger();
+    private final AtomicLong outOfRangeCount = new AtomicLong();
+    /** The camera position, captured on the main thread when tasks are queued, for the worker threads */
+    private volatile boolean hasCameraPosition;
+    private volatile double cameraX;
+    private volatile double cameraZ;
+    private long uploadedCount;
 
     public ChunkRenderDispatcherLitematica()
     {
+        this.configThreadCount = Configs.Generic.RENDER_THREAD_COUNT.getIntegerValue();
+        this.configRenderBuilderCount = Configs.Generic.RENDER_BUFFER_CACHE_COUNT.getIntegerValue();
+
         int threadLimitMemory = Math.max(1, (int)((double)Runtime.getRuntime().maxMemory() * 0.15D) / 10485760);
         int threadLimitCPU = Math.max(1, MathHelper.clamp(Runtime.getRuntime().availableProcessors(), 1, threadLimitMemory / 5));
-        this.countRenderBuilders = MathHelper.clamp(threadLimitCPU * 8, 1, threadLimitMemory);
+
+        // A value of 0 in the configs means that the count is derived from the CPU count and the available memory
+        if (this.configThreadCount > 0)
+        {
+            threadLimitCPU = this.configThreadCount;
+        }
+
+        this.countRenderBuilders = this.configRenderBuilderCount > 0 ? this.configRenderBuilderCount : MathHelper.clamp(threadLimitCPU * 8, 1, threadLimitMemory);
+        this.compileScheduler = new ChunkCompileScheduler(threadLimitCPU);
 
         if (threadLimitCPU > 1)
         {
@@ -58,7 +84,7 @@ public class ChunkRenderDispatcherLitematica
 
             for (int i = 0; i < threadLimitCPU; ++i)
             {
-                ChunkRenderWorkerLitematica worker = new ChunkRenderWorkerLitematica(this);
+                ChunkRenderWorkerLitematica worker = new ChunkRenderWorkerLitematica(this, i);
                 Thread thread = THREAD_FACTORY.newThread(worker);
                 thread.start();
                 this.listThreadedWorkers.add(worker);
@@ -75,27 +101,55 @@ public class ChunkRenderDispatcherLitematica
             this.queueFreeRenderBuilders.add(new BufferBuilderCache());
         }
 
-        this.renderWorker = new ChunkRenderWorkerLitematica(this, new BufferBuilderCache());
+        this.renderWorker = new ChunkRenderWorkerLitematica(this, 0, new BufferBuilderCache());
+    }
+
+    /**
+     * @return true if the thread or buffer cache count configs have been changed
+     *         since this dispatcher was created, and thus it needs to be re-created
+     */
+    public boolean isConfigChanged()
+    {
+        return this.configThreadCount != Configs.Generic.RENDER_THREAD_COUNT.getIntegerValue() ||
+               this.configRenderBuilderCount != Configs.Generic.RENDER_BUFFER_CACHE_COUNT.getIntegerValue();
     }
 
     public String getDebugInfo()
     {
-        return this.listWorkerThreads.isEmpty() ? String.format("pC: %03d, single-threaded", this.queueChunkUpdates.size()) : String.format("pC: %03d, pU: %1d, aB: %1d", this.queueChunkUpdates.size(), this.queueChunkUploads.size(), this.queueFreeRenderBuilders.size());
+        long cancelled = this.compileScheduler.getSkippedCount() + this.outOfRangeCount.get();
+        int uploads;
+
+        synchronized (this.queueChunkUploads)
+        {
+            uploads = this.queueChunkUploads.size();
+        }
+
+        if (this.listWorkerThreads.isEmpty())
+        {
+            return String.format("pC: %03d, single-threaded, cC: %d, U: %d", this.compileScheduler.getQueuedCount(), cancelled, this.uploadedCount);
+        }
+
+        return String.format("pC: %03d, rC: %d, pU: %1d, aB: %1d, cC: %d, U: %d",
+                             this.compileScheduler.getQueuedCount(), this.runningCount.get(), uploads,
+                             this.queueFreeRenderBuilders.size(), cancelled, this.uploadedCount);
     }
 
     public boolean runChunkUploads(long finishTimeNano)
     {
         boolean ranTasks = false;
 
+        // This runs every frame, so this also keeps the camera position up to date while no new tasks get queued
+        this.updateCameraPosition();
+
         while (true)
         {
             boolean processedTask = false;
 
             if (this.listWorkerThreads.isEmpty())
             {
-                ChunkCompileTaskGeneratorSchematic generator = this.queueChunkUpdates.poll();
+                ChunkCompileTaskGeneratorSchematic generator = this.compileScheduler.poll(0);
 
-                if (generator != null)
+                if (generator != null && this.cancelIfOutOfRange(generator) == false)
                 {
                     try
                     {
@@ -109,14 +163,20 @@ public class ChunkRenderDispatcherLitematica
                 }
             }
 
+            PendingUpload upload;
+
+            // Don't hold the lock while uploading, so that the workers can keep adding new uploads
             synchronized (this.queueChunkUploads)
             {
-                if (!this.queueChunkUploads.isEmpty())
-                {
-                    (this.queueChunkUploads.poll()).uploadTask.run();
-                    processedTask = true;
-                    ranTasks = true;
-                }
+                upload = this.queueChunkUploads.poll();
+            }
+
+            if (upload != null)
+            {
+                upload.uploadTask.run();
+                ++this.uploadedCount;
+                processedTask = true;
+                ranTasks = true;
             }
 
             if (finishTimeNano == 0L || processedTask == false || finishTimeNano < System.nanoTime())
@@ -136,24 +196,12 @@ public class ChunkRenderDispatcherLitematica
 
         try
         {
-            final ChunkCompileTaskGeneratorSchematic generator = renderChunk.makeCompileTaskChunkSchematic();
-
-            generator.addFinishRunnable(new Runnable()
-            {
-                public void run()
-                {
-                    ChunkRenderDispatcherLitematica.this.queueChunkUpdates.remove(generator);
-                }
-            });
-
-            boolean flag = this.queueChunkUpdates.offer(generator);
-
-            if (!flag)
-            {
-                generator.finish();
-            }
-
-            flag1 = flag;
+            // Any superseded task still in the queue has been finished by the render chunk,
+            // and it will just get skipped when it gets taken from the queue
+            ChunkCompileTaskGeneratorSchematic generator = renderChunk.makeCompileTaskChunkSchematic();
+            this.updateCameraPosition();
+            this.compileScheduler.offer(generator);
+            flag1 = true;
         }
         finally
         {
@@ -222,9 +270,67 @@ public class ChunkRenderDispatcherLitematica
         return this.queueFreeRenderBuilders.take();
     }
 
-    public ChunkCompileTaskGeneratorSchematic getNextChunkUpdate() throws InterruptedException
+    public ChunkCompileTaskGeneratorSchematic getNextChunkUpdate(int workerIndex) throws InterruptedException
+    {
+        while (true)
+        {
+            ChunkCompileTaskGeneratorSchematic generator = this.compileScheduler.take(workerIndex);
+
+            if (this.cancelIfOutOfRange(generator) == false)
+            {
+                this.runningCount.incrementAndGet();
+                return generator;
+            }
+        }
+    }
+
+    public void onChunkUpdateProcessed()
+    {
+        this.runningCount.decrementAndGet();
+    }
+
+    /**
+     * Finishes the given task without compiling it, if its render chunk is no longer within the render distance.
+     * Finishing a rebuild task that hasn't been done marks the render chunk as needing an update again,
+     * so it will get re-queued if it comes back within range.
+     * @return true if the task was cancelled
+     */
+    private boolean cancelIfOutOfRange(ChunkCompileTaskGeneratorSchematic generator)
+    {
+        if (this.hasCameraPosition == false)
+        {
+            return false;
+        }
+
+        BlockPos pos = generator.getRenderChunk().getPosition();
+        double maxDistance = (GameUtils.getRenderDistanceChunks() + 2) * 16;
+        double dx = Math.abs(pos.getX() + 8 - this.cameraX);
+        double dz = Math.abs(pos.getZ() + 8 - this.cameraZ);
+
+        if (dx > maxDistance || dz > maxDistance)
+        {
+            generator.finish();
+            this.outOfRangeCount.incrementAndGet();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Captures the camera position for the out of range checks done on the worker threads.
+     * This must be called on the main thread.
+     */
+    private void updateCameraPosition()
     {
-        return this.queueChunkUpdates.take();
+        Entity entity = Minecraft.getMinecraft().getRenderViewEntity();
+
+        if (entity != null)
+        {
+            this.cameraX = EntityWrap.getX(entity);
+            this.cameraZ = EntityWrap.getZ(entity);
+            this.hasCameraPosition = true;
+        }
     }
 
     public boolean updateTransparencyLater(RenderChunkSchematicVbo renderChunk)
@@ -235,7 +341,7 @@ public class ChunkRenderDispatcherLitematica
 
         try
         {
-            final ChunkCompileTaskGeneratorSchematic generator = renderChunk.makeCompileTaskTransparencySchematic();
+            ChunkCompileTaskGeneratorSchematic generator = renderChunk.makeCompileTaskTransparencySchematic();
 
             if (generator == null)
             {
@@ -243,15 +349,9 @@ public class ChunkRenderDispatcherLitematica
                 return flag;
             }
 
-            generator.addFinishRunnable(new Runnable()
-            {
-                @Override
-                public void run()
-                {
-                    ChunkRenderDispatcherLitematica.this.queueChunkUpdates.remove(generator);
-                }
-            });
-            flag = this.queueChunkUpdates.offer(generator);
+            this.updateCameraPosition();
+            this.compileScheduler.offer(generator);
+            flag = true;
         }
         finally
         {
@@ -357,20 +457,12 @@ public class ChunkRenderDispatcherLitematica
 
     public void clearChunkUpdates()
     {
-        while (this.queueChunkUpdates.isEmpty() == false)
-        {
-            ChunkCompileTaskGeneratorSchematic generator = this.queueChunkUpdates.poll();
-
-            if (generator != null)
-            {
-                generator.finish();
-            }
-        }
+        this.compileScheduler.clear();
     }
 
     public boolean hasChunkUpdates()
     {
-        return this.queueChunkUpdates.isEmpty() && this.queueChunkUploads.isEmpty();
+        return this.compileScheduler.isEmpty() && this.queueChunkUploads.isEmpty();
     }
 
     public void stopWorkerThreads()
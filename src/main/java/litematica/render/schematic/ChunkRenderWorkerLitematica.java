@@ -26,17 +26,19 @@ public class ChunkRenderWorkerLitematica implements Runnable
 
     private final ChunkRenderDispatcherLitematica chunkRenderDispatcher;
     @Nullable private final BufferBuilderCache bufferCache;
+    private final int workerIndex;
     private boolean shouldRun;
 
-    public ChunkRenderWorkerLitematica(ChunkRenderDispatcherLitematica chunkRenderDispatcherIn)
+    public ChunkRenderWorkerLitematica(ChunkRenderDispatcherLitematica chunkRenderDispatcherIn, int workerIndex)
     {
-        this(chunkRenderDispatcherIn, null);
+        this(chunkRenderDispatcherIn, workerIndex, null);
     }
 
-    public ChunkRenderWorkerLitematica(ChunkRenderDispatcherLitematica chunkRenderDispatcherIn, @Nullable BufferBuilderCache bufferCache)
+    public ChunkRenderWorkerLitematica(ChunkRenderDispatcherLitematica chunkRenderDispatcherIn, int workerIndex, @Nullable BufferBuilderCache bufferCache)
     {
         this.shouldRun = true;
         this.chunkRenderDispatcher = chunkRenderDispatcherIn;
+        this.workerIndex = workerIndex;
         this.bufferCache = bufferCache;
     }
 
@@ -47,7 +49,16 @@ public class ChunkRenderWorkerLitematica implements Runnable
         {
             try
             {
-                this.processTask(this.chunkRenderDispatcher.getNextChunkUpdate());
+                ChunkCompileTaskGeneratorSchematic generator = this.chunkRenderDispatcher.getNextChunkUpdate(this.workerIndex);
+
+                try
+                {
+                    this.processTask(generator);
+                }
+                finally
+                {
+                    this.chunkRenderDispatcher.onChunkUpdateProcessed();
+                }
             }
             catch (InterruptedException e)
             {
@@ -217,6 +228,7 @@ public class ChunkRenderWorkerLitematica implements Runnable
                     }
 
                     generator.getRenderChunk().setChunkRenderData(compiledChunk);
+                    generator.getRenderChunk().onCompileUploaded(generator);
                 }
 
                 @Override
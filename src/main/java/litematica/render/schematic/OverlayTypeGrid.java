@@ -0,0 +1,143 @@
+package litematica.render.schematic;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+
+import litematica.util.OverlayType;
+import litematica.util.PositionUtils;
+
+/**
+ * A reusable scratch buffer for building one render chunk.
+ * It covers the 16 x 16 x 16 render chunk plus a one block margin around it,
+ * and holds the block states of both worlds and the overlay type of each position.
+ * The states and types are looked up and classified in one pass before the blocks are rendered,
+ * so that the rendering and the reduced inner sides and edges of the overlay don't need
+ * to query both world views again for each adjacent position of every rendered block.
+ * Each BufferBuilderCache has its own grid, so a grid is only used by one worker thread at a time.
+ */
+public class OverlayTypeGrid
+{
+    public static final int SIZE = 18;
+    private static final int STRIDE_Z = SIZE;
+    private static final int STRIDE_Y = SIZE * SIZE;
+    private static final OverlayType[] TYPES = OverlayType.values();
+    private static final int[] SIDE_INDEX_OFFSETS = new int[PositionUtils.FACING_ALL.length];
+    /** The index offsets of the positions around each edge, by the axis ordinal and the corner index */
+    private static final int[][][] EDGE_NEIGHBOR_INDEX_OFFSETS = new int[3][4][4];
+
+    static
+    {
+        for (int i = 0; i < PositionUtils.FACING_ALL.length; ++i)
+        {
+            EnumFacing side = PositionUtils.FACING_ALL[i];
+            SIDE_INDEX_OFFSETS[i] = getIndexOffset(side.getXOffset(), side.getYOffset(), side.getZOffset());
+        }
+
+        for (EnumFacing.Axis axis : PositionUtils.AXES_ALL)
+        {
+            for (int corner = 0; corner < 4; ++corner)
+            {
+                Vec3i[] offsets = PositionUtils.getEdgeNeighborOffsets(axis, corner);
+
+                for (int i = 0; i < 4; ++i)
+                {
+                    EDGE_NEIGHBOR_INDEX_OFFSETS[axis.ordinal()][corner][i] = getIndexOffset(offsets[i].getX(), offsets[i].getY(), offsets[i].getZ());
+                }
+            }
+        }
+    }
+
+    private final IBlockState[] schematicStates = new IBlockState[SIZE * SIZE * SIZE];
+    private final IBlockState[] clientStates = new IBlockState[SIZE * SIZE * SIZE];
+    private final byte[] types = new byte[SIZE * SIZE * SIZE];
+    private final BlockPos.MutableBlockPos posMutable = new BlockPos.MutableBlockPos();
+    private int originX;
+    private int originY;
+    private int originZ;
+
+    /**
+     * Reads the block states of both worlds, and classifies the overlay types,
+     * in the given area. The area must be within the render chunk and its one block margin.
+     * @param chunkPos the minimum corner of the render chunk
+     * @param classifyTypes whether or not the overlay types are needed
+     */
+    public void fill(BlockPos chunkPos, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+                     ChunkCacheSchematic schematicWorldView, ChunkCacheSchematic clientWorldView,
+                     RenderChunkSchematicVbo renderChunk, boolean classifyTypes)
+    {
+        this.originX = chunkPos.getX() - 1;
+        this.originY = chunkPos.getY() - 1;
+        this.originZ = chunkPos.getZ() - 1;
+
+        for (int y = minY; y <= maxY; ++y)
+        {
+            for (int z = minZ; z <= maxZ; ++z)
+            {
+                int index = this.getIndex(minX, y, z);
+
+                for (int x = minX; x <= maxX; ++x, ++index)
+                {
+                    this.posMutable.setPos(x, y, z);
+                    IBlockState stateSchematic = schematicWorldView.getBlockState(this.posMutable);
+                    IBlockState stateClient = clientWorldView.getBlockState(this.posMutable);
+
+                    this.schematicStates[index] = stateSchematic;
+                    this.clientStates[index] = stateClient;
+
+                    if (classifyTypes)
+                    {
+                        this.types[index] = (byte) renderChunk.getOverlayType(stateSchematic, stateClient).ordinal();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the grid index of the given world position
+     */
+    public int getIndex(int x, int y, int z)
+    {
+        return (y - this.originY) * STRIDE_Y + (z - this.originZ) * STRIDE_Z + (x - this.originX);
+    }
+
+    public IBlockState getSchematicState(int index)
+    {
+        return this.schematicStates[index];
+    }
+
+    public IBlockState getClientState(int index)
+    {
+        return this.clientStates[index];
+    }
+
+    public OverlayType getOverlayType(int index)
+    {
+        return TYPES[this.types[index]];
+    }
+
+    /**
+     * @return the index offset of the adjacent position on the given side,
+     *         by the index of the side in {@link PositionUtils#FACING_ALL}
+     */
+    public static int getSideIndexOffset(int sideIndex)
+    {
+        return SIDE_INDEX_OFFSETS[sideIndex];
+    }
+
+    /**
+     * @return the index offsets of the positions around the given edge, in the same
+     *         order as in {@link PositionUtils#getEdgeNeighborOffsets(EnumFacing.Axis, int)}
+     */
+    public static int[] getEdgeNeighborIndexOffsets(EnumFacing.Axis axis, int corner)
+    {
+        return EDGE_NEIGHBOR_INDEX_OFFSETS[axis.ordinal()][corner];
+    }
+
+    private static int getIndexOffset(int x, int y, int z)
+    {
+        return y * STRIDE_Y + z * STRIDE_Z + x;
+    }
+}
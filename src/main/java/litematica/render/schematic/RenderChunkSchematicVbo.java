@@ -43,6 +43,8 @@ import litematica.config.Configs;
 import litematica.data.DataManager;
 import litematica.mixin.IMixinCompiledChunk;
 import litematica.render.RenderUtils;
+import litematica.schematic.placement.PendingPlacementMove;
+import litematica.schematic.placement.SchematicPlacement;
 import litematica.util.OverlayType;
 import litematica.util.PositionUtils;
 
@@ -62,6 +64,7 @@ public class RenderChunkSchematicVbo extends RenderChunk
     private ChunkCacheSchematic clientWorldView;
 
     private CompiledChunkSchematic schematicChunkRenderData;
+    @Nullable private volatile MovedGeometry movedGeometry;
 
     private boolean hasOverlay = false;
 
@@ -82,6 +85,7 @@ public class RenderChunkSchematicVbo extends RenderChunk
     private Color4f overlayColorMissing;
     private Color4f overlayColorWrongBlock;
     private Color4f overlayColorWrongState;
+    private final Color4f[] overlayOutlineColors = new Color4f[OverlayType.values().length];
 
     public RenderChunkSchematicVbo(World worldIn, RenderGlobal renderGlobalIn, int indexIn)
     {
@@ -119,6 +123,82 @@ public class RenderChunkSchematicVbo extends RenderChunk
         }
     }
 
+    /**
+     * Called when the compiled data of the given task has been uploaded and taken into use.
+     * Updates or clears the offset of the moved old geometry, based on the placement origin
+     * that the world contents used by the task were built for.
+     */
+    public void onCompileUploaded(ChunkCompileTaskGeneratorSchematic generator)
+    {
+        SchematicPlacement placement = generator.getMovedPlacement();
+
+        if (placement == null)
+        {
+            return;
+        }
+
+        this.chunkRenderDataLock.lock();
+
+        try
+        {
+            MovedGeometry moved = this.movedGeometry;
+
+            if (moved == null || moved.placement == placement)
+            {
+                BlockPos builtOrigin = generator.getMovedContentsOrigin();
+                this.movedGeometry = builtOrigin.equals(placement.getOrigin()) ? null : new MovedGeometry(placement, builtOrigin);
+            }
+        }
+        finally
+        {
+            this.chunkRenderDataLock.unlock();
+        }
+    }
+
+    /**
+     * Marks the current geometry of this render chunk as having been built for the
+     * given old origin of the given placement, which has now been moved.
+     * If the geometry was already lagging behind an earlier move of the same placement,
+     * then the origin of that earlier move is kept.
+     */
+    public void markGeometryMoved(SchematicPlacement placement, BlockPos builtOrigin)
+    {
+        this.chunkRenderDataLock.lock();
+
+        try
+        {
+            MovedGeometry moved = this.movedGeometry;
+
+            if (moved == null || moved.placement != placement)
+            {
+                this.movedGeometry = new MovedGeometry(placement, builtOrigin);
+            }
+        }
+        finally
+        {
+            this.chunkRenderDataLock.unlock();
+        }
+    }
+
+    /**
+     * @return the moved placement and the old origin, if the currently uploaded geometry
+     *         of this render chunk lags behind a move of a placement, otherwise null
+     */
+    @Nullable
+    public MovedGeometry getMovedGeometry()
+    {
+        return this.movedGeometry;
+    }
+
+    @Override
+    public void setPosition(int x, int y, int z)
+    {
+        // The render chunk gets re-used for another position, so any old geometry is no longer relevant
+        this.movedGeometry = null;
+
+        super.setPosition(x, y, z);
+    }
+
     public boolean hasOverlay()
     {
         return this.hasOverlay;
@@ -234,6 +314,10 @@ public class RenderChunkSchematicVbo extends RenderChunk
 
                 boolean[] usedLayers = new boolean[BlockRenderLayer.values().length];
                 BufferBuilderCache buffers = generator.getBufferCache();
+                OverlayTypeGrid grid = buffers.getOverlayTypeGrid();
+                List<IntBoundingBox> clampedBoxes = new ArrayList<>();
+                int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+                int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
 
                 for (IntBoundingBox box : this.boxes)
                 {
@@ -245,12 +329,45 @@ public class RenderChunkSchematicVbo extends RenderChunk
                         continue;
                     }
 
-                    BlockPos posFrom = new BlockPos(box.minX, box.minY, box.minZ);
-                    BlockPos posTo   = new BlockPos(box.maxX, box.maxY, box.maxZ);
+                    clampedBoxes.add(box);
+                    minX = Math.min(minX, box.minX);
+                    minY = Math.min(minY, box.minY);
+                    minZ = Math.min(minZ, box.minZ);
+                    maxX = Math.max(maxX, box.maxX);
+                    maxY = Math.max(maxY, box.maxY);
+                    maxZ = Math.max(maxZ, box.maxZ);
+                }
 
-                    for (BlockPos.MutableBlockPos posMutable : BlockPos.getAllInBoxMutable(posFrom, posTo))
+                if (clampedBoxes.isEmpty() == false)
+                {
+                    // The reduced inner sides and edges need the overlay types of the adjacent positions as well
+                    boolean classifyTypes = this.overlayEnabled && this.overlayReducedInnerSides &&
+                                            (this.overlaySidesEnabled || this.overlayLinesEnabled);
+                    int margin = classifyTypes ? 1 : 0;
+                    int cx = posChunk.getX();
+                    int cy = posChunk.getY();
+                    int cz = posChunk.getZ();
+
+                    grid.fill(posChunk,
+                              Math.max(minX - margin, cx - 1), Math.max(minY - margin, cy - 1), Math.max(minZ - margin, cz - 1),
+                              Math.min(maxX + margin, cx + 16), Math.min(maxY + margin, cy + 16), Math.min(maxZ + margin, cz + 16),
+                              this.schematicWorldView, this.clientWorldView, this, classifyTypes);
+
+                    BlockPos.MutableBlockPos posMutable = new BlockPos.MutableBlockPos();
+
+                    for (IntBoundingBox box : clampedBoxes)
                     {
-                        this.renderBlocksAndOverlay(posMutable, tileEntities, usedLayers, data, buffers);
+                        for (int by = box.minY; by <= box.maxY; ++by)
+                        {
+                            for (int bz = box.minZ; bz <= box.maxZ; ++bz)
+                            {
+                                for (int bx = box.minX; bx <= box.maxX; ++bx)
+                                {
+                                    posMutable.setPos(bx, by, bz);
+                                    this.renderBlocksAndOverlay(posMutable, grid.getIndex(bx, by, bz), grid, tileEntities, usedLayers, data, buffers);
+                                }
+                            }
+                        }
                     }
                 }
 
@@ -300,10 +417,11 @@ public class RenderChunkSchematicVbo extends RenderChunk
         }
     }
 
-    protected void renderBlocksAndOverlay(BlockPos pos, Set<TileEntity> tileEntities, boolean[] usedLayers, CompiledChunkSchematic data, BufferBuilderCache buffers)
+    protected void renderBlocksAndOverlay(BlockPos pos, int index, OverlayTypeGrid grid, Set<TileEntity> tileEntities,
+                                          boolean[] usedLayers, CompiledChunkSchematic data, BufferBuilderCache buffers)
     {
-        IBlockState stateSchematic = this.schematicWorldView.getBlockState(pos);
-        IBlockState stateClient    = this.clientWorldView.getBlockState(pos);
+        IBlockState stateSchematic = grid.getSchematicState(index);
+        IBlockState stateClient    = grid.getClientState(index);
         stateSchematic = stateSchematic.getActualState(this.schematicWorldView, pos);
         stateClient = stateClient.getActualState(this.clientWorldView, pos);
         Block blockSchematic = stateSchematic.getBlock();
@@ -348,12 +466,13 @@ public class RenderChunkSchematicVbo extends RenderChunk
 
             if (overlayColor != null)
             {
-                this.renderOverlay(pos, stateSchematic, type, overlayColor, data, buffers);
+                this.renderOverlay(pos, index, grid, stateSchematic, type, overlayColor, data, buffers);
             }
         }
     }
 
-    protected void renderOverlay(BlockPos pos, IBlockState stateSchematic, OverlayType type, Color4f overlayColor, CompiledChunkSchematic data, BufferBuilderCache buffers)
+    protected void renderOverlay(BlockPos pos, int index, OverlayTypeGrid grid, IBlockState stateSchematic, OverlayType type,
+                                 Color4f overlayColor, CompiledChunkSchematic data, BufferBuilderCache buffers)
     {
         boolean missing = type == OverlayType.MISSING;
 
@@ -369,16 +488,10 @@ public class RenderChunkSchematicVbo extends RenderChunk
 
             if (this.overlayReducedInnerSides)
             {
-                BlockPos.PooledMutableBlockPos posMutable = BlockPos.PooledMutableBlockPos.retain();
-
                 for (int i = 0; i < 6; ++i)
                 {
                     EnumFacing side = PositionUtils.FACING_ALL[i];
-                    posMutable.setPos(pos.getX() + side.getXOffset(), pos.getY() + side.getYOffset(), pos.getZ() + side.getZOffset());
-                    IBlockState adjStateSchematic = this.schematicWorldView.getBlockState(posMutable);
-                    IBlockState adjStateClient    = this.clientWorldView.getBlockState(posMutable);
-
-                    OverlayType typeAdj = this.getOverlayType(adjStateSchematic, adjStateClient);
+                    OverlayType typeAdj = grid.getOverlayType(index + OverlayTypeGrid.getSideIndexOffset(i));
 
                     // Only render the model-based outlines or sides for missing blocks
                     if (missing && this.overlayModelSides)
@@ -399,8 +512,6 @@ public class RenderChunkSchematicVbo extends RenderChunk
                         }
                     }
                 }
-
-                posMutable.release();
             }
             else
             {
@@ -427,36 +538,10 @@ public class RenderChunkSchematicVbo extends RenderChunk
                 this.preRenderOverlay(bufferOverlayOutlines, OverlayRenderType.OUTLINE);
             }
 
-            overlayColor = new Color4f(overlayColor.r, overlayColor.g, overlayColor.b, 1f);
+            overlayColor = this.overlayOutlineColors[type.ordinal()];
 
             if (this.overlayReducedInnerSides)
             {
-                OverlayType[][][] adjTypes = new OverlayType[3][3][3];
-                BlockPos.PooledMutableBlockPos posMutable = BlockPos.PooledMutableBlockPos.retain();
-
-                for (int y = 0; y <= 2; ++y)
-                {
-                    for (int z = 0; z <= 2; ++z)
-                    {
-                        for (int x = 0; x <= 2; ++x)
-                        {
-                            if (x != 1 || y != 1 || z != 1)
-                            {
-                                posMutable.setPos(pos.getX() + x - 1, pos.getY() + y - 1, pos.getZ() + z - 1);
-                                IBlockState adjStateSchematic = this.schematicWorldView.getBlockState(posMutable);
-                                IBlockState adjStateClient    = this.clientWorldView.getBlockState(posMutable);
-                                adjTypes[x][y][z] = this.getOverlayType(adjStateSchematic, adjStateClient);
-                            }
-                            else
-                            {
-                                adjTypes[x][y][z] = type;
-                            }
-                        }
-                    }
-                }
-
-                posMutable.release();
-
                 // Only render the model-based outlines or sides for missing blocks
                 if (missing && this.overlayModelLines)
                 {
@@ -465,7 +550,7 @@ public class RenderChunkSchematicVbo extends RenderChunk
                     // FIXME: how to implement this correctly here... >_>
                     if (stateSchematic.isFullCube())
                     {
-                        this.renderOverlayReducedEdges(pos, adjTypes, type, overlayColor, bufferOverlayOutlines);
+                        this.renderOverlayReducedEdges(pos, index, grid, type, overlayColor, bufferOverlayOutlines);
                     }
                     else
                     {
@@ -474,7 +559,7 @@ public class RenderChunkSchematicVbo extends RenderChunk
                 }
                 else
                 {
-                    this.renderOverlayReducedEdges(pos, adjTypes, type, overlayColor, bufferOverlayOutlines);
+                    this.renderOverlayReducedEdges(pos, index, grid, type, overlayColor, bufferOverlayOutlines);
                 }
             }
             else
@@ -493,82 +578,79 @@ public class RenderChunkSchematicVbo extends RenderChunk
         }
     }
 
-    protected void renderOverlayReducedEdges(BlockPos pos, OverlayType[][][] adjTypes, OverlayType typeSelf, Color4f overlayColor, BufferBuilder bufferOverlayOutlines)
+    protected void renderOverlayReducedEdges(BlockPos pos, int index, OverlayTypeGrid grid, OverlayType typeSelf,
+                                             Color4f overlayColor, BufferBuilder bufferOverlayOutlines)
     {
-        OverlayType[] neighborTypes = new OverlayType[4];
-        Vec3i[] neighborPositions = new Vec3i[4];
-        int lines = 0;
-
         for (EnumFacing.Axis axis : PositionUtils.AXES_ALL)
         {
             for (int corner = 0; corner < 4; ++corner)
             {
                 Vec3i[] offsets = PositionUtils.getEdgeNeighborOffsets(axis, corner);
-                int index = -1;
+                int[] indexOffsets = OverlayTypeGrid.getEdgeNeighborIndexOffsets(axis, corner);
+                int highestPriority = -1;
+                int count = 0;
+                // The offset indices of the positions sharing the highest priority, as bits
+                int sharedMask = 0;
                 boolean hasCurrent = false;
 
                 // Find the position(s) around a given edge line that have the shared greatest rendering priority
                 for (int i = 0; i < 4; ++i)
                 {
-                    Vec3i offset = offsets[i];
-                    OverlayType type = adjTypes[offset.getX() + 1][offset.getY() + 1][offset.getZ() + 1];
+                    // The self position is the first (offset = [0, 0, 0]) in the arrays
+                    OverlayType type = i == 0 ? typeSelf : grid.getOverlayType(index + indexOffsets[i]);
 
-                    // type NONE
                     if (type == OverlayType.NONE)
                     {
                         continue;
                     }
 
-                    // First entry, or sharing at least the current highest found priority
-                    if (index == -1 || type.getRenderPriority() >= neighborTypes[index - 1].getRenderPriority())
+                    int priority = type.getRenderPriority();
+
+                    // Actually a new highest priority, start over from this position
+                    if (priority > highestPriority)
                     {
-                        // Actually a new highest priority, add it as the first entry and rewind the index
-                        if (index < 0 || type.getRenderPriority() > neighborTypes[index - 1].getRenderPriority())
-                        {
-                            index = 0;
-                        }
-                        // else: Same priority as a previous entry, append this position
+                        highestPriority = priority;
+                        sharedMask = 0;
+                        count = 0;
+                    }
 
-                        //System.out.printf("plop 0 axis: %s, corner: %d, i: %d, index: %d, type: %s\n", axis, corner, i, index, type);
-                        neighborPositions[index] = new Vec3i(pos.getX() + offset.getX(), pos.getY() + offset.getY(), pos.getZ() + offset.getZ());
-                        neighborTypes[index] = type;
-                        // The self position is the first (offset = [0, 0, 0]) in the arrays
+                    // First entry, or sharing the current highest found priority
+                    if (priority == highestPriority)
+                    {
+                        sharedMask |= 1 << i;
                         hasCurrent |= (i == 0);
-                        ++index;
+                        ++count;
                     }
                 }
 
-                //System.out.printf("plop 1 index: %d, pos: %s\n", index, pos);
                 // Found something to render, and the current block is among the highest priority for this edge
-                if (index > 0 && hasCurrent)
+                if (count > 0 && hasCurrent)
                 {
-                    Vec3i posTmp = new Vec3i(pos.getX(), pos.getY(), pos.getZ());
-                    int ind = -1;
+                    int minX = 0;
+                    int minY = 0;
+                    int minZ = 0;
 
-                    for (int i = 0; i < index; ++i)
+                    for (int i = 0; i < 4; ++i)
                     {
-                        Vec3i tmp = neighborPositions[i];
-                        //System.out.printf("posTmp: %s, tmp: %s\n", posTmp, tmp);
+                        Vec3i tmp = offsets[i];
 
                         // Just prioritize the position to render a shared highest priority edge by the coordinates
-                        if (tmp.getX() <= posTmp.getX() && tmp.getY() <= posTmp.getY() && tmp.getZ() <= posTmp.getZ())
+                        if ((sharedMask & (1 << i)) != 0 && tmp.getX() <= minX && tmp.getY() <= minY && tmp.getZ() <= minZ)
                         {
-                            posTmp = tmp;
-                            ind = i;
+                            minX = tmp.getX();
+                            minY = tmp.getY();
+                            minZ = tmp.getZ();
                         }
                     }
 
                     // The current position is the one that should render this edge
-                    if (posTmp.getX() == pos.getX() && posTmp.getY() == pos.getY() && posTmp.getZ() == pos.getZ())
+                    if (minX == 0 && minY == 0 && minZ == 0)
                     {
-                        //System.out.printf("plop 2 index: %d, ind: %d, pos: %s, off: %s\n", index, ind, pos, posTmp);
                         RenderUtils.drawBlockBoxEdgeBatchedLines(pos, axis, corner, overlayColor, bufferOverlayOutlines);
-                        lines++;
                     }
                 }
             }
         }
-        //System.out.printf("typeSelf: %s, pos: %s, lines: %d\n", typeSelf, pos, lines);
     }
 
     protected OverlayType getOverlayType(IBlockState stateSchematic, IBlockState stateClient)
@@ -716,6 +798,7 @@ public class RenderChunkSchematicVbo extends RenderChunk
             //if (GuiBase.isCtrlDown()) System.out.printf("makeCompileTaskChunk()\n");
             this.finishCompileTask();
             this.compileTask = new ChunkCompileTaskGeneratorSchematic(this, ChunkCompileTaskGeneratorSchematic.Type.REBUILD_CHUNK, this.getDistanceSq());
+            this.setMovedContentsOrigin(this.compileTask);
             this.rebuildWorldView();
             generator = this.compileTask;
         }
@@ -727,6 +810,26 @@ public class RenderChunkSchematicVbo extends RenderChunk
         return generator;
     }
 
+    /**
+     * Stores the placement origin that the schematic world contents of this render chunk
+     * are currently built for, so that once the task's data gets uploaded,
+     * the offset of the moved old geometry can be updated or cleared.
+     * Must be called on the main thread, where the pending move is updated.
+     */
+    private void setMovedContentsOrigin(ChunkCompileTaskGeneratorSchematic generator)
+    {
+        PendingPlacementMove move = DataManager.getSchematicPlacementManager().getPendingMove();
+        MovedGeometry moved = this.movedGeometry;
+        SchematicPlacement placement = moved != null ? moved.placement : (move != null ? move.getPlacement() : null);
+
+        if (placement != null)
+        {
+            BlockPos pos = this.getPosition();
+            BlockPos builtOrigin = move != null && move.getPlacement() == placement ? move.getBuiltOrigin(pos.getX() >> 4, pos.getZ() >> 4) : null;
+            generator.setMovedContents(placement, builtOrigin != null ? builtOrigin : placement.getOrigin());
+        }
+    }
+
     @Nullable
     public ChunkCompileTaskGeneratorSchematic makeCompileTaskTransparencySchematic()
     {
@@ -796,6 +899,13 @@ public class RenderChunkSchematicVbo extends RenderChunk
             this.overlayColorWrongBlock = Configs.Colors.SCHEMATIC_OVERLAY_WRONG_BLOCK.getColor();
             this.overlayColorWrongState = Configs.Colors.SCHEMATIC_OVERLAY_WRONG_STATE.getColor();
 
+            // The outlines use the overlay colors without the transparency
+            for (OverlayType type : OverlayType.values())
+            {
+                Color4f color = this.getOverlayColor(type);
+                this.overlayOutlineColors[type.ordinal()] = color != null ? new Color4f(color.r, color.g, color.b, 1f) : null;
+            }
+
             this.schematicWorldView = new ChunkCacheSchematic(this.getWorld(), this.getPosition(), 2);
             this.clientWorldView    = new ChunkCacheSchematic(Minecraft.getMinecraft().world, this.getPosition(), 2);
 
@@ -823,4 +933,17 @@ public class RenderChunkSchematicVbo extends RenderChunk
             return this.glMode;
         }
     }
+
+    public static class MovedGeometry
+    {
+        public final SchematicPlacement placement;
+        /** The origin of the placement that the geometry was built for */
+        public final BlockPos builtOrigin;
+
+        public MovedGeometry(SchematicPlacement placement, BlockPos builtOrigin)
+        {
+            this.placement = placement;
+            this.builtOrigin = builtOrigin;
+        }
+    }
 }
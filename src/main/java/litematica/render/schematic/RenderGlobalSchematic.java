@@ -57,6 +57,7 @@ import litematica.data.DataManager;
 import litematica.mixin.IMixinBlockRendererDispatcher;
 import litematica.mixin.IMixinViewFrustum;
 import litematica.render.schematic.RenderChunkSchematicVbo.OverlayRenderType;
+import litematica.schematic.placement.SchematicPlacement;
 import litematica.util.IGenericEventListener;
 
 public class RenderGlobalSchematic extends RenderGlobal implements IGenericEventListener
@@ -222,6 +223,14 @@ public class RenderGlobalSchematic extends RenderGlobal implements IGenericEvent
 
         if (world != null)
         {
+            // Re-create the dispatcher if the thread or buffer counts have been changed in the configs
+            if (this.renderDispatcher != null && this.renderDispatcher.isConfigChanged())
+            {
+                this.renderDispatcher.stopChunkUpdates();
+                this.renderDispatcher.stopWorkerThreads();
+                this.renderDispatcher = null;
+            }
+
             if (this.renderDispatcher == null)
             {
                 this.renderDispatcher = new ChunkRenderDispatcherLitematica();
@@ -885,6 +894,32 @@ public class RenderGlobalSchematic extends RenderGlobal implements IGenericEvent
         this.markBlocksForUpdate(x - 1, y - 1, z - 1, x + 1, y + 1, z + 1, (flags & 8) != 0);
     }
 
+    /**
+     * Marks the current geometry of the render chunks in the given chunk column as
+     * having been built for the given old origin of the given moved placement.
+     * The geometry is then rendered with an offset to follow the move,
+     * until each render chunk has been recompiled and uploaded.
+     */
+    public void markGeometryMoved(int chunkX, int chunkZ, SchematicPlacement placement, BlockPos builtOrigin)
+    {
+        if (this.viewFrustum == null)
+        {
+            return;
+        }
+
+        for (int y = 0; y < 256; y += 16)
+        {
+            BlockPos pos = new BlockPos(chunkX << 4, y, chunkZ << 4);
+            RenderChunk renderChunk = ((IMixinViewFrustum) this.viewFrustum).invokeGetRenderChunk(pos);
+
+            // The view frustum wraps around, so the render chunk may currently be used for another position
+            if (renderChunk != null && renderChunk.getPosition().equals(pos))
+            {
+                ((RenderChunkSchematicVbo) renderChunk).markGeometryMoved(placement, builtOrigin);
+            }
+        }
+    }
+
     @Override
     public void markBlockRangeForRenderUpdate(int x1, int y1, int z1, int x2, int y2, int z2)
     {
@@ -0,0 +1,431 @@
+package litematica.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Locale;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.ChatType;
+import net.minecraft.util.text.ITextComponent;
+import net.minecraft.util.text.TextComponentTranslation;
+
+import malilib.util.position.IntBoundingBox;
+import litematica.config.Configs;
+
+/**
+ * A token bucket rate limiter shared by all the tasks that send commands to the server,
+ * ie. the command-based Paste, Fill and Delete tasks.
+ * The rate adapts to the observed server feedback:
+ * <ul>
+ * <li>The maximum rate scales with the server TPS, which is estimated from the
+ *     world time advancing between the time update packets</li>
+ * <li>The rate is slowly increased while the server keeps echoing block changes back
+ *     within the areas that the recently sent commands targeted</li>
+ * <li>The rate is decreased if no such block changes are echoed back for a while after
+ *     sending commands, and it is halved and sending is paused for a moment
+ *     if a system message (not a player chat message) right after sending commands
+ *     looks like a spam or rate limit warning</li>
+ * <li>Being kicked for spamming lowers the maximum rate for the rest of the session</li>
+ * </ul>
+ * All the methods are called on the client thread.
+ */
+public class CommandRateController
+{
+    public static final CommandRateController INSTANCE = new CommandRateController();
+
+    private static final double MIN_RATE = 1.0;
+    private static final long SECOND_NANOS = 1000000000L;
+    private static final long ECHO_TIMEOUT_NANOS = 3 * SECOND_NANOS;
+    private static final long THROTTLE_PAUSE_NANOS = 5 * SECOND_NANOS;
+    private static final long ACTIVE_TIMEOUT_NANOS = 5 * SECOND_NANOS;
+    private static final long SENT_AREA_TIMEOUT_NANOS = 2 * ECHO_TIMEOUT_NANOS;
+    private static final int MAX_SENT_AREAS = 64;
+    /** The vanilla translation key of the kick message for spamming commands or chat */
+    private static final String SPAM_KICK_TRANSLATION_KEY = "disconnect.spam";
+    /** The translation key prefix of the vanilla player chat messages, such as chat.type.text and chat.type.emote */
+    private static final String PLAYER_CHAT_TRANSLATION_KEY_PREFIX = "chat.type.";
+    /** Keywords in the plain text rate limit warnings sent by server plugins */
+    private static final String[] THROTTLE_KEYWORDS = new String[] { "spam", "too fast", "too quickly", "slow down", "rate limit" };
+
+    private final ArrayDeque<SentArea> sentAreas = new ArrayDeque<>();
+
+    private double rate = -1.0;
+    private double tokens;
+    private double maxRateCap = Double.MAX_VALUE;
+    private long lastRefillNanos;
+    private long lastIncreaseNanos;
+    private long lastCommandNanos;
+    private long unconfirmedSinceNanos = -1L;
+    private long throttledUntilNanos;
+    private boolean paused;
+    private long pendingCommands;
+
+    private double tps = 20.0;
+    private long lastTimeUpdateNanos = -1L;
+    private long lastWorldTime;
+
+    private CommandRateController()
+    {
+    }
+
+    /**
+     * @return the maximum allowed rate in commands per second,
+     *         based on the paste command configs and the estimated server TPS
+     */
+    public double getMaxRate()
+    {
+        double perTick = Configs.Generic.PASTE_COMMAND_LIMIT.getIntegerValue();
+        double interval = Configs.Generic.PASTE_COMMAND_INTERVAL.getIntegerValue();
+        double max = perTick * 20.0 / interval * Math.min(1.0, this.tps / 20.0);
+
+        return Math.max(MIN_RATE, Math.min(max, this.maxRateCap));
+    }
+
+    /**
+     * @return true if the given number of commands can be sent right now.
+     *         The commands must then be reported via {@link #onCommandsSent(int, IntBoundingBox, boolean)}.
+     */
+    public boolean canSendCommands(int count)
+    {
+        long now = System.nanoTime();
+        this.update(now);
+
+        if (this.paused || now < this.throttledUntilNanos)
+        {
+            return false;
+        }
+
+        // Allow a larger batch than the bucket size to go through once the bucket is full, and go into debt for it
+        return this.tokens >= Math.min(count, this.getBucketSize());
+    }
+
+    /**
+     * Records sent commands
+     * @param count the number of sent commands
+     * @param area the area that the commands change blocks in. Block changes in this area
+     *             are then treated as the server confirming that it's processing the commands.
+     */
+    public void onCommandsSent(int count, IntBoundingBox area)
+    {
+        this.onCommandsSent(count, area, true);
+    }
+
+    /**
+     * Records sent commands
+     * @param count the number of sent commands
+     * @param area the area that the commands change blocks in
+     * @param expectEcho true if the commands are expected to change some blocks.
+     *                   Commands that only place blocks that already match the world (such as
+     *                   when re-pasting over an existing build) don't produce any block change echoes,
+     *                   so they must not be treated as a sign of the server lagging behind.
+     */
+    public void onCommandsSent(int count, IntBoundingBox area, boolean expectEcho)
+    {
+        long now = System.nanoTime();
+
+        this.tokens -= count;
+        this.lastCommandNanos = now;
+
+        if (expectEcho)
+        {
+            this.addSentArea(area, now);
+
+            if (this.unconfirmedSinceNanos < 0L)
+            {
+                this.unconfirmedSinceNanos = now;
+            }
+        }
+    }
+
+    /**
+     * Called when the server sends a block change. If it's within the area of a recently sent command,
+     * then that confirms that the sent commands are being processed.
+     */
+    public void onBlockChange(BlockPos pos)
+    {
+        if (this.isWithinSentArea(pos.getX(), pos.getY(), pos.getZ()))
+        {
+            this.unconfirmedSinceNanos = -1L;
+        }
+    }
+
+    /**
+     * Called when the server sends a full chunk. Large block changes (like from /fill)
+     * are sent as full chunk updates, so a chunk that intersects with the area of
+     * a recently sent command confirms that the sent commands are being processed.
+     */
+    public void onChunkData(int chunkX, int chunkZ)
+    {
+        if (this.intersectsSentArea(chunkX, chunkZ))
+        {
+            this.unconfirmedSinceNanos = -1L;
+        }
+    }
+
+    /**
+     * Updates the server TPS estimate from the world time in a time update packet
+     */
+    public void onTimeUpdate(long totalWorldTime)
+    {
+        long now = System.nanoTime();
+
+        if (this.lastTimeUpdateNanos >= 0L)
+        {
+            long elapsedNanos = now - this.lastTimeUpdateNanos;
+            long ticks = totalWorldTime - this.lastWorldTime;
+
+            if (elapsedNanos > 0L && ticks > 0L && ticks < 1200L)
+            {
+                double tps = Math.min(20.0, (double) ticks * SECOND_NANOS / elapsedNanos);
+                this.tps = this.tps * 0.7 + tps * 0.3;
+            }
+        }
+
+        this.lastTimeUpdateNanos = now;
+        this.lastWorldTime = totalWorldTime;
+    }
+
+    public void onChatMessage(ITextComponent message, ChatType type)
+    {
+        // Only react to server feedback that arrives while sending commands, and never to player chat
+        if (type == ChatType.SYSTEM &&
+            System.nanoTime() - this.lastCommandNanos < SECOND_NANOS &&
+            isPlayerChatMessage(message) == false &&
+            isThrottleMessage(message))
+        {
+            this.rate = Math.max(MIN_RATE, this.getRate() * 0.5);
+            this.tokens = 0.0;
+            this.throttledUntilNanos = System.nanoTime() + THROTTLE_PAUSE_NANOS;
+        }
+    }
+
+    public void onDisconnect(ITextComponent reason)
+    {
+        if (this.isActive() && isThrottleMessage(reason))
+        {
+            // Don't go back up to the rate that got us kicked, during this game session
+            this.maxRateCap = Math.max(MIN_RATE, this.getRate() * 0.5);
+        }
+
+        this.rate = -1.0;
+        this.tokens = 0.0;
+        this.tps = 20.0;
+        this.lastTimeUpdateNanos = -1L;
+        this.unconfirmedSinceNanos = -1L;
+        this.throttledUntilNanos = 0L;
+        this.pendingCommands = 0L;
+        this.sentAreas.clear();
+    }
+
+    public boolean isPaused()
+    {
+        return this.paused;
+    }
+
+    public void setPaused(boolean paused)
+    {
+        this.paused = paused;
+    }
+
+    /**
+     * Sets the estimated number of commands that the running task still has to send, for the ETA
+     */
+    public void setPendingCommands(long pendingCommands)
+    {
+        this.pendingCommands = Math.max(0L, pendingCommands);
+    }
+
+    public long getPendingCommands()
+    {
+        return this.pendingCommands;
+    }
+
+    /**
+     * @return the current rate in commands per second
+     */
+    public double getRate()
+    {
+        if (this.rate < 0.0)
+        {
+            // Start from half of the maximum rate, and let it increase from there
+            this.rate = this.getMaxRate() * 0.5;
+        }
+
+        return Math.min(this.rate, this.getMaxRate());
+    }
+
+    public double getEstimatedTps()
+    {
+        return this.tps;
+    }
+
+    /**
+     * @return true if commands have been sent recently, or if there are still commands waiting to be sent
+     */
+    public boolean isActive()
+    {
+        return this.pendingCommands > 0L || System.nanoTime() - this.lastCommandNanos < ACTIVE_TIMEOUT_NANOS;
+    }
+
+    /**
+     * @return the estimated time left for sending the pending commands, as a string
+     */
+    public String getEtaString()
+    {
+        long seconds = (long) Math.ceil(this.pendingCommands / this.getRate());
+        return String.format(Locale.ROOT, "%d:%02d", seconds / 60, seconds % 60);
+    }
+
+    private double getBucketSize()
+    {
+        // Allows a quarter of a second worth of commands to be sent at once
+        return Math.max(1.0, this.getRate() * 0.25);
+    }
+
+    private void update(long now)
+    {
+        double rate = this.getRate();
+
+        if (this.lastRefillNanos != 0L)
+        {
+            double elapsed = (double) (now - this.lastRefillNanos) / SECOND_NANOS;
+            this.tokens = Math.min(this.getBucketSize(), this.tokens + elapsed * rate);
+        }
+
+        this.lastRefillNanos = now;
+
+        boolean sending = now - this.lastCommandNanos < SECOND_NANOS;
+
+        if (sending == false)
+        {
+            this.unconfirmedSinceNanos = -1L;
+            return;
+        }
+
+        // No block changes echoed back for a while, the server is likely lagging behind or dropping the commands
+        if (this.unconfirmedSinceNanos >= 0L && now - this.unconfirmedSinceNanos > ECHO_TIMEOUT_NANOS)
+        {
+            this.rate = Math.max(MIN_RATE, rate * 0.75);
+            this.unconfirmedSinceNanos = now;
+            this.lastIncreaseNanos = now;
+        }
+        // Additive increase once per second, while things are going fine
+        else if (now - this.lastIncreaseNanos >= SECOND_NANOS)
+        {
+            this.rate = Math.min(this.getMaxRate(), rate + Math.max(1.0, this.getMaxRate() * 0.05));
+            this.lastIncreaseNanos = now;
+        }
+    }
+
+    private void addSentArea(IntBoundingBox area, long now)
+    {
+        SentArea last = this.sentAreas.peekLast();
+
+        // Consecutive commands are usually sent for the same box
+        if (last != null && last.area.equals(area))
+        {
+            last.timeNanos = now;
+            return;
+        }
+
+        this.sentAreas.addLast(new SentArea(area, now));
+
+        if (this.sentAreas.size() > MAX_SENT_AREAS)
+        {
+            this.sentAreas.removeFirst();
+        }
+    }
+
+    private void removeExpiredSentAreas(long now)
+    {
+        Iterator<SentArea> iter = this.sentAreas.iterator();
+
+        while (iter.hasNext())
+        {
+            if (now - iter.next().timeNanos > SENT_AREA_TIMEOUT_NANOS)
+            {
+                iter.remove();
+            }
+        }
+    }
+
+    private boolean isWithinSentArea(int x, int y, int z)
+    {
+        this.removeExpiredSentAreas(System.nanoTime());
+
+        for (SentArea sent : this.sentAreas)
+        {
+            IntBoundingBox box = sent.area;
+
+            if (x >= box.minX && x <= box.maxX &&
+                y >= box.minY && y <= box.maxY &&
+                z >= box.minZ && z <= box.maxZ)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean intersectsSentArea(int chunkX, int chunkZ)
+    {
+        this.removeExpiredSentAreas(System.nanoTime());
+
+        for (SentArea sent : this.sentAreas)
+        {
+            IntBoundingBox box = sent.area;
+
+            if ((box.minX >> 4) <= chunkX && (box.maxX >> 4) >= chunkX &&
+                (box.minZ >> 4) <= chunkZ && (box.maxZ >> 4) >= chunkZ)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isPlayerChatMessage(ITextComponent message)
+    {
+        return message instanceof TextComponentTranslation &&
+               ((TextComponentTranslation) message).getKey().startsWith(PLAYER_CHAT_TRANSLATION_KEY_PREFIX);
+    }
+
+    private static boolean isThrottleMessage(ITextComponent message)
+    {
+        if (message instanceof TextComponentTranslation)
+        {
+            return SPAM_KICK_TRANSLATION_KEY.equals(((TextComponentTranslation) message).getKey());
+        }
+
+        return containsThrottleKeyword(message.getUnformattedText());
+    }
+
+    private static boolean containsThrottleKeyword(String message)
+    {
+        String lower = message.toLowerCase(Locale.ROOT);
+
+        for (String keyword : THROTTLE_KEYWORDS)
+        {
+            if (lower.contains(keyword))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static class SentArea
+    {
+        private final IntBoundingBox area;
+        private long timeNanos;
+
+        private SentArea(IntBoundingBox area, long timeNanos)
+        {
+            this.area = area;
+            this.timeNanos = timeNanos;
+        }
+    }
+}
@@ -25,6 +25,26 @@ public interface ITask
      */
     boolean execute();
 
+    /**
+     * Returns the priority of this task. Higher priority tasks are executed first,
+     * and they get a larger share of the per-tick execution time budget.
+     * @return
+     */
+    default TaskPriority getPriority()
+    {
+        return TaskPriority.NORMAL;
+    }
+
+    /**
+     * Sets the System.nanoTime() value at which this task should return from
+     * the current execute() call. Tasks that process their work in small units
+     * should check this between the units, but are not required to.
+     * @param deadlineNanos
+     */
+    default void setExecutionDeadline(long deadlineNanos)
+    {
+    }
+
     /**
      * Returns true if this task should be removed
      * @return
@@ -0,0 +1,39 @@
+package litematica.scheduler;
+
+public class TaskMetrics
+{
+    private long lastExecutionNanos;
+    private long totalNanos;
+    private double averageNanos;
+    private int executionCount;
+
+    public void addExecution(long nanos)
+    {
+        this.lastExecutionNanos = nanos;
+        this.totalNanos += nanos;
+
+        // Exponential moving average, so that the value follows the recent executions
+        this.averageNanos = this.executionCount == 0 ? nanos : this.averageNanos * 0.9 + nanos * 0.1;
+        ++this.executionCount;
+    }
+
+    public long getLastExecutionNanos()
+    {
+        return this.lastExecutionNanos;
+    }
+
+    public long getTotalNanos()
+    {
+        return this.totalNanos;
+    }
+
+    public double getAverageNanos()
+    {
+        return this.averageNanos;
+    }
+
+    public int getExecutionCount()
+    {
+        return this.executionCount;
+    }
+}
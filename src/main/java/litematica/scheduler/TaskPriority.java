@@ -0,0 +1,25 @@
+package litematica.scheduler;
+
+public enum TaskPriority
+{
+    LOW     (1),
+    NORMAL  (2),
+    HIGH    (4);
+
+    private final int weight;
+
+    private TaskPriority(int weight)
+    {
+        this.weight = weight;
+    }
+
+    /**
+     * The relative share of the per-tick execution time budget that tasks
+     * of this priority get, compared to the tasks of other priorities.
+     * @return
+     */
+    public int getWeight()
+    {
+        return this.weight;
+    }
+}
@@ -1,19 +1,29 @@
 package litematica.scheduler;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nullable;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 import net.minecraft.client.Minecraft;
 
+import litematica.config.Configs;
+
 public class TaskScheduler
 {
     private static final TaskScheduler INSTANCE_CLIENT = new TaskScheduler();
     private static final TaskScheduler INSTANCE_SERVER = new TaskScheduler();
+    private static final Comparator<ITask> PRIORITY_COMPARATOR = Comparator.comparing(ITask::getPriority).reversed();
 
     private final List<ITask> tasks = new ArrayList<>();
     private final List<ITask> tasksToAdd = new ArrayList<>();
+    private final List<ITask> dueTasks = new ArrayList<>();
+    private final Map<ITask, TaskMetrics> taskMetrics = new LinkedHashMap<>();
+    private volatile long lastTickNanos;
 
     private TaskScheduler()
     {
@@ -47,40 +57,118 @@ public class TaskScheduler
         }
     }
 
+    /**
+     * Runs all the tasks that are due this tick, in priority order.
+     * The task list is only locked while collecting the due tasks and adding the new tasks,
+     * and while updating the list and the metrics after each task, so the tasks themselves
+     * are executed without holding the lock. This way scheduling or querying tasks
+     * from other threads doesn't need to wait for the entire tick budget.
+     * The per-tick time budget is shared between the due tasks by their priority weights,
+     * and any time left unused by a task is passed on to the remaining tasks.
+     * The budget is enforced cooperatively, via the execution deadline given to each task.
+     */
     public void runTasks()
     {
+        // Only the thread running the tasks uses the due tasks list
+        List<ITask> dueTasks = this.dueTasks;
+        int remainingWeight;
+
         synchronized (this)
         {
-            if (this.tasks.isEmpty() == false)
+            remainingWeight = this.collectDueTasks(dueTasks);
+
+            if (this.tasksToAdd.isEmpty() == false)
+            {
+                this.addNewTasks();
+            }
+        }
+
+        if (dueTasks.isEmpty())
+        {
+            return;
+        }
+
+        final long budget = (long) Configs.Generic.TASK_TIME_BUDGET.getIntegerValue() * 1000000L;
+        final long tickStart = System.nanoTime();
+
+        for (ITask task : dueTasks)
+        {
+            int weight = task.getPriority().getWeight();
+            long start = System.nanoTime();
+            long remainingBudget = Math.max(0L, budget - (start - tickStart));
+            long slice = remainingBudget * weight / remainingWeight;
+            remainingWeight -= weight;
+
+            // The task may have been removed by one of the previously executed tasks, or by another thread
+            synchronized (this)
             {
-                for (int i = 0; i < this.tasks.size(); ++i)
+                if (this.tasks.contains(task) == false)
                 {
-                    boolean finished = false;
-                    ITask task = this.tasks.get(i);
+                    continue;
+                }
+            }
 
-                    if (task.shouldRemove())
-                    {
-                        finished = true;
-                    }
-                    else if (task.canExecute() && task.getTimer().tick())
-                    {
-                        finished = task.execute();
-                    }
+            task.setExecutionDeadline(start + slice);
+
+            boolean finished = task.execute();
+            long duration = System.nanoTime() - start;
+
+            synchronized (this)
+            {
+                int index = this.tasks.indexOf(task);
+
+                if (index >= 0)
+                {
+                    this.taskMetrics.computeIfAbsent(task, t -> new TaskMetrics()).addExecution(duration);
 
                     if (finished)
                     {
-                        task.stop();
-                        this.tasks.remove(i);
-                        --i;
+                        this.removeTaskAt(index);
                     }
                 }
             }
+        }
 
-            if (this.tasksToAdd.isEmpty() == false)
+        dueTasks.clear();
+        this.lastTickNanos = System.nanoTime() - tickStart;
+    }
+
+    /**
+     * Removes the tasks that should be removed, and adds the tasks that are due this tick
+     * to the given list, sorted by their priority. Must be called while holding the lock.
+     * @return the total priority weight of the due tasks
+     */
+    private int collectDueTasks(List<ITask> dueTasks)
+    {
+        int totalWeight = 0;
+
+        for (int i = 0; i < this.tasks.size(); ++i)
+        {
+            ITask task = this.tasks.get(i);
+
+            if (task.shouldRemove())
             {
-                this.addNewTasks();
+                this.removeTaskAt(i);
+                --i;
+            }
+            else if (task.canExecute() && task.getTimer().tick())
+            {
+                dueTasks.add(task);
+                totalWeight += task.getPriority().getWeight();
             }
         }
+
+        // The sort is stable, so tasks of the same priority run in the order they were added
+        dueTasks.sort(PRIORITY_COMPARATOR);
+
+        return totalWeight;
+    }
+
+    private void removeTaskAt(int index)
+    {
+        ITask task = this.tasks.remove(index);
+        this.taskMetrics.remove(task);
+        task.stop();
     }
 
     private void addNewTasks()
@@ -204,8 +292,7 @@ public class TaskScheduler
 
             if (index >= 0)
             {
-                task.stop();
-                this.tasks.remove(index);
+                this.removeTaskAt(index);
                 return true;
             }
 
@@ -223,6 +310,28 @@ public class TaskScheduler
             }
 
             this.tasks.clear();
+            this.taskMetrics.clear();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the execution time metrics of the currently running tasks
+     * @return
+     */
+    public ImmutableMap<ITask, TaskMetrics> getTaskMetrics()
+    {
+        synchronized (this)
+        {
+            return ImmutableMap.copyOf(this.taskMetrics);
         }
     }
+
+    /**
+     * Returns the total time, in nanoseconds, used by all the tasks on the last tick they were run
+     * @return
+     */
+    public long getLastTickNanos()
+    {
+        return this.lastTickNanos;
+    }
 }
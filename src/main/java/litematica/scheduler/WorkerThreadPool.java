@@ -0,0 +1,35 @@
+package litematica.scheduler;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A shared pool of daemon worker threads for work that can be done off the main threads,
+ * such as decoding schematic files or scanning snapshotted chunks.
+ * One core is left free for the game's own threads.
+ */
+public class WorkerThreadPool
+{
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final ForkJoinPool POOL = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                                                              WorkerThreadPool::createWorkerThread, null, false);
+
+    public static ForkJoinPool getPool()
+    {
+        return POOL;
+    }
+
+    public static int getThreadCount()
+    {
+        return POOL.getParallelism();
+    }
+
+    private static ForkJoinWorkerThread createWorkerThread(ForkJoinPool pool)
+    {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("Litematica Worker " + THREAD_COUNTER.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,413 @@
+package litematica.scheduler.tasks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+import malilib.util.data.json.JsonUtils;
+import malilib.util.game.WorldUtils;
+import malilib.util.game.wrap.GameUtils;
+import malilib.util.position.LayerRange;
+import litematica.Litematica;
+import litematica.data.DataManager;
+import litematica.schematic.placement.SchematicPlacement;
+import litematica.schematic.placement.SubRegionPlacement;
+import litematica.util.ReplaceBehavior;
+
+/**
+ * A journal of the progress of a command-based paste, saved in the per-world data directory.
+ * It records the chunks that have been completed, and the chunk that was in progress.
+ * If the same paste (the same placements, layer range and paste settings) is started again
+ * after a disconnect or a crash, then the chunks recorded in the journal are verified
+ * against the schematic world before pasting them, and the chunks that already match
+ * are skipped, and only the differences are pasted in the other recorded chunks.
+ * The journal consists of a JSON file with the job and the chunks from the previous sessions,
+ * and a log file to which a short record is appended right away whenever a chunk is started
+ * or completed, so that the chunk in progress is always on disk if the game crashes.
+ * The log is merged into the JSON file when the journal is loaded again or when the paste is stopped,
+ * and both files are deleted once the paste finishes.
+ */
+public class PasteJournal
+{
+    private final String jobKey;
+    @Nullable private final Path file;
+    @Nullable private final Path logFile;
+    /** The chunks that were completed or in progress in a previous session */
+    private final Set<ChunkPos> previousChunks = new HashSet<>();
+    private final Set<ChunkPos> completedChunks = new HashSet<>();
+    @Nullable private ChunkPos chunkInProgress;
+    @Nullable private BufferedWriter logWriter;
+    private boolean logFailed;
+    private boolean dirty;
+
+    protected PasteJournal(String jobKey, @Nullable Path file)
+    {
+        this.jobKey = jobKey;
+        this.file = file;
+        this.logFile = file != null ? file.resolveSibling(file.getFileName().toString().replace(".json", ".log")) : null;
+    }
+
+    /**
+     * Loads the journal for the given paste job in the current world and dimension,
+     * or creates a new empty journal, if there is no journal for the same job
+     */
+    public static PasteJournal load(Collection<SchematicPlacement> placements, LayerRange range,
+                                    boolean changedBlocksOnly, ReplaceBehavior replace)
+    {
+        String jobKey = createJobKey(placements, range, changedBlocksOnly, replace);
+        Path file = getJournalFile();
+        PasteJournal journal = new PasteJournal(jobKey, file);
+
+        if (file != null && Files.isRegularFile(file))
+        {
+            JsonElement el = JsonUtils.parseJsonFile(file);
+
+            if (el != null && el.isJsonObject() && journal.readFromJson(el.getAsJsonObject()))
+            {
+                journal.readLog();
+            }
+        }
+
+        return journal;
+    }
+
+    @Nullable
+    private static Path getJournalFile()
+    {
+        if (GameUtils.getClientWorld() == null)
+        {
+            return null;
+        }
+
+        String dim = WorldUtils.getDimensionIdAsString(GameUtils.getClientWorld());
+        return DataManager.getCurrentPerWorldDataDirectory().resolve("paste_journal_dim_" + dim + ".json");
+    }
+
+    private static String createJobKey(Collection<SchematicPlacement> placements, LayerRange range,
+                                       boolean changedBlocksOnly, ReplaceBehavior replace)
+    {
+        Hasher hasher = Hashing.sha1().newHasher();
+
+        hasher.putUnencodedChars(JsonUtils.jsonToString(range.toJson(), true));
+        hasher.putBoolean(changedBlocksOnly);
+        hasher.putInt(replace.ordinal());
+
+        for (SchematicPlacement placement : placements)
+        {
+            Path schematicFile = placement.getSchematic().getFile();
+
+            hasher.putUnencodedChars(placement.getName());
+            hasher.putUnencodedChars(schematicFile != null ? schematicFile.toAbsolutePath().toString() : "");
+            putPos(hasher, placement.getOrigin());
+            hasher.putInt(placement.getRotation().ordinal());
+            hasher.putInt(placement.getMirror().ordinal());
+
+            for (SubRegionPlacement subRegion : placement.getAllSubRegionsPlacements())
+            {
+                hasher.putUnencodedChars(subRegion.getName());
+                hasher.putBoolean(subRegion.isEnabled());
+                putPos(hasher, subRegion.getPos());
+                hasher.putInt(subRegion.getRotation().ordinal());
+                hasher.putInt(subRegion.getMirror().ordinal());
+            }
+        }
+
+        return hasher.hash().toString();
+    }
+
+    private static void putPos(Hasher hasher, BlockPos pos)
+    {
+        hasher.putInt(pos.getX()).putInt(pos.getY()).putInt(pos.getZ());
+    }
+
+    /**
+     * @return true if the given chunk was completed or in progress in a previous session of this paste
+     */
+    public boolean wasStartedPreviously(ChunkPos pos)
+    {
+        return this.previousChunks.contains(pos);
+    }
+
+    public boolean isResumed()
+    {
+        return this.previousChunks.isEmpty() == false;
+    }
+
+    public int getPreviousChunkCount()
+    {
+        return this.previousChunks.size();
+    }
+
+    /**
+     * Records the given chunk as the chunk in progress, and appends it to the journal log
+     */
+    public void onChunkStarted(ChunkPos pos)
+    {
+        this.chunkInProgress = pos;
+        this.dirty = true;
+        this.appendToLog("S", pos);
+    }
+
+    /**
+     * Records the given chunk as completed, and appends it to the journal log
+     */
+    public void onChunkCompleted(ChunkPos pos)
+    {
+        this.completedChunks.add(pos);
+        this.chunkInProgress = null;
+        this.dirty = true;
+        this.appendToLog("C", pos);
+    }
+
+    /**
+     * Merges the log into the journal file, if the journal has changed since it was last saved
+     */
+    public void save()
+    {
+        this.closeLog();
+
+        if (this.file != null && this.dirty)
+        {
+            this.writeJournalFile();
+            this.dirty = false;
+        }
+    }
+
+    /**
+     * Deletes the journal files, once the paste has finished
+     */
+    public void delete()
+    {
+        this.closeLog();
+
+        if (this.file != null)
+        {
+            try
+            {
+                Files.deleteIfExists(this.file);
+                Files.deleteIfExists(this.logFile);
+            }
+            catch (Exception e)
+            {
+                Litematica.logger.warn("Failed to delete the paste journal '{}'", this.file.toAbsolutePath().toString());
+            }
+        }
+
+        this.dirty = false;
+    }
+
+    /**
+     * Appends a chunk record to the log. Only the first record of a session rewrites the journal file,
+     * after that each record is just a short line appended to the log file.
+     */
+    private void appendToLog(String type, ChunkPos pos)
+    {
+        if (this.file == null || this.logFailed)
+        {
+            return;
+        }
+
+        try
+        {
+            if (this.logWriter == null)
+            {
+                // Write this job's journal, with the chunks of the previous sessions merged in, and start a new log for it
+                if (this.writeJournalFile() == false)
+                {
+                    this.logFailed = true;
+                    return;
+                }
+
+                this.logWriter = Files.newBufferedWriter(this.logFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                                                         StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            }
+
+            this.logWriter.write(type + " " + pos.x + " " + pos.z);
+            this.logWriter.newLine();
+            this.logWriter.flush();
+        }
+        catch (IOException e)
+        {
+            Litematica.logger.warn("Failed to write to the paste journal log '{}'", this.logFile.toAbsolutePath().toString(), e);
+            this.logFailed = true;
+            this.closeLog();
+        }
+    }
+
+    private void closeLog()
+    {
+        if (this.logWriter != null)
+        {
+            try
+            {
+                this.logWriter.close();
+            }
+            catch (IOException ignore) {}
+
+            this.logWriter = null;
+        }
+    }
+
+    private boolean writeJournalFile()
+    {
+        if (JsonUtils.writeJsonToFile(this.toJson(), this.file) == false)
+        {
+            Litematica.logger.warn("Failed to save the paste journal to '{}'", this.file.toAbsolutePath().toString());
+            return false;
+        }
+
+        try
+        {
+            // The log has now been merged into the journal file
+            Files.deleteIfExists(this.logFile);
+        }
+        catch (IOException ignore) {}
+
+        return true;
+    }
+
+    /**
+     * Reads the chunk records from the log file of a previous session.
+     * Both the completed chunks and the chunk that was in progress are treated as previously started chunks.
+     */
+    private void readLog()
+    {
+        if (this.logFile == null || Files.isRegularFile(this.logFile) == false)
+        {
+            return;
+        }
+
+        try
+        {
+            for (String line : Files.readAllLines(this.logFile, StandardCharsets.UTF_8))
+            {
+                String[] parts = line.split(" ");
+
+                // The last line may be incomplete after a crash
+                if (parts.length == 3)
+                {
+                    try
+                    {
+                        this.previousChunks.add(new ChunkPos(Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+                    }
+                    catch (NumberFormatException ignore) {}
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            Litematica.logger.warn("Failed to read the paste journal log '{}'", this.logFile.toAbsolutePath().toString(), e);
+        }
+    }
+
+    protected JsonObject toJson()
+    {
+        JsonObject obj = new JsonObject();
+        JsonArray arr = new JsonArray();
+        List<ChunkPos> chunks = new ArrayList<>(this.completedChunks);
+
+        // Also keep any previously completed chunks that haven't been re-verified yet
+        for (ChunkPos pos : this.previousChunks)
+        {
+            if (this.completedChunks.contains(pos) == false)
+            {
+                chunks.add(pos);
+            }
+        }
+
+        for (ChunkPos pos : chunks)
+        {
+            arr.add(chunkPosToJson(pos));
+        }
+
+        obj.addProperty("job", this.jobKey);
+        obj.addProperty("timestamp", System.currentTimeMillis());
+        obj.add("completed_chunks", arr);
+
+        if (this.chunkInProgress != null)
+        {
+            obj.add("chunk_in_progress", chunkPosToJson(this.chunkInProgress));
+        }
+
+        return obj;
+    }
+
+    /**
+     * @return true if the journal was for the same paste job
+     */
+    protected boolean readFromJson(JsonObject obj)
+    {
+        // A journal of some other paste, which will get overwritten by this paste
+        if (this.jobKey.equals(JsonUtils.getString(obj, "job")) == false)
+        {
+            return false;
+        }
+
+        if (JsonUtils.hasArray(obj, "completed_chunks"))
+        {
+            for (JsonElement el : obj.get("completed_chunks").getAsJsonArray())
+            {
+                ChunkPos pos = chunkPosFromJson(el);
+
+                if (pos != null)
+                {
+                    this.previousChunks.add(pos);
+                }
+            }
+        }
+
+        if (JsonUtils.hasArray(obj, "chunk_in_progress"))
+        {
+            ChunkPos pos = chunkPosFromJson(obj.get("chunk_in_progress"));
+
+            if (pos != null)
+            {
+                this.previousChunks.add(pos);
+            }
+        }
+
+        return true;
+    }
+
+    private static JsonArray chunkPosToJson(ChunkPos pos)
+    {
+        JsonArray arr = new JsonArray();
+        arr.add(pos.x);
+        arr.add(pos.z);
+        return arr;
+    }
+
+    @Nullable
+    private static ChunkPos chunkPosFromJson(JsonElement el)
+    {
+        if (el.isJsonArray() && el.getAsJsonArray().size() == 2)
+        {
+            JsonArray arr = el.getAsJsonArray();
+
+            try
+            {
+                return new ChunkPos(arr.get(0).getAsInt(), arr.get(1).getAsInt());
+            }
+            catch (Exception ignore) {}
+        }
+
+        return null;
+    }
+}
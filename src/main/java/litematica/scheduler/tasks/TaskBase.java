@@ -18,6 +18,7 @@ import litematica.render.infohud.IInfoHudRenderer;
 import litematica.render.infohud.InfoHud;
 import litematica.render.infohud.RenderPhase;
 import litematica.scheduler.ITask;
+import litematica.scheduler.TaskPriority;
 import litematica.scheduler.TaskTimer;
 import litematica.util.PositionUtils;
 
@@ -30,6 +31,8 @@ public abstract class TaskBase implements ITask, IInfoHudRenderer
     protected List<String> infoHudLines = new ArrayList<>();
     protected boolean finished;
     protected boolean printCompletionMessage = true;
+    protected TaskPriority priority = TaskPriority.NORMAL;
+    protected long executionDeadline = Long.MAX_VALUE;
     @Nullable private TaskCompletionListener completionListener;
 
     protected TaskBase()
@@ -55,6 +58,34 @@ public abstract class TaskBase implements ITask, IInfoHudRenderer
         this.timer = new TaskTimer(interval);
     }
 
+    @Override
+    public TaskPriority getPriority()
+    {
+        return this.priority;
+    }
+
+    public void setPriority(TaskPriority priority)
+    {
+        this.priority = priority;
+    }
+
+    @Override
+    public void setExecutionDeadline(long deadlineNanos)
+    {
+        this.executionDeadline = deadlineNanos;
+    }
+
+    /**
+     * Returns whether there is still time left for this task in the current tick's
+     * execution time budget. Tasks that process their work in small units
+     * should check this between the units, after processing at least one unit.
+     * @return
+     */
+    protected boolean hasTimeLeft()
+    {
+        return System.nanoTime() - this.executionDeadline < 0L;
+    }
+
     public void disableCompletionMessage()
     {
         this.printCompletionMessage = false;
@@ -20,9 +20,9 @@ public class TaskCountBlocksArea extends TaskCountBlocksMaterialList
     }
 
     @Override
-    protected void countAtPosition(BlockPos pos)
+    protected void countAtPosition(BlockPos pos, CountBlocksJob job)
     {
-        IBlockState stateClient = this.worldClient.getBlockState(pos).getActualState(this.worldClient, pos);
-        this.countsTotal.addTo(stateClient, 1);
+        IBlockState stateClient = job.clientWorld.getBlockState(pos).getActualState(job.clientWorld, pos);
+        job.countsTotal.addTo(stateClient, 1);
     }
 }
@@ -1,5 +1,9 @@
 package litematica.scheduler.tasks;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 
 import net.minecraft.block.state.IBlockState;
@@ -9,6 +13,7 @@ import net.minecraft.util.math.ChunkPos;
 
 import malilib.util.position.IntBoundingBox;
 import malilib.util.position.LayerRange;
+import litematica.scheduler.TaskPriority;
 
 public abstract class TaskCountBlocksBase extends TaskProcessChunkBase
 {
@@ -17,6 +22,8 @@ public abstract class TaskCountBlocksBase extends TaskProcessChunkBase
     protected TaskCountBlocksBase(String nameOnHud)
     {
         super(nameOnHud);
+
+        this.priority = TaskPriority.HIGH;
     }
 
     @Override
@@ -26,60 +33,62 @@ public abstract class TaskCountBlocksBase extends TaskProcessChunkBase
         return this.areSurroundingChunksLoaded(pos, this.worldClient, 1);
     }
 
-    protected void countBlocksInChunk(ChunkPos pos)
+    /**
+     * Returns the boxes within the given chunk, clamped to the given layer range
+     */
+    protected List<IntBoundingBox> getLayerRangeClampedBoxes(ChunkPos pos, LayerRange range)
     {
-        BlockPos.MutableBlockPos posMutable = new BlockPos.MutableBlockPos();
+        EnumFacing.Axis axis = range.getAxis();
+        List<IntBoundingBox> boxes = new ArrayList<>();
 
         for (IntBoundingBox bb : this.getBoxesInChunk(pos))
         {
-            final int startX = bb.minX;
-            final int startY = bb.minY;
-            final int startZ = bb.minZ;
-            final int endX = bb.maxX;
-            final int endY = bb.maxY;
-            final int endZ = bb.maxZ;
+            final int startX = axis == EnumFacing.Axis.X ? Math.max(bb.minX, range.getMinLayerBoundary()) : bb.minX;
+            final int startY = axis == EnumFacing.Axis.Y ? Math.max(bb.minY, range.getMinLayerBoundary()) : bb.minY;
+            final int startZ = axis == EnumFacing.Axis.Z ? Math.max(bb.minZ, range.getMinLayerBoundary()) : bb.minZ;
+            final int endX = axis == EnumFacing.Axis.X ? Math.min(bb.maxX, range.getMaxLayerBoundary()) : bb.maxX;
+            final int endY = axis == EnumFacing.Axis.Y ? Math.min(bb.maxY, range.getMaxLayerBoundary()) : bb.maxY;
+            final int endZ = axis == EnumFacing.Axis.Z ? Math.min(bb.maxZ, range.getMaxLayerBoundary()) : bb.maxZ;
 
-            for (int y = startY; y <= endY; ++y)
+            if (startX <= endX && startY <= endY && startZ <= endZ)
             {
-                for (int z = startZ; z <= endZ; ++z)
-                {
-                    for (int x = startX; x <= endX; ++x)
-                    {
-                        posMutable.setPos(x, y, z);
-                        this.countAtPosition(posMutable);
-                    }
-                }
+                boxes.add(new IntBoundingBox(startX, startY, startZ, endX, endY, endZ));
             }
         }
+
+        return boxes;
     }
 
-    protected void countBlocksInChunkRespectingLayerRange(ChunkPos pos, LayerRange range)
+    /**
+     * Calls the given counter for each position within the given boxes.
+     * This doesn't access the task, so it can be called from the worker threads.
+     * Note: The same mutable position instance is passed for each position.
+     */
+    protected static void countBlocksInBoxes(List<IntBoundingBox> boxes, Consumer<BlockPos> counter)
     {
-        EnumFacing.Axis axis = range.getAxis();
         BlockPos.MutableBlockPos posMutable = new BlockPos.MutableBlockPos();
 
-        for (IntBoundingBox bb : this.getBoxesInChunk(pos))
+        for (IntBoundingBox bb : boxes)
         {
-            final int startX = axis == EnumFacing.Axis.X ? Math.max(bb.minX, range.getMinLayerBoundary()) : bb.minX;
-            final int startY = axis == EnumFacing.Axis.Y ? Math.max(bb.minY, range.getMinLayerBoundary()) : bb.minY;
-            final int startZ = axis == EnumFacing.Axis.Z ? Math.max(bb.minZ, range.getMinLayerBoundary()) : bb.minZ;
-            final int endX = axis == EnumFacing.Axis.X ? Math.min(bb.maxX, range.getMaxLayerBoundary()) : bb.maxX;
-            final int endY = axis == EnumFacing.Axis.Y ? Math.min(bb.maxY, range.getMaxLayerBoundary()) : bb.maxY;
-            final int endZ = axis == EnumFacing.Axis.Z ? Math.min(bb.maxZ, range.getMaxLayerBoundary()) : bb.maxZ;
-
-            for (int y = startY; y <= endY; ++y)
+            for (int y = bb.minY; y <= bb.maxY; ++y)
             {
-                for (int z = startZ; z <= endZ; ++z)
+                for (int z = bb.minZ; z <= bb.maxZ; ++z)
                 {
-                    for (int x = startX; x <= endX; ++x)
+                    for (int x = bb.minX; x <= bb.maxX; ++x)
                     {
                         posMutable.setPos(x, y, z);
-                        this.countAtPosition(posMutable);
+                        counter.accept(posMutable);
                     }
                 }
             }
         }
     }
 
-    protected abstract void countAtPosition(BlockPos pos);
+    protected static void addCounts(Object2LongOpenHashMap<IBlockState> from, Object2LongOpenHashMap<IBlockState> to)
+    {
+        for (Object2LongMap.Entry<IBlockState> entry : from.object2LongEntrySet())
+        {
+            to.addTo(entry.getKey(), entry.getLongValue());
+        }
+    }
 }
@@ -1,12 +1,17 @@
 package litematica.scheduler.tasks;
 
 import java.util.List;
+import javax.annotation.Nullable;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 
 import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.IBlockAccess;
+import net.minecraft.world.World;
 
 import malilib.util.game.wrap.GameUtils;
+import malilib.util.position.IntBoundingBox;
 import malilib.util.position.LayerRange;
 import litematica.data.DataManager;
 import litematica.materials.IMaterialList;
@@ -15,6 +20,7 @@ import litematica.materials.MaterialListUtils;
 import litematica.render.infohud.InfoHud;
 import litematica.util.BlockInfoListType;
 import litematica.world.SchematicWorldRenderingNotifier;
+import litematica.world.WorldSnapshot;
 
 public abstract class TaskCountBlocksMaterialList extends TaskCountBlocksBase
 {
@@ -42,10 +48,51 @@ public abstract class TaskCountBlocksMaterialList extends TaskCountBlocksBase
     @Override
     protected boolean processChunk(ChunkPos pos)
     {
-        this.countBlocksInChunkRespectingLayerRange(pos, this.layerRange);
+        List<IntBoundingBox> boxes = this.getLayerRangeClampedBoxes(pos, this.layerRange);
+        CountBlocksJob job = new CountBlocksJob(boxes, this.worldClient, this.getSchematicWorld());
+
+        job.process();
+        job.finish();
+
         return true;
     }
 
+    @Override
+    @Nullable
+    protected ChunkJob createChunkJob(ChunkPos pos)
+    {
+        List<IntBoundingBox> boxes = this.getLayerRangeClampedBoxes(pos, this.layerRange);
+
+        if (boxes.isEmpty())
+        {
+            return null;
+        }
+
+        // The neighbor blocks are needed for getActualState()
+        int[] yRange = getSnapshotYRange(boxes, ACTUAL_STATE_NEIGHBOR_MARGIN);
+        World schematicWorld = this.getSchematicWorld();
+        IBlockAccess clientSnapshot = new WorldSnapshot(this.worldClient, pos, 1, yRange[0], yRange[1]);
+        IBlockAccess schematicSnapshot = schematicWorld != null ? new WorldSnapshot(schematicWorld, pos, 1, yRange[0], yRange[1]) : null;
+
+        return new CountBlocksJob(boxes, clientSnapshot, schematicSnapshot);
+    }
+
+    /**
+     * @return the schematic world, if this task needs to read it
+     */
+    @Nullable
+    protected World getSchematicWorld()
+    {
+        return null;
+    }
+
+    /**
+     * Counts the block at the given position into the counts of the given job.
+     * This is called from the worker threads when processing chunks off-thread,
+     * so this must only read the worlds given in the job, and not modify the task.
+     */
+    protected abstract void countAtPosition(BlockPos pos, CountBlocksJob job);
+
     @Override
     protected void onStop()
     {
@@ -60,4 +107,35 @@ public abstract class TaskCountBlocksMaterialList extends TaskCountBlocksBase
 
         this.notifyListener();
     }
+
+    protected class CountBlocksJob implements ChunkJob
+    {
+        public final Object2LongOpenHashMap<IBlockState> countsTotal = new Object2LongOpenHashMap<>();
+        public final Object2LongOpenHashMap<IBlockState> countsMissing = new Object2LongOpenHashMap<>();
+        public final Object2LongOpenHashMap<IBlockState> countsMismatch = new Object2LongOpenHashMap<>();
+        public final List<IntBoundingBox> boxes;
+        public final IBlockAccess clientWorld;
+        @Nullable public final IBlockAccess schematicWorld;
+
+        public CountBlocksJob(List<IntBoundingBox> boxes, IBlockAccess clientWorld, @Nullable IBlockAccess schematicWorld)
+        {
+            this.boxes = boxes;
+            this.clientWorld = clientWorld;
+            this.schematicWorld = schematicWorld;
+        }
+
+        @Override
+        public void process()
+        {
+            countBlocksInBoxes(this.boxes, pos -> TaskCountBlocksMaterialList.this.countAtPosition(pos, this));
+        }
+
+        @Override
+        public void finish()
+        {
+            addCounts(this.countsTotal, TaskCountBlocksMaterialList.this.countsTotal);
+            addCounts(this.countsMissing, TaskCountBlocksMaterialList.this.countsMissing);
+            addCounts(this.countsMismatch, TaskCountBlocksMaterialList.this.countsMismatch);
+        }
+    }
 }
@@ -5,6 +5,8 @@ import java.util.Collection;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Blocks;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockAccess;
+import net.minecraft.world.World;
 
 import litematica.config.Configs;
 import litematica.data.DataManager;
@@ -52,24 +54,31 @@ public class TaskCountBlocksPlacement extends TaskCountBlocksMaterialList
     }
 
     @Override
-    protected void countAtPosition(BlockPos pos)
+    protected World getSchematicWorld()
     {
-        IBlockState stateSchematic = this.worldSchematic.getBlockState(pos).getActualState(this.worldSchematic, pos);
+        return this.worldSchematic;
+    }
+
+    @Override
+    protected void countAtPosition(BlockPos pos, CountBlocksJob job)
+    {
+        IBlockAccess worldSchematic = job.schematicWorld;
+        IBlockState stateSchematic = worldSchematic.getBlockState(pos).getActualState(worldSchematic, pos);
 
         if (stateSchematic.getBlock() != Blocks.AIR)
         {
-            IBlockState stateClient = this.worldClient.getBlockState(pos).getActualState(this.worldClient, pos);
+            IBlockState stateClient = job.clientWorld.getBlockState(pos).getActualState(job.clientWorld, pos);
 
-            this.countsTotal.addTo(stateSchematic, 1);
+            job.countsTotal.addTo(stateSchematic, 1);
 
             if (stateClient.getBlock() == Blocks.AIR)
             {
-                this.countsMissing.addTo(stateSchematic, 1);
+                job.countsMissing.addTo(stateSchematic, 1);
             }
             else if (this.ignoreState ? stateClient.getBlock() != stateSchematic.getBlock() : stateClient != stateSchematic)
             {
-                this.countsMissing.addTo(stateSchematic, 1);
-                this.countsMismatch.addTo(stateSchematic, 1);
+                job.countsMissing.addTo(stateSchematic, 1);
+                job.countsMismatch.addTo(stateSchematic, 1);
             }
         }
     }
@@ -17,6 +17,8 @@ import malilib.util.game.wrap.GameUtils;
 import malilib.util.game.wrap.RegistryUtils;
 import malilib.util.position.IntBoundingBox;
 import litematica.render.infohud.InfoHud;
+import litematica.scheduler.CommandRateController;
+import litematica.scheduler.TaskPriority;
 import litematica.selection.SelectionBox;
 import litematica.util.EntityUtils;
 import litematica.util.WorldUtils;
@@ -38,6 +40,7 @@ public class TaskFillArea extends TaskProcessChunkBase
     {
         super(nameOnHud);
 
+        this.priority = TaskPriority.LOW;
         this.fillState = fillState;
         this.replaceState = replaceState;
         this.removeEntities = removeEntities;
@@ -91,18 +94,33 @@ public class TaskFillArea extends TaskProcessChunkBase
     @Override
     protected boolean processChunk(ChunkPos pos)
     {
-        if (this.isClientWorld && this.chunkCount == 0)
-        {
-            GameUtils.sendCommand("/gamerule sendCommandFeedback false");
-        }
+        List<IntBoundingBox> boxes = this.getBoxesInChunk(pos);
 
-        for (IntBoundingBox box : this.getBoxesInChunk(pos))
+        if (this.isClientWorld)
         {
-            if (this.isClientWorld)
+            CommandRateController controller = CommandRateController.INSTANCE;
+
+            if (controller.canSendCommands(boxes.size()) == false)
+            {
+                return false;
+            }
+
+            if (this.chunkCount == 0)
+            {
+                GameUtils.sendCommand("/gamerule sendCommandFeedback false");
+            }
+
+            for (IntBoundingBox box : boxes)
             {
-                this.fillBoxCommands(box, this.removeEntities);
+                controller.onCommandsSent(this.fillBoxCommands(box, this.removeEntities), box);
             }
-            else
+
+            // At least one command per remaining chunk
+            controller.setPendingCommands(this.requiredChunks.size() - 1);
+        }
+        else
+        {
+            for (IntBoundingBox box : boxes)
             {
                 this.fillBoxDirect(box, this.removeEntities);
             }
@@ -160,8 +178,13 @@ public class TaskFillArea extends TaskProcessChunkBase
         }
     }
 
-    protected void fillBoxCommands(IntBoundingBox box, boolean removeEntities)
+    /**
+     * @return the number of commands sent
+     */
+    protected int fillBoxCommands(IntBoundingBox box, boolean removeEntities)
     {
+        int commands = 1;
+
         if (removeEntities)
         {
             AxisAlignedBB aabb = new AxisAlignedBB(box.minX, box.minY, box.minZ, box.maxX + 1, box.maxY + 1, box.maxZ + 1);
@@ -173,6 +196,7 @@ public class TaskFillArea extends TaskProcessChunkBase
                         box.maxX - box.minX + 1, box.maxY - box.minY + 1, box.maxZ - box.minZ + 1);
 
                 GameUtils.sendCommand(killCmd);
+                ++commands;
             }
         }
 
@@ -180,6 +204,8 @@ public class TaskFillArea extends TaskProcessChunkBase
                 box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ, this.blockString);
 
         GameUtils.sendCommand(fillCmd);
+
+        return commands;
     }
 
     @Override
@@ -190,6 +216,7 @@ public class TaskFillArea extends TaskProcessChunkBase
         if (this.isClientWorld)
         {
             GameUtils.sendCommand("/gamerule sendCommandFeedback true");
+            CommandRateController.INSTANCE.setPendingCommands(0);
         }
 
         InfoHud.getInstance().removeInfoHudRenderer(this, false);
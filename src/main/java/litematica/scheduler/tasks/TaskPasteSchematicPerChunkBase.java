@@ -19,6 +19,7 @@ import litematica.config.Configs;
 import litematica.data.DataManager;
 import litematica.render.infohud.IInfoHudRenderer;
 import litematica.render.infohud.InfoHud;
+import litematica.scheduler.TaskPriority;
 import litematica.schematic.placement.SchematicPlacement;
 import litematica.util.PositionUtils.ChunkPosComparator;
 import litematica.util.ReplaceBehavior;
@@ -29,8 +30,8 @@ public abstract class TaskPasteSchematicPerChunkBase extends TaskBase implements
     protected final ArrayListMultimap<ChunkPos, IntBoundingBox> boxesInChunks = ArrayListMultimap.create();
     protected final List<ChunkPos> chunks = new ArrayList<>();
     private final HashSet<ChunkPos> individualChunks = new HashSet<>();
-    private final Collection<SchematicPlacement> placements;
-    private final LayerRange layerRange;
+    protected final Collection<SchematicPlacement> placements;
+    protected final LayerRange layerRange;
     protected final ChunkPosComparator comparator;
     protected final boolean changedBlockOnly;
     protected final ReplaceBehavior replace;
@@ -44,6 +45,7 @@ public abstract class TaskPasteSchematicPerChunkBase extends TaskBase implements
         this.comparator.setClosestFirst(true);
         this.replace = Configs.Generic.PASTE_REPLACE_BEHAVIOR.getValue();
         this.name = StringUtils.translate("litematica.gui.label.task_name.paste");
+        this.priority = TaskPriority.LOW;
     }
 
     @Override
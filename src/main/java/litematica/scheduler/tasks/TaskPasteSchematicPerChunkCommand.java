@@ -4,6 +4,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import javax.annotation.Nullable;
+import it.unimi.dsi.fastutil.booleans.BooleanArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 import net.minecraft.block.Block;
 import net.minecraft.block.material.Material;
@@ -26,17 +29,33 @@ import malilib.util.game.wrap.RegistryUtils;
 import malilib.util.position.IntBoundingBox;
 import malilib.util.position.LayerRange;
 import litematica.config.Configs;
+import litematica.scheduler.CommandRateController;
 import litematica.schematic.placement.SchematicPlacement;
+import litematica.util.FillCommandPlanner;
 import litematica.util.ReplaceBehavior;
+import litematica.world.ChunkSectionDiff;
 import litematica.world.SchematicWorldHandler;
 import litematica.world.WorldSchematic;
 
 public class TaskPasteSchematicPerChunkCommand extends TaskPasteSchematicPerChunkBase
 {
     protected final List<IntBoundingBox> boxesInCurrentChunk = new ArrayList<>();
+    protected final List<String> plannedCommands = new ArrayList<>();
+    /** Whether each planned command changes any blocks in the client world, ie. whether the server should echo back block changes for it */
+    protected final BooleanArrayList plannedCommandChanges = new BooleanArrayList();
+    protected final IntArrayList changedPositions = new IntArrayList();
     private final int maxCommandsPerTick;
+    private final boolean useFillCommands;
+    private PasteJournal journal;
+    @Nullable private ChunkPos currentChunk;
+    @Nullable private ChunkSectionDiff currentChunkDiff;
+    private boolean diffOnlyInCurrentChunk;
+    private int verifiedChunks;
     private int sentCommandsThisTick;
     private int sentCommandsTotal;
+    private long commandsSaved;
+    private int processedChunks;
+    private int plannedCommandIndex;
     private int currentX;
     private int currentY;
     private int currentZ;
@@ -49,6 +68,20 @@ public class TaskPasteSchematicPerChunkCommand extends TaskPasteSchematicPerChun
         super(placements, range, changedBlocksOnly);
 
         this.maxCommandsPerTick = Configs.Generic.PASTE_COMMAND_LIMIT.getIntegerValue();
+        this.useFillCommands = Configs.Generic.PASTE_USE_FILL_COMMANDS.getBooleanValue();
+    }
+
+    @Override
+    public void init()
+    {
+        super.init();
+
+        this.journal = PasteJournal.load(this.placements, this.layerRange, this.changedBlockOnly, this.replace);
+
+        if (this.journal.isResumed())
+        {
+            MessageDispatcher.generic().screenOrActionbar().translate("litematica.message.paste_journal_resuming", this.journal.getPreviousChunkCount());
+        }
     }
 
     @Override
@@ -85,6 +118,42 @@ public class TaskPasteSchematicPerChunkCommand extends TaskPasteSchematicPerChun
                 }
             }
 
+            if (this.boxInProgress == false && pos.equals(this.currentChunk) == false)
+            {
+                this.currentChunk = pos;
+                this.diffOnlyInCurrentChunk = this.journal.wasStartedPreviously(pos);
+                this.journal.onChunkStarted(pos);
+                this.currentChunkDiff = null;
+
+                // The chunks that were already pasted (or started) before a disconnect or a crash
+                // are handled like in the changed blocks only mode
+                if (this.changedBlockOnly || this.diffOnlyInCurrentChunk)
+                {
+                    this.currentChunkDiff = ChunkSectionDiff.compare(worldSchematic.getChunkProvider().getLoadedChunk(pos.x, pos.z),
+                                                                     worldClient.getChunkProvider().getLoadedChunk(pos.x, pos.z),
+                                                                     this.boxesInChunks.get(pos));
+
+                    // The client world already matches the schematic, skip the chunk without sending anything
+                    if (this.currentChunkDiff.isEmpty())
+                    {
+                        if (this.diffOnlyInCurrentChunk)
+                        {
+                            ++this.verifiedChunks;
+                        }
+
+                        ++this.processedChunks;
+                        ++processed;
+
+                        if (this.onChunkCompleted(pos))
+                        {
+                            return true;
+                        }
+
+                        continue;
+                    }
+                }
+            }
+
             while (this.boxesInCurrentChunk.isEmpty() == false)
             {
                 IntBoundingBox box = this.boxesInCurrentChunk.get(0);
@@ -95,18 +164,14 @@ public class TaskPasteSchematicPerChunkCommand extends TaskPasteSchematicPerChun
 
                     if (this.boxesInCurrentChunk.isEmpty())
                     {
-                        this.boxesInChunks.removeAll(pos);
-                        this.chunks.remove(0);
+                        ++this.processedChunks;
                         ++processed;
 
-                        if (this.chunks.isEmpty())
+                        if (this.onChunkCompleted(pos))
                         {
-                            this.finished = true;
                             return true;
                         }
 
-                        this.sortChunkList();
-
                         // break to fetch the next chunk
                         break;
                     }
@@ -132,6 +197,30 @@ public class TaskPasteSchematicPerChunkCommand extends TaskPasteSchematicPerChun
         return false;
     }
 
+    /**
+     * Removes the first chunk from the list, and records it as completed in the journal
+     * @return true if that was the last chunk, and the task is now finished
+     */
+    protected boolean onChunkCompleted(ChunkPos pos)
+    {
+        // Record the completion on disk before the chunk is dropped from the pending chunks
+        this.journal.onChunkCompleted(pos);
+        this.boxesInChunks.removeAll(pos);
+        this.chunks.remove(0);
+        this.currentChunk = null;
+        this.currentChunkDiff = null;
+
+        if (this.chunks.isEmpty())
+        {
+            this.finished = true;
+            return true;
+        }
+
+        this.sortChunkList();
+
+        return false;
+    }
+
     @Override
     protected void onChunkListSorted()
     {
@@ -148,28 +237,60 @@ public class TaskPasteSchematicPerChunkCommand extends TaskPasteSchematicPerChun
         Chunk chunkSchematic = worldSchematic.getChunkProvider().getLoadedChunk(pos.x, pos.z);
         Chunk chunkClient = worldClient.getChunkProvider().getLoadedChunk(pos.x, pos.z);
 
+        if (this.useFillCommands)
+        {
+            return this.processBoxUsingFill(box, chunkSchematic, chunkClient, worldSchematic, player);
+        }
+
         if (this.boxInProgress == false)
         {
             this.currentX = box.minX;
             this.currentY = box.minY;
             this.currentZ = box.minZ;
-            this.boxVolume = (box.maxX - box.minX + 1) * (box.maxY - box.minY + 1) * (box.maxZ - box.minZ + 1);
             this.currentIndex = 0;
+
+            // In the changed blocks only mode, only go through the positions that differ
+            if (this.currentChunkDiff != null)
+            {
+                this.changedPositions.clear();
+                this.currentChunkDiff.getChangedPositionsWithin(box, this.changedPositions);
+                this.boxVolume = this.changedPositions.size();
+            }
+            else
+            {
+                this.boxVolume = (box.maxX - box.minX + 1) * (box.maxY - box.minY + 1) * (box.maxZ - box.minZ + 1);
+            }
+
             this.boxInProgress = true;
         }
 
         while (this.currentIndex < this.boxVolume)
         {
-            posMutable.setPos(this.currentX, this.currentY, this.currentZ);
+            if (CommandRateController.INSTANCE.canSendCommands(1) == false)
+            {
+                break;
+            }
 
-            if (++this.currentY > box.maxY)
+            if (this.currentChunkDiff != null)
             {
-                this.currentY = box.minY;
+                int packedPos = this.changedPositions.getInt(this.currentIndex);
+                posMutable.setPos((pos.x << 4) + ChunkSectionDiff.getLocalX(packedPos),
+                                  ChunkSectionDiff.getY(packedPos),
+                                  (pos.z << 4) + ChunkSectionDiff.getLocalZ(packedPos));
+            }
+            else
+            {
+                posMutable.setPos(this.currentX, this.currentY, this.currentZ);
 
-                if (++this.currentX > box.maxX)
+                if (++this.currentY > box.maxY)
                 {
-                    this.currentX = box.minX;
-                    ++this.currentZ;
+                    this.currentY = box.minY;
+
+                    if (++this.currentX > box.maxX)
+                    {
+                        this.currentX = box.minX;
+                        ++this.currentZ;
+                    }
                 }
             }
 
@@ -177,43 +298,224 @@ public class TaskPasteSchematicPerChunkCommand extends TaskPasteSchematicPerChun
 
             IBlockState stateSchematicOrig = chunkSchematic.getBlockState(posMutable);
             IBlockState stateClient = chunkClient.getBlockState(posMutable);
+            IBlockState stateToPaste = this.getStateToPaste(stateSchematicOrig, stateClient);
 
-            if (stateSchematicOrig.getBlock() != Blocks.AIR || stateClient.getBlock() != Blocks.AIR)
+            if (stateToPaste != null)
             {
-                // Discard the non-meta state info, as it depends on neighbor blocks which will
-                // be synced with some delay from the server. TODO 1.13 remove this
-                @SuppressWarnings("deprecation")
-                IBlockState stateSchematic = stateSchematicOrig.getBlock().getStateFromMeta(stateSchematicOrig.getBlock().getMetaFromState(stateSchematicOrig));
+                // Re-pasting an already matching block doesn't produce a block change echo from the server
+                boolean changes = stateToPaste != stateClient;
+                this.sendSetBlockCommand(posMutable.getX(), posMutable.getY(), posMutable.getZ(), stateSchematicOrig, changes, box, player);
 
-                if (this.changedBlockOnly == false || stateClient != stateSchematic)
+                if (++this.sentCommandsThisTick >= this.maxCommandsPerTick)
                 {
-                    if ((this.replace == ReplaceBehavior.NONE && stateClient.getMaterial() != Material.AIR) ||
-                        (this.replace == ReplaceBehavior.WITH_NON_AIR && stateSchematicOrig.getMaterial() == Material.AIR))
-                    {
-                        continue;
-                    }
+                    break;
+                }
+            }
+        }
+
+        if (this.currentIndex >= this.boxVolume)
+        {
+            this.summonEntitiesIfNotResumed(box, worldSchematic, player);
+            this.boxInProgress = false;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    protected boolean processBoxUsingFill(IntBoundingBox box, Chunk chunkSchematic, Chunk chunkClient,
+                                          WorldSchematic worldSchematic, EntityPlayerSP player)
+    {
+        if (this.boxInProgress == false)
+        {
+            this.planBoxCommands(box, chunkSchematic, chunkClient);
+            this.boxInProgress = true;
+        }
+
+        while (this.plannedCommandIndex < this.plannedCommands.size() &&
+               this.sentCommandsThisTick < this.maxCommandsPerTick &&
+               CommandRateController.INSTANCE.canSendCommands(1))
+        {
+            boolean changes = this.plannedCommandChanges.getBoolean(this.plannedCommandIndex);
+            player.sendChatMessage(this.plannedCommands.get(this.plannedCommandIndex++));
+            CommandRateController.INSTANCE.onCommandsSent(1, box, changes);
+            ++this.sentCommandsThisTick;
+            ++this.sentCommandsTotal;
+        }
+
+        if (this.plannedCommandIndex >= this.plannedCommands.size())
+        {
+            this.summonEntitiesIfNotResumed(box, worldSchematic, player);
+            this.plannedCommands.clear();
+            this.plannedCommandChanges.clear();
+            this.plannedCommandIndex = 0;
+            this.boxInProgress = false;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Plans the /fill and /setblock commands for the entire box, which are then sent over the following ticks
+     */
+    protected void planBoxCommands(IntBoundingBox box, Chunk chunkSchematic, Chunk chunkClient)
+    {
+        BlockPos.MutableBlockPos posMutable = new BlockPos.MutableBlockPos();
+        int sizeX = box.maxX - box.minX + 1;
+        int sizeY = box.maxY - box.minY + 1;
+        int sizeZ = box.maxZ - box.minZ + 1;
+        IBlockState[] states = new IBlockState[sizeX * sizeY * sizeZ];
+        boolean[] matching = new boolean[states.length];
+
+        // In the changed blocks only mode, only the positions that differ need to be read
+        if (this.currentChunkDiff != null)
+        {
+            int chunkMinX = box.minX & ~0xF;
+            int chunkMinZ = box.minZ & ~0xF;
 
-                    this.sendSetBlockCommand(posMutable.getX(), posMutable.getY(), posMutable.getZ(), stateSchematicOrig, player);
+            this.changedPositions.clear();
+            this.currentChunkDiff.getChangedPositionsWithin(box, this.changedPositions);
 
-                    if (++this.sentCommandsThisTick >= this.maxCommandsPerTick)
+            for (int i = 0; i < this.changedPositions.size(); ++i)
+            {
+                int packedPos = this.changedPositions.getInt(i);
+                int x = chunkMinX + ChunkSectionDiff.getLocalX(packedPos);
+                int y = ChunkSectionDiff.getY(packedPos);
+                int z = chunkMinZ + ChunkSectionDiff.getLocalZ(packedPos);
+                int index = ((y - box.minY) * sizeZ + (z - box.minZ)) * sizeX + (x - box.minX);
+
+                posMutable.setPos(x, y, z);
+                IBlockState stateClient = chunkClient.getBlockState(posMutable);
+                states[index] = this.getStateToPaste(chunkSchematic.getBlockState(posMutable), stateClient);
+                matching[index] = states[index] == stateClient;
+            }
+        }
+        else
+        {
+            int index = 0;
+
+            for (int y = box.minY; y <= box.maxY; ++y)
+            {
+                for (int z = box.minZ; z <= box.maxZ; ++z)
+                {
+                    for (int x = box.minX; x <= box.maxX; ++x)
                     {
-                        break;
+                        posMutable.setPos(x, y, z);
+                        IBlockState stateClient = chunkClient.getBlockState(posMutable);
+                        states[index] = this.getStateToPaste(chunkSchematic.getBlockState(posMutable), stateClient);
+                        matching[index] = states[index] == stateClient;
+                        ++index;
                     }
                 }
             }
         }
 
-        if (this.currentIndex >= this.boxVolume)
+        // The blocks that aren't full cubes (torches, ladders, buttons etc.) often
+        // depend on an adjacent block, so place them after the full blocks on the same layer
+        List<FillCommandPlanner.Cuboid<IBlockState>> cuboids = FillCommandPlanner.plan(states, sizeX, sizeY, sizeZ, (state) -> state.isFullCube() == false);
+        String cmdNameSetblock = Configs.Generic.COMMAND_NAME_SETBLOCK.getValue();
+
+        this.plannedCommands.clear();
+        this.plannedCommandChanges.clear();
+        this.plannedCommandIndex = 0;
+
+        for (FillCommandPlanner.Cuboid<IBlockState> cuboid : cuboids)
         {
-            this.summonEntities(box, worldSchematic, player);
-            this.boxInProgress = false;
+            Block block = cuboid.state.getBlock();
+            String blockName = RegistryUtils.getBlockIdStr(block);
 
-            return true;
+            if (blockName == null)
+            {
+                continue;
+            }
+
+            int meta = block.getMetaFromState(cuboid.state);
+            int x1 = box.minX + cuboid.minX;
+            int y1 = box.minY + cuboid.minY;
+            int z1 = box.minZ + cuboid.minZ;
+
+            if (cuboid.isSingleBlock())
+            {
+                this.plannedCommands.add(String.format(Locale.ROOT, "/%s %d %d %d %s %d", cmdNameSetblock, x1, y1, z1, blockName, meta));
+            }
+            else
+            {
+                this.plannedCommands.add(String.format(Locale.ROOT, "/fill %d %d %d %d %d %d %s %d", x1, y1, z1,
+                                                                   box.minX + cuboid.maxX, box.minY + cuboid.maxY, box.minZ + cuboid.maxZ,
+                                                                   blockName, meta));
+            }
+
+            this.plannedCommandChanges.add(changesAnyBlock(cuboid, matching, sizeX, sizeZ));
+        }
+
+        this.commandsSaved += FillCommandPlanner.getCommandsSaved(cuboids);
+    }
+
+    /**
+     * @return the state to paste at a position with the given schematic and client world states,
+     *         or null if nothing should be pasted there. The returned state only contains
+     *         the meta-based state information, which is what the commands can place.
+     */
+    @Nullable
+    protected IBlockState getStateToPaste(IBlockState stateSchematicOrig, IBlockState stateClient)
+    {
+        if (stateSchematicOrig.getBlock() == Blocks.AIR && stateClient.getBlock() == Blocks.AIR)
+        {
+            return null;
+        }
+
+        // Discard the non-meta state info, as it depends on neighbor blocks which will
+        // be synced with some delay from the server. TODO 1.13 remove this
+        @SuppressWarnings("deprecation")
+        IBlockState stateSchematic = stateSchematicOrig.getBlock().getStateFromMeta(stateSchematicOrig.getBlock().getMetaFromState(stateSchematicOrig));
+
+        // In the chunks resumed from the journal, only the remaining differences are pasted
+        if ((this.changedBlockOnly || this.diffOnlyInCurrentChunk) && stateClient == stateSchematic)
+        {
+            return null;
+        }
+
+        if ((this.replace == ReplaceBehavior.NONE && stateClient.getMaterial() != Material.AIR) ||
+            (this.replace == ReplaceBehavior.WITH_NON_AIR && stateSchematicOrig.getMaterial() == Material.AIR))
+        {
+            return null;
+        }
+
+        return stateSchematic;
+    }
+
+    private static boolean changesAnyBlock(FillCommandPlanner.Cuboid<IBlockState> cuboid, boolean[] matching, int sizeX, int sizeZ)
+    {
+        for (int y = cuboid.minY; y <= cuboid.maxY; ++y)
+        {
+            for (int z = cuboid.minZ; z <= cuboid.maxZ; ++z)
+            {
+                for (int x = cuboid.minX; x <= cuboid.maxX; ++x)
+                {
+                    if (matching[(y * sizeZ + z) * sizeX + x] == false)
+                    {
+                        return true;
+                    }
+                }
+            }
         }
 
         return false;
     }
 
+    private void summonEntitiesIfNotResumed(IntBoundingBox box, WorldSchematic worldSchematic, EntityPlayerSP player)
+    {
+        // The entities in the chunks resumed from the journal may have been summoned already,
+        // and there is no way to verify that, so don't summon duplicates
+        if (this.diffOnlyInCurrentChunk == false)
+        {
+            this.summonEntities(box, worldSchematic, player);
+        }
+    }
+
     private void summonEntities(IntBoundingBox box, WorldSchematic worldSchematic, EntityPlayerSP player)
     {
         AxisAlignedBB bb = new AxisAlignedBB(box.minX, box.minY, box.minZ, box.maxX + 1, box.maxY + 1, box.maxZ + 1);
@@ -246,7 +548,7 @@ public class TaskPasteSchematicPerChunkCommand extends TaskPasteSchematicPerChun
         }
     }
 
-    private void sendSetBlockCommand(int x, int y, int z, IBlockState state, EntityPlayerSP player)
+    private void sendSetBlockCommand(int x, int y, int z, IBlockState state, boolean changes, IntBoundingBox box, EntityPlayerSP player)
     {
         Block block = state.getBlock();
         String blockName = RegistryUtils.getBlockIdStr(block);
@@ -260,25 +562,66 @@ public class TaskPasteSchematicPerChunkCommand extends TaskPasteSchematicPerChun
         String strCommand = String.format("/%s %d %d %d %s %d", cmdName, x, y, z, blockName, block.getMetaFromState(state));
 
         player.sendChatMessage(strCommand);
+        CommandRateController.INSTANCE.onCommandsSent(1, box, changes);
         ++this.sentCommandsTotal;
     }
 
+    @Override
+    protected void updateInfoHudLines()
+    {
+        super.updateInfoHudLines();
+
+        // Estimate the remaining commands from the average number of commands per chunk so far
+        long pending = this.plannedCommands.size() - this.plannedCommandIndex;
+
+        if (this.processedChunks > 0)
+        {
+            pending += (long) this.chunks.size() * this.sentCommandsTotal / this.processedChunks;
+        }
+
+        CommandRateController.INSTANCE.setPendingCommands(pending);
+    }
+
     @Override
     public void stop()
     {
         if (this.finished)
         {
+            if (this.journal != null)
+            {
+                this.journal.delete();
+            }
+
             if (this.printCompletionMessage)
             {
-                MessageDispatcher.success().screenOrActionbar().translate("litematica.message.schematic_pasted_using_setblock", this.sentCommandsTotal);
+                if (this.verifiedChunks > 0)
+                {
+                    MessageDispatcher.generic().screenOrActionbar().translate("litematica.message.paste_journal_verified_chunks", this.verifiedChunks);
+                }
+
+                if (this.useFillCommands)
+                {
+                    MessageDispatcher.success().screenOrActionbar().translate("litematica.message.schematic_pasted_using_fill", this.sentCommandsTotal, this.commandsSaved);
+                }
+                else
+                {
+                    MessageDispatcher.success().screenOrActionbar().translate("litematica.message.schematic_pasted_using_setblock", this.sentCommandsTotal);
+                }
             }
         }
         else
         {
+            // Keep the progress, so that the paste can be resumed by starting it again
+            if (this.journal != null)
+            {
+                this.journal.save();
+            }
+
             MessageDispatcher.error().screenOrActionbar().translate("litematica.message.error.schematic_paste_failed");
         }
 
         GameUtils.sendCommand("/gamerule sendCommandFeedback true");
+        CommandRateController.INSTANCE.setPendingCommands(0);
 
         super.stop();
     }
@@ -2,6 +2,9 @@ package litematica.scheduler.tasks;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
 import com.google.common.collect.ArrayListMultimap;
 
 import net.minecraft.client.multiplayer.WorldClient;
@@ -16,12 +19,14 @@ import litematica.config.Configs;
 import litematica.schematic.placement.SchematicPlacement;
 import litematica.schematic.util.SchematicPlacingUtils;
 import litematica.util.ReplaceBehavior;
+import litematica.world.ChunkSectionDiff;
 import litematica.world.SchematicWorldHandler;
 import litematica.world.WorldSchematic;
 
 public class TaskPasteSchematicPerChunkDirect extends TaskPasteSchematicPerChunkBase
 {
     private final ArrayListMultimap<ChunkPos, SchematicPlacement> placementsPerChunk = ArrayListMultimap.create();
+    private final Map<ChunkPos, ChunkSectionDiff> changesPerChunk = new HashMap<>();
     private final ReplaceBehavior replace;
 
     public TaskPasteSchematicPerChunkDirect(Collection<SchematicPlacement> placements, LayerRange range, boolean changedBlocksOnly)
@@ -67,24 +72,41 @@ public class TaskPasteSchematicPerChunkDirect extends TaskPasteSchematicPerChunk
 
             if (this.canProcessChunk(pos, worldSchematic, worldClient))
             {
-                // New list to avoid CME
-                ArrayList<SchematicPlacement> placements = new ArrayList<>(this.placementsPerChunk.get(pos));
+                ChunkSectionDiff changes = this.getChangesInChunk(pos, worldSchematic, world);
 
-                for (SchematicPlacement placement : placements)
+                // The world already matches the schematic, skip the entire chunk
+                if (changes != null && changes.isEmpty())
                 {
-                    if (placement.isInvalidated() ||
-                        SchematicPlacingUtils.placeToWorldWithinChunk(placement, pos, world, this.replace, false))
+                    this.placementsPerChunk.removeAll(pos);
+                    ++processed;
+                }
+                else
+                {
+                    // New list to avoid CME
+                    ArrayList<SchematicPlacement> placements = new ArrayList<>(this.placementsPerChunk.get(pos));
+
+                    for (SchematicPlacement placement : placements)
                     {
-                        this.placementsPerChunk.remove(pos, placement);
-                        ++processed;
+                        if (placement.isInvalidated() ||
+                            SchematicPlacingUtils.placeToWorldWithinChunk(placement, pos, world, this.replace, false, changes))
+                        {
+                            this.placementsPerChunk.remove(pos, placement);
+                            ++processed;
+                        }
                     }
                 }
 
                 if (this.placementsPerChunk.containsKey(pos) == false)
                 {
+                    this.changesPerChunk.remove(pos);
                     this.chunks.remove(chunkIndex);
                     --chunkIndex;
                 }
+
+                if (this.hasTimeLeft() == false)
+                {
+                    break;
+                }
             }
         }
 
@@ -102,6 +124,39 @@ public class TaskPasteSchematicPerChunkDirect extends TaskPasteSchematicPerChunk
         return false;
     }
 
+    /**
+     * @return the differences between the schematic world and the world in the given chunk,
+     *         or null if all the blocks should be placed. The differences are compared once
+     *         per chunk, before any of the placements in the chunk have been pasted.
+     */
+    @Nullable
+    protected ChunkSectionDiff getChangesInChunk(ChunkPos pos, WorldSchematic worldSchematic, World world)
+    {
+        if (this.changedBlockOnly == false)
+        {
+            return null;
+        }
+
+        // The schematic world only contains the enabled placements
+        for (SchematicPlacement placement : this.placementsPerChunk.get(pos))
+        {
+            if (placement.isEnabled() == false)
+            {
+                return null;
+            }
+        }
+
+        ChunkSectionDiff changes = this.changesPerChunk.get(pos);
+
+        if (changes == null)
+        {
+            changes = ChunkSectionDiff.compare(worldSchematic.getChunk(pos.x, pos.z), world.getChunk(pos.x, pos.z), this.boxesInChunks.get(pos));
+            this.changesPerChunk.put(pos, changes);
+        }
+
+        return changes;
+    }
+
     @Override
     public void stop()
     {
@@ -3,8 +3,12 @@ package litematica.scheduler.tasks;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nullable;
 import com.google.common.collect.ArrayListMultimap;
 
 import net.minecraft.client.multiplayer.WorldClient;
@@ -17,14 +21,21 @@ import malilib.util.game.WorldUtils;
 import malilib.util.game.wrap.GameUtils;
 import malilib.util.position.IntBoundingBox;
 import malilib.util.position.LayerRange;
+import litematica.Litematica;
+import litematica.config.Configs;
 import litematica.render.infohud.InfoHud;
+import litematica.scheduler.WorkerThreadPool;
 import litematica.selection.CornerDefinedBox;
 import litematica.util.PositionUtils;
 
 public abstract class TaskProcessChunkBase extends TaskBase
 {
+    /** The vanilla getActualState() implementations read at most one block away, for example doors, double plants and redstone wire */
+    protected static final int ACTUAL_STATE_NEIGHBOR_MARGIN = 1;
+
     protected final ArrayListMultimap<ChunkPos, IntBoundingBox> boxesInChunks = ArrayListMultimap.create();
     protected final Set<ChunkPos> requiredChunks = new HashSet<>();
+    protected final Map<ChunkPos, CompletableFuture<ChunkJob>> pendingJobs = new LinkedHashMap<>();
     protected final WorldClient worldClient;
     protected final World world;
     protected final boolean isClientWorld;
@@ -46,23 +57,46 @@ public abstract class TaskProcessChunkBase extends TaskBase
     {
         if (this.worldClient != null)
         {
+            boolean offThread = Configs.Generic.PROCESS_CHUNKS_OFF_THREAD.getBooleanValue();
+            final int maxPendingJobs = WorkerThreadPool.getThreadCount() * 4;
+            int processed = this.finishCompletedJobs();
             Iterator<ChunkPos> iter = this.requiredChunks.iterator();
-            int processed = 0;
 
             while (iter.hasNext())
             {
                 ChunkPos pos = iter.next();
 
-                if (this.canProcessChunk(pos) == false)
+                if (this.pendingJobs.containsKey(pos) || this.canProcessChunk(pos) == false)
                 {
                     continue;
                 }
 
-                if (this.processChunk(pos))
+                ChunkJob job = null;
+
+                if (offThread)
+                {
+                    if (this.pendingJobs.size() >= maxPendingJobs)
+                    {
+                        break;
+                    }
+
+                    job = this.createChunkJob(pos);
+                }
+
+                if (job != null)
+                {
+                    this.submitJob(pos, job);
+                }
+                else if (this.processChunk(pos))
                 {
                     iter.remove();
                     processed++;
                 }
+
+                if (this.hasTimeLeft() == false)
+                {
+                    break;
+                }
             }
 
             if (processed > 0)
@@ -76,9 +110,68 @@ public abstract class TaskProcessChunkBase extends TaskBase
         return this.finished;
     }
 
+    /**
+     * Merges the results of the completed off-thread jobs on the main thread
+     * @return the number of chunks that were finished
+     */
+    protected int finishCompletedJobs()
+    {
+        Iterator<Map.Entry<ChunkPos, CompletableFuture<ChunkJob>>> iter = this.pendingJobs.entrySet().iterator();
+        int processed = 0;
+
+        while (iter.hasNext())
+        {
+            Map.Entry<ChunkPos, CompletableFuture<ChunkJob>> entry = iter.next();
+            CompletableFuture<ChunkJob> future = entry.getValue();
+
+            if (future.isDone() == false)
+            {
+                continue;
+            }
+
+            ChunkPos pos = entry.getKey();
+            iter.remove();
+
+            try
+            {
+                future.join().finish();
+            }
+            catch (Exception e)
+            {
+                // Fall back to processing the chunk on the main thread
+                Litematica.logger.warn("Failed to process chunk [{}, {}] off-thread", pos.x, pos.z, e);
+
+                if (this.processChunk(pos) == false)
+                {
+                    continue;
+                }
+            }
+
+            this.requiredChunks.remove(pos);
+            ++processed;
+        }
+
+        return processed;
+    }
+
+    protected void submitJob(ChunkPos pos, ChunkJob job)
+    {
+        CompletableFuture<ChunkJob> future = CompletableFuture.supplyAsync(() ->
+        {
+            job.process();
+            return job;
+        }, WorkerThreadPool.getPool());
+
+        this.pendingJobs.put(pos, future);
+    }
+
     @Override
     public void stop()
     {
+        // Any still running jobs just get their results discarded
+        this.pendingJobs.values().forEach(future -> future.cancel(false));
+        this.pendingJobs.clear();
+
         // Multiplayer, just a client world
         if (this.isClientWorld)
         {
@@ -102,6 +195,18 @@ public abstract class TaskProcessChunkBase extends TaskBase
 
     protected abstract boolean processChunk(ChunkPos pos);
 
+    /**
+     * Creates a job for processing the given chunk on a worker thread.
+     * This is called on the main thread, so any world data that the job needs
+     * should be snapshotted here, for example using a {@link litematica.world.WorldSnapshot}.
+     * @return the job, or null if the chunk should be processed on the main thread via processChunk()
+     */
+    @Nullable
+    protected ChunkJob createChunkJob(ChunkPos pos)
+    {
+        return null;
+    }
+
     protected void addPerChunkBoxes(Collection<? extends CornerDefinedBox> allBoxes)
     {
         this.boxesInChunks.clear();
@@ -128,4 +233,41 @@ public abstract class TaskProcessChunkBase extends TaskBase
     {
         return this.boxesInChunks.get(pos);
     }
+
+    /**
+     * Returns the y range covered by the given boxes, expanded by the given margin
+     * in both directions, for snapshotting the neighbor blocks as well.
+     * @param margin the number of blocks above and below the boxes that the job reads,
+     *               for example {@link #ACTUAL_STATE_NEIGHBOR_MARGIN} if it uses getActualState()
+     * @return an array of [minY, maxY]
+     */
+    protected static int[] getSnapshotYRange(List<IntBoundingBox> boxes, int margin)
+    {
+        int minY = 255;
+        int maxY = 0;
+
+        for (IntBoundingBox box : boxes)
+        {
+            minY = Math.min(minY, box.minY - margin);
+            maxY = Math.max(maxY, box.maxY + margin);
+        }
+
+        return new int[] { minY, maxY };
+    }
+
+    public interface ChunkJob
+    {
+        /**
+         * Processes the chunk on a worker thread.
+         * This must only access the data that was snapshotted for this job,
+         * and it must not modify the task.
+         */
+        void process();
+
+        /**
+         * Merges the results into the task. Called on the main thread
+         * after process() has completed.
+         */
+        void finish();
+    }
 }
@@ -124,7 +124,7 @@ public interface ISchematic
             }
 
             FileOutputStream os = new FileOutputStream(file.toFile());
-            this.writeToStream(this.toTag(), os);
+            this.writeToStream(os);
             os.close();
 
             return true;
@@ -139,11 +139,29 @@ public interface ISchematic
         return false;
     }
 
+    /**
+     * Writes this schematic to the given stream, in the file format of this schematic
+     */
+    default void writeToStream(FileOutputStream outputStream) throws IOException
+    {
+        this.writeToStream(this.toTag(), outputStream);
+    }
+
     default void writeToStream(NBTTagCompound tag, FileOutputStream outputStream) throws IOException
     {
         CompressedStreamTools.writeCompressed(tag, outputStream);
     }
 
+    /**
+     * Reads the NBT data from the given file, for {@link #readFromFile()}
+     * @return the read NBT data, or null if the file could not be read
+     */
+    @Nullable
+    default NBTTagCompound readTagFromFile(Path file)
+    {
+        return NbtUtils.readNbtFromFile(file);
+    }
+
     /**
      *
      * Tries to read the contents of this schematic from the file that was set on creation of this schematic.
@@ -159,7 +177,7 @@ public interface ISchematic
             return false;
         }
 
-        NBTTagCompound tag = NbtUtils.readNbtFromFile(file);
+        NBTTagCompound tag = this.readTagFromFile(file);
 
         if (tag == null)
         {
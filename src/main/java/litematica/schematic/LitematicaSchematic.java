@@ -1,13 +1,18 @@
 package litematica.schematic;
 
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import javax.annotation.Nullable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 import net.minecraft.block.Block;
 import net.minecraft.init.Blocks;
@@ -27,17 +32,24 @@ import malilib.util.game.wrap.NbtWrap;
 import malilib.util.game.wrap.RegistryUtils;
 import malilib.util.nbt.NbtUtils;
 import litematica.Litematica;
+import litematica.config.Configs;
 import litematica.schematic.container.ILitematicaBlockStateContainer;
+import litematica.schematic.container.LitematicaBitArrayOffHeap;
+import litematica.schematic.container.IPackedBlockStateContainer;
 import litematica.schematic.container.LitematicaBlockStateContainerFull;
+import litematica.schematic.container.LitematicaBlockStateContainerSectioned;
 import litematica.selection.SelectionBox;
+import litematica.util.NbtStreamReader;
+import litematica.util.PartialNbtReader;
 import litematica.util.PositionUtils;
 
 public class LitematicaSchematic extends SchematicBase
 {
     public static final String FILE_NAME_EXTENSION = ".litematic";
     public static final int SCHEMATIC_VERSION = 4;
+    private static final ImmutableSet<String> METADATA_READ_KEYS = ImmutableSet.of("Version", "Metadata");
 
-    private final Map<String, LitematicaBlockStateContainerFull> blockContainers = new HashMap<>();
+    private final Map<String, IPackedBlockStateContainer> blockContainers = new HashMap<>();
     private final Map<String, Map<BlockPos, NBTTagCompound>> blockEntities = new HashMap<>();
     // TODO FIXME use a custom class for holding this data
     private final Map<String, Map<BlockPos, NextTickListEntry>> pendingBlockTicks = new HashMap<>();
@@ -153,7 +165,7 @@ public class LitematicaSchematic extends SchematicBase
 
             try
             {
-                this.blockContainers.put(regionName, new LitematicaBlockStateContainerFull(new Vec3i(sizeX, sizeY, sizeZ)));
+                this.blockContainers.put(regionName, createContainer(new Vec3i(sizeX, sizeY, sizeZ), true));
             }
             catch (Exception e)
             {
@@ -184,14 +196,14 @@ public class LitematicaSchematic extends SchematicBase
 
                 this.subRegions.put(regionName, new SubRegion(region.getPosition(), region.getSize()));
 
-                if (containerOther instanceof LitematicaBlockStateContainerFull)
+                if (containerOther instanceof IPackedBlockStateContainer)
                 {
-                    this.blockContainers.put(regionName, (LitematicaBlockStateContainerFull) containerOther.copy());
+                    this.blockContainers.put(regionName, ((IPackedBlockStateContainer) containerOther).copy());
                 }
                 else
                 {
                     Vec3i size = containerOther.getSize();
-                    LitematicaBlockStateContainerFull container = new LitematicaBlockStateContainerFull(size, false);
+                    IPackedBlockStateContainer container = createContainer(size, false);
                     this.copyContainerContents(containerOther, container);
                     this.blockContainers.put(regionName, container);
                 }
@@ -225,8 +237,79 @@ public class LitematicaSchematic extends SchematicBase
         return nbt;
     }
 
+    /**
+     * Writes this schematic using the streaming writer, without building the full tag tree first
+     */
+    @Override
+    public void writeToStream(FileOutputStream outputStream) throws IOException
+    {
+        // Written on the current thread, so the live data can be used without taking a snapshot
+        this.createWriter(false).writeToStream(outputStream);
+    }
+
+    /**
+     * Creates a writer for writing this schematic to a file.
+     * This must be called on the thread that modifies this schematic.
+     * @param snapshot if true, then the writer uses a snapshot of this schematic, so that it
+     *                 can be used on another thread while this schematic keeps being modified.
+     *                 This is cheap, as the block data is shared with the snapshot copy-on-write,
+     *                 and only the maps and lists of the block entities, block ticks and entities get copied.
+     *                 Note however that the first modification of a region after taking a snapshot
+     *                 will copy the block data of that region.
+     *                 If false, then the writer uses the live data of this schematic, and it must be
+     *                 used right away on the current thread.
+     */
+    public LitematicaSchematicWriter createWriter(boolean snapshot)
+    {
+        LitematicaSchematicWriter writer = new LitematicaSchematicWriter(this.getMetadata().toTag());
+
+        if (snapshot == false)
+        {
+            for (String regionName : this.blockContainers.keySet())
+            {
+                writer.addRegion(new LitematicaSchematicWriter.RegionSnapshot(regionName,
+                                                                              this.subRegions.get(regionName),
+                                                                              this.blockContainers.get(regionName),
+                                                                              this.blockEntities.get(regionName),
+                                                                              this.pendingBlockTicks.get(regionName),
+                                                                              this.entities.get(regionName)));
+            }
+
+            return writer;
+        }
+
+        for (String regionName : this.blockContainers.keySet())
+        {
+            IPackedBlockStateContainer blockContainer = this.blockContainers.get(regionName);
+            Map<BlockPos, NBTTagCompound> tileMap = this.blockEntities.get(regionName);
+            List<EntityInfo> entityList = this.entities.get(regionName);
+            Map<BlockPos, NextTickListEntry> pendingTicks = this.pendingBlockTicks.get(regionName);
+
+            writer.addRegion(new LitematicaSchematicWriter.RegionSnapshot(regionName,
+                                                                          this.subRegions.get(regionName),
+                                                                          blockContainer.createSnapshot(),
+                                                                          tileMap != null ? new HashMap<>(tileMap) : null,
+                                                                          pendingTicks != null ? new HashMap<>(pendingTicks) : null,
+                                                                          entityList != null ? new ArrayList<>(entityList) : null));
+        }
+
+        return writer;
+    }
+
     @Override
     public boolean fromTag(NBTTagCompound tag)
+    {
+        return this.fromTag(tag, null);
+    }
+
+    /**
+     * Reads the schematic from the given tag.
+     * @param tag the full schematic tag
+     * @param decodedRegions the already decoded sub-regions from {@link #decodeSubRegionsAsync(NBTTagCompound, Executor)},
+     *                       or null to decode the sub-regions from the tag on the current thread
+     * @return true if the schematic was read successfully
+     */
+    public boolean fromTag(NBTTagCompound tag, @Nullable List<DecodedSubRegion> decodedRegions)
     {
         this.clear();
 
@@ -237,7 +320,13 @@ public class LitematicaSchematic extends SchematicBase
             if (version >= 1 && version <= SCHEMATIC_VERSION)
             {
                 this.readMetadataFromTag(tag);
-                this.readSubRegionsFromTag(tag, version);
+
+                if (decodedRegions == null)
+                {
+                    decodedRegions = this.decodeSubRegions(tag, version);
+                }
+
+                this.applyDecodedSubRegions(decodedRegions);
 
                 return true;
             }
@@ -262,7 +351,7 @@ public class LitematicaSchematic extends SchematicBase
         {
             for (String regionName : this.blockContainers.keySet())
             {
-                LitematicaBlockStateContainerFull blockContainer = this.blockContainers.get(regionName);
+                IPackedBlockStateContainer blockContainer = this.blockContainers.get(regionName);
                 Map<BlockPos, NBTTagCompound> tileMap = this.blockEntities.get(regionName);
                 List<EntityInfo> entityList = this.entities.get(regionName);
                 Map<BlockPos, NextTickListEntry> pendingTicks = this.pendingBlockTicks.get(regionName);
@@ -326,70 +415,171 @@ public class LitematicaSchematic extends SchematicBase
         return tagList;
     }
 
-    private boolean readSubRegionsFromTag(NBTTagCompound tag, int version)
+    /**
+     * Decodes all the sub-regions from the given schematic tag, in parallel using the given executor.
+     * This does not modify this schematic, the returned decoded data is meant to be
+     * passed to {@link #fromTag(NBTTagCompound, List)} once the future completes.
+     * @param tag the full schematic tag
+     * @param executor the executor to decode the sub-regions on
+     * @return a future that completes once all the sub-regions have been decoded
+     */
+    public CompletableFuture<List<DecodedSubRegion>> decodeSubRegionsAsync(NBTTagCompound tag, Executor executor)
     {
-        tag = NbtWrap.getCompound(tag, "Regions");
+        final int version = NbtWrap.getInt(tag, "Version");
+        NBTTagCompound regionsTag = NbtWrap.getCompound(tag, "Regions");
+        List<CompletableFuture<DecodedSubRegion>> futures = new ArrayList<>();
 
-        for (String regionName : NbtWrap.getKeys(tag))
+        for (String regionName : NbtWrap.getKeys(regionsTag))
         {
-            if (NbtWrap.getTypeId(NbtWrap.getTag(tag, regionName)) == Constants.NBT.TAG_COMPOUND)
+            if (NbtWrap.getTypeId(NbtWrap.getTag(regionsTag, regionName)) == Constants.NBT.TAG_COMPOUND)
             {
-                NBTTagCompound regionTag = NbtWrap.getCompound(tag, regionName);
-                BlockPos regionPos = NbtUtils.readBlockPos(NbtWrap.getCompound(regionTag, "Position"));
-                BlockPos regionSize = NbtUtils.readBlockPos(NbtWrap.getCompound(regionTag, "Size"));
+                NBTTagCompound regionTag = NbtWrap.getCompound(regionsTag, regionName);
+                futures.add(CompletableFuture.supplyAsync(() -> this.decodeSubRegion(regionName, regionTag, version), executor));
+            }
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<DecodedSubRegion> list = new ArrayList<>(futures.size());
+            futures.forEach(future -> list.add(future.join()));
+            return list;
+        });
+    }
+
+    private List<DecodedSubRegion> decodeSubRegions(NBTTagCompound tag, int version)
+    {
+        NBTTagCompound regionsTag = NbtWrap.getCompound(tag, "Regions");
+        List<DecodedSubRegion> list = new ArrayList<>();
 
-                if (regionPos != null && regionSize != null)
+        for (String regionName : NbtWrap.getKeys(regionsTag))
+        {
+            if (NbtWrap.getTypeId(NbtWrap.getTag(regionsTag, regionName)) == Constants.NBT.TAG_COMPOUND)
+            {
+                list.add(this.decodeSubRegion(regionName, NbtWrap.getCompound(regionsTag, regionName), version));
+            }
+        }
+
+        return list;
+    }
+
+    /**
+     * Decodes the data of one sub-region. This doesn't modify the schematic
+     * or print any messages, so it's safe to call from worker threads.
+     */
+    private DecodedSubRegion decodeSubRegion(String regionName, NBTTagCompound regionTag, int version)
+    {
+        DecodedSubRegion region = new DecodedSubRegion(regionName);
+        BlockPos regionPos = NbtUtils.readBlockPos(NbtWrap.getCompound(regionTag, "Position"));
+        BlockPos regionSize = NbtUtils.readBlockPos(NbtWrap.getCompound(regionTag, "Size"));
+
+        if (regionPos == null || regionSize == null)
+        {
+            return region;
+        }
+
+        region.subRegion = new SubRegion(regionPos, regionSize);
+
+        NBTTagList beList = NbtWrap.getListOfCompounds(regionTag, "TileEntities");
+        NBTTagList entityList = NbtWrap.getListOfCompounds(regionTag, "Entities");
+
+        if (version >= 2)
+        {
+            region.blockEntities = this.readBlockEntitiesFromListTag(beList);
+            region.entities = this.readEntitiesFromListTag(entityList);
+        }
+        else if (version == 1)
+        {
+            region.blockEntities = this.readTileEntitiesFromNBT_v1(beList);
+            region.entities = this.readEntitiesFromNBT_v1(entityList);
+        }
+
+        if (version >= 3)
+        {
+            region.blockTicks = this.readBlockTicksFromNBT(NbtWrap.getListOfCompounds(regionTag, "PendingBlockTicks"));
+        }
+
+        NBTBase nbtBase = NbtWrap.getTag(regionTag, "BlockStates");
+
+        // There are no convenience methods in NBTTagCompound yet in 1.12, so we'll have to do it the ugly way...
+        if (nbtBase != null && NbtWrap.getTypeId(nbtBase) == Constants.NBT.TAG_LONG_ARRAY)
+        {
+            Vec3i size = new Vec3i(Math.abs(regionSize.getX()), Math.abs(regionSize.getY()), Math.abs(regionSize.getZ()));
+            NBTTagList paletteTag = NbtWrap.getListOfCompounds(regionTag, "BlockStatePalette");
+            int paletteSize = NbtWrap.getListSize(paletteTag);
+            LitematicaBlockStateContainerFull container;
+
+            if (nbtBase instanceof OffHeapBlockStatesTag)
+            {
+                container = LitematicaBlockStateContainerFull.createContainer(paletteSize, ((OffHeapBlockStatesTag) nbtBase).data, size);
+            }
+            else
+            {
+                long[] blockStateArr = ((NBTTagLongArrayMixin) nbtBase).getArray();
+                container = LitematicaBlockStateContainerFull.createContainer(paletteSize, blockStateArr, size);
+            }
+
+            if (container != null)
+            {
+                readPaletteFromLitematicaFormatTag(paletteTag, container.getPalette());
+
+                if (LitematicaBlockStateContainerSectioned.shouldUseForSize(size))
+                {
+                    region.container = LitematicaBlockStateContainerSectioned.createFrom(container);
+                    container.free();
+                }
+                else
                 {
-                    this.subRegions.put(regionName, new SubRegion(regionPos, regionSize));
-
-                    NBTTagList beList = NbtWrap.getListOfCompounds(regionTag, "TileEntities");
-                    NBTTagList entityList = NbtWrap.getListOfCompounds(regionTag, "Entities");
-
-                    if (version >= 2)
-                    {
-                        this.blockEntities.put(regionName, this.readBlockEntitiesFromListTag(beList));
-                        this.entities.put(regionName, this.readEntitiesFromListTag(entityList));
-                    }
-                    else if (version == 1)
-                    {
-                        this.blockEntities.put(regionName, this.readTileEntitiesFromNBT_v1(beList));
-                        this.entities.put(regionName, this.readEntitiesFromNBT_v1(entityList));
-                    }
-
-                    if (version >= 3)
-                    {
-                        this.pendingBlockTicks.put(regionName, this.readBlockTicksFromNBT(NbtWrap.getListOfCompounds(regionTag, "PendingBlockTicks")));
-                    }
-
-                    NBTBase nbtBase = NbtWrap.getTag(regionTag, "BlockStates");
-
-                    // There are no convenience methods in NBTTagCompound yet in 1.12, so we'll have to do it the ugly way...
-                    if (nbtBase != null && NbtWrap.getTypeId(nbtBase) == Constants.NBT.TAG_LONG_ARRAY)
-                    {
-                        Vec3i size = new Vec3i(Math.abs(regionSize.getX()), Math.abs(regionSize.getY()), Math.abs(regionSize.getZ()));
-                        NBTTagList paletteTag = NbtWrap.getListOfCompounds(regionTag, "BlockStatePalette");
-                        long[] blockStateArr = ((NBTTagLongArrayMixin) nbtBase).getArray();
-                        int paletteSize = NbtWrap.getListSize(paletteTag);
-
-                        LitematicaBlockStateContainerFull container = LitematicaBlockStateContainerFull.createContainer(paletteSize, blockStateArr, size);
-
-                        if (container == null)
-                        {
-                            String fileName = this.getFile() != null ? this.getFile().getFileName().toString() : "<null>";
-                            MessageDispatcher.error().translate("litematica.error.schematic_read_from_file_failed.region_container",
-                                                                regionName, fileName);
-                            return false;
-                        }
-
-                        readPaletteFromLitematicaFormatTag(paletteTag, container.getPalette());
-                        this.blockContainers.put(regionName, container);
-                    }
-                    else
-                    {
-                        return false;
-                    }
+                    region.container = container;
                 }
             }
+            else
+            {
+                region.containerFailed = true;
+            }
+        }
+
+        return region;
+    }
+
+    private boolean applyDecodedSubRegions(List<DecodedSubRegion> regions)
+    {
+        for (DecodedSubRegion region : regions)
+        {
+            if (region.subRegion == null)
+            {
+                continue;
+            }
+
+            String regionName = region.regionName;
+            this.subRegions.put(regionName, region.subRegion);
+
+            if (region.blockEntities != null)
+            {
+                this.blockEntities.put(regionName, region.blockEntities);
+            }
+
+            if (region.entities != null)
+            {
+                this.entities.put(regionName, region.entities);
+            }
+
+            if (region.blockTicks != null)
+            {
+                this.pendingBlockTicks.put(regionName, region.blockTicks);
+            }
+
+            if (region.containerFailed)
+            {
+                String fileName = this.getFile() != null ? this.getFile().getFileName().toString() : "<null>";
+                MessageDispatcher.error().translate("litematica.error.schematic_read_from_file_failed.region_container",
+                                                    regionName, fileName);
+                return false;
+            }
+            else if (region.container == null)
+            {
+                return false;
+            }
+
+            this.blockContainers.put(regionName, region.container);
         }
 
         return true;
@@ -470,6 +660,20 @@ public class LitematicaSchematic extends SchematicBase
         return tileMap;
     }
 
+    /**
+     * Creates a new empty block state container for a sub-region of the given size.
+     * The large sub-regions use the sectioned container, see the sectioned storage threshold config.
+     */
+    protected static IPackedBlockStateContainer createContainer(Vec3i size, boolean checkForFreedIds)
+    {
+        if (LitematicaBlockStateContainerSectioned.shouldUseForSize(size))
+        {
+            return new LitematicaBlockStateContainerSectioned(size);
+        }
+
+        return new LitematicaBlockStateContainerFull(size, checkForFreedIds);
+    }
+
     public static Boolean isValidSchematic(NBTTagCompound tag)
     {
         return NbtWrap.containsInt(tag, "Version") &&
@@ -477,6 +681,78 @@ public class LitematicaSchematic extends SchematicBase
                NbtWrap.containsCompound(tag, "Metadata");
     }
 
+    /**
+     * Reads only the metadata from the given schematic file, without reading the sub-region data.
+     * The file is read as a stream, and the reading stops once the metadata tag has been read.
+     * @param file
+     * @return the metadata, or null if the file is not a valid litematic file
+     */
+    @Nullable
+    public static SchematicMetadata readMetadataFromFile(Path file)
+    {
+        NBTTagCompound tag = PartialNbtReader.readTopLevelTags(file, METADATA_READ_KEYS);
+
+        if (tag == null || NbtWrap.containsInt(tag, "Version") == false ||
+            NbtWrap.containsCompound(tag, "Metadata") == false)
+        {
+            return null;
+        }
+
+        final int version = NbtWrap.getInt(tag, "Version");
+
+        if (version < 1 || version > SCHEMATIC_VERSION)
+        {
+            return null;
+        }
+
+        SchematicMetadata metadata = new SchematicMetadata();
+        metadata.fromTag(NbtWrap.getCompound(tag, "Metadata"));
+
+        return metadata;
+    }
+
+    @Override
+    @Nullable
+    public NBTTagCompound readTagFromFile(Path file)
+    {
+        return readNbtFromFile(file);
+    }
+
+    /**
+     * Reads the NBT data from the given file. If the given file is a litematic file
+     * and the off-heap storage is enabled, then the block data arrays that are large enough
+     * to possibly need the off-heap storage are streamed straight into off-heap buffers,
+     * instead of first reading them into heap arrays.
+     * @param file
+     * @return the read NBT data, or null if the file could not be read
+     */
+    @Nullable
+    public static NBTTagCompound readNbtFromFile(Path file)
+    {
+        long threshold = (long) Configs.Generic.OFF_HEAP_STORAGE_THRESHOLD.getIntegerValue() * 1000000L;
+
+        if (threshold <= 0 || file.getFileName().toString().endsWith(FILE_NAME_EXTENSION) == false)
+        {
+            return NbtUtils.readNbtFromFile(file);
+        }
+
+        // A region of the threshold volume needs at least this many longs, with the minimum of 2 bits per block.
+        // The regions below the threshold that get streamed get copied back to the heap when decoding them.
+        final long minLength = threshold / 32L;
+        final boolean mapped = Configs.Generic.OFF_HEAP_STORAGE_MAPPED_FILE.getBooleanValue();
+
+        return NbtStreamReader.readFromFile(file, (name, length, input) ->
+        {
+            if (length >= minLength && name.equals("BlockStates"))
+            {
+                LitematicaBitArrayOffHeap.PackedData data = LitematicaBitArrayOffHeap.readPackedData(input, length, mapped);
+                return data != null ? new OffHeapBlockStatesTag(data) : null;
+            }
+
+            return null;
+        });
+    }
+
     @Nullable
     public static LitematicaSchematic createFromFile(Path dir, String fileName)
     {
@@ -491,6 +767,39 @@ public class LitematicaSchematic extends SchematicBase
         return schematic.readFromFile() ? schematic : null;
     }
 
+    /**
+     * A placeholder tag for the block data that was read straight into off-heap buffers
+     * by {@link #readNbtFromFile(Path)}. This only exists between reading the file and decoding
+     * the sub-regions. As a regular long array tag it is empty.
+     */
+    public static class OffHeapBlockStatesTag extends NBTTagLongArray
+    {
+        public final LitematicaBitArrayOffHeap.PackedData data;
+
+        public OffHeapBlockStatesTag(LitematicaBitArrayOffHeap.PackedData data)
+        {
+            super(new long[0]);
+
+            this.data = data;
+        }
+    }
+
+    public static class DecodedSubRegion
+    {
+        protected final String regionName;
+        @Nullable protected SubRegion subRegion;
+        @Nullable protected IPackedBlockStateContainer container;
+        @Nullable protected Map<BlockPos, NBTTagCompound> blockEntities;
+        @Nullable protected Map<BlockPos, NextTickListEntry> blockTicks;
+        @Nullable protected List<EntityInfo> entities;
+        protected boolean containerFailed;
+
+        protected DecodedSubRegion(String regionName)
+        {
+            this.regionName = regionName;
+        }
+    }
+
     public static class LitematicaSubRegion implements ISchematicRegion
     {
         private final LitematicaSchematic schematic;
@@ -540,7 +849,7 @@ public class LitematicaSchematic extends SchematicBase
 
         // TODO FIXME clean this up by moving these to a MutableSchematicRegion interface and class
 
-        public void setBlockStateContainer(LitematicaBlockStateContainerFull container)
+        public void setBlockStateContainer(IPackedBlockStateContainer container)
         {
             Vec3i containerSize = container.getSize();
             Vec3i regionSize = this.getSize();
@@ -0,0 +1,204 @@
+package litematica.schematic;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTUtil;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.NextTickListEntry;
+
+import malilib.util.data.Constants;
+import malilib.util.game.wrap.NbtWrap;
+import malilib.util.game.wrap.RegistryUtils;
+import malilib.util.nbt.NbtUtils;
+import litematica.schematic.container.ILitematicaBlockStatePalette;
+import litematica.schematic.container.IPackedBlockStateContainer;
+import litematica.util.NbtStreamWriter;
+
+/**
+ * Writes a snapshot of a Litematica schematic to a stream, in the same format as
+ * {@link LitematicaSchematic#toTag()}, but without building the NBT tag tree of the
+ * entire schematic first. The block data is written straight from the containers,
+ * a small chunk of the packed longs at a time.
+ * The writer is created via {@link LitematicaSchematic#createWriter(boolean)} on the thread
+ * that owns the schematic. If it uses a snapshot, then it can be used on any thread.
+ */
+public class LitematicaSchematicWriter
+{
+    /** The number of packed longs copied and written at once */
+    private static final int LONG_BUFFER_SIZE = 8192;
+
+    private final NBTTagCompound metadataTag;
+    private final List<RegionSnapshot> regions = new ArrayList<>();
+
+    protected LitematicaSchematicWriter(NBTTagCompound metadataTag)
+    {
+        this.metadataTag = metadataTag;
+    }
+
+    protected void addRegion(RegionSnapshot region)
+    {
+        this.regions.add(region);
+    }
+
+    public void writeToStream(OutputStream os) throws IOException
+    {
+        try (NbtStreamWriter writer = new NbtStreamWriter(os))
+        {
+            writer.beginRoot();
+            writer.writeInt("Version", LitematicaSchematic.SCHEMATIC_VERSION);
+            writer.writeInt("MinecraftDataVersion", SchematicBase.MINECRAFT_DATA_VERSION);
+            writer.writeTag("Metadata", this.metadataTag);
+
+            writer.beginCompound("Regions");
+
+            for (RegionSnapshot region : this.regions)
+            {
+                this.writeRegion(writer, region);
+            }
+
+            writer.endCompound();
+            writer.endCompound();
+        }
+    }
+
+    protected void writeRegion(NbtStreamWriter writer, RegionSnapshot region) throws IOException
+    {
+        writer.beginCompound(region.name);
+
+        this.writePalette(writer, region.container.getPalette());
+        this.writeBlockStates(writer, region.container);
+
+        if (region.blockEntities != null)
+        {
+            writer.beginList("TileEntities", Constants.NBT.TAG_COMPOUND, region.blockEntities.size());
+
+            for (Map.Entry<BlockPos, NBTTagCompound> entry : region.blockEntities.entrySet())
+            {
+                BlockPos pos = entry.getKey();
+
+                // The stored tags are shared with the schematic, so they must not be modified here
+                writer.writeCompoundEntries(entry.getValue(), "x", "y", "z");
+                writer.writeInt("x", pos.getX());
+                writer.writeInt("y", pos.getY());
+                writer.writeInt("z", pos.getZ());
+                writer.endCompound();
+            }
+        }
+
+        if (region.blockTicks != null)
+        {
+            this.writeBlockTicks(writer, region.blockTicks);
+        }
+
+        // The entity list will not exist, if takeEntities is false when creating the schematic
+        if (region.entities != null)
+        {
+            writer.beginList("Entities", Constants.NBT.TAG_COMPOUND, region.entities.size());
+
+            for (EntityInfo info : region.entities)
+            {
+                writer.writeListCompound(info.nbt);
+            }
+        }
+
+        writer.writeTag("Position", NbtUtils.createBlockPosTag(region.subRegion.pos));
+        writer.writeTag("Size", NbtUtils.createBlockPosTag(region.subRegion.size));
+
+        writer.endCompound();
+    }
+
+    protected void writePalette(NbtStreamWriter writer, ILitematicaBlockStatePalette palette) throws IOException
+    {
+        final int size = palette.getPaletteSize();
+        List<IBlockState> list = palette.getMapping();
+
+        writer.beginList("BlockStatePalette", Constants.NBT.TAG_COMPOUND, size);
+
+        for (int id = 0; id < size; ++id)
+        {
+            NBTTagCompound tag = new NBTTagCompound();
+            NBTUtil.writeBlockState(tag, list.get(id));
+            writer.writeListCompound(tag);
+        }
+    }
+
+    protected void writeBlockStates(NbtStreamWriter writer, IPackedBlockStateContainer container) throws IOException
+    {
+        final long count = container.getBackingLongCount();
+
+        if (count > Integer.MAX_VALUE - 8)
+        {
+            throw new IOException("Block data long array length " + count + " exceeds the maximum array size");
+        }
+
+        long[] buffer = new long[(int) Math.max(1, Math.min(LONG_BUFFER_SIZE, count))];
+
+        writer.beginLongArray("BlockStates", (int) count);
+
+        for (long index = 0; index < count; index += buffer.length)
+        {
+            int length = (int) Math.min(buffer.length, count - index);
+            container.getBackingLongs(index, buffer, length);
+            writer.writeLongs(buffer, length);
+        }
+    }
+
+    protected void writeBlockTicks(NbtStreamWriter writer, Map<BlockPos, NextTickListEntry> tickMap) throws IOException
+    {
+        List<NBTTagCompound> tags = new ArrayList<>();
+
+        for (NextTickListEntry entry : tickMap.values())
+        {
+            String id = RegistryUtils.getBlockIdStr(entry.getBlock());
+
+            if (id != null)
+            {
+                NBTTagCompound tag = new NBTTagCompound();
+
+                NbtWrap.putString(tag, "Block", id);
+                NbtWrap.putInt(tag, "Priority", entry.priority);
+                NbtWrap.putInt(tag, "Time", (int) entry.scheduledTime);
+                NbtUtils.putVec3i(tag, entry.position);
+
+                tags.add(tag);
+            }
+        }
+
+        writer.beginList("PendingBlockTicks", Constants.NBT.TAG_COMPOUND, tags.size());
+
+        for (NBTTagCompound tag : tags)
+        {
+            writer.writeListCompound(tag);
+        }
+    }
+
+    protected static class RegionSnapshot
+    {
+        protected final String name;
+        protected final SubRegion subRegion;
+        protected final IPackedBlockStateContainer container;
+        @Nullable protected final Map<BlockPos, NBTTagCompound> blockEntities;
+        @Nullable protected final Map<BlockPos, NextTickListEntry> blockTicks;
+        @Nullable protected final List<EntityInfo> entities;
+
+        protected RegionSnapshot(String name, SubRegion subRegion, IPackedBlockStateContainer container,
+                                 @Nullable Map<BlockPos, NBTTagCompound> blockEntities,
+                                 @Nullable Map<BlockPos, NextTickListEntry> blockTicks,
+                                 @Nullable List<EntityInfo> entities)
+        {
+            this.name = name;
+            this.subRegion = subRegion;
+            this.container = container;
+            this.blockEntities = blockEntities;
+            this.blockTicks = blockTicks;
+            this.entities = entities;
+        }
+    }
+}
@@ -14,7 +14,6 @@ import net.minecraft.nbt.NBTTagCompound;
 
 import malilib.gui.icon.MultiIcon;
 import malilib.util.FileNameUtils;
-import malilib.util.nbt.NbtUtils;
 import litematica.gui.util.LitematicaIcons;
 
 public class SchematicType<S extends ISchematic>
@@ -23,6 +22,7 @@ public class SchematicType<S extends ISchematic>
             .setDisplayName("Litematica")
             .setFactory(LitematicaSchematic::new)
             .setDataValidator(LitematicaSchematic::isValidSchematic)
+            .setMetadataReader(LitematicaSchematic::readMetadataFromFile)
             .setExtension(LitematicaSchematic.FILE_NAME_EXTENSION)
             .setExtensionValidator(LitematicaSchematic.FILE_NAME_EXTENSION::equals)
             .setIcon(LitematicaIcons.FILE_ICON_LITEMATIC)
@@ -68,10 +68,12 @@ public class SchematicType<S extends ISchematic>
     private final Function<Path, S> factory;
     private final Function<String, Boolean> extensionValidator;
     private final Function<NBTTagCompound, Boolean> dataValidator;
+    @Nullable private final Function<Path, SchematicMetadata> metadataReader;
     private final String displayName;
     private final boolean hasName;
 
     private SchematicType(String displayName, Function<Path, S> factory, Function<NBTTagCompound, Boolean> dataValidator,
+                          @Nullable Function<Path, SchematicMetadata> metadataReader,
                           String extension, Function<String, Boolean> extensionValidator, MultiIcon icon, boolean hasName)
     {
         this.displayName = displayName;
@@ -79,6 +81,7 @@ public class SchematicType<S extends ISchematic>
         this.factory = factory;
         this.extensionValidator = extensionValidator;
         this.dataValidator = dataValidator;
+        this.metadataReader = metadataReader;
         this.icon = icon;
         this.hasName = hasName;
     }
@@ -124,6 +127,28 @@ public class SchematicType<S extends ISchematic>
         return this.factory.apply(file);
     }
 
+    /**
+     * @return true if this schematic type can read just the metadata from a file,
+     * without reading and creating the full schematic
+     */
+    public boolean hasMetadataReader()
+    {
+        return this.metadataReader != null;
+    }
+
+    /**
+     * Tries to read only the metadata from the given file, without reading
+     * the block data or other region data of the schematic.
+     * @param file
+     * @return the metadata, or null if this type does not support reading just the metadata,
+     *         or if the file could not be read
+     */
+    @Nullable
+    public SchematicMetadata readMetadataFromFile(Path file)
+    {
+        return this.metadataReader != null ? this.metadataReader.apply(file) : null;
+    }
+
     @Nullable
     public S createSchematicAndReadFromTag(@Nullable Path file, NBTTagCompound tag)
     {
@@ -184,7 +209,7 @@ public class SchematicType<S extends ISchematic>
 
         if (possibleTypes.isEmpty() == false)
         {
-            NBTTagCompound tag = NbtUtils.readNbtFromFile(file);
+            NBTTagCompound tag = LitematicaSchematic.readNbtFromFile(file);
 
             if (tag != null)
             {
@@ -200,6 +225,36 @@ public class SchematicType<S extends ISchematic>
         return null;
     }
 
+    /**
+     * Tries to read the metadata of the given schematic file. For schematic types that support it,
+     * only the metadata is read from the file, and the rest of the file is skipped.
+     * For other types the full schematic is read, and its metadata is returned.
+     * @param file
+     * @return the metadata of the schematic, or null if the file could not be read as a schematic
+     */
+    @Nullable
+    public static SchematicMetadata tryReadMetadataFrom(Path file)
+    {
+        List<SchematicType<?>> possibleTypes = getPossibleTypesFromFileName(file);
+
+        for (SchematicType<?> type : possibleTypes)
+        {
+            if (type.hasMetadataReader())
+            {
+                SchematicMetadata metadata = type.readMetadataFromFile(file);
+
+                if (metadata != null)
+                {
+                    return metadata;
+                }
+            }
+        }
+
+        ISchematic schematic = tryCreateSchematicFrom(file);
+
+        return schematic != null ? schematic.getMetadata() : null;
+    }
+
     @Nullable
     public static ISchematic tryCreateSchematicFrom(Path file, NBTTagCompound tag)
     {
@@ -219,6 +274,7 @@ public class SchematicType<S extends ISchematic>
         private Function<Path, S> factory = null;
         private Function<String, Boolean> extensionValidator = null;
         private Function<NBTTagCompound, Boolean> dataValidator = null;
+        private Function<Path, SchematicMetadata> metadataReader = null;
         private String displayName = "?";
         private boolean hasName = false;
 
@@ -228,6 +284,12 @@ public class SchematicType<S extends ISchematic>
             return this;
         }
 
+        public Builder<S> setMetadataReader(Function<Path, SchematicMetadata> metadataReader)
+        {
+            this.metadataReader = metadataReader;
+            return this;
+        }
+
         public Builder<S> setDisplayName(String displayName)
         {
             this.displayName = displayName;
@@ -266,7 +328,7 @@ public class SchematicType<S extends ISchematic>
 
         public SchematicType<S> build()
         {
-            return new SchematicType<>(this.displayName, this.factory, this.dataValidator, this.extension, this.extensionValidator, this.icon, this.hasName);
+            return new SchematicType<>(this.displayName, this.factory, this.dataValidator, this.metadataReader, this.extension, this.extensionValidator, this.icon, this.hasName);
         }
     }
 }
@@ -20,4 +20,14 @@ public interface ILitematicaBlockStateContainer
     void setBlockState(int x, int y, int z, IBlockState state);
 
     ILitematicaBlockStateContainer copy();
+
+    /**
+     * Creates a read-only snapshot of this container, which can be read on another thread
+     * while this container keeps getting modified on the main thread.
+     * By default this is a full copy.
+     */
+    default ILitematicaBlockStateContainer createSnapshot()
+    {
+        return this.copy();
+    }
 }
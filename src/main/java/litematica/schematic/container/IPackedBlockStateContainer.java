@@ -0,0 +1,31 @@
+package litematica.schematic.container;
+
+/**
+ * A block state container whose block data can be read as one packed array of container palette IDs,
+ * in the y, z, x order, with the entry width based on the container palette size.
+ * This is the block data format of the Litematica schematics.
+ */
+public interface IPackedBlockStateContainer extends ILitematicaBlockStateContainer
+{
+    /**
+     * @return the number of longs in the packed block data
+     */
+    long getBackingLongCount();
+
+    /**
+     * Copies <b>length</b> consecutive longs of the packed block data starting from <b>startIndex</b>
+     * to the start of the given buffer
+     */
+    void getBackingLongs(long startIndex, long[] buffer, int length);
+
+    /**
+     * @return the packed block data as a long array. The returned array must not be modified.
+     */
+    long[] getBackingLongArray();
+
+    @Override
+    IPackedBlockStateContainer copy();
+
+    @Override
+    IPackedBlockStateContainer createSnapshot();
+}
@@ -1,5 +1,6 @@
 package litematica.schematic.container;
 
+import java.util.Arrays;
 import javax.annotation.Nullable;
 import org.apache.commons.lang3.Validate;
 
@@ -7,17 +8,20 @@ import malilib.util.MathUtils;
 
 public class LitematicaBitArray
 {
+    /** The number of entries handled at once by the bulk operations */
+    public static final int BULK_BUFFER_SIZE = 4096;
+
     /** The long array that is used to store the data for this BitArray. */
     private final long[] longArray;
     /** Number of bits a single entry takes up */
-    private final int bitsPerEntry;
+    protected final int bitsPerEntry;
     /**
      * The maximum value for a single entry. This also works as a bitmask for a single entry.
      * For instance, if bitsPerEntry were 5, this value would be 31 (ie, {@code 0b00011111}).
      */
-    private final long maxEntryValue;
+    protected final long maxEntryValue;
     /** Number of entries in this array (<b>not</b> the length of the long array that internally backs this array) */
-    private final long arraySize;
+    protected final long arraySize;
 
     public LitematicaBitArray(int bitsPerEntryIn, long arraySizeIn)
     {
@@ -37,14 +41,32 @@ public class LitematicaBitArray
         }
         else
         {
-            this.longArray = new long[(int) (MathUtils.roundUp((long) arraySizeIn * (long) bitsPerEntryIn, 64L) / 64L)];
+            this.longArray = new long[(int) getRequiredLongCount(bitsPerEntryIn, arraySizeIn)];
         }
     }
 
+    /**
+     * Constructor for sub-classes that use some other backing storage instead of a long array
+     */
+    protected LitematicaBitArray(int bitsPerEntryIn, long arraySizeIn, boolean allocateArray)
+    {
+        this(bitsPerEntryIn, arraySizeIn, allocateArray ? null : new long[0]);
+    }
+
     public void setAt(long index, int value)
     {
         Validate.inclusiveBetween(0L, this.arraySize - 1L, (long) index);
         Validate.inclusiveBetween(0L, this.maxEntryValue, (long) value);
+        this.setAtUnchecked(index, value);
+    }
+
+    /**
+     * Sets the value at the given index, without any range checks for the index or the value.
+     * This is meant for trusted callers that have already made sure that the index
+     * is within the array and that the value fits in the entry width.
+     */
+    public void setAtUnchecked(long index, int value)
+    {
         long startOffset = index * (long) this.bitsPerEntry;
         int startArrIndex = (int) (startOffset >> 6); // startOffset / 64
         int endArrIndex = (int) (((index + 1L) * (long) this.bitsPerEntry - 1L) >> 6);
@@ -62,6 +84,15 @@ public class LitematicaBitArray
     public int getAt(long index)
     {
         Validate.inclusiveBetween(0L, this.arraySize - 1L, (long) index);
+        return this.getAtUnchecked(index);
+    }
+
+    /**
+     * Gets the value at the given index, without a range check for the index.
+     * This is meant for trusted callers that have already made sure that the index is within the array.
+     */
+    public int getAtUnchecked(long index)
+    {
         long startOffset = index * (long) this.bitsPerEntry;
         int startArrIndex = (int) (startOffset >> 6); // startOffset / 64
         int endArrIndex = (int) (((index + 1L) * (long) this.bitsPerEntry - 1L) >> 6);
@@ -78,26 +109,251 @@ public class LitematicaBitArray
         }
     }
 
+    /**
+     * Decodes <b>length</b> consecutive entries starting from <b>startIndex</b> into the given buffer.
+     * This works one backing long at a time, instead of doing the full index math for every entry.
+     * @param startIndex the index of the first entry to read
+     * @param buffer the buffer to write the values to
+     * @param bufferOffset the position in the buffer to write the first value to
+     * @param length the number of entries to read
+     */
+    public void getRange(long startIndex, int[] buffer, int bufferOffset, int length)
+    {
+        Validate.isTrue(startIndex >= 0 && startIndex + length <= this.arraySize, "Invalid range");
+        Validate.isTrue(bufferOffset >= 0 && bufferOffset + length <= buffer.length, "Buffer too small");
+
+        if (length <= 0)
+        {
+            return;
+        }
+
+        final long[] arr = this.longArray;
+        final int bits = this.bitsPerEntry;
+        final long mask = this.maxEntryValue;
+        final int end = bufferOffset + length;
+        long bitPos = startIndex * (long) bits;
+        int wordIndex = (int) (bitPos >> 6);
+        int bitOffset = (int) (bitPos & 0x3F);
+        long word = arr[wordIndex];
+
+        for (int i = bufferOffset; i < end; ++i)
+        {
+            int nextOffset = bitOffset + bits;
+
+            if (nextOffset < 64)
+            {
+                buffer[i] = (int) (word >>> bitOffset & mask);
+                bitOffset = nextOffset;
+            }
+            // The entry ends exactly at the end of the current long
+            else if (nextOffset == 64)
+            {
+                buffer[i] = (int) (word >>> bitOffset & mask);
+                bitOffset = 0;
+
+                if (++wordIndex < arr.length)
+                {
+                    word = arr[wordIndex];
+                }
+            }
+            // The entry is split between two longs
+            else
+            {
+                long next = arr[++wordIndex];
+                buffer[i] = (int) ((word >>> bitOffset | next << (64 - bitOffset)) & mask);
+                word = next;
+                bitOffset = nextOffset - 64;
+            }
+        }
+    }
+
+    /**
+     * Writes <b>length</b> values from the given buffer to consecutive entries starting from <b>startIndex</b>.
+     * The values are not range checked, any extra high bits in them are just discarded.
+     * @param startIndex the index of the first entry to write
+     * @param buffer the buffer to read the values from
+     * @param bufferOffset the position in the buffer of the first value
+     * @param length the number of entries to write
+     */
+    public void setRange(long startIndex, int[] buffer, int bufferOffset, int length)
+    {
+        Validate.isTrue(startIndex >= 0 && startIndex + length <= this.arraySize, "Invalid range");
+        Validate.isTrue(bufferOffset >= 0 && bufferOffset + length <= buffer.length, "Buffer too small");
+
+        if (length <= 0)
+        {
+            return;
+        }
+
+        final long[] arr = this.longArray;
+        final int bits = this.bitsPerEntry;
+        final long mask = this.maxEntryValue;
+        final int end = bufferOffset + length;
+        long bitPos = startIndex * (long) bits;
+        int wordIndex = (int) (bitPos >> 6);
+        int bitOffset = (int) (bitPos & 0x3F);
+        long word = arr[wordIndex];
+
+        for (int i = bufferOffset; i < end; ++i)
+        {
+            long value = (long) buffer[i] & mask;
+            int nextOffset = bitOffset + bits;
+            word = word & ~(mask << bitOffset) | value << bitOffset;
+
+            if (nextOffset < 64)
+            {
+                bitOffset = nextOffset;
+            }
+            else
+            {
+                arr[wordIndex] = word;
+                bitOffset = nextOffset - 64;
+
+                if (++wordIndex < arr.length)
+                {
+                    word = arr[wordIndex];
+
+                    // The entry is split between two longs, write the high bits to the next long
+                    if (bitOffset > 0)
+                    {
+                        word = word >>> bitOffset << bitOffset | value >>> (bits - bitOffset);
+                    }
+                }
+            }
+        }
+
+        if (wordIndex < arr.length)
+        {
+            arr[wordIndex] = word;
+        }
+    }
+
+    /**
+     * Sets all the entries in the range <b>startIndex</b> (inclusive) to <b>endIndex</b> (exclusive) to the given value
+     */
+    public void fill(long startIndex, long endIndex, int value)
+    {
+        Validate.isTrue(startIndex >= 0 && startIndex <= endIndex && endIndex <= this.arraySize, "Invalid range");
+        Validate.inclusiveBetween(0L, this.maxEntryValue, (long) value);
+
+        int[] buffer = new int[(int) Math.min(BULK_BUFFER_SIZE, endIndex - startIndex)];
+        Arrays.fill(buffer, value);
+
+        for (long index = startIndex; index < endIndex; index += buffer.length)
+        {
+            this.setRange(index, buffer, 0, (int) Math.min(buffer.length, endIndex - index));
+        }
+    }
+
+    /**
+     * Creates a copy of this array, re-packed to the given entry width.
+     * The new entry width must be large enough to hold all the values in this array.
+     * @param newBitsPerEntry
+     * @return the new re-packed array
+     */
+    public LitematicaBitArray copyWithBitsPerEntry(int newBitsPerEntry)
+    {
+        if (newBitsPerEntry == this.bitsPerEntry)
+        {
+            return new LitematicaBitArray(newBitsPerEntry, this.arraySize, this.longArray.clone());
+        }
+
+        return this.copyTo(new LitematicaBitArray(newBitsPerEntry, this.arraySize));
+    }
+
+    /**
+     * Copies all the entries of this array to the given array, which must
+     * have the same size, and whose entry width must be large enough to hold all the values.
+     * @return the array that was passed in
+     */
+    protected LitematicaBitArray copyTo(LitematicaBitArray newArray)
+    {
+        int[] buffer = new int[(int) Math.min(BULK_BUFFER_SIZE, this.arraySize)];
+        final long size = this.arraySize;
+
+        for (long index = 0; index < size; index += buffer.length)
+        {
+            int length = (int) Math.min(buffer.length, size - index);
+            this.getRange(index, buffer, 0, length);
+            newArray.setRange(index, buffer, 0, length);
+        }
+
+        return newArray;
+    }
+
     public long[] getValueCounts()
     {
         long[] counts = new long[(int) this.maxEntryValue + 1];
+        int[] buffer = new int[(int) Math.min(BULK_BUFFER_SIZE, this.arraySize)];
         final long size = this.arraySize;
 
-        for (long i = 0; i < size; ++i)
+        for (long index = 0; index < size; index += buffer.length)
         {
-            ++counts[this.getAt(i)];
+            int length = (int) Math.min(buffer.length, size - index);
+            this.getRange(index, buffer, 0, length);
+
+            for (int i = 0; i < length; ++i)
+            {
+                ++counts[buffer[i]];
+            }
         }
 
         return counts;
     }
 
+    /**
+     * @return the number of longs in the backing storage
+     */
+    public long getBackingLongCount()
+    {
+        return this.longArray.length;
+    }
+
+    /**
+     * Copies <b>length</b> consecutive backing longs starting from <b>startIndex</b> to the start of the given buffer.
+     * This allows going through the packed data without copying the entire backing array at once.
+     */
+    public void getBackingLongs(long startIndex, long[] buffer, int length)
+    {
+        System.arraycopy(this.longArray, (int) startIndex, buffer, 0, length);
+    }
+
+    /**
+     * <b>Note:</b> For the heap storage this returns the live backing array, without copying it,
+     * so the caller must not modify the returned array. The off-heap storage
+     * (see {@link LitematicaBitArrayOffHeap#getBackingLongArray()}) returns a new copy instead,
+     * as its data does not live in a heap array.
+     * @return the packed data as a long array
+     */
     public long[] getBackingLongArray()
     {
         return this.longArray;
     }
 
+    /**
+     * Releases the backing storage right away, for the storage types that hold on to
+     * memory or files outside of the heap. The array must not be used after this.
+     * The heap storage is left to the GC, so this does nothing here.
+     */
+    public void free()
+    {
+    }
+
     public long size()
     {
         return this.arraySize;
     }
+
+    public int getBitsPerEntry()
+    {
+        return this.bitsPerEntry;
+    }
+
+    /**
+     * @return the number of longs needed to store <b>arraySize</b> entries of <b>bitsPerEntry</b> bits each
+     */
+    public static long getRequiredLongCount(int bitsPerEntry, long arraySize)
+    {
+        return MathUtils.roundUp(arraySize * (long) bitsPerEntry, 64L) / 64L;
+    }
 }
@@ -0,0 +1,529 @@
+package litematica.schematic.container;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+
+import net.minecraft.client.Minecraft;
+
+import malilib.overlay.message.MessageDispatcher;
+import litematica.Litematica;
+
+/**
+ * A bit array that keeps its packed data outside of the Java heap, either in direct buffers
+ * or in a memory mapped temporary file. This is meant for giant regions, where a single
+ * heap long array would cause long GC pauses, or would not fit in the heap at all.
+ * The data is split into multiple buffers, as a single buffer is limited to 2 GB.
+ * The buffers are released via {@link #free()} as soon as the array is replaced,
+ * instead of waiting for the GC to notice the small buffer objects.
+ */
+public class LitematicaBitArrayOffHeap extends LitematicaBitArray
+{
+    /** 2^24 longs, ie. 128 MiB per buffer */
+    private static final int LONGS_PER_BUFFER_SHIFT = 24;
+    private static final int LONGS_PER_BUFFER = 1 << LONGS_PER_BUFFER_SHIFT;
+    private static final int LONG_INDEX_MASK = LONGS_PER_BUFFER - 1;
+
+    /** Set while an allocation failure message is waiting to be shown, to not spam one message per array */
+    private static volatile boolean failureMessagePending;
+    /** Set if releasing the buffers explicitly is not supported by the JVM, they are then left to the GC */
+    private static boolean freeUnsupported;
+
+    private final ByteBuffer[] byteBuffers;
+    private final LongBuffer[] buffers;
+    private final long longCount;
+    private final boolean memoryMapped;
+
+    protected LitematicaBitArrayOffHeap(int bitsPerEntryIn, long arraySizeIn, boolean memoryMapped) throws Exception
+    {
+        this(bitsPerEntryIn, arraySizeIn, new PackedData(getRequiredLongCount(bitsPerEntryIn, arraySizeIn), memoryMapped));
+    }
+
+    protected LitematicaBitArrayOffHeap(int bitsPerEntryIn, long arraySizeIn, PackedData data)
+    {
+        super(bitsPerEntryIn, arraySizeIn, false);
+
+        this.longCount = data.longCount;
+        this.memoryMapped = data.memoryMapped;
+        this.byteBuffers = data.byteBuffers;
+        this.buffers = data.buffers;
+    }
+
+    private static ByteBuffer[] allocateBuffers(long longCount, boolean memoryMapped) throws Exception
+    {
+        ByteBuffer[] buffers = new ByteBuffer[(int) ((longCount + LONGS_PER_BUFFER - 1) >> LONGS_PER_BUFFER_SHIFT)];
+
+        if (memoryMapped)
+        {
+            mapBuffers(buffers, longCount);
+        }
+        else
+        {
+            for (int i = 0; i < buffers.length; ++i)
+            {
+                buffers[i] = ByteBuffer.allocateDirect(getBufferLength(i, longCount) * 8).order(ByteOrder.nativeOrder());
+            }
+        }
+
+        return buffers;
+    }
+
+    private static void mapBuffers(ByteBuffer[] buffers, long longCount) throws Exception
+    {
+        Path file = Files.createTempFile("litematica_block_data_", ".bin");
+
+        // The mappings stay valid after the channel is closed, and the file
+        // gets deleted once the channel and the mappings are gone.
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.DELETE_ON_CLOSE))
+        {
+            for (int i = 0; i < buffers.length; ++i)
+            {
+                long position = (long) i * LONGS_PER_BUFFER * 8L;
+                ByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) getBufferLength(i, longCount) * 8L);
+                buffers[i] = buf.order(ByteOrder.nativeOrder());
+            }
+        }
+    }
+
+    private static int getBufferLength(int bufferIndex, long longCount)
+    {
+        return (int) Math.min(LONGS_PER_BUFFER, longCount - ((long) bufferIndex << LONGS_PER_BUFFER_SHIFT));
+    }
+
+    protected long getLong(long longIndex)
+    {
+        return this.buffers[(int) (longIndex >>> LONGS_PER_BUFFER_SHIFT)].get((int) (longIndex & LONG_INDEX_MASK));
+    }
+
+    protected void setLong(long longIndex, long value)
+    {
+        this.buffers[(int) (longIndex >>> LONGS_PER_BUFFER_SHIFT)].put((int) (longIndex & LONG_INDEX_MASK), value);
+    }
+
+    @Override
+    public void setAtUnchecked(long index, int value)
+    {
+        long startOffset = index * (long) this.bitsPerEntry;
+        long startArrIndex = startOffset >> 6; // startOffset / 64
+        long endArrIndex = ((index + 1L) * (long) this.bitsPerEntry - 1L) >> 6;
+        int startBitOffset = (int) (startOffset & 0x3F); // startOffset % 64
+        this.setLong(startArrIndex, this.getLong(startArrIndex) & ~(this.maxEntryValue << startBitOffset) | ((long) value & this.maxEntryValue) << startBitOffset);
+
+        if (startArrIndex != endArrIndex)
+        {
+            int endOffset = 64 - startBitOffset;
+            int j1 = this.bitsPerEntry - endOffset;
+            this.setLong(endArrIndex, this.getLong(endArrIndex) >>> j1 << j1 | ((long) value & this.maxEntryValue) >> endOffset);
+        }
+    }
+
+    @Override
+    public int getAtUnchecked(long index)
+    {
+        long startOffset = index * (long) this.bitsPerEntry;
+        long startArrIndex = startOffset >> 6; // startOffset / 64
+        long endArrIndex = ((index + 1L) * (long) this.bitsPerEntry - 1L) >> 6;
+        int startBitOffset = (int) (startOffset & 0x3F); // startOffset % 64
+
+        if (startArrIndex == endArrIndex)
+        {
+            return (int) (this.getLong(startArrIndex) >>> startBitOffset & this.maxEntryValue);
+        }
+        else
+        {
+            int endOffset = 64 - startBitOffset;
+            return (int) ((this.getLong(startArrIndex) >>> startBitOffset | this.getLong(endArrIndex) << endOffset) & this.maxEntryValue);
+        }
+    }
+
+    @Override
+    public void getRange(long startIndex, int[] buffer, int bufferOffset, int length)
+    {
+        Validate.isTrue(startIndex >= 0 && startIndex + length <= this.arraySize, "Invalid range");
+        Validate.isTrue(bufferOffset >= 0 && bufferOffset + length <= buffer.length, "Buffer too small");
+
+        if (length <= 0)
+        {
+            return;
+        }
+
+        final int bits = this.bitsPerEntry;
+        final long mask = this.maxEntryValue;
+        final int end = bufferOffset + length;
+        long bitPos = startIndex * (long) bits;
+        long longIndex = bitPos >> 6;
+        int bitOffset = (int) (bitPos & 0x3F);
+        long word = this.getLong(longIndex);
+
+        for (int i = bufferOffset; i < end; ++i)
+        {
+            int nextOffset = bitOffset + bits;
+
+            if (nextOffset < 64)
+            {
+                buffer[i] = (int) (word >>> bitOffset & mask);
+                bitOffset = nextOffset;
+            }
+            else if (nextOffset == 64)
+            {
+                buffer[i] = (int) (word >>> bitOffset & mask);
+                bitOffset = 0;
+
+                if (++longIndex < this.longCount)
+                {
+                    word = this.getLong(longIndex);
+                }
+            }
+            else
+            {
+                long next = this.getLong(++longIndex);
+                buffer[i] = (int) ((word >>> bitOffset | next << (64 - bitOffset)) & mask);
+                word = next;
+                bitOffset = nextOffset - 64;
+            }
+        }
+    }
+
+    @Override
+    public void setRange(long startIndex, int[] buffer, int bufferOffset, int length)
+    {
+        Validate.isTrue(startIndex >= 0 && startIndex + length <= this.arraySize, "Invalid range");
+        Validate.isTrue(bufferOffset >= 0 && bufferOffset + length <= buffer.length, "Buffer too small");
+
+        if (length <= 0)
+        {
+            return;
+        }
+
+        final int bits = this.bitsPerEntry;
+        final long mask = this.maxEntryValue;
+        final int end = bufferOffset + length;
+        long bitPos = startIndex * (long) bits;
+        long longIndex = bitPos >> 6;
+        int bitOffset = (int) (bitPos & 0x3F);
+        long word = this.getLong(longIndex);
+
+        for (int i = bufferOffset; i < end; ++i)
+        {
+            long value = (long) buffer[i] & mask;
+            int nextOffset = bitOffset + bits;
+            word = word & ~(mask << bitOffset) | value << bitOffset;
+
+            if (nextOffset < 64)
+            {
+                bitOffset = nextOffset;
+            }
+            else
+            {
+                this.setLong(longIndex, word);
+                bitOffset = nextOffset - 64;
+
+                if (++longIndex < this.longCount)
+                {
+                    word = this.getLong(longIndex);
+
+                    if (bitOffset > 0)
+                    {
+                        word = word >>> bitOffset << bitOffset | value >>> (bits - bitOffset);
+                    }
+                }
+            }
+        }
+
+        if (longIndex < this.longCount)
+        {
+            this.setLong(longIndex, word);
+        }
+    }
+
+    @Override
+    public LitematicaBitArray copyWithBitsPerEntry(int newBitsPerEntry)
+    {
+        LitematicaBitArray newArray = create(newBitsPerEntry, this.arraySize, this.memoryMapped);
+
+        // Fall back to a heap array, if creating a new off-heap array failed
+        if (newArray == null)
+        {
+            newArray = new LitematicaBitArray(newBitsPerEntry, this.arraySize);
+        }
+
+        return this.copyTo(newArray);
+    }
+
+    /**
+     * Copies the given packed data into this array.
+     * The data must use the same entry width as this array.
+     */
+    public void setBackingLongs(long[] longs)
+    {
+        final int length = (int) Math.min(longs.length, this.longCount);
+
+        for (int i = 0, bufIndex = 0; i < length; i += LONGS_PER_BUFFER, ++bufIndex)
+        {
+            LongBuffer buf = this.buffers[bufIndex].duplicate();
+            buf.position(0);
+            buf.put(longs, i, Math.min(LONGS_PER_BUFFER, length - i));
+        }
+    }
+
+    /**
+     * Copies the off-heap data into a new heap long array.
+     * Note that unlike with the heap storage, modifying the returned array doesn't affect this array.
+     * This is only possible if the data fits into a single long array.
+     */
+    @Override
+    public long[] getBackingLongArray()
+    {
+        if (this.longCount > Integer.MAX_VALUE - 8)
+        {
+            throw new IndexOutOfBoundsException("Block data long array length " + this.longCount + " exceeds the maximum array size");
+        }
+
+        final int length = (int) this.longCount;
+        long[] arr = new long[length];
+
+        for (int i = 0, bufIndex = 0; i < length; i += LONGS_PER_BUFFER, ++bufIndex)
+        {
+            LongBuffer buf = this.buffers[bufIndex].duplicate();
+            buf.position(0);
+            buf.get(arr, i, Math.min(LONGS_PER_BUFFER, length - i));
+        }
+
+        return arr;
+    }
+
+    @Override
+    public long getBackingLongCount()
+    {
+        return this.longCount;
+    }
+
+    @Override
+    public void getBackingLongs(long startIndex, long[] buffer, int length)
+    {
+        int copied = 0;
+
+        while (copied < length)
+        {
+            long longIndex = startIndex + copied;
+            int position = (int) (longIndex & LONG_INDEX_MASK);
+            LongBuffer buf = this.buffers[(int) (longIndex >>> LONGS_PER_BUFFER_SHIFT)].duplicate();
+            int count = Math.min(length - copied, buf.limit() - position);
+
+            buf.position(position);
+            buf.get(buffer, copied, count);
+            copied += count;
+        }
+    }
+
+    public boolean isMemoryMapped()
+    {
+        return this.memoryMapped;
+    }
+
+    /**
+     * Releases the direct buffers, or unmaps the memory mapped file, right away.
+     * The array must not be used after this, and it must not be shared with any other container.
+     */
+    @Override
+    public void free()
+    {
+        for (int i = 0; i < this.buffers.length; ++i)
+        {
+            ByteBuffer buf = this.byteBuffers[i];
+
+            // Clear the references first, so that any later use fails with an exception instead of touching freed memory
+            this.buffers[i] = null;
+            this.byteBuffers[i] = null;
+
+            if (buf != null)
+            {
+                freeBuffer(buf);
+            }
+        }
+    }
+
+    private static void freeBuffer(ByteBuffer buf)
+    {
+        if (freeUnsupported)
+        {
+            return;
+        }
+
+        // The direct and mapped buffers have a cleaner that frees the memory or unmaps the file.
+        // It's not part of the public API, so it needs to be accessed reflectively.
+        try
+        {
+            Method cleanerMethod = buf.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buf);
+
+            if (cleaner != null)
+            {
+                Method cleanMethod = cleaner.getClass().getMethod("clean");
+                cleanMethod.setAccessible(true);
+                cleanMethod.invoke(cleaner);
+            }
+        }
+        catch (Exception e)
+        {
+            Litematica.logger.warn("Failed to free the off-heap block storage, leaving it for the GC", e);
+            freeUnsupported = true;
+        }
+    }
+
+    /**
+     * Creates a new off-heap bit array.
+     * @param memoryMapped true to use a memory mapped temporary file, false to use direct buffers
+     * @return the created array, or null if the off-heap storage could not be allocated
+     */
+    @Nullable
+    public static LitematicaBitArrayOffHeap create(int bitsPerEntry, long arraySize, boolean memoryMapped)
+    {
+        try
+        {
+            return new LitematicaBitArrayOffHeap(bitsPerEntry, arraySize, memoryMapped);
+        }
+        catch (Throwable e)
+        {
+            onAllocationFailed(arraySize, memoryMapped, e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Creates a new off-heap bit array, which uses the given already read packed data as-is
+     * @return the created array, or null if the packed data length doesn't match the given size and entry width
+     */
+    @Nullable
+    public static LitematicaBitArrayOffHeap create(int bitsPerEntry, long arraySize, PackedData data)
+    {
+        if (data.longCount != getRequiredLongCount(bitsPerEntry, arraySize))
+        {
+            Litematica.logger.warn("Invalid off-heap block data length {} for {} entries of {} bits", data.longCount, arraySize, bitsPerEntry);
+            return null;
+        }
+
+        return new LitematicaBitArrayOffHeap(bitsPerEntry, arraySize, data);
+    }
+
+    /**
+     * Reads <b>length</b> big-endian longs (as used in NBT long arrays) from the given stream
+     * straight into new off-heap buffers, without creating a heap array for the whole data.
+     * @return the read data, or null if the off-heap buffers could not be allocated,
+     *         in which case nothing has been read from the stream
+     */
+    @Nullable
+    public static PackedData readPackedData(DataInputStream input, int length, boolean memoryMapped) throws IOException
+    {
+        PackedData data;
+
+        try
+        {
+            data = new PackedData(length, memoryMapped);
+        }
+        catch (Throwable e)
+        {
+            onAllocationFailed(length, memoryMapped, e);
+            return null;
+        }
+
+        byte[] bytes = new byte[BULK_BUFFER_SIZE * 8];
+        LongBuffer source = ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN).asLongBuffer();
+        long longIndex = 0;
+
+        while (longIndex < length)
+        {
+            int count = (int) Math.min(BULK_BUFFER_SIZE, length - longIndex);
+            int position = (int) (longIndex & LONG_INDEX_MASK);
+            LongBuffer target = data.buffers[(int) (longIndex >>> LONGS_PER_BUFFER_SHIFT)].duplicate();
+
+            // Don't cross the buffer boundary within one batch
+            count = Math.min(count, target.limit() - position);
+            input.readFully(bytes, 0, count * 8);
+
+            source.clear().limit(count);
+            target.position(position);
+            target.put(source);
+            longIndex += count;
+        }
+
+        return data;
+    }
+
+    private static void onAllocationFailed(long size, boolean memoryMapped, Throwable e)
+    {
+        Litematica.logger.warn("Failed to allocate off-heap block storage for {} entries", size, e);
+
+        // This can be called from the worker threads, so show the message on the main thread
+        if (failureMessagePending == false)
+        {
+            failureMessagePending = true;
+            String key = memoryMapped ? "litematica.message.warn.off_heap_storage_failed.mapped" :
+                                        "litematica.message.warn.off_heap_storage_failed.direct";
+
+            Minecraft.getMinecraft().addScheduledTask(() ->
+            {
+                failureMessagePending = false;
+                MessageDispatcher.warning(10000).translate(key, String.valueOf(e.getMessage()));
+            });
+        }
+    }
+
+    /**
+     * Packed off-heap data that is not yet bound to any entry width
+     */
+    public static class PackedData
+    {
+        protected final ByteBuffer[] byteBuffers;
+        protected final LongBuffer[] buffers;
+        protected final long longCount;
+        protected final boolean memoryMapped;
+
+        protected PackedData(long longCount, boolean memoryMapped) throws Exception
+        {
+            this.byteBuffers = allocateBuffers(longCount, memoryMapped);
+            this.buffers = new LongBuffer[this.byteBuffers.length];
+            this.longCount = longCount;
+            this.memoryMapped = memoryMapped;
+
+            for (int i = 0; i < this.byteBuffers.length; ++i)
+            {
+                this.buffers[i] = this.byteBuffers[i].asLongBuffer();
+            }
+        }
+
+        public long getLongCount()
+        {
+            return this.longCount;
+        }
+
+        /**
+         * Copies the data into a new heap long array
+         */
+        public long[] toLongArray()
+        {
+            long[] arr = new long[(int) this.longCount];
+
+            for (int i = 0, bufIndex = 0; i < arr.length; i += LONGS_PER_BUFFER, ++bufIndex)
+            {
+                LongBuffer buf = this.buffers[bufIndex].duplicate();
+                buf.position(0);
+                buf.get(arr, i, Math.min(LONGS_PER_BUFFER, arr.length - i));
+            }
+
+            return arr;
+        }
+    }
+}
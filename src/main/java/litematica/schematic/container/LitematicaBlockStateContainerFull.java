@@ -1,5 +1,6 @@
 package litematica.schematic.container;
 
+import java.util.Arrays;
 import javax.annotation.Nullable;
 import io.netty.buffer.Unpooled;
 
@@ -8,10 +9,16 @@ import net.minecraft.init.Blocks;
 import net.minecraft.network.PacketBuffer;
 import net.minecraft.util.math.Vec3i;
 
-public class LitematicaBlockStateContainerFull extends LitematicaBlockStateContainerBase implements IPaletteResizeHandler
+import litematica.config.Configs;
+
+public class LitematicaBlockStateContainerFull extends LitematicaBlockStateContainerBase implements IPackedBlockStateContainer, IPaletteResizeHandler
 {
     protected LitematicaBitArray storage;
     protected boolean checkForFreedIds = true;
+    /** Set when the storage is shared with a snapshot. The storage then gets copied before it's next modified. */
+    protected boolean storageShared;
+    /** The last created snapshot, which is reused until this container is modified */
+    @Nullable protected LitematicaBlockStateContainerFull lastSnapshot;
 
     public LitematicaBlockStateContainerFull(Vec3i size)
     {
@@ -20,7 +27,7 @@ public class LitematicaBlockStateContainerFull extends LitematicaBlockStateConta
 
     public LitematicaBlockStateContainerFull(Vec3i size, boolean checkForFreedIds)
     {
-        this(size, 2, null);
+        this(size, 2, (long[]) null);
 
         this.checkForFreedIds = checkForFreedIds;
     }
@@ -30,6 +37,23 @@ public class LitematicaBlockStateContainerFull extends LitematicaBlockStateConta
         super(size, bits);
 
         this.setBackingArray(backingLongArray);
+
+        // A new empty container is all air (ID 0). For existing data the counts
+        // get calculated once when they are first needed, and after that
+        // they are kept up to date in setBlockState().
+        if (backingLongArray == null)
+        {
+            this.blockCounts = new long[1 << this.bits];
+            this.blockCounts[0] = this.totalVolume;
+            this.hasSetBlockCounts = true;
+        }
+    }
+
+    protected LitematicaBlockStateContainerFull(Vec3i size, int bits, LitematicaBitArray storage)
+    {
+        super(size, bits);
+
+        this.storage = storage;
     }
 
     @Override
@@ -56,7 +80,18 @@ public class LitematicaBlockStateContainerFull extends LitematicaBlockStateConta
 
     protected void setBackingArray(@Nullable long[] backingLongArray)
     {
-        if (backingLongArray != null)
+        LitematicaBitArrayOffHeap offHeapStorage = this.createOffHeapStorageIfNeeded();
+
+        if (offHeapStorage != null)
+        {
+            if (backingLongArray != null)
+            {
+                offHeapStorage.setBackingLongs(backingLongArray);
+            }
+
+            this.storage = offHeapStorage;
+        }
+        else if (backingLongArray != null)
         {
             this.storage = new LitematicaBitArray(this.bits, this.totalVolume, backingLongArray);
         }
@@ -66,6 +101,26 @@ public class LitematicaBlockStateContainerFull extends LitematicaBlockStateConta
         }
     }
 
+    /**
+     * Creates an off-heap storage array, if the volume of this container
+     * is at or above the configured off-heap storage threshold.
+     * @return the off-heap storage, or null if heap storage should be used
+     */
+    @Nullable
+    protected LitematicaBitArrayOffHeap createOffHeapStorageIfNeeded()
+    {
+        long threshold = (long) Configs.Generic.OFF_HEAP_STORAGE_THRESHOLD.getIntegerValue() * 1000000L;
+
+        if (threshold <= 0 || this.totalVolume < threshold)
+        {
+            return null;
+        }
+
+        boolean mapped = Configs.Generic.OFF_HEAP_STORAGE_MAPPED_FILE.getBooleanValue();
+
+        return LitematicaBitArrayOffHeap.create(this.bits, this.totalVolume, mapped);
+    }
+
     @Override
     public IBlockState getBlockState(int x, int y, int z)
     {
@@ -76,9 +131,35 @@ public class LitematicaBlockStateContainerFull extends LitematicaBlockStateConta
     @Override
     public void setBlockState(int x, int y, int z, IBlockState state)
     {
+        this.lastSnapshot = null;
+
+        // Note: Get the ID first, as adding a new state to the palette may resize the storage
         int id = this.palette.idFor(state);
-        this.storage.setAt(this.getIndex(x, y, z), id);
-        this.hasSetBlockCounts = false; // Force a re-count when next queried
+        long index = this.getIndex(x, y, z);
+
+        if (this.hasSetBlockCounts)
+        {
+            int oldId = this.storage.getAt(index);
+
+            if (oldId != id)
+            {
+                if (id >= this.blockCounts.length)
+                {
+                    this.blockCounts = Arrays.copyOf(this.blockCounts, Math.max(id + 1, 1 << this.bits));
+                }
+
+                --this.blockCounts[oldId];
+                ++this.blockCounts[id];
+            }
+        }
+
+        if (this.storageShared)
+        {
+            this.storage = this.storage.copyWithBitsPerEntry(this.bits);
+            this.storageShared = false;
+        }
+
+        this.storage.setAt(index, id);
     }
 
     @Override
@@ -86,8 +167,10 @@ public class LitematicaBlockStateContainerFull extends LitematicaBlockStateConta
     {
         if (this.checkForFreedIds)
         {
-            long[] counts = this.storage.getValueCounts();
-            final int countsSize = counts.length;
+            this.calculateBlockCountsIfNeeded();
+
+            long[] counts = this.blockCounts;
+            final int countsSize = Math.min(counts.length, 1 << this.bits);
 
             // Check if there are any IDs that are not in use anymore
             for (int id = 0; id < countsSize; ++id)
@@ -103,36 +186,72 @@ public class LitematicaBlockStateContainerFull extends LitematicaBlockStateConta
             }
         }
 
-        LitematicaBitArray oldArray = this.storage;
-        LitematicaBitArray newArray = new LitematicaBitArray(bits, this.totalVolume);
-
         // This creates the new palette with the increased size
         this.setBits(bits);
         // Copy over the full old palette mapping
         this.palette.setMapping(oldPalette.getMapping());
 
-        final long size = oldArray.size();
+        LitematicaBitArray oldStorage = this.storage;
+        this.storage = oldStorage.copyWithBitsPerEntry(bits);
 
-        for (long index = 0; index < size; ++index)
+        // A storage shared with a snapshot is still in use by the snapshot, and gets freed by the GC
+        if (this.storageShared == false)
         {
-            newArray.setAt(index, oldArray.getAt(index));
+            oldStorage.free();
         }
 
-        this.storage = newArray;
+        this.storageShared = false;
 
         return this.palette.idFor(state);
     }
 
+    /**
+     * Releases the block data storage right away, if it's not shared with a snapshot.
+     * This container must not be used after this.
+     */
+    public void free()
+    {
+        if (this.storageShared == false)
+        {
+            this.storage.free();
+        }
+    }
+
     protected long getIndex(int x, int y, int z)
     {
         return ((long) y * this.sizeLayer) + (long) z * (long) this.sizeX + (long) x;
     }
 
+    /**
+     * <b>Note:</b> With the heap storage this returns the live backing array, which must not be modified.
+     * With the off-heap storage this returns a new heap copy of the data.
+     * Use {@link #getBackingLongs(long, long[], int)} to go through the data without copying all of it at once.
+     * @return the packed block data
+     */
+    @Override
     public long[] getBackingLongArray()
     {
         return this.storage.getBackingLongArray();
     }
 
+    /**
+     * @return the number of longs in the backing storage
+     */
+    @Override
+    public long getBackingLongCount()
+    {
+        return this.storage.getBackingLongCount();
+    }
+
+    /**
+     * Copies <b>length</b> consecutive backing longs starting from <b>startIndex</b> to the start of the given buffer
+     */
+    @Override
+    public void getBackingLongs(long startIndex, long[] buffer, int length)
+    {
+        this.storage.getBackingLongs(startIndex, buffer, length);
+    }
+
     public byte[] getBackingArrayAsByteArray()
     {
         final int entrySize = PacketBuffer.getVarIntSize(this.palette.getPaletteSize() - 1);
@@ -148,9 +267,17 @@ public class LitematicaBlockStateContainerFull extends LitematicaBlockStateConta
         PacketBuffer buf = new PacketBuffer(Unpooled.wrappedBuffer(arr));
         buf.writerIndex(0);
 
-        for (int i = 0; i < volume; ++i)
+        int[] buffer = new int[(int) Math.min(LitematicaBitArray.BULK_BUFFER_SIZE, volume)];
+
+        for (long index = 0; index < volume; index += buffer.length)
         {
-            buf.writeVarInt(this.storage.getAt(i));
+            int count = (int) Math.min(buffer.length, volume - index);
+            this.storage.getRange(index, buffer, 0, count);
+
+            for (int i = 0; i < count; ++i)
+            {
+                buf.writeVarInt(buffer[i]);
+            }
         }
 
         return arr;
@@ -169,13 +296,51 @@ public class LitematicaBlockStateContainerFull extends LitematicaBlockStateConta
     @Override
     public LitematicaBlockStateContainerFull copy()
     {
-        LitematicaBlockStateContainerFull newContainer = new LitematicaBlockStateContainerFull(this.size, this.bits, this.storage.getBackingLongArray().clone());
+        // Copying via the storage object keeps off-heap data off-heap
+        LitematicaBitArray storageCopy = this.storage.copyWithBitsPerEntry(this.bits);
+        LitematicaBlockStateContainerFull newContainer = new LitematicaBlockStateContainerFull(this.size, this.bits, storageCopy);
         newContainer.palette = this.palette.copy(newContainer);
 
+        if (this.hasSetBlockCounts)
+        {
+            newContainer.setBlockCounts(this.blockCounts);
+        }
+
         return newContainer;
     }
 
-    public static SpongeBlockstateConverterResults convertVarintByteArrayToPackedLongArray(Vec3i size, int bits, byte[] blockStates)
+    /**
+     * Creates a read-only snapshot of this container, for example for writing it to a file on another thread.
+     * The snapshot shares the block data with this container, until this container
+     * is modified the next time, at which point this container copies its data first.
+     * The snapshot itself must not be modified. The same snapshot is returned again
+     * until this container is modified, so that for example the chunk builds
+     * for many chunks don't each cause a copy on the next edit.
+     */
+    @Override
+    public LitematicaBlockStateContainerFull createSnapshot()
+    {
+        if (this.lastSnapshot != null)
+        {
+            return this.lastSnapshot;
+        }
+
+        LitematicaBlockStateContainerFull snapshot = new LitematicaBlockStateContainerFull(this.size, this.bits, this.storage);
+        snapshot.palette = this.palette.copy(snapshot);
+        snapshot.storageShared = true;
+        this.storageShared = true;
+        this.lastSnapshot = snapshot;
+
+        return snapshot;
+    }
+
+    /**
+     * Converts the varint encoded block data of a Sponge schematic to a packed long array.
+     * The data comes from a file, so every ID is validated against the palette size.
+     * @return the converted data, or null if the data contains an ID outside of the palette, or is too short
+     */
+    @Nullable
+    public static SpongeBlockstateConverterResults convertVarintByteArrayToPackedLongArray(Vec3i size, int bits, int paletteSize, byte[] blockStates)
     {
         int volume = size.getX() * size.getY() * size.getZ();
         LitematicaBitArray bitArray = new LitematicaBitArray(bits, volume);
@@ -184,8 +349,20 @@ public class LitematicaBlockStateContainerFull extends LitematicaBlockStateConta
 
         for (int i = 0; i < volume; ++i)
         {
+            if (buf.isReadable() == false)
+            {
+                return null;
+            }
+
             int id = buf.readVarInt();
-            bitArray.setAt(i, id);
+
+            if (id < 0 || id >= paletteSize)
+            {
+                return null;
+            }
+
+            // The ID has been validated above, and the index is within the volume
+            bitArray.setAtUnchecked(i, id);
             ++blockCounts[id];
         }
 
@@ -201,11 +378,51 @@ public class LitematicaBlockStateContainerFull extends LitematicaBlockStateConta
         return container;
     }
 
+    /**
+     * Creates a container for packed block data that has already been read into off-heap buffers.
+     * If the volume is below the off-heap storage threshold, then the data is copied to the heap instead.
+     * @return the container, or null if the data length doesn't match the size and the palette size
+     */
+    @Nullable
+    public static LitematicaBlockStateContainerFull createContainer(int paletteSize, LitematicaBitArrayOffHeap.PackedData blockStates, Vec3i size)
+    {
+        int bits = Math.max(2, Integer.SIZE - Integer.numberOfLeadingZeros(paletteSize - 1));
+        long volume = (long) size.getX() * (long) size.getY() * (long) size.getZ();
+        long threshold = (long) Configs.Generic.OFF_HEAP_STORAGE_THRESHOLD.getIntegerValue() * 1000000L;
+
+        if (threshold <= 0 || volume < threshold)
+        {
+            if (blockStates.getLongCount() != LitematicaBitArray.getRequiredLongCount(bits, volume))
+            {
+                return null;
+            }
+
+            return createContainer(paletteSize, blockStates.toLongArray(), size);
+        }
+
+        LitematicaBitArrayOffHeap storage = LitematicaBitArrayOffHeap.create(bits, volume, blockStates);
+
+        if (storage == null)
+        {
+            return null;
+        }
+
+        LitematicaBlockStateContainerFull container = new LitematicaBlockStateContainerFull(size, bits, storage);
+        container.palette = createPalette(bits, container);
+        return container;
+    }
+
     @Nullable
     public static LitematicaBlockStateContainerFull createContainer(int paletteSize, byte[] blockData, Vec3i size)
     {
         int bits = Math.max(2, Integer.SIZE - Integer.numberOfLeadingZeros(paletteSize - 1));
-        SpongeBlockstateConverterResults results = convertVarintByteArrayToPackedLongArray(size, bits, blockData);
+        SpongeBlockstateConverterResults results = convertVarintByteArrayToPackedLongArray(size, bits, paletteSize, blockData);
+
+        if (results == null)
+        {
+            return null;
+        }
+
         LitematicaBlockStateContainerFull container = new LitematicaBlockStateContainerFull(size, bits, results.backingArray);
         container.palette = createPalette(bits, container);
         container.setBlockCounts(results.blockCounts);
@@ -0,0 +1,472 @@
+package litematica.schematic.container;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import javax.annotation.Nullable;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.Vec3i;
+
+import litematica.config.Configs;
+
+/**
+ * A block state container that stores the blocks in 16x16x16 sections,
+ * where each section has its own palette and entry bit width.
+ * Sections that are all air are not allocated at all, they are shared as null entries,
+ * and a section gets allocated when the first non-air block is set to it.
+ * This means that large but mostly empty regions take very little memory,
+ * and that a palette resize only needs to re-pack the one section being modified.
+ * The container level palette has all the states used in the container, and it's used for the block counts
+ * and for the packed block data of the schematic file, which is created on the fly
+ * from the sections, see {@link #getBackingLongs(long, long[], int)}.
+ */
+public class LitematicaBlockStateContainerSectioned extends LitematicaBlockStateContainerBase implements IPackedBlockStateContainer
+{
+    public static final int SECTION_SIZE = 16;
+    public static final int SECTION_VOLUME = SECTION_SIZE * SECTION_SIZE * SECTION_SIZE;
+
+    protected final int sectionCountX;
+    protected final int sectionCountY;
+    protected final int sectionCountZ;
+    protected final Section[] sections;
+    /** The sections that are not shared with a snapshot. The other sections get copied before they are modified. */
+    protected final BitSet ownedSections;
+    /** The last created snapshot, which is reused until this container is modified */
+    @Nullable protected LitematicaBlockStateContainerSectioned lastSnapshot;
+
+    public LitematicaBlockStateContainerSectioned(Vec3i size)
+    {
+        super(size);
+
+        this.sectionCountX = (this.sizeX + SECTION_SIZE - 1) >> 4;
+        this.sectionCountY = (this.sizeY + SECTION_SIZE - 1) >> 4;
+        this.sectionCountZ = (this.sizeZ + SECTION_SIZE - 1) >> 4;
+
+        long sectionCount = (long) this.sectionCountX * (long) this.sectionCountY * (long) this.sectionCountZ;
+
+        if (sectionCount > Integer.MAX_VALUE)
+        {
+            throw new IndexOutOfBoundsException("Section count " + sectionCount + " exceeds the maximum value of " + Integer.MAX_VALUE);
+        }
+
+        this.sections = new Section[(int) sectionCount];
+        this.ownedSections = new BitSet(this.sections.length);
+
+        // Always reserve ID 0 for air, so that the empty sections map to ID 0
+        this.palette = new VanillaStructurePalette();
+        this.palette.idFor(AIR_BLOCK_STATE);
+        this.blockCounts = new long[16];
+        this.blockCounts[0] = this.totalVolume;
+        this.hasSetBlockCounts = true;
+    }
+
+    @Override
+    public IBlockState getBlockState(int x, int y, int z)
+    {
+        Section section = this.sections[this.getSectionIndex(x >> 4, y >> 4, z >> 4)];
+        return section != null ? section.getBlockState(x & 0xF, y & 0xF, z & 0xF) : AIR_BLOCK_STATE;
+    }
+
+    @Override
+    public void setBlockState(int x, int y, int z, IBlockState state)
+    {
+        int sectionIndex = this.getSectionIndex(x >> 4, y >> 4, z >> 4);
+        Section section = this.sections[sectionIndex];
+
+        this.lastSnapshot = null;
+
+        if (section == null)
+        {
+            // Setting air to an empty section, nothing to do
+            if (state == AIR_BLOCK_STATE)
+            {
+                return;
+            }
+
+            section = new Section();
+            this.sections[sectionIndex] = section;
+            this.ownedSections.set(sectionIndex);
+        }
+        else if (this.ownedSections.get(sectionIndex) == false)
+        {
+            // The section is shared with a snapshot
+            section = section.copy();
+            this.sections[sectionIndex] = section;
+            this.ownedSections.set(sectionIndex);
+        }
+
+        int containerId = this.palette.idFor(state);
+        IBlockState oldState = section.setBlockState(x & 0xF, y & 0xF, z & 0xF, state, containerId);
+
+        if (oldState != state)
+        {
+            this.updateBlockCounts(this.palette.idFor(oldState), containerId);
+
+            // Release the section storage once the section becomes empty again
+            if (section.isEmpty())
+            {
+                this.sections[sectionIndex] = null;
+                this.ownedSections.clear(sectionIndex);
+            }
+        }
+    }
+
+    protected void updateBlockCounts(int oldId, int newId)
+    {
+        if (newId >= this.blockCounts.length)
+        {
+            this.blockCounts = Arrays.copyOf(this.blockCounts, Math.max(newId + 1, this.blockCounts.length * 2));
+        }
+
+        --this.blockCounts[oldId];
+        ++this.blockCounts[newId];
+    }
+
+    public int getSectionCountX()
+    {
+        return this.sectionCountX;
+    }
+
+    public int getSectionCountY()
+    {
+        return this.sectionCountY;
+    }
+
+    public int getSectionCountZ()
+    {
+        return this.sectionCountZ;
+    }
+
+    /**
+     * Returns the section at the given section coordinates (ie. block coordinates divided by 16).
+     * The returned section must not be modified.
+     * @return the section, or null if the section is all air
+     */
+    @Nullable
+    public Section getSection(int sectionX, int sectionY, int sectionZ)
+    {
+        return this.sections[this.getSectionIndex(sectionX, sectionY, sectionZ)];
+    }
+
+    /**
+     * @return true if the section at the given section coordinates is all air
+     */
+    public boolean isSectionEmpty(int sectionX, int sectionY, int sectionZ)
+    {
+        return this.getSection(sectionX, sectionY, sectionZ) == null;
+    }
+
+    protected int getSectionIndex(int sectionX, int sectionY, int sectionZ)
+    {
+        return (sectionY * this.sectionCountZ + sectionZ) * this.sectionCountX + sectionX;
+    }
+
+    /**
+     * @return the entry width of the packed block data, based on the container palette size
+     */
+    protected int getPackedBits()
+    {
+        return Math.max(2, Integer.SIZE - Integer.numberOfLeadingZeros(this.palette.getPaletteSize() - 1));
+    }
+
+    @Override
+    public long getBackingLongCount()
+    {
+        return LitematicaBitArray.getRequiredLongCount(this.getPackedBits(), this.totalVolume);
+    }
+
+    /**
+     * Packs the container palette IDs of the blocks on the fly, in the same format as
+     * the {@link LitematicaBlockStateContainerFull} stores them.
+     */
+    @Override
+    public void getBackingLongs(long startIndex, long[] buffer, int length)
+    {
+        final int bits = this.getPackedBits();
+        final long bitStart = startIndex << 6;
+        final long firstEntry = bitStart / bits;
+        final long endEntry = Math.min(this.totalVolume, (((startIndex + length) << 6) + bits - 1) / bits);
+
+        Arrays.fill(buffer, 0, length, 0L);
+
+        if (firstEntry >= endEntry)
+        {
+            return;
+        }
+
+        int x = (int) (firstEntry % this.sizeX);
+        int z = (int) ((firstEntry / this.sizeX) % this.sizeZ);
+        int y = (int) (firstEntry / this.sizeLayer);
+
+        for (long index = firstEntry; index < endEntry; ++index)
+        {
+            Section section = this.sections[this.getSectionIndex(x >> 4, y >> 4, z >> 4)];
+            long value = section != null ? section.getContainerId(x & 0xF, y & 0xF, z & 0xF) : 0L;
+            long bitPos = index * bits - bitStart;
+
+            if (bitPos < 0)
+            {
+                // The entry starts in the previous long
+                buffer[0] |= value >>> -bitPos;
+            }
+            else
+            {
+                int longIndex = (int) (bitPos >> 6);
+                int offset = (int) (bitPos & 0x3F);
+                buffer[longIndex] |= value << offset;
+
+                if (offset + bits > 64 && longIndex + 1 < length)
+                {
+                    buffer[longIndex + 1] |= value >>> (64 - offset);
+                }
+            }
+
+            if (++x >= this.sizeX)
+            {
+                x = 0;
+
+                if (++z >= this.sizeZ)
+                {
+                    z = 0;
+                    ++y;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a new array of the packed block data
+     */
+    @Override
+    public long[] getBackingLongArray()
+    {
+        long count = this.getBackingLongCount();
+
+        if (count > Integer.MAX_VALUE - 8)
+        {
+            throw new IndexOutOfBoundsException("Block data long array length " + count + " exceeds the maximum array size");
+        }
+
+        long[] arr = new long[(int) count];
+        this.getBackingLongs(0, arr, arr.length);
+
+        return arr;
+    }
+
+    @Override
+    protected void calculateBlockCountsIfNeeded()
+    {
+    }
+
+    @Override
+    public LitematicaBlockStateContainerSectioned copy()
+    {
+        LitematicaBlockStateContainerSectioned copy = new LitematicaBlockStateContainerSectioned(this.size);
+
+        for (int i = 0; i < this.sections.length; ++i)
+        {
+            if (this.sections[i] != null)
+            {
+                copy.sections[i] = this.sections[i].copy();
+                copy.ownedSections.set(i);
+            }
+        }
+
+        copy.palette = this.palette.copy(null);
+        copy.blockCounts = this.blockCounts.clone();
+
+        return copy;
+    }
+
+    /**
+     * Creates a read-only snapshot of this container, for example for reading it on another thread.
+     * The snapshot shares the sections with this container, and any shared section gets
+     * copied by this container before it's modified the next time.
+     * The same snapshot is returned again until this container is modified.
+     */
+    @Override
+    public LitematicaBlockStateContainerSectioned createSnapshot()
+    {
+        if (this.lastSnapshot != null)
+        {
+            return this.lastSnapshot;
+        }
+
+        LitematicaBlockStateContainerSectioned snapshot = new LitematicaBlockStateContainerSectioned(this.size);
+
+        System.arraycopy(this.sections, 0, snapshot.sections, 0, this.sections.length);
+        snapshot.palette = this.palette.copy(null);
+        snapshot.blockCounts = this.blockCounts.clone();
+
+        this.ownedSections.clear();
+        this.lastSnapshot = snapshot;
+
+        return snapshot;
+    }
+
+    /**
+     * @return true if a sub-region of the given size should use a sectioned container,
+     *         based on the configured sectioned storage threshold
+     */
+    public static boolean shouldUseForSize(Vec3i size)
+    {
+        long threshold = (long) Configs.Generic.SECTIONED_STORAGE_THRESHOLD.getIntegerValue() * 1000000L;
+        long volume = (long) Math.abs(size.getX()) * (long) Math.abs(size.getY()) * (long) Math.abs(size.getZ());
+
+        return threshold > 0 && volume >= threshold;
+    }
+
+    /**
+     * Creates a sectioned container with the same contents as the given full container.
+     * The full container's data is read in bulk one row at a time.
+     */
+    public static LitematicaBlockStateContainerSectioned createFrom(LitematicaBlockStateContainerFull other)
+    {
+        LitematicaBlockStateContainerSectioned container = new LitematicaBlockStateContainerSectioned(other.getSize());
+        IBlockState[] states = new IBlockState[1 << other.bits];
+        int[] ids = new int[container.sizeX];
+
+        for (int id = 0; id < states.length; ++id)
+        {
+            IBlockState state = other.palette.getBlockState(id);
+            states[id] = state != null ? state : AIR_BLOCK_STATE;
+        }
+
+        for (int y = 0; y < container.sizeY; ++y)
+        {
+            for (int z = 0; z < container.sizeZ; ++z)
+            {
+                other.storage.getRange(other.getIndex(0, y, z), ids, 0, ids.length);
+
+                for (int x = 0; x < ids.length; ++x)
+                {
+                    IBlockState state = states[ids[x]];
+
+                    if (state != AIR_BLOCK_STATE)
+                    {
+                        container.setBlockState(x, y, z, state);
+                    }
+                }
+            }
+        }
+
+        return container;
+    }
+
+    public static class Section implements IPaletteResizeHandler
+    {
+        protected ILitematicaBlockStatePalette palette;
+        protected LitematicaBitArray storage;
+        /** The container palette IDs of the section palette IDs */
+        protected int[] containerIds;
+        protected int bits;
+        protected int nonAirCount;
+
+        protected Section()
+        {
+            this.bits = 2;
+            this.palette = createPalette(this.bits, this);
+            // Always reserve ID 0 for air, so that the section doesn't need to be filled with air separately
+            this.palette.idFor(AIR_BLOCK_STATE);
+            this.storage = new LitematicaBitArray(this.bits, SECTION_VOLUME);
+            this.containerIds = new int[1 << this.bits];
+        }
+
+        protected Section(Section other)
+        {
+            this.bits = other.bits;
+            this.palette = other.palette.copy(this);
+            this.storage = other.storage.copyWithBitsPerEntry(other.bits);
+            this.containerIds = other.containerIds.clone();
+            this.nonAirCount = other.nonAirCount;
+        }
+
+        public IBlockState getBlockState(int x, int y, int z)
+        {
+            IBlockState state = this.palette.getBlockState(this.storage.getAtUnchecked(getIndex(x, y, z)));
+            return state == null ? AIR_BLOCK_STATE : state;
+        }
+
+        protected int getContainerId(int x, int y, int z)
+        {
+            return this.containerIds[this.storage.getAtUnchecked(getIndex(x, y, z))];
+        }
+
+        /**
+         * Sets the block state at the given section-local coordinates
+         * @param containerId the ID of the state in the container level palette
+         * @return the previous block state at that position
+         */
+        protected IBlockState setBlockState(int x, int y, int z, IBlockState state, int containerId)
+        {
+            // Note: Get the ID first, as adding a new state to the palette may resize the storage
+            int id = this.palette.idFor(state);
+            int index = getIndex(x, y, z);
+            IBlockState oldState = this.palette.getBlockState(this.storage.getAtUnchecked(index));
+
+            this.containerIds[id] = containerId;
+
+            if (oldState == null)
+            {
+                oldState = AIR_BLOCK_STATE;
+            }
+
+            if (oldState != state)
+            {
+                this.storage.setAtUnchecked(index, id);
+
+                if (oldState == AIR_BLOCK_STATE)
+                {
+                    ++this.nonAirCount;
+                }
+                else if (state == AIR_BLOCK_STATE)
+                {
+                    --this.nonAirCount;
+                }
+            }
+
+            return oldState;
+        }
+
+        public boolean isEmpty()
+        {
+            return this.nonAirCount == 0;
+        }
+
+        public ILitematicaBlockStatePalette getPalette()
+        {
+            return this.palette;
+        }
+
+        /**
+         * @return the packed block data of this section, in the same y, z, x order as the containers use
+         */
+        public LitematicaBitArray getStorage()
+        {
+            return this.storage;
+        }
+
+        @Override
+        public int onResize(int bits, IBlockState state, ILitematicaBlockStatePalette oldPalette)
+        {
+            // Only this one section needs to be re-packed
+            this.bits = bits;
+            this.palette = createPalette(bits, this);
+            this.palette.setMapping(oldPalette.getMapping());
+            this.storage = this.storage.copyWithBitsPerEntry(bits);
+            this.containerIds = Arrays.copyOf(this.containerIds, 1 << bits);
+
+            return this.palette.idFor(state);
+        }
+
+        protected Section copy()
+        {
+            return new Section(this);
+        }
+
+        public static int getIndex(int x, int y, int z)
+        {
+            return (y << 8) | (z << 4) | x;
+        }
+    }
+}
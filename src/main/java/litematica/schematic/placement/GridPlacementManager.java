@@ -16,6 +16,7 @@ import net.minecraft.util.math.Vec3i;
 import malilib.util.game.wrap.EntityWrap;
 import malilib.util.game.wrap.GameUtils;
 import malilib.util.position.IntBoundingBox;
+import litematica.config.Configs;
 import litematica.render.OverlayRenderer;
 import litematica.util.PositionUtils;
 
@@ -23,6 +24,7 @@ public class GridPlacementManager
 {
     private final SchematicPlacementManager schematicPlacementManager;
     private final Map<SchematicPlacement, Map<Vec3i, SchematicPlacement>> gridPlacementsPerPlacement = new HashMap<>();
+    private final Map<SchematicPlacement, VirtualGrid> virtualGrids = new HashMap<>();
 
     // This base placement set is used instead of the keySet of gridPlacementsPerPlacement
     // mostly because when logging in, the client player is at first in a wrong location,
@@ -39,11 +41,19 @@ public class GridPlacementManager
     public void clear()
     {
         this.gridPlacementsPerPlacement.clear();
+        this.virtualGrids.clear();
         this.basePlacements.clear();
     }
 
     public List<SchematicPlacement> getGridPlacementsForBasePlacement(SchematicPlacement basePlacement)
     {
+        // The virtual grids don't have any placements for their cells, so create temporary
+        // placements for the loaded area, for example for the grid paste to use.
+        if (this.virtualGrids.containsKey(basePlacement))
+        {
+            return new ArrayList<>(this.createGridPlacementsWithinLoadedAreaFor(basePlacement).values());
+        }
+
         List<SchematicPlacement> gridPlacements = new ArrayList<>();
         Map<Vec3i, SchematicPlacement> map = this.gridPlacementsPerPlacement.get(basePlacement);
 
@@ -228,11 +238,25 @@ public class GridPlacementManager
 
     /**
      * Creates and adds all the grid placements within the loaded area
-     * for the provided normal placement
+     * for the provided normal placement. If virtual grid placements are enabled
+     * and the grid is usable as a virtual grid, then a virtual grid covering
+     * the entire repeat area is added instead.
      * @return true if some placements were added
      */
     private boolean addGridPlacementsWithinLoadedAreaFor(SchematicPlacement basePlacement)
     {
+        if (this.shouldUseVirtualGrid(basePlacement))
+        {
+            VirtualGrid grid = VirtualGrid.create(basePlacement);
+
+            if (grid != null)
+            {
+                this.virtualGrids.put(basePlacement, grid);
+                this.schematicPlacementManager.addVirtualGrid(grid);
+                return true;
+            }
+        }
+
         Map<Vec3i, SchematicPlacement> placements = this.createGridPlacementsWithinLoadedAreaFor(basePlacement);
 
         if (placements.isEmpty() == false)
@@ -259,6 +283,14 @@ public class GridPlacementManager
      */
     private boolean removeAllGridPlacementsOf(SchematicPlacement basePlacement)
     {
+        VirtualGrid grid = this.virtualGrids.remove(basePlacement);
+
+        if (grid != null)
+        {
+            this.schematicPlacementManager.removeVirtualGrid(grid);
+            return true;
+        }
+
         Map<Vec3i, SchematicPlacement> placements = this.gridPlacementsPerPlacement.get(basePlacement);
 
         if (placements != null)
@@ -286,6 +318,20 @@ public class GridPlacementManager
         {
             for (SchematicPlacement basePlacement : this.basePlacements)
             {
+                // The virtual grid config was toggled, switch the grid to the other type
+                if (this.virtualGrids.containsKey(basePlacement) != this.shouldUseVirtualGrid(basePlacement))
+                {
+                    modified |= this.removeAllGridPlacementsOf(basePlacement);
+                    modified |= this.addGridPlacementsWithinLoadedAreaFor(basePlacement);
+                    continue;
+                }
+
+                // The virtual grids always cover the entire repeat area
+                if (this.virtualGrids.containsKey(basePlacement))
+                {
+                    continue;
+                }
+
                 Set<Vec3i> currentGridPoints = this.getGridPointsWithinAreaFor(basePlacement, currentArea);
                 Set<Vec3i> outOfRangePoints = this.getExistingOutOfRangeGridPointsFor(basePlacement, currentGridPoints);
                 Set<Vec3i> newPoints = this.getNewGridPointsFor(basePlacement, currentGridPoints);
@@ -374,6 +420,24 @@ public class GridPlacementManager
         return modified;
     }
 
+    /**
+     * Re-reads the blocks of the virtual grid of the provided base placement,
+     * if it has a virtual grid. This is needed after the schematic's blocks have been modified.
+     */
+    void rebuildVirtualGridOf(SchematicPlacement basePlacement)
+    {
+        if (this.virtualGrids.containsKey(basePlacement))
+        {
+            this.removeAllGridPlacementsOf(basePlacement);
+            this.addGridPlacementsWithinLoadedAreaFor(basePlacement);
+        }
+    }
+
+    private boolean shouldUseVirtualGrid(SchematicPlacement basePlacement)
+    {
+        return Configs.Generic.VIRTUAL_GRID_PLACEMENTS.getBooleanValue() && VirtualGrid.canUseFor(basePlacement);
+    }
+
     @Nullable
     private IntBoundingBox getCurrentLoadedArea(int expandChunks)
     {
@@ -0,0 +1,94 @@
+package litematica.schematic.placement;
+
+import java.util.HashSet;
+import java.util.Set;
+import javax.annotation.Nullable;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * Tracks a translation-only move of a placement, while the affected schematic world chunks
+ * are being rebuilt. This tracks the origin that the world contents of each still stale chunk
+ * were built for. The old geometry itself is tracked per render chunk
+ * (see {@link litematica.render.schematic.RenderChunkSchematicVbo#getMovedGeometry()}),
+ * and it keeps being rendered with an offset of the placement's current origin minus the origin
+ * that the geometry was built for, until a compile of the rebuilt contents has been uploaded.
+ * This way the placement appears to move immediately.
+ * Note that any other placements within those same chunks are also rendered with the offset,
+ * until the render chunks get recompiled.
+ */
+public class PendingPlacementMove
+{
+    protected final SchematicPlacement placement;
+    /** The origin of the placement that each still stale chunk's contents were built for */
+    protected final Long2ObjectOpenHashMap<BlockPos> builtOriginPerChunk = new Long2ObjectOpenHashMap<>();
+    /** The chunks that still need to be rebuilt, before the move is finished */
+    protected final LongOpenHashSet pendingRebuilds = new LongOpenHashSet();
+    /** The chunks that the placement no longer touches, which will be unloaded once the move is finished */
+    protected final Set<ChunkPos> deferredUnloads = new HashSet<>();
+
+    public PendingPlacementMove(SchematicPlacement placement)
+    {
+        this.placement = placement;
+    }
+
+    public SchematicPlacement getPlacement()
+    {
+        return this.placement;
+    }
+
+    /**
+     * Marks the given chunk as having world contents built for the given origin,
+     * unless the chunk was already marked by an earlier move
+     */
+    public void addStaleChunk(ChunkPos pos, BlockPos builtOrigin)
+    {
+        this.builtOriginPerChunk.putIfAbsent(ChunkPos.asLong(pos.x, pos.z), builtOrigin);
+    }
+
+    public void addPendingRebuild(ChunkPos pos)
+    {
+        this.pendingRebuilds.add(ChunkPos.asLong(pos.x, pos.z));
+        this.deferredUnloads.remove(pos);
+    }
+
+    public void addDeferredUnload(ChunkPos pos)
+    {
+        this.deferredUnloads.add(pos);
+    }
+
+    public Set<ChunkPos> getDeferredUnloads()
+    {
+        return this.deferredUnloads;
+    }
+
+    /**
+     * Called when the world contents of the given chunk have been rebuilt or unloaded.
+     * The geometry of its render chunks keeps its offset until the render chunks
+     * have been recompiled from the new contents.
+     */
+    public void onChunkRebuilt(int chunkX, int chunkZ)
+    {
+        long posLong = ChunkPos.asLong(chunkX, chunkZ);
+        this.builtOriginPerChunk.remove(posLong);
+        this.pendingRebuilds.remove(posLong);
+    }
+
+    public boolean isFinished()
+    {
+        return this.pendingRebuilds.isEmpty();
+    }
+
+    /**
+     * @return the origin the given chunk's current world contents were built for,
+     *         or null if the chunk is not affected by this move or has already been rebuilt
+     */
+    @Nullable
+    public BlockPos getBuiltOrigin(int chunkX, int chunkZ)
+    {
+        return this.builtOriginPerChunk.get(ChunkPos.asLong(chunkX, chunkZ));
+    }
+}
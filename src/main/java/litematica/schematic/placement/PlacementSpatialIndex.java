@@ -0,0 +1,665 @@
+package litematica.schematic.placement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.Vec3d;
+
+import malilib.util.position.ChunkSectionPos;
+import malilib.util.position.IntBoundingBox;
+import litematica.schematic.placement.SchematicPlacementManager.PlacementPart;
+import litematica.schematic.placement.SubRegionPlacement.RequiredEnabled;
+import litematica.selection.SelectionBox;
+
+/**
+ * A spatial index of the sub-region boxes of all the placements.
+ * Each enabled sub-region box is stored once as a {@link PlacementPart},
+ * and the same part instance is referenced from every chunk section it touches,
+ * using primitive long keys. For box and ray queries there is also a bounding volume
+ * hierarchy over all the parts, which is rebuilt lazily after the placements change.
+ * The virtual grids are kept separately, as their cells don't have any parts,
+ * and they are queried directly via their grid arithmetic instead.
+ */
+public class PlacementSpatialIndex
+{
+    protected static final int LEAF_SIZE = 4;
+
+    protected final Reference2ObjectOpenHashMap<SchematicPlacement, List<PlacementPart>> partsPerPlacement = new Reference2ObjectOpenHashMap<>();
+    protected final Reference2ObjectOpenHashMap<SchematicPlacement, long[]> chunksPerPlacement = new Reference2ObjectOpenHashMap<>();
+    protected final Long2ObjectOpenHashMap<List<PlacementPart>> partsPerSection = new Long2ObjectOpenHashMap<>();
+    protected final Long2ObjectOpenHashMap<List<SchematicPlacement>> placementsPerChunk = new Long2ObjectOpenHashMap<>();
+    protected final Reference2ObjectOpenHashMap<VirtualGrid, long[]> chunksPerGrid = new Reference2ObjectOpenHashMap<>();
+    protected final Long2ObjectOpenHashMap<List<VirtualGrid>> gridsPerChunk = new Long2ObjectOpenHashMap<>();
+    @Nullable protected Set<ChunkSectionPos> touchedSections;
+    @Nullable protected Node root;
+    protected boolean treeDirty;
+
+    /**
+     * Adds the given placement to the index, or updates it if it was already added.
+     * The placement is registered to all the chunks its sub-regions touch, but its boxes
+     * are only added if the placement is enabled.
+     * @return true if the placement was not in the index before
+     */
+    public boolean addOrUpdatePlacement(SchematicPlacement placement)
+    {
+        boolean added = this.removePlacement(placement) == false;
+        List<PlacementPart> parts = new ArrayList<>();
+        long[] chunks = getTouchedChunks(placement.getSubRegionBoxes(RequiredEnabled.PLACEMENT_ENABLED).values());
+
+        for (long chunkPosLong : chunks)
+        {
+            this.placementsPerChunk.computeIfAbsent(chunkPosLong, (k) -> new ArrayList<>()).add(placement);
+        }
+
+        this.chunksPerPlacement.put(placement, chunks);
+
+        if (placement.matchesRequirement(RequiredEnabled.PLACEMENT_ENABLED))
+        {
+            for (Map.Entry<String, SelectionBox> entry : placement.getSubRegionBoxes(RequiredEnabled.PLACEMENT_ENABLED).entrySet())
+            {
+                PlacementPart part = new PlacementPart(placement, entry.getKey(), createBox(entry.getValue()));
+                parts.add(part);
+                this.addPartToSections(part);
+            }
+        }
+
+        this.partsPerPlacement.put(placement, parts);
+        this.onChanged();
+
+        return added;
+    }
+
+    /**
+     * Removes the given placement from the index
+     * @return true if the placement was in the index
+     */
+    public boolean removePlacement(SchematicPlacement placement)
+    {
+        List<PlacementPart> parts = this.partsPerPlacement.remove(placement);
+        long[] chunks = this.chunksPerPlacement.remove(placement);
+
+        if (parts == null)
+        {
+            return false;
+        }
+
+        for (PlacementPart part : parts)
+        {
+            this.removePartFromSections(part);
+        }
+
+        for (long chunkPosLong : chunks)
+        {
+            List<SchematicPlacement> list = this.placementsPerChunk.get(chunkPosLong);
+
+            if (list != null && list.remove(placement) && list.isEmpty())
+            {
+                this.placementsPerChunk.remove(chunkPosLong);
+            }
+        }
+
+        this.onChanged();
+
+        return true;
+    }
+
+    public void addVirtualGrid(VirtualGrid grid)
+    {
+        this.removeVirtualGrid(grid);
+        long[] chunks = grid.getTouchedChunks();
+
+        for (long chunkPosLong : chunks)
+        {
+            this.gridsPerChunk.computeIfAbsent(chunkPosLong, (k) -> new ArrayList<>()).add(grid);
+        }
+
+        this.chunksPerGrid.put(grid, chunks);
+        this.touchedSections = null;
+    }
+
+    /**
+     * Removes the given virtual grid from the index
+     * @return the chunks that the grid touched, or null if the grid was not in the index
+     */
+    @Nullable
+    public long[] removeVirtualGrid(VirtualGrid grid)
+    {
+        long[] chunks = this.chunksPerGrid.remove(grid);
+
+        if (chunks == null)
+        {
+            return null;
+        }
+
+        for (long chunkPosLong : chunks)
+        {
+            List<VirtualGrid> list = this.gridsPerChunk.get(chunkPosLong);
+
+            if (list != null && list.remove(grid) && list.isEmpty())
+            {
+                this.gridsPerChunk.remove(chunkPosLong);
+            }
+        }
+
+        this.touchedSections = null;
+
+        return chunks;
+    }
+
+    public void clear()
+    {
+        this.partsPerPlacement.clear();
+        this.chunksPerPlacement.clear();
+        this.partsPerSection.clear();
+        this.placementsPerChunk.clear();
+        this.chunksPerGrid.clear();
+        this.gridsPerChunk.clear();
+        this.onChanged();
+    }
+
+    protected void onChanged()
+    {
+        this.touchedSections = null;
+        this.root = null;
+        this.treeDirty = true;
+    }
+
+    protected void addPartToSections(PlacementPart part)
+    {
+        IntBoundingBox bb = part.getBox();
+
+        for (int cy = bb.minY >> 4; cy <= bb.maxY >> 4; ++cy)
+        {
+            for (int cz = bb.minZ >> 4; cz <= bb.maxZ >> 4; ++cz)
+            {
+                for (int cx = bb.minX >> 4; cx <= bb.maxX >> 4; ++cx)
+                {
+                    this.partsPerSection.computeIfAbsent(getSectionKey(cx, cy, cz), (k) -> new ArrayList<>()).add(part);
+                }
+            }
+        }
+    }
+
+    protected void removePartFromSections(PlacementPart part)
+    {
+        IntBoundingBox bb = part.getBox();
+
+        for (int cy = bb.minY >> 4; cy <= bb.maxY >> 4; ++cy)
+        {
+            for (int cz = bb.minZ >> 4; cz <= bb.maxZ >> 4; ++cz)
+            {
+                for (int cx = bb.minX >> 4; cx <= bb.maxX >> 4; ++cx)
+                {
+                    long key = getSectionKey(cx, cy, cz);
+                    List<PlacementPart> list = this.partsPerSection.get(key);
+
+                    if (list != null && list.remove(part) && list.isEmpty())
+                    {
+                        this.partsPerSection.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    public boolean isChunkTouched(int chunkX, int chunkZ)
+    {
+        long posLong = ChunkPos.asLong(chunkX, chunkZ);
+        return this.placementsPerChunk.containsKey(posLong) || this.gridsPerChunk.containsKey(posLong);
+    }
+
+    /**
+     * @return the virtual grids touching the given chunk
+     */
+    public List<VirtualGrid> getVirtualGridsTouchingChunk(int chunkX, int chunkZ)
+    {
+        List<VirtualGrid> list = this.gridsPerChunk.get(ChunkPos.asLong(chunkX, chunkZ));
+        return list != null ? list : Collections.emptyList();
+    }
+
+    /**
+     * @return the placements touching the given chunk, including disabled placements
+     */
+    public List<SchematicPlacement> getPlacementsTouchingChunk(int chunkX, int chunkZ)
+    {
+        List<SchematicPlacement> list = this.placementsPerChunk.get(ChunkPos.asLong(chunkX, chunkZ));
+        return list != null ? list : Collections.emptyList();
+    }
+
+    /**
+     * @return the parts touching the given chunk section. Note that the boxes of the parts
+     *         are the full sub-region boxes, they are not clipped to the section.
+     */
+    public List<PlacementPart> getPartsInSection(int sectionX, int sectionY, int sectionZ)
+    {
+        List<PlacementPart> list = this.partsPerSection.get(getSectionKey(sectionX, sectionY, sectionZ));
+        return list != null ? list : Collections.emptyList();
+    }
+
+    /**
+     * @return the parts touching the given chunk section, with their boxes clipped to the section.
+     *         This also includes the boxes of the cells of any virtual grids touching the section.
+     */
+    public List<IntBoundingBox> getClippedBoxesInSection(int sectionX, int sectionY, int sectionZ)
+    {
+        List<PlacementPart> parts = this.getPartsInSection(sectionX, sectionY, sectionZ);
+        List<IntBoundingBox> list = new ArrayList<>(parts.size());
+        final int minX = sectionX << 4;
+        final int minY = sectionY << 4;
+        final int minZ = sectionZ << 4;
+
+        for (PlacementPart part : parts)
+        {
+            IntBoundingBox bb = part.getBox();
+            list.add(new IntBoundingBox(Math.max(bb.minX, minX), Math.max(bb.minY, minY), Math.max(bb.minZ, minZ),
+                                        Math.min(bb.maxX, minX + 15), Math.min(bb.maxY, minY + 15), Math.min(bb.maxZ, minZ + 15)));
+        }
+
+        for (VirtualGrid grid : this.getVirtualGridsTouchingChunk(sectionX, sectionZ))
+        {
+            grid.getClippedBoxes(minX, minY, minZ, minX + 15, minY + 15, minZ + 15, list);
+        }
+
+        return list;
+    }
+
+    public Set<ChunkSectionPos> getTouchedSections()
+    {
+        if (this.touchedSections == null)
+        {
+            Set<ChunkSectionPos> set = new HashSet<>();
+
+            for (Long2ObjectMap.Entry<List<PlacementPart>> entry : this.partsPerSection.long2ObjectEntrySet())
+            {
+                long key = entry.getLongKey();
+                set.add(new ChunkSectionPos(getSectionX(key), getSectionY(key), getSectionZ(key)));
+            }
+
+            for (VirtualGrid grid : this.chunksPerGrid.keySet())
+            {
+                grid.addTouchedSections(set);
+            }
+
+            this.touchedSections = set;
+        }
+
+        return this.touchedSections;
+    }
+
+    /**
+     * Point query, adds all the parts whose box contains the given position
+     */
+    public void getPartsAt(BlockPos pos, List<PlacementPart> out)
+    {
+        for (PlacementPart part : this.getPartsInSection(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4))
+        {
+            if (part.getBox().contains(pos))
+            {
+                out.add(part);
+            }
+        }
+    }
+
+    /**
+     * @return true if the given position is within range blocks of any of the boxes,
+     *         including the cells of the virtual grids
+     */
+    public boolean isWithinRange(int x, int y, int z, int range)
+    {
+        Node node = this.getTree();
+
+        if (node != null && node.anyIntersects(x - range, y - range, z - range, x + range, y + range, z + range))
+        {
+            return true;
+        }
+
+        for (VirtualGrid grid : this.chunksPerGrid.keySet())
+        {
+            if (grid.intersects(x - range, y - range, z - range, x + range, y + range, z + range))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Box query, adds all the parts whose box intersects the given box
+     */
+    public void getPartsIntersecting(IntBoundingBox box, List<PlacementPart> out)
+    {
+        Node node = this.getTree();
+
+        if (node != null)
+        {
+            node.getIntersecting(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ, out);
+        }
+    }
+
+    /**
+     * Ray query, adds all the parts whose box is intersected by the line segment
+     * between the given points. The boxes are treated as the full block volumes,
+     * ie. from the min corner to max + 1.
+     */
+    public void getPartsIntersectingRay(Vec3d start, Vec3d end, List<PlacementPart> out)
+    {
+        Node node = this.getTree();
+
+        if (node != null)
+        {
+            node.getIntersectingRay(start, end, out);
+        }
+    }
+
+    @Nullable
+    protected Node getTree()
+    {
+        if (this.treeDirty)
+        {
+            List<PlacementPart> allParts = new ArrayList<>();
+
+            for (List<PlacementPart> parts : this.partsPerPlacement.values())
+            {
+                allParts.addAll(parts);
+            }
+
+            this.root = allParts.isEmpty() ? null : Node.build(allParts);
+            this.treeDirty = false;
+        }
+
+        return this.root;
+    }
+
+    protected static IntBoundingBox createBox(SelectionBox box)
+    {
+        BlockPos pos1 = box.getCorner1();
+        BlockPos pos2 = box.getCorner2();
+        return IntBoundingBox.createProper(pos1.getX(), pos1.getY(), pos1.getZ(), pos2.getX(), pos2.getY(), pos2.getZ());
+    }
+
+    protected static long[] getTouchedChunks(Iterable<SelectionBox> boxes)
+    {
+        LongOpenHashSet set = new LongOpenHashSet();
+
+        for (SelectionBox box : boxes)
+        {
+            IntBoundingBox bb = createBox(box);
+
+            for (int cz = bb.minZ >> 4; cz <= bb.maxZ >> 4; ++cz)
+            {
+                for (int cx = bb.minX >> 4; cx <= bb.maxX >> 4; ++cx)
+                {
+                    set.add(ChunkPos.asLong(cx, cz));
+                }
+            }
+        }
+
+        return set.toLongArray();
+    }
+
+    /**
+     * Packs the section position into a long, with 22 bits for x and z, and 20 bits for y
+     */
+    public static long getSectionKey(int sectionX, int sectionY, int sectionZ)
+    {
+        return ((long) sectionX & 0x3FFFFFL) << 42 | ((long) sectionZ & 0x3FFFFFL) << 20 | ((long) sectionY & 0xFFFFFL);
+    }
+
+    public static int getSectionX(long key)
+    {
+        return (int) (key >> 42);
+    }
+
+    public static int getSectionY(long key)
+    {
+        return (int) (key << 44 >> 44);
+    }
+
+    public static int getSectionZ(long key)
+    {
+        return (int) (key << 22 >> 42);
+    }
+
+    protected static class Node
+    {
+        protected final int minX;
+        protected final int minY;
+        protected final int minZ;
+        protected final int maxX;
+        protected final int maxY;
+        protected final int maxZ;
+        @Nullable protected final Node left;
+        @Nullable protected final Node right;
+        @Nullable protected final PlacementPart[] parts;
+
+        protected Node(List<PlacementPart> parts, @Nullable Node left, @Nullable Node right)
+        {
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+
+            for (PlacementPart part : parts)
+            {
+                IntBoundingBox bb = part.getBox();
+                minX = Math.min(minX, bb.minX);
+                minY = Math.min(minY, bb.minY);
+                minZ = Math.min(minZ, bb.minZ);
+                maxX = Math.max(maxX, bb.maxX);
+                maxY = Math.max(maxY, bb.maxY);
+                maxZ = Math.max(maxZ, bb.maxZ);
+            }
+
+            this.minX = minX;
+            this.minY = minY;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.maxZ = maxZ;
+            this.left = left;
+            this.right = right;
+            this.parts = left == null ? parts.toArray(new PlacementPart[0]) : null;
+        }
+
+        /**
+         * Builds the tree by recursively splitting the parts in half
+         * along the longest axis of the parts' bounds
+         */
+        protected static Node build(List<PlacementPart> parts)
+        {
+            if (parts.size() <= LEAF_SIZE)
+            {
+                return new Node(parts, null, null);
+            }
+
+            Node bounds = new Node(parts, null, null);
+            int sizeX = bounds.maxX - bounds.minX;
+            int sizeY = bounds.maxY - bounds.minY;
+            int sizeZ = bounds.maxZ - bounds.minZ;
+            Comparator<PlacementPart> comparator;
+
+            if (sizeX >= sizeY && sizeX >= sizeZ)
+            {
+                comparator = Comparator.comparingInt((p) -> p.getBox().minX + p.getBox().maxX);
+            }
+            else if (sizeY >= sizeZ)
+            {
+                comparator = Comparator.comparingInt((p) -> p.getBox().minY + p.getBox().maxY);
+            }
+            else
+            {
+                comparator = Comparator.comparingInt((p) -> p.getBox().minZ + p.getBox().maxZ);
+            }
+
+            List<PlacementPart> sorted = new ArrayList<>(parts);
+            sorted.sort(comparator);
+            int mid = sorted.size() / 2;
+
+            return new Node(parts, build(sorted.subList(0, mid)), build(sorted.subList(mid, sorted.size())));
+        }
+
+        protected boolean intersects(int minX, int minY, int minZ, int maxX, int maxY, int maxZ)
+        {
+            return this.maxX >= minX && this.minX <= maxX &&
+                   this.maxY >= minY && this.minY <= maxY &&
+                   this.maxZ >= minZ && this.minZ <= maxZ;
+        }
+
+        protected static boolean intersects(IntBoundingBox bb, int minX, int minY, int minZ, int maxX, int maxY, int maxZ)
+        {
+            return bb.maxX >= minX && bb.minX <= maxX &&
+                   bb.maxY >= minY && bb.minY <= maxY &&
+                   bb.maxZ >= minZ && bb.minZ <= maxZ;
+        }
+
+        protected boolean anyIntersects(int minX, int minY, int minZ, int maxX, int maxY, int maxZ)
+        {
+            if (this.intersects(minX, minY, minZ, maxX, maxY, maxZ) == false)
+            {
+                return false;
+            }
+
+            if (this.parts != null)
+            {
+                for (PlacementPart part : this.parts)
+                {
+                    if (intersects(part.getBox(), minX, minY, minZ, maxX, maxY, maxZ))
+                    {
+                        return true;
+                    }
+                }
+
+                return false;
+            }
+
+            return this.left.anyIntersects(minX, minY, minZ, maxX, maxY, maxZ) ||
+                   this.right.anyIntersects(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+
+        protected void getIntersecting(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, List<PlacementPart> out)
+        {
+            if (this.intersects(minX, minY, minZ, maxX, maxY, maxZ) == false)
+            {
+                return;
+            }
+
+            if (this.parts != null)
+            {
+                for (PlacementPart part : this.parts)
+                {
+                    if (intersects(part.getBox(), minX, minY, minZ, maxX, maxY, maxZ))
+                    {
+                        out.add(part);
+                    }
+                }
+
+                return;
+            }
+
+            this.left.getIntersecting(minX, minY, minZ, maxX, maxY, maxZ, out);
+            this.right.getIntersecting(minX, minY, minZ, maxX, maxY, maxZ, out);
+        }
+
+        protected void getIntersectingRay(Vec3d start, Vec3d end, List<PlacementPart> out)
+        {
+            if (rayIntersects(start, end, this.minX, this.minY, this.minZ, this.maxX, this.maxY, this.maxZ) == false)
+            {
+                return;
+            }
+
+            if (this.parts != null)
+            {
+                for (PlacementPart part : this.parts)
+                {
+                    IntBoundingBox bb = part.getBox();
+
+                    if (rayIntersects(start, end, bb.minX, bb.minY, bb.minZ, bb.maxX, bb.maxY, bb.maxZ))
+                    {
+                        out.add(part);
+                    }
+                }
+
+                return;
+            }
+
+            this.left.getIntersectingRay(start, end, out);
+            this.right.getIntersectingRay(start, end, out);
+        }
+
+        /**
+         * Slab test for the line segment against the block volume box
+         */
+        protected static boolean rayIntersects(Vec3d start, Vec3d end, int minX, int minY, int minZ, int maxX, int maxY, int maxZ)
+        {
+            double tMin = 0.0;
+            double tMax = 1.0;
+
+            final double dx = end.x - start.x;
+            final double dy = end.y - start.y;
+            final double dz = end.z - start.z;
+
+            if (dx == 0.0)
+            {
+                if (start.x < minX || start.x > maxX + 1)
+                {
+                    return false;
+                }
+            }
+            else
+            {
+                double t1 = (minX - start.x) / dx;
+                double t2 = (maxX + 1 - start.x) / dx;
+                tMin = Math.max(tMin, Math.min(t1, t2));
+                tMax = Math.min(tMax, Math.max(t1, t2));
+
+                if (tMin > tMax)
+                {
+                    return false;
+                }
+            }
+
+            if (dy == 0.0)
+            {
+                if (start.y < minY || start.y > maxY + 1)
+                {
+                    return false;
+                }
+            }
+            else
+            {
+                double t1 = (minY - start.y) / dy;
+                double t2 = (maxY + 1 - start.y) / dy;
+                tMin = Math.max(tMin, Math.min(t1, t2));
+                tMax = Math.min(tMax, Math.max(t1, t2));
+
+                if (tMin > tMax)
+                {
+                    return false;
+                }
+            }
+
+            if (dz == 0.0)
+            {
+                return start.z >= minZ && start.z <= maxZ + 1;
+            }
+
+            double t1 = (minZ - start.z) / dz;
+            double t2 = (maxZ + 1 - start.z) / dz;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+
+            return tMin <= tMax;
+        }
+    }
+}
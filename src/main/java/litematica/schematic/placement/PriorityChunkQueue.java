@@ -0,0 +1,274 @@
+package litematica.schematic.placement;
+
+import java.util.AbstractSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import javax.annotation.Nullable;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+
+import malilib.util.game.wrap.EntityWrap;
+
+/**
+ * A set of chunk positions waiting to be processed, which can be iterated in the order
+ * of priority based on the distance to and the view direction of the camera entity.
+ * Chunks in front of the camera are preferred over chunks at the same distance behind it.
+ * The order is only re-sorted when new chunks are added, or when the camera
+ * moves to another chunk or turns to another 45 degree sector.
+ * Also keeps track of the number of processed chunks per second, for the metrics HUD.
+ */
+public class PriorityChunkQueue extends AbstractSet<ChunkPos>
+{
+    protected final Set<ChunkPos> chunks = new HashSet<>();
+    protected ChunkPos[] ordered = new ChunkPos[0];
+    protected int orderedStart;
+    protected boolean needsSorting;
+
+    protected double centerX;
+    protected double centerZ;
+    protected double lookX;
+    protected double lookZ = 1.0;
+    protected int lastChunkX = Integer.MAX_VALUE;
+    protected int lastChunkZ = Integer.MAX_VALUE;
+    protected int lastYawSector = -1;
+
+    protected long throughputWindowStart = System.nanoTime();
+    protected int processedInWindow;
+    protected double chunksPerSecond;
+
+    @Override
+    public int size()
+    {
+        return this.chunks.size();
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        return this.chunks.contains(o);
+    }
+
+    @Override
+    public boolean add(ChunkPos pos)
+    {
+        if (this.chunks.add(pos))
+        {
+            this.needsSorting = true;
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+        return this.chunks.remove(o);
+    }
+
+    @Override
+    public void clear()
+    {
+        this.chunks.clear();
+        this.ordered = new ChunkPos[0];
+        this.orderedStart = 0;
+        this.needsSorting = false;
+    }
+
+    /**
+     * @return an iterator in no particular order. Use {@link #orderedIterator()} for processing the chunks.
+     */
+    @Override
+    public Iterator<ChunkPos> iterator()
+    {
+        return this.chunks.iterator();
+    }
+
+    /**
+     * Updates the camera position and direction that the chunks are prioritized by
+     */
+    public void updateViewPosition(@Nullable Entity entity)
+    {
+        if (entity == null)
+        {
+            return;
+        }
+
+        double x = EntityWrap.getX(entity);
+        double z = EntityWrap.getZ(entity);
+        float yaw = EntityWrap.getYaw(entity);
+        int chunkX = MathHelper.floor(x) >> 4;
+        int chunkZ = MathHelper.floor(z) >> 4;
+        int yawSector = MathHelper.floor(yaw / 45.0F) & 7;
+
+        if (chunkX != this.lastChunkX || chunkZ != this.lastChunkZ || yawSector != this.lastYawSector)
+        {
+            this.lastChunkX = chunkX;
+            this.lastChunkZ = chunkZ;
+            this.lastYawSector = yawSector;
+            this.centerX = x;
+            this.centerZ = z;
+            this.lookX = -MathHelper.sin(yaw * 0.017453292F);
+            this.lookZ = MathHelper.cos(yaw * 0.017453292F);
+            this.needsSorting = this.chunks.isEmpty() == false;
+        }
+    }
+
+    /**
+     * @return an iterator over the chunks in the order of priority, which supports removing the current chunk
+     */
+    public Iterator<ChunkPos> orderedIterator()
+    {
+        if (this.needsSorting)
+        {
+            this.sort();
+        }
+
+        // Skip over the chunks at the start that have already been processed
+        while (this.orderedStart < this.ordered.length && this.chunks.contains(this.ordered[this.orderedStart]) == false)
+        {
+            ++this.orderedStart;
+        }
+
+        return new OrderedIterator(this.orderedStart);
+    }
+
+    protected void sort()
+    {
+        final int count = this.chunks.size();
+        ChunkPos[] positions = this.chunks.toArray(new ChunkPos[count]);
+        double[] priorities = new double[count];
+        int[] indices = new int[count];
+
+        for (int i = 0; i < count; ++i)
+        {
+            priorities[i] = this.getPriority(positions[i]);
+            indices[i] = i;
+        }
+
+        IntArrays.quickSort(indices, (i1, i2) -> Double.compare(priorities[i1], priorities[i2]));
+
+        this.ordered = new ChunkPos[count];
+
+        for (int i = 0; i < count; ++i)
+        {
+            this.ordered[i] = positions[indices[i]];
+        }
+
+        this.orderedStart = 0;
+        this.needsSorting = false;
+    }
+
+    /**
+     * @return the priority of the given chunk, smaller values get processed first
+     */
+    protected double getPriority(ChunkPos pos)
+    {
+        double dx = (pos.x << 4) + 8 - this.centerX;
+        double dz = (pos.z << 4) + 8 - this.centerZ;
+        double distSq = dx * dx + dz * dz;
+
+        if (distSq < 1.0)
+        {
+            return distSq;
+        }
+
+        // 1.0 for chunks straight ahead, 2.0 for chunks straight behind the camera
+        double dot = (dx * this.lookX + dz * this.lookZ) / Math.sqrt(distSq);
+
+        return distSq * (1.5 - 0.5 * dot);
+    }
+
+    public void onChunkProcessed()
+    {
+        ++this.processedInWindow;
+    }
+
+    /**
+     * Updates the processed chunks per second value, once per second
+     */
+    public void updateThroughput()
+    {
+        long now = System.nanoTime();
+        long elapsed = now - this.throughputWindowStart;
+
+        if (elapsed >= 1000000000L)
+        {
+            this.chunksPerSecond = this.processedInWindow * 1.0E9 / (double) elapsed;
+            this.processedInWindow = 0;
+            this.throughputWindowStart = now;
+        }
+    }
+
+    public double getChunksPerSecond()
+    {
+        return this.chunksPerSecond;
+    }
+
+    protected class OrderedIterator implements Iterator<ChunkPos>
+    {
+        protected int index;
+        @Nullable protected ChunkPos next;
+        @Nullable protected ChunkPos current;
+
+        protected OrderedIterator(int startIndex)
+        {
+            this.index = startIndex;
+            this.findNext();
+        }
+
+        protected void findNext()
+        {
+            this.next = null;
+            ChunkPos[] ordered = PriorityChunkQueue.this.ordered;
+
+            while (this.index < ordered.length)
+            {
+                ChunkPos pos = ordered[this.index++];
+
+                if (PriorityChunkQueue.this.chunks.contains(pos))
+                {
+                    this.next = pos;
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return this.next != null;
+        }
+
+        @Override
+        public ChunkPos next()
+        {
+            if (this.next == null)
+            {
+                throw new NoSuchElementException();
+            }
+
+            this.current = this.next;
+            this.findNext();
+
+            return this.current;
+        }
+
+        @Override
+        public void remove()
+        {
+            if (this.current == null)
+            {
+                throw new IllegalStateException();
+            }
+
+            PriorityChunkQueue.this.chunks.remove(this.current);
+            this.current = null;
+        }
+    }
+}
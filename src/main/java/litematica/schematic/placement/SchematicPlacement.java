@@ -7,6 +7,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nullable;
 import com.google.common.collect.ImmutableMap;
 import com.google.gson.JsonObject;
@@ -38,6 +39,8 @@ public class SchematicPlacement extends SchematicPlacementUnloaded
 
     @Nullable protected SchematicVerifier verifier;
     @Nullable protected MaterialListBase materialList;
+    /** The cached sub-region transforms. This can be accessed from the worker threads building the schematic world chunks. */
+    protected final Map<String, SubRegionTransform> subRegionTransforms = new ConcurrentHashMap<>();
 
     protected SchematicPlacement(ISchematic schematic,
                                  @Nullable String storageFile,
@@ -138,6 +141,33 @@ public class SchematicPlacement extends SchematicPlacementUnloaded
         return this.relativeSubRegionPlacements.get(areaName);
     }
 
+    /**
+     * @return the transform of the given sub-region, which is re-created when
+     *         the rotation or mirror of the placement or the sub-region has changed,
+     *         or null if the sub-region doesn't exist
+     */
+    @Nullable
+    public SubRegionTransform getSubRegionTransform(String regionName)
+    {
+        SubRegionPlacement placement = this.relativeSubRegionPlacements.get(regionName);
+        ISchematicRegion region = this.schematic.getSchematicRegion(regionName);
+
+        if (placement == null || region == null)
+        {
+            return null;
+        }
+
+        SubRegionTransform transform = this.subRegionTransforms.get(regionName);
+
+        if (transform == null || transform.isValidFor(this, placement, region) == false)
+        {
+            transform = new SubRegionTransform(this, placement, region);
+            this.subRegionTransforms.put(regionName, transform);
+        }
+
+        return transform;
+    }
+
     public List<SubRegionPlacement> getAllSubRegionsPlacements()
     {
         return new ArrayList<>(this.relativeSubRegionPlacements.values());
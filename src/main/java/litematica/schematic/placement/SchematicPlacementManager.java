@@ -3,14 +3,15 @@ package litematica.schematic.placement;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import javax.annotation.Nullable;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.HashMultimap;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -25,6 +26,7 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.RayTraceResult;
 import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
 
 import malilib.config.value.LayerMode;
 import malilib.input.Hotkey;
@@ -35,6 +37,7 @@ import malilib.util.game.wrap.EntityWrap;
 import malilib.util.game.wrap.GameUtils;
 import malilib.util.position.ChunkSectionPos;
 import malilib.util.position.IntBoundingBox;
+import litematica.Litematica;
 import litematica.config.Configs;
 import litematica.config.Hotkeys;
 import litematica.data.DataManager;
@@ -42,9 +45,12 @@ import litematica.data.SchematicHolder;
 import litematica.render.LitematicaRenderer;
 import litematica.render.OverlayRenderer;
 import litematica.render.infohud.StatusInfoRenderer;
+import litematica.scheduler.WorkerThreadPool;
 import litematica.schematic.ISchematic;
 import litematica.schematic.ISchematicRegion;
 import litematica.schematic.placement.SubRegionPlacement.RequiredEnabled;
+import litematica.schematic.util.SchematicChunkBuilder;
+import litematica.schematic.util.SchematicChunkCache;
 import litematica.schematic.util.SchematicPlacingUtils;
 import litematica.util.IGenericEventListener;
 import litematica.util.PositionUtils;
@@ -52,6 +58,7 @@ import litematica.util.RayTraceUtils;
 import litematica.util.RayTraceUtils.RayTraceWrapper;
 import litematica.util.RayTraceUtils.RayTraceWrapper.HitType;
 import litematica.util.ReplaceBehavior;
+import litematica.world.ChunkSchematic;
 import litematica.world.SchematicWorldHandler;
 import litematica.world.WorldSchematic;
 
@@ -61,12 +68,13 @@ public class SchematicPlacementManager
     private final List<SchematicPlacementUnloaded> lightlyLoadedPlacements = new ArrayList<>();
     private final Set<SchematicPlacement> allVisibleSchematicPlacements = new HashSet<>();
 
-    private final HashMultimap<ChunkPos, SchematicPlacement> schematicsTouchingChunk = HashMultimap.create();
-    private final ArrayListMultimap<ChunkSectionPos, PlacementPart> touchedVolumesInSubChunk = ArrayListMultimap.create();
+    private final PlacementSpatialIndex spatialIndex = new PlacementSpatialIndex();
+    @Nullable private PendingPlacementMove pendingMove;
 
-    private final Set<ChunkPos> chunksToRebuild = new HashSet<>();
-    private final Set<ChunkPos> chunksToUnload = new HashSet<>();
+    private final PriorityChunkQueue chunksToRebuild = new PriorityChunkQueue();
+    private final PriorityChunkQueue chunksToUnload = new PriorityChunkQueue();
     private final Set<ChunkPos> chunksPreChange = new HashSet<>();
+    private final Map<ChunkPos, CompletableFuture<SchematicChunkBuilder>> pendingChunkBuilds = new LinkedHashMap<>();
 
     private final List<IGenericEventListener> rebuildListeners = new ArrayList<>();
 
@@ -83,12 +91,32 @@ public class SchematicPlacementManager
 
     public boolean hasPendingRebuilds()
     {
-        return this.chunksToRebuild.isEmpty() == false;
+        return this.chunksToRebuild.isEmpty() == false || this.pendingChunkBuilds.isEmpty() == false;
     }
 
     public boolean hasPendingRebuildFor(ChunkPos pos)
     {
-        return this.chunksToRebuild.contains(pos);
+        return this.chunksToRebuild.contains(pos) || this.pendingChunkBuilds.containsKey(pos);
+    }
+
+    public int getQueuedChunkRebuildCount()
+    {
+        return this.chunksToRebuild.size();
+    }
+
+    public int getQueuedChunkUnloadCount()
+    {
+        return this.chunksToUnload.size();
+    }
+
+    public int getPendingChunkBuildCount()
+    {
+        return this.pendingChunkBuilds.size();
+    }
+
+    public double getChunkRebuildsPerSecond()
+    {
+        return this.chunksToRebuild.getChunksPerSecond();
     }
 
     public void addRebuildListener(IGenericEventListener listener)
@@ -106,94 +134,269 @@ public class SchematicPlacementManager
             this.gridManager.createOrRemoveGridPlacementsForLoadedArea();
         }
 
+        final long startTime = DataManager.getClientTickStartTime();
+        final long budget = (long) Configs.Generic.CHUNK_REBUILD_TIME_BUDGET.getIntegerValue() * 1000000L;
+        Entity cameraEntity = GameUtils.getCameraEntity();
+
+        this.chunksToRebuild.updateThroughput();
+
         if (this.chunksToUnload.isEmpty() == false)
         {
             WorldSchematic worldSchematic = SchematicWorldHandler.getSchematicWorld();
 
             if (worldSchematic != null)
             {
-                for (ChunkPos pos : this.chunksToUnload)
+                // Unload the chunks closest to the camera first, as those are the most visible ones
+                this.chunksToUnload.updateViewPosition(cameraEntity);
+                Iterator<ChunkPos> iter = this.chunksToUnload.orderedIterator();
+
+                while (iter.hasNext() && (System.nanoTime() - startTime) < budget)
                 {
+                    ChunkPos pos = iter.next();
                     this.unloadSchematicChunk(worldSchematic, pos.x, pos.z);
+                    iter.remove();
                 }
             }
-
-            this.chunksToUnload.clear();
+            else
+            {
+                this.chunksToUnload.clear();
+            }
         }
 
         //System.out.printf("processQueuedChunks, size: %d\n", this.chunksToRebuild.size());
-        if (this.chunksToRebuild.isEmpty() == false)
+        if (this.chunksToRebuild.isEmpty() == false || this.pendingChunkBuilds.isEmpty() == false)
         {
             WorldClient clientWorld = GameUtils.getClientWorld();
 
             if (clientWorld == null)
             {
                 this.chunksToRebuild.clear();
+                this.cancelPendingChunkBuilds();
+                this.finishPendingMove();
                 return true;
             }
 
             WorldSchematic worldSchematic = SchematicWorldHandler.getSchematicWorld();
-            Iterator<ChunkPos> iter = this.chunksToRebuild.iterator();
+            final boolean offThread = Configs.Generic.PROCESS_CHUNKS_OFF_THREAD.getBooleanValue();
+            final int maxPendingBuilds = WorkerThreadPool.getThreadCount() * 4;
+
+            this.finishCompletedChunkBuilds(worldSchematic, startTime, budget);
+
+            // Process the chunks closest to the camera first, so that the area around the player fills in first
+            this.chunksToRebuild.updateViewPosition(cameraEntity);
+            Iterator<ChunkPos> iter = this.chunksToRebuild.orderedIterator();
 
             while (iter.hasNext())
             {
-                if ((System.nanoTime() - DataManager.getClientTickStartTime()) >= 45000000L)
+                if ((System.nanoTime() - startTime) >= budget)
                 {
                     break;
                 }
 
                 ChunkPos pos = iter.next();
 
-                if (this.schematicsTouchingChunk.containsKey(pos) == false)
+                // Wait for the previous build to finish, its result then gets discarded
+                if (this.pendingChunkBuilds.containsKey(pos))
                 {
-                    iter.remove();
                     continue;
                 }
 
-                if (Configs.Generic.LOAD_ENTIRE_SCHEMATICS.getBooleanValue() ||
-                    clientWorld.getChunkProvider().isChunkGeneratedAt(pos.x, pos.z))
+                if (this.spatialIndex.isChunkTouched(pos.x, pos.z) == false)
                 {
-                    // Wipe the old chunk if it exists
-                    if (worldSchematic.getChunkProvider().isChunkGeneratedAt(pos.x, pos.z))
+                    if (this.pendingMove != null)
                     {
-                        //System.out.printf("wiping chunk at %s\n", pos);
-                        this.unloadSchematicChunk(worldSchematic, pos.x, pos.z);
+                        this.pendingMove.onChunkRebuilt(pos.x, pos.z);
                     }
 
-                    //System.out.printf("loading chunk at %s\n", pos);
-                    worldSchematic.getChunkProvider().loadChunk(pos.x, pos.z);
+                    iter.remove();
+                    continue;
                 }
 
-                if (worldSchematic.getChunkProvider().isChunkGeneratedAt(pos.x, pos.z))
-                {
-                    //System.out.printf("placing at %s\n", pos);
-                    Collection<SchematicPlacement> placements = this.schematicsTouchingChunk.get(pos);
+                boolean canLoad = Configs.Generic.LOAD_ENTIRE_SCHEMATICS.getBooleanValue() ||
+                                  clientWorld.getChunkProvider().isChunkGeneratedAt(pos.x, pos.z);
 
-                    if (placements.isEmpty() == false)
+                if (canLoad && offThread)
+                {
+                    if (this.pendingChunkBuilds.size() >= maxPendingBuilds)
                     {
-                        for (SchematicPlacement placement : placements)
-                        {
-                            if (placement.isEnabled())
-                            {
-                                SchematicPlacingUtils.placeToWorldWithinChunk(placement, pos, worldSchematic, ReplaceBehavior.ALL, false);
-                            }
-                        }
-
-                        worldSchematic.markBlockRangeForRenderUpdate(pos.x << 4, 0, pos.z << 4, (pos.x << 4) + 15, 256, (pos.z << 4) + 15);
+                        break;
                     }
 
+                    this.submitChunkBuild(pos);
+                    iter.remove();
+                }
+                else if (canLoad)
+                {
+                    SchematicChunkBuilder builder = this.createChunkBuilder(pos);
+                    builder.build();
+                    this.applyChunkBuild(worldSchematic, builder);
                     iter.remove();
                 }
+                else if (worldSchematic.getChunkProvider().isChunkGeneratedAt(pos.x, pos.z))
+                {
+                    this.placeChunkContents(worldSchematic, pos);
+                    iter.remove();
+                }
+            }
+
+            if (this.pendingMove != null && this.pendingMove.isFinished())
+            {
+                this.finishPendingMove();
             }
 
             LitematicaRenderer.getInstance().getWorldRenderer().markNeedsUpdate();
 
-            return this.chunksToRebuild.isEmpty();
+            return this.chunksToRebuild.isEmpty() && this.pendingChunkBuilds.isEmpty();
         }
 
         return false;
     }
 
+    private void wipeAndLoadSchematicChunk(WorldSchematic worldSchematic, ChunkPos pos)
+    {
+        // Wipe the old chunk if it exists
+        if (worldSchematic.getChunkProvider().isChunkGeneratedAt(pos.x, pos.z))
+        {
+            //System.out.printf("wiping chunk at %s\n", pos);
+            this.unloadSchematicChunk(worldSchematic, pos.x, pos.z);
+        }
+
+        //System.out.printf("loading chunk at %s\n", pos);
+        worldSchematic.getChunkProvider().loadChunk(pos.x, pos.z);
+    }
+
+    private void placeChunkContents(WorldSchematic worldSchematic, ChunkPos pos)
+    {
+        //System.out.printf("placing at %s\n", pos);
+        List<SchematicPlacement> placements = this.spatialIndex.getPlacementsTouchingChunk(pos.x, pos.z);
+        List<VirtualGrid> grids = this.spatialIndex.getVirtualGridsTouchingChunk(pos.x, pos.z);
+
+        if (placements.isEmpty() == false || grids.isEmpty() == false)
+        {
+            for (SchematicPlacement placement : placements)
+            {
+                if (placement.isEnabled())
+                {
+                    SchematicPlacingUtils.placeToWorldWithinChunk(placement, pos, worldSchematic, ReplaceBehavior.ALL, false);
+                }
+            }
+
+            ((ChunkSchematic) worldSchematic.getChunk(pos.x, pos.z)).setVirtualGrids(grids);
+
+            worldSchematic.markBlockRangeForRenderUpdate(pos.x << 4, 0, pos.z << 4, (pos.x << 4) + 15, 256, (pos.z << 4) + 15);
+        }
+
+        this.chunksToRebuild.onChunkProcessed();
+
+        if (this.pendingMove != null)
+        {
+            this.pendingMove.onChunkRebuilt(pos.x, pos.z);
+        }
+    }
+
+    private SchematicChunkBuilder createChunkBuilder(ChunkPos pos)
+    {
+        List<SchematicPlacement> placements = new ArrayList<>();
+
+        for (SchematicPlacement placement : this.spatialIndex.getPlacementsTouchingChunk(pos.x, pos.z))
+        {
+            if (placement.isEnabled())
+            {
+                placements.add(placement);
+            }
+        }
+
+        return new SchematicChunkBuilder(pos, placements);
+    }
+
+    /**
+     * Builds the contents of the given chunk from the placements currently touching it,
+     * on a worker thread
+     */
+    private void submitChunkBuild(ChunkPos pos)
+    {
+        SchematicChunkBuilder builder = this.createChunkBuilder(pos);
+        CompletableFuture<SchematicChunkBuilder> future = CompletableFuture.supplyAsync(() ->
+        {
+            builder.build();
+            return builder;
+        }, WorkerThreadPool.getPool());
+
+        this.pendingChunkBuilds.put(pos, future);
+    }
+
+    /**
+     * Swaps the completed off-thread chunk builds into the schematic world,
+     * until the time budget runs out
+     */
+    private void finishCompletedChunkBuilds(WorldSchematic worldSchematic, long startTime, long budget)
+    {
+        Iterator<Map.Entry<ChunkPos, CompletableFuture<SchematicChunkBuilder>>> iter = this.pendingChunkBuilds.entrySet().iterator();
+
+        while (iter.hasNext() && (System.nanoTime() - startTime) < budget)
+        {
+            Map.Entry<ChunkPos, CompletableFuture<SchematicChunkBuilder>> entry = iter.next();
+            CompletableFuture<SchematicChunkBuilder> future = entry.getValue();
+
+            if (future.isDone() == false)
+            {
+                continue;
+            }
+
+            ChunkPos pos = entry.getKey();
+            iter.remove();
+
+            // The chunk was marked for rebuild again while it was being built,
+            // or it's no longer touched by any placements, so the result is outdated
+            if (this.chunksToRebuild.contains(pos) || this.spatialIndex.isChunkTouched(pos.x, pos.z) == false)
+            {
+                continue;
+            }
+
+            try
+            {
+                this.applyChunkBuild(worldSchematic, future.join());
+            }
+            catch (Exception e)
+            {
+                // Fall back to rebuilding the chunk on the main thread
+                Litematica.logger.warn("Failed to build schematic chunk [{}, {}] off-thread", pos.x, pos.z, e);
+                this.wipeAndLoadSchematicChunk(worldSchematic, pos);
+                this.placeChunkContents(worldSchematic, pos);
+            }
+        }
+    }
+
+    private void applyChunkBuild(WorldSchematic worldSchematic, SchematicChunkBuilder builder)
+    {
+        ChunkPos pos = builder.getChunkPos();
+
+        // Wipe the old chunk if it exists
+        if (worldSchematic.getChunkProvider().isChunkGeneratedAt(pos.x, pos.z))
+        {
+            this.unloadSchematicChunk(worldSchematic, pos.x, pos.z);
+        }
+
+        Chunk chunk = worldSchematic.getChunkProvider().loadChunk(pos.x, pos.z);
+
+        builder.applyToChunk(worldSchematic, chunk);
+        ((ChunkSchematic) chunk).setVirtualGrids(this.spatialIndex.getVirtualGridsTouchingChunk(pos.x, pos.z));
+        worldSchematic.markBlockRangeForRenderUpdate(pos.x << 4, 0, pos.z << 4, (pos.x << 4) + 15, 256, (pos.z << 4) + 15);
+        this.chunksToRebuild.onChunkProcessed();
+
+        if (this.pendingMove != null)
+        {
+            this.pendingMove.onChunkRebuilt(pos.x, pos.z);
+        }
+    }
+
+    private void cancelPendingChunkBuilds()
+    {
+        // Any still running builds just get their results discarded
+        this.pendingChunkBuilds.values().forEach(future -> future.cancel(false));
+        this.pendingChunkBuilds.clear();
+    }
+
     public void onClientChunkUnload(int chunkX, int chunkZ)
     {
         if (Configs.Generic.LOAD_ENTIRE_SCHEMATICS.getBooleanValue() == false)
@@ -213,6 +416,11 @@ public class SchematicPlacementManager
         if (worldSchematic.getChunkProvider().isChunkGeneratedAt(chunkX, chunkZ))
         {
             //System.out.printf("unloading chunk at %d, %d\n", chunkX, chunkZ);
+            if (this.pendingMove != null)
+            {
+                this.pendingMove.onChunkRebuilt(chunkX, chunkZ);
+            }
+
             worldSchematic.markBlockRangeForRenderUpdate((chunkX << 4) - 1, 0, (chunkZ << 4) - 1, (chunkX << 4) + 16, 256, (chunkZ << 4) + 16);
             worldSchematic.getChunkProvider().unloadChunk(chunkX, chunkZ);
         }
@@ -231,26 +439,51 @@ public class SchematicPlacementManager
         return list;
     }
 
-    public List<IntBoundingBox> getTouchedBoxesInSubChunk(ChunkSectionPos subChunk)
+    public PlacementSpatialIndex getSpatialIndex()
     {
-        List<IntBoundingBox> list = new ArrayList<>();
+        return this.spatialIndex;
+    }
 
-        for (PlacementPart part : this.touchedVolumesInSubChunk.get(subChunk))
-        {
-            list.add(part.getBox());
-        }
+    /**
+     * @return the currently pending translation-only move, if the schematic world
+     *         chunks affected by a placement move are still being rebuilt
+     */
+    @Nullable
+    public PendingPlacementMove getPendingMove()
+    {
+        return this.pendingMove;
+    }
 
-        return list;
+    /**
+     * @return the boxes of all the enabled placements within the given sub-chunk, clipped to the sub-chunk
+     */
+    public List<IntBoundingBox> getTouchedBoxesInSubChunk(ChunkSectionPos subChunk)
+    {
+        return this.spatialIndex.getClippedBoxesInSection(subChunk.getX(), subChunk.getY(), subChunk.getZ());
     }
 
+    /**
+     * @return the parts of all the enabled placements touching the given sub-chunk.
+     *         Note that the boxes of the parts are the full sub-region boxes.
+     */
     public List<PlacementPart> getAllPlacementsTouchingSubChunk(ChunkSectionPos pos)
     {
-        return this.touchedVolumesInSubChunk.get(pos);
+        return this.spatialIndex.getPartsInSection(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    /**
+     * @return the parts of all the enabled placements containing the given position
+     */
+    public List<PlacementPart> getPlacementPartsAt(BlockPos pos)
+    {
+        List<PlacementPart> list = new ArrayList<>();
+        this.spatialIndex.getPartsAt(pos, list);
+        return list;
     }
 
     public Set<ChunkSectionPos> getAllTouchedSubChunks()
     {
-        return this.touchedVolumesInSubChunk.keySet();
+        return Collections.unmodifiableSet(this.spatialIndex.getTouchedSections());
     }
 
     public void addSchematicPlacement(SchematicPlacement placement, boolean printMessages)
@@ -422,6 +655,7 @@ public class SchematicPlacementManager
             this.gridManager.onPlacementRemoved(loadedPlacement);
             this.removeVisiblePlacement(loadedPlacement);
             this.removeTouchedChunksFor(loadedPlacement);
+            SchematicChunkCache.onPlacementRemoved(loadedPlacement);
 
             if (ret && update)
             {
@@ -520,16 +754,8 @@ public class SchematicPlacementManager
         {
             Set<ChunkPos> chunks = placement.getTouchedChunks();
 
-            for (ChunkPos pos : chunks)
-            {
-                if (this.schematicsTouchingChunk.containsEntry(pos, placement) == false)
-                {
-                    this.schematicsTouchingChunk.put(pos, placement);
-                    this.updateTouchedBoxesInChunk(pos);
-                }
-
-                this.chunksToUnload.remove(pos);
-            }
+            this.spatialIndex.addOrUpdatePlacement(placement);
+            this.chunksToUnload.removeAll(chunks);
 
             this.markChunksForRebuild(chunks);
 
@@ -542,16 +768,16 @@ public class SchematicPlacementManager
 
     void removeTouchedChunksFor(SchematicPlacement placement)
     {
+        this.finishPendingMoveOf(placement);
+        this.spatialIndex.removePlacement(placement);
+
         if (placement.matchesRequirement(RequiredEnabled.PLACEMENT_ENABLED))
         {
             Set<ChunkPos> chunks = placement.getTouchedChunks();
 
             for (ChunkPos pos : chunks)
             {
-                this.schematicsTouchingChunk.remove(pos, placement);
-                this.updateTouchedBoxesInChunk(pos);
-
-                if (this.schematicsTouchingChunk.containsKey(pos) == false)
+                if (this.spatialIndex.isChunkTouched(pos.x, pos.z) == false)
                 {
                     this.chunksToUnload.add(pos);
                 }
@@ -563,6 +789,40 @@ public class SchematicPlacementManager
         }
     }
 
+    void addVirtualGrid(VirtualGrid grid)
+    {
+        this.spatialIndex.addVirtualGrid(grid);
+
+        for (long posLong : grid.getTouchedChunks())
+        {
+            ChunkPos pos = new ChunkPos((int) posLong, (int) (posLong >> 32));
+            this.chunksToUnload.remove(pos);
+            this.chunksToRebuild.add(pos);
+        }
+    }
+
+    void removeVirtualGrid(VirtualGrid grid)
+    {
+        long[] chunks = this.spatialIndex.removeVirtualGrid(grid);
+
+        if (chunks != null)
+        {
+            for (long posLong : chunks)
+            {
+                ChunkPos pos = new ChunkPos((int) posLong, (int) (posLong >> 32));
+
+                if (this.spatialIndex.isChunkTouched(pos.x, pos.z))
+                {
+                    this.chunksToRebuild.add(pos);
+                }
+                else
+                {
+                    this.chunksToUnload.add(pos);
+                }
+            }
+        }
+    }
+
     public void updateGridPlacementsFor(SchematicPlacement basePlacement)
     {
         this.gridManager.updateGridPlacementsFor(basePlacement);
@@ -570,6 +830,8 @@ public class SchematicPlacementManager
 
     private void onPrePlacementChange(SchematicPlacement placement)
     {
+        // Any other changes than translations can't be shown by offsetting the old geometry
+        this.finishPendingMoveOf(placement);
         this.chunksPreChange.clear();
         this.chunksPreChange.addAll(placement.getTouchedChunks());
     }
@@ -581,14 +843,13 @@ public class SchematicPlacementManager
 
         //System.out.printf("chunkPre: %s - chunkPost: %s\n", this.chunksPreChange, chunksPost);
         this.chunksPreChange.removeAll(chunksPost);
+        this.spatialIndex.addOrUpdatePlacement(placement);
 
         for (ChunkPos pos : this.chunksPreChange)
         {
-            this.schematicsTouchingChunk.remove(pos, placement);
-            this.updateTouchedBoxesInChunk(pos);
             //System.out.printf("removing placement from: %s\n", pos);
 
-            if (this.schematicsTouchingChunk.containsKey(pos) == false)
+            if (this.spatialIndex.isChunkTouched(pos.x, pos.z) == false)
             {
                 //System.out.printf("unloading: %s\n", pos);
                 this.chunksToUnload.add(pos);
@@ -600,17 +861,120 @@ public class SchematicPlacementManager
             }
         }
 
-        for (ChunkPos pos : chunksPost)
+        this.markChunksForRebuild(toRebuild);
+    }
+
+    /**
+     * Moves the placement to the new origin. Only the chunks that the placement touches
+     * before or after the move get rebuilt, and until each of those chunks has been rebuilt,
+     * its old geometry is rendered with an offset matching the move.
+     * The chunks that the placement no longer touches are only unloaded after all the other
+     * chunks have been rebuilt, so that their old geometry can also be rendered moved until then.
+     */
+    private void movePlacement(SchematicPlacement placement, BlockPos newOrigin)
+    {
+        WorldSchematic worldSchematic = SchematicWorldHandler.getSchematicWorld();
+
+        if (worldSchematic == null || placement.matchesRequirement(RequiredEnabled.PLACEMENT_ENABLED) == false)
+        {
+            this.onPrePlacementChange(placement);
+            placement.setOrigin(newOrigin);
+            this.onPlacementModified(placement);
+            return;
+        }
+
+        if (this.pendingMove != null && this.pendingMove.getPlacement() != placement)
         {
-            if (this.schematicsTouchingChunk.containsEntry(pos, placement) == false)
+            this.finishPendingMove();
+        }
+
+        if (this.pendingMove == null)
+        {
+            this.pendingMove = new PendingPlacementMove(placement);
+        }
+
+        PendingPlacementMove move = this.pendingMove;
+        BlockPos oldOrigin = placement.getOrigin();
+        Set<ChunkPos> chunksPre = placement.getTouchedChunks();
+
+        placement.setOrigin(newOrigin);
+        placement.updateEnclosingBox();
+        this.spatialIndex.addOrUpdatePlacement(placement);
+
+        Set<ChunkPos> chunksPost = placement.getTouchedChunks();
+        Set<ChunkPos> toRebuild = new HashSet<>(chunksPost);
+
+        for (ChunkPos pos : chunksPre)
+        {
+            boolean loaded = worldSchematic.getChunkProvider().isChunkGeneratedAt(pos.x, pos.z);
+
+            if (loaded)
             {
-                this.schematicsTouchingChunk.put(pos, placement);
+                move.addStaleChunk(pos, oldOrigin);
+                LitematicaRenderer.getInstance().getWorldRenderer().markGeometryMoved(pos.x, pos.z, placement, oldOrigin);
             }
 
-            this.updateTouchedBoxesInChunk(pos);
+            if (chunksPost.contains(pos))
+            {
+                continue;
+            }
+
+            if (this.spatialIndex.isChunkTouched(pos.x, pos.z))
+            {
+                toRebuild.add(pos);
+            }
+            else if (loaded)
+            {
+                move.addDeferredUnload(pos);
+            }
+            else
+            {
+                this.chunksToUnload.add(pos);
+            }
+        }
+
+        for (ChunkPos pos : toRebuild)
+        {
+            this.chunksToUnload.remove(pos);
+
+            if (worldSchematic.getChunkProvider().isChunkGeneratedAt(pos.x, pos.z))
+            {
+                move.addPendingRebuild(pos);
+            }
         }
 
         this.markChunksForRebuild(toRebuild);
+        this.gridManager.updateGridPlacementsFor(placement);
+        OverlayRenderer.getInstance().updatePlacementCache();
+
+        if (move.isFinished())
+        {
+            this.finishPendingMove();
+        }
+    }
+
+    private void finishPendingMoveOf(SchematicPlacement placement)
+    {
+        if (this.pendingMove != null && this.pendingMove.getPlacement() == placement)
+        {
+            this.finishPendingMove();
+        }
+    }
+
+    private void finishPendingMove()
+    {
+        if (this.pendingMove != null)
+        {
+            for (ChunkPos pos : this.pendingMove.getDeferredUnloads())
+            {
+                if (this.spatialIndex.isChunkTouched(pos.x, pos.z) == false)
+                {
+                    this.chunksToUnload.add(pos);
+                }
+            }
+
+            this.pendingMove = null;
+        }
     }
 
     private void onPlacementModified(SchematicPlacement placement)
@@ -682,9 +1046,7 @@ public class SchematicPlacementManager
 
         if (oldOrigin.equals(newOrigin) == false)
         {
-            this.onPrePlacementChange(placement);
-            placement.setOrigin(newOrigin);
-            this.onPlacementModified(placement);
+            this.movePlacement(placement, newOrigin);
         }
         else if (origin.equals(oldOrigin) == false && placement.coordinateLockMask != 0)
         {
@@ -890,46 +1252,6 @@ public class SchematicPlacementManager
         return success;
     }
 
-    private void updateTouchedBoxesInChunk(ChunkPos pos)
-    {
-        for (int y = 0; y < 16; ++y)
-        {
-            ChunkSectionPos subChunk = new ChunkSectionPos(pos.x, y, pos.z);
-            this.touchedVolumesInSubChunk.removeAll(subChunk);
-        }
-
-        Collection<SchematicPlacement> placements = this.schematicsTouchingChunk.get(pos);
-
-        if (placements.isEmpty() == false)
-        {
-            for (SchematicPlacement placement : placements)
-            {
-                if (placement.matchesRequirement(RequiredEnabled.PLACEMENT_ENABLED))
-                {
-                    Map<String, IntBoundingBox> boxMap = placement.getBoxesWithinChunk(pos.x, pos.z);
-
-                    for (Map.Entry<String, IntBoundingBox> entry : boxMap.entrySet())
-                    {
-                        IntBoundingBox bbOrig = entry.getValue();
-                        final int startCY = (bbOrig.minY >> 4);
-                        final int endCY = (bbOrig.maxY >> 4);
-
-                        for (int cy = startCY; cy <= endCY; ++cy)
-                        {
-                            int y1 = Math.max((cy << 4)     , bbOrig.minY);
-                            int y2 = Math.min((cy << 4) + 15, bbOrig.maxY);
-
-                            IntBoundingBox bbSub = new IntBoundingBox(bbOrig.minX, y1, bbOrig.minZ, bbOrig.maxX, y2, bbOrig.maxZ);
-                            PlacementPart part = new PlacementPart(placement, entry.getKey(), bbSub);
-                            this.touchedVolumesInSubChunk.put(new ChunkSectionPos(pos.x, cy, pos.z), part);
-                            //System.out.printf("updateTouchedBoxesInChunk box at %d, %d, %d: %s\n", pos.x, cy, pos.z, bbSub);
-                        }
-                    }
-                }
-            }
-        }
-    }
-
     public void markAllPlacementsOfSchematicForRebuild(ISchematic schematic)
     {
         for (SchematicPlacement placement : this.allVisibleSchematicPlacements)
@@ -937,6 +1259,7 @@ public class SchematicPlacementManager
             if (placement.getSchematic() == schematic)
             {
                 this.markChunksForRebuild(placement);
+                this.gridManager.rebuildVirtualGridOf(placement);
             }
         }
     }
@@ -1102,11 +1425,12 @@ public class SchematicPlacementManager
         this.lightlyLoadedPlacements.clear();
         this.gridManager.clear();
         this.selectedPlacement = null;
-        this.schematicsTouchingChunk.clear();
-        this.touchedVolumesInSubChunk.clear();
+        this.spatialIndex.clear();
+        this.pendingMove = null;
         this.chunksPreChange.clear();
         this.chunksToRebuild.clear();
         this.chunksToUnload.clear();
+        this.cancelPendingChunkBuilds();
 
         SchematicHolder.getInstance().clearLoadedSchematics();
     }
@@ -0,0 +1,243 @@
+package litematica.schematic.placement;
+
+import java.util.List;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.Mirror;
+import net.minecraft.util.Rotation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+
+import litematica.schematic.ISchematicRegion;
+import litematica.schematic.container.ILitematicaBlockStateContainer;
+import litematica.util.PositionUtils;
+
+/**
+ * The pre-calculated transform of one sub-region of a placement, for the current
+ * rotation and mirror of the placement and the sub-region.
+ * The rotation and mirror transforms are linear, so the position of a block within
+ * the sub-region's block state container is transformed by just adding the transformed
+ * container axis directions to the transformed position of the container's minimum corner.
+ * The transformed block states of all the states in the container's palette are also
+ * calculated once up front, so that they don't need to be calculated for each block.
+ * The positions are relative to the placement's origin, so that moving the placement
+ * does not invalidate the transform.
+ * Once created, the transform is not modified, so it can be used from the worker threads.
+ */
+public class SubRegionTransform
+{
+    protected final Rotation placementRotation;
+    protected final Mirror placementMirror;
+    protected final Rotation subRegionRotation;
+    protected final Mirror subRegionMirror;
+    protected final BlockPos regionPos;
+    protected final Vec3i regionSize;
+
+    protected final Rotation rotation;
+    protected final Mirror mirrorMain;
+    protected final Mirror mirrorSub;
+    protected final Reference2ObjectOpenHashMap<IBlockState, IBlockState> transformedStates;
+
+    protected final int offsetX;
+    protected final int offsetY;
+    protected final int offsetZ;
+    protected final int dxX;
+    protected final int dxZ;
+    protected final int dzX;
+    protected final int dzZ;
+
+    protected SubRegionTransform(SchematicPlacement schematicPlacement, SubRegionPlacement placement, ISchematicRegion region)
+    {
+        this.placementRotation = schematicPlacement.getRotation();
+        this.placementMirror = schematicPlacement.getMirror();
+        this.subRegionRotation = placement.getRotation();
+        this.subRegionMirror = placement.getMirror();
+        this.regionPos = placement.getPos();
+        this.regionSize = region.getSize();
+
+        this.rotation = this.placementRotation.add(this.subRegionRotation);
+        this.mirrorMain = this.placementMirror;
+        this.mirrorSub = getAdjustedSubRegionMirror(this.placementRotation, this.subRegionMirror);
+
+        // These are the untransformed relative positions
+        BlockPos posEndRel = (new BlockPos(PositionUtils.getRelativeEndPositionFromAreaSize(this.regionSize))).add(this.regionPos);
+        BlockPos posMinRel = malilib.util.position.PositionUtils.getMinCorner(this.regionPos, posEndRel);
+
+        BlockPos regionPosTransformed = PositionUtils.getTransformedBlockPos(this.regionPos, this.placementMirror, this.placementRotation);
+        BlockPos basePos = PositionUtils.getTransformedPlacementPosition(posMinRel.subtract(this.regionPos), schematicPlacement, placement);
+        BlockPos dirX = PositionUtils.getTransformedPlacementPosition(new BlockPos(1, 0, 0), schematicPlacement, placement);
+        BlockPos dirZ = PositionUtils.getTransformedPlacementPosition(new BlockPos(0, 0, 1), schematicPlacement, placement);
+
+        this.offsetX = basePos.getX() + regionPosTransformed.getX();
+        this.offsetY = basePos.getY() + regionPosTransformed.getY();
+        this.offsetZ = basePos.getZ() + regionPosTransformed.getZ();
+        this.dxX = dirX.getX();
+        this.dxZ = dirX.getZ();
+        this.dzX = dirZ.getX();
+        this.dzZ = dirZ.getZ();
+
+        this.transformedStates = this.createTransformedStateTable(region.getBlockStateContainer());
+    }
+
+    protected Reference2ObjectOpenHashMap<IBlockState, IBlockState> createTransformedStateTable(ILitematicaBlockStateContainer container)
+    {
+        if (container == null)
+        {
+            return new Reference2ObjectOpenHashMap<>();
+        }
+
+        // The container palette has all the states used in the container
+        List<IBlockState> mapping = container.getPalette().getMapping();
+        Reference2ObjectOpenHashMap<IBlockState, IBlockState> map = new Reference2ObjectOpenHashMap<>(mapping.size());
+
+        for (IBlockState state : mapping)
+        {
+            if (state != null)
+            {
+                map.put(state, getTransformedState(state, this.mirrorMain, this.mirrorSub, this.rotation));
+            }
+        }
+
+        return map;
+    }
+
+    /**
+     * @return true if this transform is still valid for the current rotation, mirror and position
+     *         of the given placement and sub-region, and the size of the sub-region
+     */
+    public boolean isValidFor(SchematicPlacement schematicPlacement, SubRegionPlacement placement, ISchematicRegion region)
+    {
+        return this.placementRotation == schematicPlacement.getRotation() &&
+               this.placementMirror == schematicPlacement.getMirror() &&
+               this.subRegionRotation == placement.getRotation() &&
+               this.subRegionMirror == placement.getMirror() &&
+               this.regionPos.equals(placement.getPos()) &&
+               this.regionSize.equals(region.getSize());
+    }
+
+    public Rotation getRotation()
+    {
+        return this.rotation;
+    }
+
+    public Mirror getMirrorMain()
+    {
+        return this.mirrorMain;
+    }
+
+    public Mirror getMirrorSub()
+    {
+        return this.mirrorSub;
+    }
+
+    /**
+     * @return the x-coordinate, relative to the placement origin, of the given container position
+     */
+    public int getRelativeX(int x, int z)
+    {
+        return this.offsetX + x * this.dxX + z * this.dzX;
+    }
+
+    /**
+     * @return the y-coordinate, relative to the placement origin, of the given container position
+     */
+    public int getRelativeY(int y)
+    {
+        return this.offsetY + y;
+    }
+
+    /**
+     * @return the z-coordinate, relative to the placement origin, of the given container position
+     */
+    public int getRelativeZ(int x, int z)
+    {
+        return this.offsetZ + x * this.dxZ + z * this.dzZ;
+    }
+
+    /**
+     * @return the world x-axis component of the transformed container x-axis direction
+     */
+    public int getXAxisDirX()
+    {
+        return this.dxX;
+    }
+
+    /**
+     * @return the world z-axis component of the transformed container x-axis direction
+     */
+    public int getXAxisDirZ()
+    {
+        return this.dxZ;
+    }
+
+    /**
+     * @return the world x-axis component of the transformed container z-axis direction
+     */
+    public int getZAxisDirX()
+    {
+        return this.dzX;
+    }
+
+    /**
+     * @return the world z-axis component of the transformed container z-axis direction
+     */
+    public int getZAxisDirZ()
+    {
+        return this.dzZ;
+    }
+
+    /**
+     * @return true if the container's x-axis maps to the world z-axis,
+     *         ie. the sub-region is rotated by 90 or 270 degrees in total
+     */
+    public boolean isXAxisSwapped()
+    {
+        return this.dxX == 0;
+    }
+
+    public IBlockState getTransformedState(IBlockState state)
+    {
+        IBlockState transformed = this.transformedStates.get(state);
+
+        // A state added to the schematic after the table was created
+        if (transformed == null)
+        {
+            transformed = getTransformedState(state, this.mirrorMain, this.mirrorSub, this.rotation);
+        }
+
+        return transformed;
+    }
+
+    public void transformBlockEntity(TileEntity te)
+    {
+        if (this.mirrorMain != Mirror.NONE) { te.mirror(this.mirrorMain); }
+        if (this.mirrorSub != Mirror.NONE)  { te.mirror(this.mirrorSub); }
+        if (this.rotation != Rotation.NONE) { te.rotate(this.rotation); }
+    }
+
+    public static IBlockState getTransformedState(IBlockState state, Mirror mirrorMain, Mirror mirrorSub, Rotation rotation)
+    {
+        if (mirrorMain != Mirror.NONE) { state = state.withMirror(mirrorMain); }
+        if (mirrorSub != Mirror.NONE)  { state = state.withMirror(mirrorSub); }
+        if (rotation != Rotation.NONE) { state = state.withRotation(rotation); }
+
+        return state;
+    }
+
+    /**
+     * @return the sub-region mirror, adjusted to be applied after the placement's rotation
+     */
+    public static Mirror getAdjustedSubRegionMirror(Rotation placementRotation, Mirror mirrorSub)
+    {
+        if (mirrorSub != Mirror.NONE &&
+            (placementRotation == Rotation.CLOCKWISE_90 ||
+             placementRotation == Rotation.COUNTERCLOCKWISE_90))
+        {
+            mirrorSub = mirrorSub == Mirror.FRONT_BACK ? Mirror.LEFT_RIGHT : Mirror.FRONT_BACK;
+        }
+
+        return mirrorSub;
+    }
+}
@@ -0,0 +1,382 @@
+package litematica.schematic.placement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.Vec3i;
+
+import malilib.util.position.ChunkSectionPos;
+import malilib.util.position.IntBoundingBox;
+import litematica.schematic.ISchematic;
+import litematica.schematic.ISchematicRegion;
+import litematica.schematic.container.ILitematicaBlockStateContainer;
+import litematica.schematic.placement.SubRegionPlacement.RequiredEnabled;
+import litematica.selection.SelectionBox;
+
+/**
+ * The repeated cells of a grid placement, without creating a separate placement for each cell.
+ * The blocks of the base placement are stored once, already transformed into their world orientation,
+ * and the block at any world position within the repeated area is looked up by mapping
+ * the position back into the base cell.
+ * The base cell itself (the grid point 0, 0, 0) is not included, as that is the normal base placement.
+ * This can only be used when the grid cells don't overlap each other, and the repeated
+ * cells don't have any block entity data or entities.
+ */
+public class VirtualGrid
+{
+    protected final SchematicPlacement basePlacement;
+    protected final IntBoundingBox baseBox;
+    protected final IntBoundingBox repeatBox;
+    protected final List<IntBoundingBox> regionBoxes = new ArrayList<>();
+    protected final int sizeX;
+    protected final int sizeY;
+    protected final int sizeZ;
+    protected final int boxSizeX;
+    protected final int boxSizeY;
+    protected final int boxSizeZ;
+    protected final int minCellX;
+    protected final int minCellY;
+    protected final int minCellZ;
+    protected final int maxCellX;
+    protected final int maxCellY;
+    protected final int maxCellZ;
+    /** The states of the base cell, as indices to the palette. 0 means no block. */
+    protected final short[] stateIds;
+    protected final List<IBlockState> palette = new ArrayList<>();
+
+    protected VirtualGrid(SchematicPlacement basePlacement, IntBoundingBox baseBox, GridSettings settings)
+    {
+        Vec3i size = settings.getSize();
+        Vec3i repeatNeg = settings.getRepeatNegative();
+        Vec3i repeatPos = settings.getRepeatPositive();
+
+        this.basePlacement = basePlacement;
+        this.baseBox = baseBox;
+        this.sizeX = size.getX();
+        this.sizeY = size.getY();
+        this.sizeZ = size.getZ();
+        this.boxSizeX = baseBox.maxX - baseBox.minX + 1;
+        this.boxSizeY = baseBox.maxY - baseBox.minY + 1;
+        this.boxSizeZ = baseBox.maxZ - baseBox.minZ + 1;
+        this.minCellX = -repeatNeg.getX();
+        this.minCellY = -repeatNeg.getY();
+        this.minCellZ = -repeatNeg.getZ();
+        this.maxCellX = repeatPos.getX();
+        this.maxCellY = repeatPos.getY();
+        this.maxCellZ = repeatPos.getZ();
+        this.repeatBox = IntBoundingBox.createProper(baseBox.minX + this.minCellX * this.sizeX,
+                                                     baseBox.minY + this.minCellY * this.sizeY,
+                                                     baseBox.minZ + this.minCellZ * this.sizeZ,
+                                                     baseBox.maxX + this.maxCellX * this.sizeX,
+                                                     baseBox.maxY + this.maxCellY * this.sizeY,
+                                                     baseBox.maxZ + this.maxCellZ * this.sizeZ);
+        this.stateIds = new short[this.boxSizeX * this.boxSizeY * this.boxSizeZ];
+        this.palette.add(null);
+
+        for (SelectionBox box : basePlacement.getSubRegionBoxes(RequiredEnabled.PLACEMENT_ENABLED).values())
+        {
+            BlockPos pos1 = box.getCorner1();
+            BlockPos pos2 = box.getCorner2();
+            this.regionBoxes.add(IntBoundingBox.createProper(pos1.getX(), pos1.getY(), pos1.getZ(), pos2.getX(), pos2.getY(), pos2.getZ()));
+        }
+    }
+
+    public SchematicPlacement getBasePlacement()
+    {
+        return this.basePlacement;
+    }
+
+    public IntBoundingBox getRepeatBox()
+    {
+        return this.repeatBox;
+    }
+
+    /**
+     * @return the block state of the repeated cell at the given world position,
+     *         or null if there is no block from any of the repeated cells at that position
+     */
+    @Nullable
+    public IBlockState getBlockState(int x, int y, int z)
+    {
+        IntBoundingBox bb = this.repeatBox;
+
+        if (x < bb.minX || y < bb.minY || z < bb.minZ || x > bb.maxX || y > bb.maxY || z > bb.maxZ)
+        {
+            return null;
+        }
+
+        int cellX = Math.floorDiv(x - this.baseBox.minX, this.sizeX);
+        int cellY = Math.floorDiv(y - this.baseBox.minY, this.sizeY);
+        int cellZ = Math.floorDiv(z - this.baseBox.minZ, this.sizeZ);
+
+        if (cellX == 0 && cellY == 0 && cellZ == 0)
+        {
+            return null;
+        }
+
+        int relX = x - this.baseBox.minX - cellX * this.sizeX;
+        int relY = y - this.baseBox.minY - cellY * this.sizeY;
+        int relZ = z - this.baseBox.minZ - cellZ * this.sizeZ;
+
+        // In the gap between the cells
+        if (relX >= this.boxSizeX || relY >= this.boxSizeY || relZ >= this.boxSizeZ)
+        {
+            return null;
+        }
+
+        return this.palette.get(this.stateIds[this.getIndex(relX, relY, relZ)]);
+    }
+
+    /**
+     * @return true if any of the sub-region boxes of any of the repeated cells
+     *         intersect the given box
+     */
+    public boolean intersects(int minX, int minY, int minZ, int maxX, int maxY, int maxZ)
+    {
+        return this.forEachCellBoxIntersecting(minX, minY, minZ, maxX, maxY, maxZ, null);
+    }
+
+    /**
+     * Adds all the sub-region boxes of the repeated cells that intersect the given box,
+     * clipped to the given box
+     */
+    public void getClippedBoxes(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, List<IntBoundingBox> out)
+    {
+        this.forEachCellBoxIntersecting(minX, minY, minZ, maxX, maxY, maxZ, out);
+    }
+
+    protected boolean forEachCellBoxIntersecting(int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+                                                 @Nullable List<IntBoundingBox> out)
+    {
+        int cellMinX = Math.max(this.minCellX, -Math.floorDiv(this.baseBox.maxX - minX, this.sizeX));
+        int cellMinY = Math.max(this.minCellY, -Math.floorDiv(this.baseBox.maxY - minY, this.sizeY));
+        int cellMinZ = Math.max(this.minCellZ, -Math.floorDiv(this.baseBox.maxZ - minZ, this.sizeZ));
+        int cellMaxX = Math.min(this.maxCellX, Math.floorDiv(maxX - this.baseBox.minX, this.sizeX));
+        int cellMaxY = Math.min(this.maxCellY, Math.floorDiv(maxY - this.baseBox.minY, this.sizeY));
+        int cellMaxZ = Math.min(this.maxCellZ, Math.floorDiv(maxZ - this.baseBox.minZ, this.sizeZ));
+        boolean found = false;
+
+        for (int cy = cellMinY; cy <= cellMaxY; ++cy)
+        {
+            for (int cz = cellMinZ; cz <= cellMaxZ; ++cz)
+            {
+                for (int cx = cellMinX; cx <= cellMaxX; ++cx)
+                {
+                    if (cx == 0 && cy == 0 && cz == 0)
+                    {
+                        continue;
+                    }
+
+                    int offX = cx * this.sizeX;
+                    int offY = cy * this.sizeY;
+                    int offZ = cz * this.sizeZ;
+
+                    for (IntBoundingBox bb : this.regionBoxes)
+                    {
+                        int bMinX = Math.max(bb.minX + offX, minX);
+                        int bMinY = Math.max(bb.minY + offY, minY);
+                        int bMinZ = Math.max(bb.minZ + offZ, minZ);
+                        int bMaxX = Math.min(bb.maxX + offX, maxX);
+                        int bMaxY = Math.min(bb.maxY + offY, maxY);
+                        int bMaxZ = Math.min(bb.maxZ + offZ, maxZ);
+
+                        if (bMinX <= bMaxX && bMinY <= bMaxY && bMinZ <= bMaxZ)
+                        {
+                            if (out == null)
+                            {
+                                return true;
+                            }
+
+                            out.add(new IntBoundingBox(bMinX, bMinY, bMinZ, bMaxX, bMaxY, bMaxZ));
+                            found = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * @return all the chunks touched by the repeated cells, as packed ChunkPos longs
+     */
+    public long[] getTouchedChunks()
+    {
+        LongOpenHashSet set = new LongOpenHashSet();
+        IntBoundingBox bb = this.repeatBox;
+
+        for (int cz = bb.minZ >> 4; cz <= bb.maxZ >> 4; ++cz)
+        {
+            for (int cx = bb.minX >> 4; cx <= bb.maxX >> 4; ++cx)
+            {
+                int x = cx << 4;
+                int z = cz << 4;
+
+                if (this.intersects(x, bb.minY, z, x + 15, bb.maxY, z + 15))
+                {
+                    set.add(ChunkPos.asLong(cx, cz));
+                }
+            }
+        }
+
+        return set.toLongArray();
+    }
+
+    public void addTouchedSections(Set<ChunkSectionPos> set)
+    {
+        IntBoundingBox bb = this.repeatBox;
+
+        for (int cy = Math.max(0, bb.minY >> 4); cy <= Math.min(15, bb.maxY >> 4); ++cy)
+        {
+            for (int cz = bb.minZ >> 4; cz <= bb.maxZ >> 4; ++cz)
+            {
+                for (int cx = bb.minX >> 4; cx <= bb.maxX >> 4; ++cx)
+                {
+                    if (this.intersects(cx << 4, cy << 4, cz << 4, (cx << 4) + 15, (cy << 4) + 15, (cz << 4) + 15))
+                    {
+                        set.add(new ChunkSectionPos(cx, cy, cz));
+                    }
+                }
+            }
+        }
+    }
+
+    protected int getIndex(int relX, int relY, int relZ)
+    {
+        return (relY * this.boxSizeZ + relZ) * this.boxSizeX + relX;
+    }
+
+    /**
+     * Stores the blocks of the base placement, transformed the same way
+     * as when they are placed into the schematic world
+     * @return false if the base placement has too many different block states
+     */
+    protected boolean readBlocksFromBasePlacement()
+    {
+        SchematicPlacement schematicPlacement = this.basePlacement;
+        ISchematic schematic = schematicPlacement.getSchematic();
+        Reference2IntOpenHashMap<IBlockState> paletteIds = new Reference2IntOpenHashMap<>();
+        BlockPos origin = schematicPlacement.getOrigin();
+
+        for (Map.Entry<String, SubRegionPlacement> entry : schematicPlacement.getEnabledRelativeSubRegionPlacements().entrySet())
+        {
+            ISchematicRegion region = schematic.getSchematicRegion(entry.getKey());
+            ILitematicaBlockStateContainer container = region != null ? region.getBlockStateContainer() : null;
+
+            if (container == null)
+            {
+                continue;
+            }
+
+            SubRegionTransform transform = schematicPlacement.getSubRegionTransform(entry.getKey());
+            Vec3i containerSize = container.getSize();
+            final int baseX = origin.getX() - this.baseBox.minX;
+            final int baseY = origin.getY() - this.baseBox.minY;
+            final int baseZ = origin.getZ() - this.baseBox.minZ;
+            // Maps the schematic's states directly to the grid palette IDs of the transformed states
+            Reference2IntOpenHashMap<IBlockState> sourceStateIds = new Reference2IntOpenHashMap<>();
+
+            for (int y = 0; y < containerSize.getY(); ++y)
+            {
+                for (int z = 0; z < containerSize.getZ(); ++z)
+                {
+                    for (int x = 0; x < containerSize.getX(); ++x)
+                    {
+                        IBlockState state = container.getBlockState(x, y, z);
+
+                        if (state.getBlock() == Blocks.STRUCTURE_VOID || state.getBlock() == Blocks.AIR)
+                        {
+                            continue;
+                        }
+
+                        int relX = baseX + transform.getRelativeX(x, z);
+                        int relY = baseY + transform.getRelativeY(y);
+                        int relZ = baseZ + transform.getRelativeZ(x, z);
+
+                        if (relX < 0 || relY < 0 || relZ < 0 || relX >= this.boxSizeX || relY >= this.boxSizeY || relZ >= this.boxSizeZ)
+                        {
+                            continue;
+                        }
+
+                        int id = sourceStateIds.getInt(state);
+
+                        if (id == 0)
+                        {
+                            IBlockState transformed = transform.getTransformedState(state);
+                            id = paletteIds.getInt(transformed);
+
+                            if (id == 0)
+                            {
+                                id = this.palette.size();
+
+                                if (id > Short.MAX_VALUE)
+                                {
+                                    return false;
+                                }
+
+                                paletteIds.put(transformed, id);
+                                this.palette.add(transformed);
+                            }
+
+                            sourceStateIds.put(state, id);
+                        }
+
+                        this.stateIds[this.getIndex(relX, relY, relZ)] = (short) id;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if the grid of the given placement can be handled as a virtual grid,
+     *         ie. if the grid cells don't overlap each other
+     */
+    public static boolean canUseFor(SchematicPlacement basePlacement)
+    {
+        GridSettings settings = basePlacement.getGridSettings();
+        IntBoundingBox baseBox = basePlacement.getEnclosingBox();
+        Vec3i size = settings.getSize();
+
+        if (settings.isEnabled() == false || baseBox == null)
+        {
+            return false;
+        }
+
+        long boxSizeX = baseBox.maxX - baseBox.minX + 1;
+        long boxSizeY = baseBox.maxY - baseBox.minY + 1;
+        long boxSizeZ = baseBox.maxZ - baseBox.minZ + 1;
+
+        return size.getX() >= boxSizeX && size.getY() >= boxSizeY && size.getZ() >= boxSizeZ &&
+               boxSizeX * boxSizeY * boxSizeZ <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Creates the virtual grid for the given base placement
+     * @return the created grid, or null if the grid of the placement can't be handled as a virtual grid
+     */
+    @Nullable
+    public static VirtualGrid create(SchematicPlacement basePlacement)
+    {
+        if (canUseFor(basePlacement) == false)
+        {
+            return null;
+        }
+
+        VirtualGrid grid = new VirtualGrid(basePlacement, basePlacement.getEnclosingBox(), basePlacement.getGridSettings());
+
+        return grid.readBlocksFromBasePlacement() ? grid : null;
+    }
+}
@@ -26,6 +26,7 @@ import litematica.schematic.LitematicaSchematic;
 import litematica.schematic.placement.SchematicPlacement;
 import litematica.schematic.util.SchematicCreationUtils;
 import litematica.schematic.util.SchematicPlacingUtils;
+import litematica.schematic.util.SchematicSaver;
 import litematica.selection.AreaSelection;
 import litematica.selection.AreaSelectionSimple;
 import litematica.selection.AreaSelectionManager;
@@ -343,18 +344,26 @@ public class SchematicProject
     {
         SchematicCreationUtils.setSchematicMetadataOnCreation(schematic, name);
 
-        if (schematic.writeToFile(this.directory, fileName, false))
-        {
-            int versionNumber = this.versions.size() + 1;
-            SchematicVersion version = new SchematicVersion(this, name, fileName, areaOffset,
-                                                            versionNumber, System.currentTimeMillis());
-            this.versions.add(version);
-            this.switchVersion(this.versions.size() - 1, true);
-            this.cacheCurrentAreaFromPlacement();
-            this.saveInProgress = false;
+        Path file = this.directory.resolve(fileName + LitematicaSchematic.FILE_NAME_EXTENSION);
+        SchematicSaver.writeToFileAsync(schematic, file, false).thenAccept(success -> {
+            if (success)
+            {
+                this.onVersionWritten(fileName, name, areaOffset);
+            }
+        });
+    }
 
-            MessageDispatcher.success("litematica.message.schematic_projects.version_saved", version, name);
-        }
+    protected void onVersionWritten(String fileName, String name, Vec3i areaOffset)
+    {
+        int versionNumber = this.versions.size() + 1;
+        SchematicVersion version = new SchematicVersion(this, name, fileName, areaOffset,
+                                                        versionNumber, System.currentTimeMillis());
+        this.versions.add(version);
+        this.switchVersion(this.versions.size() - 1, true);
+        this.cacheCurrentAreaFromPlacement();
+        this.saveInProgress = false;
+
+        MessageDispatcher.success("litematica.message.schematic_projects.version_saved", version, name);
     }
 
     private String getNextFileName()
@@ -0,0 +1,544 @@
+package litematica.schematic.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.ITileEntityProvider;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.Vec3i;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import malilib.util.nbt.NbtUtils;
+import malilib.util.position.IntBoundingBox;
+import litematica.Litematica;
+import litematica.config.Configs;
+import litematica.schematic.ISchematic;
+import litematica.schematic.ISchematicRegion;
+import litematica.schematic.SchematicMetadata;
+import litematica.schematic.container.ILitematicaBlockStateContainer;
+import litematica.schematic.container.ILitematicaBlockStatePalette;
+import litematica.schematic.container.LitematicaBitArray;
+import litematica.schematic.container.LitematicaBlockStateContainerSectioned;
+import litematica.schematic.placement.SchematicPlacement;
+import litematica.schematic.placement.SubRegionTransform;
+import litematica.schematic.placement.SubRegionPlacement;
+import litematica.util.PositionUtils;
+
+/**
+ * Builds the block storage sections of one schematic world chunk from the placements touching it.
+ * The blocks are written directly into new {@link ExtendedBlockStorage} sections, without
+ * accessing the world, so the build can run on a worker thread. The schematic data is read from snapshots
+ * taken on the main thread when the builder is created, so any edits made during the build
+ * don't affect it. The finished sections are then
+ * swapped into the chunk on the main thread, which also creates the block entities and the entities.
+ * The result is the same as placing each of the placements with ReplaceBehavior.ALL
+ * via {@link SchematicPlacingUtils#placeToWorldWithinChunk}, in the same order.
+ */
+public class SchematicChunkBuilder
+{
+    private static final IBlockState AIR = Blocks.AIR.getDefaultState();
+
+    protected final ChunkPos chunkPos;
+    protected final List<SchematicPlacement> placements;
+    protected final ExtendedBlockStorage[] sections = new ExtendedBlockStorage[16];
+    protected final Map<BlockPos, BlockEntityData> blockEntities = new LinkedHashMap<>();
+    protected final List<RegionSnapshot> regions = new ArrayList<>();
+    @Nullable protected final String cacheKey;
+    @Nullable protected final SchematicMetadata cacheMetadata;
+    protected final long cacheTimeModified;
+
+    /**
+     * Takes the snapshots of the schematic data needed for the build. Must be called on the main thread.
+     * @param placements the enabled placements touching the chunk, in the order they should be placed
+     */
+    public SchematicChunkBuilder(ChunkPos chunkPos, List<SchematicPlacement> placements)
+    {
+        this.chunkPos = chunkPos;
+        this.placements = new ArrayList<>(placements);
+
+        for (SchematicPlacement schematicPlacement : this.placements)
+        {
+            this.addRegions(schematicPlacement);
+        }
+
+        // The cache is only used for the chunks touched by a single placement,
+        // as the cache entries are stored per placement
+        if (Configs.Generic.PERSISTENT_CHUNK_CACHE.getBooleanValue() && this.placements.size() == 1)
+        {
+            SchematicPlacement schematicPlacement = this.placements.get(0);
+            this.cacheKey = SchematicChunkCache.getCacheKey(schematicPlacement);
+            this.cacheMetadata = schematicPlacement.getSchematic().getMetadata();
+            this.cacheTimeModified = this.cacheMetadata.getTimeModified();
+        }
+        else
+        {
+            this.cacheKey = null;
+            this.cacheMetadata = null;
+            this.cacheTimeModified = 0L;
+        }
+    }
+
+    public ChunkPos getChunkPos()
+    {
+        return this.chunkPos;
+    }
+
+    /**
+     * Builds the block storage sections. Can be called on a worker thread.
+     */
+    public void build()
+    {
+        if (this.cacheKey != null && SchematicChunkCache.readSections(this.cacheKey, this.chunkPos, this.sections))
+        {
+            // The blocks come from the cache, only the block entities need to be collected
+            for (RegionSnapshot region : this.regions)
+            {
+                this.buildRegion(region, false);
+            }
+
+            return;
+        }
+
+        for (RegionSnapshot region : this.regions)
+        {
+            this.buildRegion(region, true);
+        }
+
+        // Don't store the result under the key of the saved file, if the schematic was edited during the build
+        if (this.cacheKey != null &&
+            this.cacheMetadata.wasModifiedSinceSaved() == false &&
+            this.cacheMetadata.getTimeModified() == this.cacheTimeModified)
+        {
+            SchematicChunkCache.writeSections(this.cacheKey, this.chunkPos, this.sections);
+        }
+    }
+
+    protected void addRegions(SchematicPlacement schematicPlacement)
+    {
+        ISchematic schematic = schematicPlacement.getSchematic();
+
+        for (String regionName : schematicPlacement.getRegionsTouchingChunk(this.chunkPos.x, this.chunkPos.z))
+        {
+            SubRegionPlacement placement = schematicPlacement.getRelativeSubRegionPlacement(regionName);
+            ISchematicRegion region = schematic.getSchematicRegion(regionName);
+
+            if (placement != null && region != null && placement.isEnabled())
+            {
+                RegionSnapshot snapshot = this.createRegionSnapshot(regionName, region, schematicPlacement, placement);
+
+                if (snapshot != null)
+                {
+                    this.regions.add(snapshot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the part of the sub-region within this chunk, and takes a snapshot of its block data
+     * @return the snapshot, or null if the sub-region has no valid data within this chunk
+     */
+    @Nullable
+    protected RegionSnapshot createRegionSnapshot(String regionName, ISchematicRegion region, SchematicPlacement schematicPlacement,
+                                                  SubRegionPlacement placement)
+    {
+        IntBoundingBox bounds = schematicPlacement.getBoxWithinChunkForRegion(regionName, this.chunkPos.x, this.chunkPos.z);
+        ILitematicaBlockStateContainer container = region.getBlockStateContainer();
+        Map<BlockPos, NBTTagCompound> blockEntityMap = region.getBlockEntityMap();
+
+        if (bounds == null || container == null || blockEntityMap == null)
+        {
+            return null;
+        }
+
+        BlockPos origin = schematicPlacement.getOrigin();
+        BlockPos regionPos = placement.getPos();
+        Vec3i regionSize = region.getSize();
+
+        // These are the untransformed relative positions
+        BlockPos posEndRel = (new BlockPos(PositionUtils.getRelativeEndPositionFromAreaSize(regionSize))).add(regionPos);
+        BlockPos posMinRel = malilib.util.position.PositionUtils.getMinCorner(regionPos, posEndRel);
+
+        // The transformed sub-region origin position
+        BlockPos regionPosTransformed = PositionUtils.getTransformedBlockPos(regionPos, schematicPlacement.getMirror(), schematicPlacement.getRotation());
+
+        // The relative offset of the affected region's corners, to the sub-region's origin corner
+        BlockPos boxMinRel = new BlockPos(bounds.minX - origin.getX() - regionPosTransformed.getX(), 0, bounds.minZ - origin.getZ() - regionPosTransformed.getZ());
+        BlockPos boxMaxRel = new BlockPos(bounds.maxX - origin.getX() - regionPosTransformed.getX(), 0, bounds.maxZ - origin.getZ() - regionPosTransformed.getZ());
+
+        // Reverse transform that relative offset, to get the untransformed orientation's offsets
+        boxMinRel = PositionUtils.getReverseTransformedBlockPos(boxMinRel, placement.getMirror(), placement.getRotation());
+        boxMaxRel = PositionUtils.getReverseTransformedBlockPos(boxMaxRel, placement.getMirror(), placement.getRotation());
+
+        boxMinRel = PositionUtils.getReverseTransformedBlockPos(boxMinRel, schematicPlacement.getMirror(), schematicPlacement.getRotation());
+        boxMaxRel = PositionUtils.getReverseTransformedBlockPos(boxMaxRel, schematicPlacement.getMirror(), schematicPlacement.getRotation());
+
+        // Get the offset relative to the sub-region's minimum corner, instead of the origin corner (which can be at any corner)
+        boxMinRel = boxMinRel.subtract(posMinRel.subtract(regionPos));
+        boxMaxRel = boxMaxRel.subtract(posMinRel.subtract(regionPos));
+
+        BlockPos posMin = malilib.util.position.PositionUtils.getMinCorner(boxMinRel, boxMaxRel);
+        BlockPos posMax = malilib.util.position.PositionUtils.getMaxCorner(boxMinRel, boxMaxRel);
+
+        if (posMin.getX() < 0 || posMin.getZ() < 0 || posMax.getX() >= container.getSize().getX() || posMax.getZ() >= container.getSize().getZ())
+        {
+            Litematica.logger.warn("Invalid/missing schematic data in schematic '{}' for sub-region '{}'",
+                                   schematicPlacement.getSchematic().getMetadata().getName(), regionName);
+            return null;
+        }
+
+        SubRegionTransform transform = schematicPlacement.getSubRegionTransform(regionName);
+
+        if (transform == null)
+        {
+            return null;
+        }
+
+        return new RegionSnapshot(container.createSnapshot(), new HashMap<>(blockEntityMap), transform, origin,
+                                  posMin, posMax, Math.abs(regionSize.getY()) - 1);
+    }
+
+    /**
+     * @param placeBlocks if false, then only the block entities are collected
+     */
+    protected void buildRegion(RegionSnapshot region, boolean placeBlocks)
+    {
+        final ILitematicaBlockStateContainer container = region.container;
+        final SubRegionTransform transform = region.transform;
+        final int startX = region.startX;
+        final int startZ = region.startZ;
+        final int endX = region.endX;
+        final int endZ = region.endZ;
+        final int startY = 0;
+        final int endY = region.endY;
+
+        // The placement transform is linear, so instead of transforming each position separately,
+        // the world position is calculated from the transformed container axis directions
+        final int baseX = transform.getRelativeX(0, 0) + region.originX;
+        final int baseY = transform.getRelativeY(0) + region.originY;
+        final int baseZ = transform.getRelativeZ(0, 0) + region.originZ;
+        final int dxX = transform.getXAxisDirX();
+        final int dxZ = transform.getXAxisDirZ();
+        final int dzX = transform.getZAxisDirX();
+        final int dzZ = transform.getZAxisDirZ();
+
+        // Iterate the container so that the inner loop runs along the world x-axis,
+        // ie. along the container z-axis if the placement is rotated by 90 or 270 degrees
+        final boolean innerIsZ = transform.isXAxisSwapped();
+        final int outerStart = innerIsZ ? startX : startZ;
+        final int outerEnd   = innerIsZ ? endX : endZ;
+        final int innerStart = innerIsZ ? startZ : startX;
+        final int innerEnd   = innerIsZ ? endZ : endX;
+
+        if (placeBlocks && container instanceof LitematicaBlockStateContainerSectioned)
+        {
+            this.placeBlocksFromSections((LitematicaBlockStateContainerSectioned) container, region);
+        }
+        else if (placeBlocks)
+        {
+            for (int y = startY; y <= endY; ++y)
+            {
+                final int worldY = baseY + y;
+
+                if (worldY < 0 || worldY > 255)
+                {
+                    continue;
+                }
+
+                for (int o = outerStart; o <= outerEnd; ++o)
+                {
+                    for (int i = innerStart; i <= innerEnd; ++i)
+                    {
+                        final int x = innerIsZ ? o : i;
+                        final int z = innerIsZ ? i : o;
+                        IBlockState state = container.getBlockState(x, y, z);
+
+                        if (state.getBlock() == Blocks.STRUCTURE_VOID)
+                        {
+                            continue;
+                        }
+
+                        this.setBlockState(baseX + x * dxX + z * dzX, worldY, baseZ + x * dxZ + z * dzZ, transform.getTransformedState(state));
+                    }
+                }
+            }
+        }
+
+        // Only the positions that have block entity data need to be checked for the block entities.
+        // Any block entities overwritten by a later placement are skipped when applying the results.
+        for (Map.Entry<BlockPos, NBTTagCompound> entry : region.blockEntityMap.entrySet())
+        {
+            BlockPos pos = entry.getKey();
+            final int x = pos.getX();
+            final int y = pos.getY();
+            final int z = pos.getZ();
+            final int worldY = baseY + y;
+
+            if (x < startX || x > endX || z < startZ || z > endZ || y < startY || y > endY || worldY < 0 || worldY > 255)
+            {
+                continue;
+            }
+
+            IBlockState state = container.getBlockState(x, y, z);
+
+            if (state.getBlock() != Blocks.STRUCTURE_VOID)
+            {
+                BlockPos worldPos = new BlockPos(baseX + x * dxX + z * dzX, worldY, baseZ + x * dxZ + z * dzZ);
+                this.blockEntities.put(worldPos, new BlockEntityData(worldPos, transform.getTransformedState(state), entry.getValue(), transform));
+            }
+        }
+    }
+
+    /**
+     * Places the blocks of a sectioned container one schematic section at a time.
+     * The block states are transformed once per section palette entry, and the IDs
+     * are read from the section storage one row at a time. The all-air sections only
+     * need to overwrite the blocks already placed by the earlier placements.
+     */
+    protected void placeBlocksFromSections(LitematicaBlockStateContainerSectioned container, RegionSnapshot region)
+    {
+        final SubRegionTransform transform = region.transform;
+        final int baseX = transform.getRelativeX(0, 0) + region.originX;
+        final int baseY = transform.getRelativeY(0) + region.originY;
+        final int baseZ = transform.getRelativeZ(0, 0) + region.originZ;
+        final int dxX = transform.getXAxisDirX();
+        final int dxZ = transform.getXAxisDirZ();
+        final int dzX = transform.getZAxisDirX();
+        final int dzZ = transform.getZAxisDirZ();
+        final int[] ids = new int[16];
+
+        for (int sy = 0; sy <= (region.endY >> 4); ++sy)
+        {
+            final int minY = sy << 4;
+            final int maxY = Math.min(region.endY, minY + 15);
+
+            for (int sz = region.startZ >> 4; sz <= (region.endZ >> 4); ++sz)
+            {
+                final int minZ = Math.max(region.startZ, sz << 4);
+                final int maxZ = Math.min(region.endZ, (sz << 4) + 15);
+
+                for (int sx = region.startX >> 4; sx <= (region.endX >> 4); ++sx)
+                {
+                    final int minX = Math.max(region.startX, sx << 4);
+                    final int maxX = Math.min(region.endX, (sx << 4) + 15);
+                    LitematicaBlockStateContainerSectioned.Section section = container.getSection(sx, sy, sz);
+                    IBlockState[] states = section != null ? getTransformedStates(section.getPalette(), transform) : null;
+                    LitematicaBitArray storage = section != null ? section.getStorage() : null;
+
+                    for (int y = minY; y <= maxY; ++y)
+                    {
+                        final int worldY = baseY + y;
+
+                        // Skip the rows outside the world, and the all-air rows where nothing has been placed yet
+                        if (worldY < 0 || worldY > 255 || (section == null && this.sections[worldY >> 4] == null))
+                        {
+                            continue;
+                        }
+
+                        for (int z = minZ; z <= maxZ; ++z)
+                        {
+                            if (storage != null)
+                            {
+                                storage.getRange(LitematicaBlockStateContainerSectioned.Section.getIndex(minX & 0xF, y & 0xF, z & 0xF), ids, 0, maxX - minX + 1);
+                            }
+
+                            for (int x = minX; x <= maxX; ++x)
+                            {
+                                IBlockState state = states != null ? states[ids[x - minX]] : AIR;
+
+                                if (state != null)
+                                {
+                                    this.setBlockState(baseX + x * dxX + z * dzX, worldY, baseZ + x * dxZ + z * dzZ, state);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the transformed states by the palette IDs, with null for structure voids
+     */
+    protected static IBlockState[] getTransformedStates(ILitematicaBlockStatePalette palette, SubRegionTransform transform)
+    {
+        IBlockState[] states = new IBlockState[palette.getPaletteSize()];
+
+        for (int id = 0; id < states.length; ++id)
+        {
+            IBlockState state = palette.getBlockState(id);
+
+            if (state == null)
+            {
+                state = AIR;
+            }
+
+            states[id] = state.getBlock() != Blocks.STRUCTURE_VOID ? transform.getTransformedState(state) : null;
+        }
+
+        return states;
+    }
+
+    protected void setBlockState(int x, int y, int z, IBlockState state)
+    {
+        ExtendedBlockStorage storage = this.sections[y >> 4];
+
+        if (storage == null)
+        {
+            if (state == AIR)
+            {
+                return;
+            }
+
+            storage = new ExtendedBlockStorage(y >> 4 << 4, false);
+            this.sections[y >> 4] = storage;
+        }
+
+        storage.set(x & 0xF, y & 0xF, z & 0xF, state);
+    }
+
+    /**
+     * Swaps the built sections into the given newly loaded, empty chunk,
+     * and then creates the block entities and spawns the entities.
+     * Must be called on the main thread.
+     */
+    public void applyToChunk(World world, Chunk chunk)
+    {
+        ExtendedBlockStorage[] storageArray = new ExtendedBlockStorage[this.sections.length];
+
+        for (int i = 0; i < this.sections.length; ++i)
+        {
+            ExtendedBlockStorage storage = this.sections[i];
+            storageArray[i] = storage != null && storage.isEmpty() == false ? storage : Chunk.NULL_BLOCK_STORAGE;
+        }
+
+        chunk.setStorageArrays(storageArray);
+
+        for (BlockEntityData data : this.blockEntities.values())
+        {
+            // Skip the block entities whose block was overwritten by a later placement
+            if (chunk.getBlockState(data.pos) == data.state)
+            {
+                data.createBlockEntity(world);
+            }
+        }
+
+        for (SchematicPlacement schematicPlacement : this.placements)
+        {
+            if (schematicPlacement.ignoreEntities())
+            {
+                continue;
+            }
+
+            ISchematic schematic = schematicPlacement.getSchematic();
+            BlockPos origin = schematicPlacement.getOrigin();
+
+            for (String regionName : schematicPlacement.getRegionsTouchingChunk(this.chunkPos.x, this.chunkPos.z))
+            {
+                SubRegionPlacement placement = schematicPlacement.getRelativeSubRegionPlacement(regionName);
+                ISchematicRegion region = schematic.getSchematicRegion(regionName);
+
+                if (placement != null && region != null && placement.isEnabled() && placement.ignoreEntities() == false)
+                {
+                    SchematicPlacingUtils.placeEntitiesToWorldWithinChunk(world, this.chunkPos, region, origin, schematicPlacement, placement);
+                }
+            }
+        }
+    }
+
+    /**
+     * The data of one sub-region needed for building its part within the chunk,
+     * taken on the main thread
+     */
+    protected static class RegionSnapshot
+    {
+        protected final ILitematicaBlockStateContainer container;
+        protected final Map<BlockPos, NBTTagCompound> blockEntityMap;
+        protected final SubRegionTransform transform;
+        protected final int originX;
+        protected final int originY;
+        protected final int originZ;
+        protected final int startX;
+        protected final int startZ;
+        protected final int endX;
+        protected final int endZ;
+        protected final int endY;
+
+        protected RegionSnapshot(ILitematicaBlockStateContainer container, Map<BlockPos, NBTTagCompound> blockEntityMap,
+                                 SubRegionTransform transform, BlockPos origin, BlockPos posMin, BlockPos posMax, int endY)
+        {
+            this.container = container;
+            this.blockEntityMap = blockEntityMap;
+            this.transform = transform;
+            this.originX = origin.getX();
+            this.originY = origin.getY();
+            this.originZ = origin.getZ();
+            this.startX = posMin.getX();
+            this.startZ = posMin.getZ();
+            this.endX = posMax.getX();
+            this.endZ = posMax.getZ();
+            this.endY = endY;
+        }
+    }
+
+    protected static class BlockEntityData
+    {
+        protected final BlockPos pos;
+        protected final IBlockState state;
+        protected final NBTTagCompound nbt;
+        protected final SubRegionTransform transform;
+
+        protected BlockEntityData(BlockPos pos, IBlockState state, NBTTagCompound nbt, SubRegionTransform transform)
+        {
+            this.pos = pos;
+            this.state = state;
+            this.nbt = nbt;
+            this.transform = transform;
+        }
+
+        protected void createBlockEntity(World world)
+        {
+            Block block = this.state.getBlock();
+
+            if ((block instanceof ITileEntityProvider) == false)
+            {
+                return;
+            }
+
+            TileEntity te = ((ITileEntityProvider) block).createNewTileEntity(world, block.getMetaFromState(this.state));
+
+            if (te == null)
+            {
+                return;
+            }
+
+            world.setTileEntity(this.pos, te);
+
+            NBTTagCompound teNBT = this.nbt.copy();
+            NbtUtils.putVec3i(teNBT, this.pos);
+
+            try
+            {
+                te.readFromNBT(teNBT);
+                this.transform.transformBlockEntity(te);
+            }
+            catch (Exception e)
+            {
+                Litematica.logger.warn("Failed to load TileEntity data for {} @ {}", this.state, this.pos);
+            }
+        }
+    }
+}
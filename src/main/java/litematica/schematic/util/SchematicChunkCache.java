@@ -0,0 +1,497 @@
+package litematica.schematic.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.netty.buffer.Unpooled;
+
+import net.minecraft.block.Block;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.BlockStateContainer;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import malilib.util.FileUtils;
+import litematica.Litematica;
+import litematica.config.Configs;
+import litematica.schematic.ISchematic;
+import litematica.schematic.placement.SchematicPlacement;
+import litematica.schematic.placement.SubRegionPlacement;
+
+/**
+ * An on-disk cache of the already built block storage sections of the schematic world chunks.
+ * The cache entries are stored per placement, under a key calculated from the hash of the
+ * schematic file's contents and the placement's origin, rotation, mirror and sub-region settings.
+ * This way, once a placement has been built once, the same chunks can later be loaded by just
+ * reading the section data, instead of having to transform all the blocks again.
+ * Schematics that have not been saved to a file, or that have unsaved modifications, are not cached.
+ * The cache entry of a placement is deleted when the placement gets moved or otherwise
+ * modified (as that changes the key), and when the placement is removed.
+ * The total size of the cache is limited by evicting the least recently used entries.
+ * The methods of this class can be called from the worker threads.
+ */
+public class SchematicChunkCache
+{
+    private static final int FORMAT_VERSION = 1;
+    /** The file content hashes, keyed by the file path, size and modification time */
+    private static final Map<String, String> FILE_HASHES = Collections.synchronizedMap(new HashMap<>());
+    /** The current cache keys of the placements */
+    private static final Map<SchematicPlacement, String> PLACEMENT_KEYS = Collections.synchronizedMap(new WeakHashMap<>());
+    /** The approximate total size of the cache directory, or -1 if it has not been calculated yet */
+    private static final AtomicLong CACHE_SIZE = new AtomicLong(-1);
+
+    public static Path getCacheBaseDirectory()
+    {
+        return FileUtils.getMinecraftDirectory().resolve("litematica").resolve("chunk_cache");
+    }
+
+    /**
+     * @return the cache key for the current state of the given placement,
+     *         or null if the placement can't be cached
+     */
+    @Nullable
+    public static String getCacheKey(SchematicPlacement placement)
+    {
+        ISchematic schematic = placement.getSchematic();
+        Path file = schematic.getFile();
+
+        if (file == null || schematic.getMetadata().wasModifiedSinceSaved())
+        {
+            return null;
+        }
+
+        String fileHash = getFileHash(file);
+
+        if (fileHash == null)
+        {
+            return null;
+        }
+
+        Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putInt(FORMAT_VERSION);
+        // The section data uses the registry state IDs, which change if the registered blocks change
+        hasher.putInt(Block.BLOCK_STATE_IDS.size());
+        hasher.putUnencodedChars(fileHash);
+        putPos(hasher, placement.getOrigin());
+        hasher.putInt(placement.getRotation().ordinal());
+        hasher.putInt(placement.getMirror().ordinal());
+
+        List<SubRegionPlacement> subRegions = new ArrayList<>(placement.getAllSubRegionsPlacements());
+        subRegions.sort((r1, r2) -> r1.getName().compareTo(r2.getName()));
+
+        for (SubRegionPlacement subRegion : subRegions)
+        {
+            if (subRegion.isEnabled())
+            {
+                hasher.putUnencodedChars(subRegion.getName());
+                putPos(hasher, subRegion.getPos());
+                hasher.putInt(subRegion.getRotation().ordinal());
+                hasher.putInt(subRegion.getMirror().ordinal());
+            }
+        }
+
+        String cacheKey = hasher.hash().toString();
+        String oldKey = PLACEMENT_KEYS.put(placement, cacheKey);
+
+        if (cacheKey.equals(oldKey) == false)
+        {
+            if (oldKey != null)
+            {
+                deleteEntryIfUnused(oldKey);
+            }
+
+            markUsed(cacheKey);
+        }
+
+        return cacheKey;
+    }
+
+    /**
+     * Deletes the cache entry of the given placement, unless another placement still uses the same entry.
+     * Called when the placement is removed.
+     */
+    public static void onPlacementRemoved(SchematicPlacement placement)
+    {
+        String cacheKey = PLACEMENT_KEYS.remove(placement);
+
+        if (cacheKey != null)
+        {
+            deleteEntryIfUnused(cacheKey);
+        }
+    }
+
+    private static void putPos(Hasher hasher, BlockPos pos)
+    {
+        hasher.putInt(pos.getX()).putInt(pos.getY()).putInt(pos.getZ());
+    }
+
+    @Nullable
+    private static String getFileHash(Path file)
+    {
+        try
+        {
+            String fileKey = file.toAbsolutePath().toString() + "|" + Files.size(file) + "|" + Files.getLastModifiedTime(file).toMillis();
+            String hash = FILE_HASHES.get(fileKey);
+
+            if (hash == null)
+            {
+                Hasher hasher = Hashing.sha1().newHasher();
+                byte[] buffer = new byte[65536];
+
+                try (InputStream is = Files.newInputStream(file))
+                {
+                    int length;
+
+                    while ((length = is.read(buffer)) > 0)
+                    {
+                        hasher.putBytes(buffer, 0, length);
+                    }
+                }
+
+                hash = hasher.hash().toString();
+                FILE_HASHES.put(fileKey, hash);
+            }
+
+            return hash;
+        }
+        catch (IOException e)
+        {
+            Litematica.logger.warn("Failed to hash the schematic file '{}'", file.toAbsolutePath().toString());
+            return null;
+        }
+    }
+
+    /**
+     * Updates the modification time of the cache entry, which is used as the last use time
+     * when evicting the least recently used entries. On the first call after the game was started,
+     * the cache is also purged of any left over temporary files and of entries over the size limit.
+     */
+    private static void markUsed(String cacheKey)
+    {
+        if (CACHE_SIZE.get() < 0)
+        {
+            purge();
+        }
+
+        Path dir = getCacheBaseDirectory().resolve(cacheKey);
+
+        try
+        {
+            if (Files.isDirectory(dir))
+            {
+                Files.setLastModifiedTime(dir, FileTime.fromMillis(System.currentTimeMillis()));
+            }
+        }
+        catch (IOException ignore) {}
+    }
+
+    private static void deleteEntryIfUnused(String cacheKey)
+    {
+        if (PLACEMENT_KEYS.containsValue(cacheKey) == false)
+        {
+            long size = deleteDirectory(getCacheBaseDirectory().resolve(cacheKey));
+            CACHE_SIZE.addAndGet(-size);
+        }
+    }
+
+    /**
+     * Deletes the left over temporary files, calculates the size of the cache,
+     * and evicts the least recently used entries if the cache is over the size limit.
+     */
+    public static synchronized void purge()
+    {
+        Path baseDir = getCacheBaseDirectory();
+
+        if (Files.isDirectory(baseDir) == false)
+        {
+            CACHE_SIZE.set(0);
+            return;
+        }
+
+        List<CacheEntry> entries = new ArrayList<>();
+        long totalSize = 0;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(baseDir))
+        {
+            for (Path dir : stream)
+            {
+                if (Files.isDirectory(dir))
+                {
+                    long size = getEntrySize(dir);
+                    entries.add(new CacheEntry(dir, Files.getLastModifiedTime(dir).toMillis()));
+                    totalSize += size;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            Litematica.logger.warn("Failed to read the schematic chunk cache directory '{}'", baseDir.toAbsolutePath().toString());
+        }
+
+        long maxSize = getMaxCacheSize();
+
+        if (totalSize > maxSize)
+        {
+            // Evict the least recently used entries first
+            entries.sort((e1, e2) -> Long.compare(e1.lastUsed, e2.lastUsed));
+
+            for (CacheEntry entry : entries)
+            {
+                if (totalSize <= maxSize)
+                {
+                    break;
+                }
+
+                if (PLACEMENT_KEYS.containsValue(entry.dir.getFileName().toString()) == false)
+                {
+                    totalSize -= deleteDirectory(entry.dir);
+                }
+            }
+        }
+
+        CACHE_SIZE.set(totalSize);
+    }
+
+    private static long getMaxCacheSize()
+    {
+        return (long) Configs.Generic.PERSISTENT_CHUNK_CACHE_MAX_SIZE.getIntegerValue() * 1024L * 1024L;
+    }
+
+    /**
+     * Deletes any left over temporary files in the given entry directory
+     * @return the total size of the remaining files
+     */
+    private static long getEntrySize(Path dir) throws IOException
+    {
+        long size = 0;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir))
+        {
+            for (Path file : stream)
+            {
+                if (file.getFileName().toString().endsWith(".tmp"))
+                {
+                    Files.deleteIfExists(file);
+                }
+                else
+                {
+                    size += Files.size(file);
+                }
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * @return the total size of the deleted files
+     */
+    private static long deleteDirectory(Path dir)
+    {
+        if (Files.isDirectory(dir) == false)
+        {
+            return 0;
+        }
+
+        final long[] size = new long[1];
+
+        try
+        {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+                {
+                    size[0] += attrs.size();
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException
+                {
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        catch (IOException e)
+        {
+            Litematica.logger.warn("Failed to delete the schematic chunk cache entry '{}'", dir.toAbsolutePath().toString());
+        }
+
+        return size[0];
+    }
+
+    private static Path getCacheFile(String cacheKey, ChunkPos pos)
+    {
+        return getCacheBaseDirectory().resolve(cacheKey).resolve(pos.x + "_" + pos.z + ".dat");
+    }
+
+    /**
+     * Reads the cached sections of the given chunk into the given array
+     * @return true if the chunk was found in the cache and read successfully
+     */
+    public static boolean readSections(String cacheKey, ChunkPos pos, ExtendedBlockStorage[] sections)
+    {
+        Path file = getCacheFile(cacheKey, pos);
+
+        if (Files.isRegularFile(file) == false)
+        {
+            return false;
+        }
+
+        try (DataInputStream is = new DataInputStream(Files.newInputStream(file)))
+        {
+            if (is.readInt() != FORMAT_VERSION)
+            {
+                return false;
+            }
+
+            int presentSections = is.readUnsignedShort();
+
+            for (int i = 0; i < sections.length; ++i)
+            {
+                if ((presentSections & (1 << i)) != 0)
+                {
+                    byte[] data = new byte[is.readInt()];
+                    is.readFully(data);
+
+                    ExtendedBlockStorage storage = new ExtendedBlockStorage(i << 4, false);
+                    storage.getData().read(new PacketBuffer(Unpooled.wrappedBuffer(data)));
+                    storage.recalculateRefCounts();
+                    sections[i] = storage;
+                }
+                else
+                {
+                    sections[i] = null;
+                }
+            }
+
+            return true;
+        }
+        catch (Exception e)
+        {
+            Litematica.logger.warn("Failed to read the cached schematic chunk from '{}'", file.toAbsolutePath().toString());
+            Arrays.fill(sections, null);
+            return false;
+        }
+    }
+
+    /**
+     * Writes the given sections of the given chunk to the cache
+     */
+    public static void writeSections(String cacheKey, ChunkPos pos, ExtendedBlockStorage[] sections)
+    {
+        // Don't re-create the entry of a placement that was moved or removed while the chunk was being built
+        if (PLACEMENT_KEYS.containsValue(cacheKey) == false)
+        {
+            return;
+        }
+
+        if (CACHE_SIZE.get() >= getMaxCacheSize())
+        {
+            purge();
+
+            if (CACHE_SIZE.get() >= getMaxCacheSize())
+            {
+                return;
+            }
+        }
+
+        Path file = getCacheFile(cacheKey, pos);
+        Path tmpFile = file.resolveSibling(file.getFileName().toString() + ".tmp");
+
+        if (FileUtils.createDirectoriesIfMissing(file.getParent()) == false)
+        {
+            return;
+        }
+
+        int presentSections = 0;
+
+        for (int i = 0; i < sections.length; ++i)
+        {
+            if (sections[i] != null && sections[i].isEmpty() == false)
+            {
+                presentSections |= 1 << i;
+            }
+        }
+
+        try (DataOutputStream os = new DataOutputStream(Files.newOutputStream(tmpFile)))
+        {
+            os.writeInt(FORMAT_VERSION);
+            os.writeShort(presentSections);
+
+            for (int i = 0; i < sections.length; ++i)
+            {
+                if ((presentSections & (1 << i)) != 0)
+                {
+                    BlockStateContainer container = sections[i].getData();
+                    PacketBuffer buf = new PacketBuffer(Unpooled.buffer(container.getSerializedSize()));
+                    container.write(buf);
+                    os.writeInt(buf.readableBytes());
+                    buf.readBytes(os, buf.readableBytes());
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            Litematica.logger.warn("Failed to write the cached schematic chunk to '{}'", file.toAbsolutePath().toString());
+            return;
+        }
+
+        try
+        {
+            CACHE_SIZE.addAndGet(Files.size(tmpFile));
+
+            // Move the fully written file in place, so that another thread or an interrupted
+            // write never leaves a partially written cache file behind
+            try
+            {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e)
+        {
+            Litematica.logger.warn("Failed to write the cached schematic chunk to '{}'", file.toAbsolutePath().toString());
+        }
+    }
+
+    private static class CacheEntry
+    {
+        public final Path dir;
+        public final long lastUsed;
+
+        public CacheEntry(Path dir, long lastUsed)
+        {
+            this.dir = dir;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
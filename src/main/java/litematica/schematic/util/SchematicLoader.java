@@ -0,0 +1,122 @@
+package litematica.schematic.util;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.nbt.NBTTagCompound;
+
+import litematica.Litematica;
+import litematica.scheduler.WorkerThreadPool;
+import litematica.schematic.ISchematic;
+import litematica.schematic.LitematicaSchematic;
+import litematica.schematic.LitematicaSchematic.DecodedSubRegion;
+import litematica.schematic.SchematicType;
+
+public class SchematicLoader
+{
+    private static final Executor WORKER_POOL = WorkerThreadPool.getPool();
+    private static final Executor MAIN_THREAD_EXECUTOR = (task) -> Minecraft.getMinecraft().addScheduledTask(task);
+
+    /**
+     * Reads the given schematic file on the current thread, but decodes
+     * the sub-regions of Litematica schematics in parallel on the worker pool.
+     * @param file
+     * @return the loaded schematic, or null if the file could not be read as a schematic
+     */
+    @Nullable
+    public static ISchematic loadSchematic(Path file)
+    {
+        NBTTagCompound tag = LitematicaSchematic.readNbtFromFile(file);
+        SchematicType<?> type = tag != null ? SchematicType.getType(file, tag) : null;
+
+        if (type == SchematicType.LITEMATICA)
+        {
+            LitematicaSchematic schematic = SchematicType.LITEMATICA.createSchematic(file);
+            List<DecodedSubRegion> regions = schematic.decodeSubRegionsAsync(tag, WORKER_POOL).join();
+            return schematic.fromTag(tag, regions) ? schematic : null;
+        }
+
+        return type != null ? type.createSchematicAndReadFromTag(file, tag) : null;
+    }
+
+    /**
+     * Reads the given schematic file and decodes its sub-regions on the worker pool.
+     * The schematic is then finished on the main thread, so the returned future
+     * also completes on the main thread, with a null value if the loading failed.
+     * <b>Note:</b> The returned future must not be waited on (joined) from the main thread,
+     * as that would block the final step of the loading. Use {@link CompletableFuture#isDone()}
+     * to poll it, or chain a callback for it instead.
+     * @param file
+     * @return a future for the loaded schematic
+     */
+    public static CompletableFuture<ISchematic> loadSchematicAsync(Path file)
+    {
+        // Note: Any exceptions need to be handled before switching to the main thread,
+        // as otherwise the exceptional completion would skip the executor and any
+        // dependent stages would then run on the worker threads.
+        return CompletableFuture.supplyAsync(() -> LitematicaSchematic.readNbtFromFile(file), WORKER_POOL)
+                                .thenCompose(tag -> decodeSchematic(file, tag))
+                                .exceptionally(e -> logLoadFailure(file, e))
+                                .thenApplyAsync(SchematicLoader::finishSchematic, MAIN_THREAD_EXECUTOR)
+                                .exceptionally(e -> logLoadFailure(file, e));
+    }
+
+    @Nullable
+    private static <T> T logLoadFailure(Path file, Throwable e)
+    {
+        Litematica.logger.warn("Failed to load schematic from file '{}'", file.toAbsolutePath(), e);
+        return null;
+    }
+
+    private static CompletableFuture<PendingSchematic> decodeSchematic(Path file, @Nullable NBTTagCompound tag)
+    {
+        SchematicType<?> type = tag != null ? SchematicType.getType(file, tag) : null;
+
+        if (type == SchematicType.LITEMATICA)
+        {
+            LitematicaSchematic schematic = SchematicType.LITEMATICA.createSchematic(file);
+            return schematic.decodeSubRegionsAsync(tag, WORKER_POOL)
+                            .thenApply(regions -> new PendingSchematic(schematic, tag, regions));
+        }
+
+        ISchematic schematic = type != null ? type.createSchematic(file) : null;
+
+        return CompletableFuture.completedFuture(new PendingSchematic(schematic, tag, null));
+    }
+
+    @Nullable
+    private static ISchematic finishSchematic(@Nullable PendingSchematic pending)
+    {
+        ISchematic schematic = pending != null ? pending.schematic : null;
+
+        if (schematic == null || pending.tag == null)
+        {
+            return null;
+        }
+
+        if (schematic instanceof LitematicaSchematic)
+        {
+            return ((LitematicaSchematic) schematic).fromTag(pending.tag, pending.regions) ? schematic : null;
+        }
+
+        return schematic.fromTag(pending.tag) ? schematic : null;
+    }
+
+    private static class PendingSchematic
+    {
+        @Nullable public final ISchematic schematic;
+        @Nullable public final NBTTagCompound tag;
+        @Nullable public final List<DecodedSubRegion> regions;
+
+        public PendingSchematic(@Nullable ISchematic schematic, @Nullable NBTTagCompound tag, @Nullable List<DecodedSubRegion> regions)
+        {
+            this.schematic = schematic;
+            this.tag = tag;
+            this.regions = regions;
+        }
+    }
+}
@@ -45,10 +45,12 @@ import litematica.schematic.container.ILitematicaBlockStateContainer;
 import litematica.schematic.placement.SchematicPlacement;
 import litematica.schematic.placement.SchematicPlacementManager;
 import litematica.schematic.placement.SubRegionPlacement;
+import litematica.schematic.placement.SubRegionTransform;
 import litematica.util.EntityUtils;
 import litematica.util.PositionUtils;
 import litematica.util.ReplaceBehavior;
 import litematica.util.WorldUtils;
+import litematica.world.ChunkSectionDiff;
 
 public class SchematicPlacingUtils
 {
@@ -197,8 +199,6 @@ public class SchematicPlacingUtils
     {
         // These are the untransformed relative positions
         BlockPos posEndRelSub = new BlockPos(PositionUtils.getRelativeEndPositionFromAreaSize(regionSize));
-        BlockPos posEndRel = posEndRelSub.add(regionPos);
-        BlockPos posMinRel = malilib.util.position.PositionUtils.getMinCorner(regionPos, posEndRel);
 
         BlockPos regionPosTransformed = PositionUtils.getTransformedBlockPos(regionPos, schematicPlacement.getMirror(), schematicPlacement.getRotation());
         BlockPos posEndAbs = PositionUtils.getTransformedBlockPos(posEndRelSub, placement.getMirror(), placement.getRotation()).add(regionPosTransformed).add(origin);
@@ -220,17 +220,17 @@ public class SchematicPlacingUtils
         BlockPos.MutableBlockPos posMutable = new BlockPos.MutableBlockPos();
         ReplaceBehavior replace = Configs.Generic.PASTE_REPLACE_BEHAVIOR.getValue();
 
-        final Rotation rotationCombined = schematicPlacement.getRotation().add(placement.getRotation());
-        final Mirror mirrorMain = schematicPlacement.getMirror();
-        Mirror mirrorSub = placement.getMirror();
+        SubRegionTransform transform = schematicPlacement.getSubRegionTransform(placement.getName());
 
-        if (mirrorSub != Mirror.NONE &&
-            (schematicPlacement.getRotation() == Rotation.CLOCKWISE_90 ||
-             schematicPlacement.getRotation() == Rotation.COUNTERCLOCKWISE_90))
+        if (transform == null)
         {
-            mirrorSub = mirrorSub == Mirror.FRONT_BACK ? Mirror.LEFT_RIGHT : Mirror.FRONT_BACK;
+            return false;
         }
 
+        final int originX = origin.getX();
+        final int originY = origin.getY();
+        final int originZ = origin.getZ();
+
         Vec3i containerStart = pair.getLeft();
         Vec3i containerEnd = pair.getRight();
         final int startX = containerStart.getX();
@@ -256,12 +256,9 @@ public class SchematicPlacingUtils
                     posMutable.setPos(x, y, z);
                     NBTTagCompound teNBT = tileMap.get(posMutable);
 
-                    posMutable.setPos(  posMinRel.getX() + x - regionPos.getX(),
-                                        posMinRel.getY() + y - regionPos.getY(),
-                                        posMinRel.getZ() + z - regionPos.getZ());
-
-                    BlockPos pos = PositionUtils.getTransformedPlacementPosition(posMutable, schematicPlacement, placement);
-                    pos = pos.add(regionPosTransformed).add(origin);
+                    BlockPos pos = new BlockPos(originX + transform.getRelativeX(x, z),
+                                                originY + transform.getRelativeY(y),
+                                                originZ + transform.getRelativeZ(x, z));
 
                     IBlockState stateOld = world.getBlockState(pos).getActualState(world, pos);
 
@@ -271,9 +268,7 @@ public class SchematicPlacingUtils
                         continue;
                     }
 
-                    if (mirrorMain != Mirror.NONE) { state = state.withMirror(mirrorMain); }
-                    if (mirrorSub != Mirror.NONE)  { state = state.withMirror(mirrorSub); }
-                    if (rotationCombined != Rotation.NONE) { state = state.withRotation(rotationCombined); }
+                    state = transform.getTransformedState(state);
 
                     if (stateOld == state)
                     {
@@ -304,10 +299,7 @@ public class SchematicPlacingUtils
                             try
                             {
                                 te.readFromNBT(teNBT);
-
-                                if (mirrorMain != Mirror.NONE) { te.mirror(mirrorMain); }
-                                if (mirrorSub != Mirror.NONE)  { te.mirror(mirrorSub); }
-                                if (rotationCombined != Rotation.NONE) { te.rotate(rotationCombined); }
+                                transform.transformBlockEntity(te);
                             }
                             catch (Exception e)
                             {
@@ -327,10 +319,9 @@ public class SchematicPlacingUtils
                 {
                     for (int x = containerStart.getX(); x < containerEnd.getX(); ++x)
                     {
-                        posMutable.setPos(  posMinRel.getX() + x - regionPos.getX(),
-                                            posMinRel.getY() + y - regionPos.getY(),
-                                            posMinRel.getZ() + z - regionPos.getZ());
-                        BlockPos pos = PositionUtils.getTransformedPlacementPosition(posMutable, schematicPlacement, placement).add(origin);
+                        BlockPos pos = new BlockPos(originX + transform.getRelativeX(x, z),
+                                                    originY + transform.getRelativeY(y),
+                                                    originZ + transform.getRelativeZ(x, z));
                         world.notifyNeighborsRespectDebug(pos, world.getBlockState(pos).getBlock(), false);
                     }
                 }
@@ -360,14 +351,7 @@ public class SchematicPlacingUtils
 
         final Rotation rotationCombined = schematicPlacement.getRotation().add(placement.getRotation());
         final Mirror mirrorMain = schematicPlacement.getMirror();
-        Mirror mirrorSub = placement.getMirror();
-
-        if (mirrorSub != Mirror.NONE &&
-            (schematicPlacement.getRotation() == Rotation.CLOCKWISE_90 ||
-             schematicPlacement.getRotation() == Rotation.COUNTERCLOCKWISE_90))
-        {
-            mirrorSub = mirrorSub == Mirror.FRONT_BACK ? Mirror.LEFT_RIGHT : Mirror.FRONT_BACK;
-        }
+        final Mirror mirrorSub = SubRegionTransform.getAdjustedSubRegionMirror(schematicPlacement.getRotation(), placement.getMirror());
 
         for (EntityInfo info : entityList)
         {
@@ -393,6 +377,15 @@ public class SchematicPlacingUtils
     }
 
     public static boolean placeToWorldWithinChunk(SchematicPlacement schematicPlacement, ChunkPos chunkPos, World world, ReplaceBehavior replace, boolean notifyNeighbors)
+    {
+        return placeToWorldWithinChunk(schematicPlacement, chunkPos, world, replace, notifyNeighbors, null);
+    }
+
+    /**
+     * @param changes if not null, then only the blocks at the positions that differ are placed
+     */
+    public static boolean placeToWorldWithinChunk(SchematicPlacement schematicPlacement, ChunkPos chunkPos, World world,
+                                                  ReplaceBehavior replace, boolean notifyNeighbors, @Nullable ChunkSectionDiff changes)
     {
         ISchematic schematic = schematicPlacement.getSchematic();
         Set<String> regionsTouchingChunk = schematicPlacement.getRegionsTouchingChunk(chunkPos.x, chunkPos.z);
@@ -419,7 +412,7 @@ public class SchematicPlacingUtils
 
                 if (placement.isEnabled())
                 {
-                    if (placeBlocksWithinChunk(world, chunkPos, regionName, region, origin, schematicPlacement, placement, replace, notifyNeighbors) == false)
+                    if (placeBlocksWithinChunk(world, chunkPos, regionName, region, origin, schematicPlacement, placement, replace, notifyNeighbors, changes) == false)
                     {
                         allSuccess = false;
                         Litematica.logger.warn("Invalid/missing schematic data in schematic '{}' for sub-region '{}'", schematic.getMetadata().getName(), regionName);
@@ -441,7 +434,8 @@ public class SchematicPlacingUtils
     }
 
     public static boolean placeBlocksWithinChunk(World world, ChunkPos chunkPos, String regionName, ISchematicRegion region,
-            BlockPos origin, SchematicPlacement schematicPlacement, SubRegionPlacement placement, ReplaceBehavior replace, boolean notifyNeighbors)
+            BlockPos origin, SchematicPlacement schematicPlacement, SubRegionPlacement placement, ReplaceBehavior replace,
+            boolean notifyNeighbors, @Nullable ChunkSectionDiff changes)
     {
         IntBoundingBox bounds = schematicPlacement.getBoxWithinChunkForRegion(regionName, chunkPos.x, chunkPos.z);
         ILitematicaBlockStateContainer container = region.getBlockStateContainer();
@@ -498,24 +492,33 @@ public class SchematicPlacingUtils
             return false;
         }
 
-        final Rotation rotationCombined = schematicPlacement.getRotation().add(placement.getRotation());
-        final Mirror mirrorMain = schematicPlacement.getMirror();
         final IBlockState barrier = Blocks.BARRIER.getDefaultState();
-        Mirror mirrorSub = placement.getMirror();
+        SubRegionTransform transform = schematicPlacement.getSubRegionTransform(placement.getName());
 
-        if (mirrorSub != Mirror.NONE &&
-            (schematicPlacement.getRotation() == Rotation.CLOCKWISE_90 ||
-             schematicPlacement.getRotation() == Rotation.COUNTERCLOCKWISE_90))
+        if (transform == null)
         {
-            mirrorSub = mirrorSub == Mirror.FRONT_BACK ? Mirror.LEFT_RIGHT : Mirror.FRONT_BACK;
+            return false;
         }
 
+        final int originX = origin.getX();
+        final int originY = origin.getY();
+        final int originZ = origin.getZ();
+
         for (int y = startY; y <= endY; ++y)
         {
             for (int z = startZ; z <= endZ; ++z)
             {
                 for (int x = startX; x <= endX; ++x)
                 {
+                    int posX = originX + transform.getRelativeX(x, z);
+                    int posY = originY + transform.getRelativeY(y);
+                    int posZ = originZ + transform.getRelativeZ(x, z);
+
+                    if (changes != null && changes.isChanged(posX, posY, posZ) == false)
+                    {
+                        continue;
+                    }
+
                     IBlockState state = container.getBlockState(x, y, z);
 
                     if (state.getBlock() == Blocks.STRUCTURE_VOID)
@@ -525,13 +528,7 @@ public class SchematicPlacingUtils
 
                     posMutable.setPos(x, y, z);
                     NBTTagCompound teNBT = blockEntityMap.get(posMutable);
-
-                    posMutable.setPos(  posMinRel.getX() + x - regionPos.getX(),
-                                        posMinRel.getY() + y - regionPos.getY(),
-                                        posMinRel.getZ() + z - regionPos.getZ());
-
-                    BlockPos pos = PositionUtils.getTransformedPlacementPosition(posMutable, schematicPlacement, placement);
-                    pos = pos.add(regionPosTransformed).add(origin);
+                    BlockPos pos = new BlockPos(posX, posY, posZ);
 
                     IBlockState stateOld = world.getBlockState(pos).getActualState(world, pos);
 
@@ -541,9 +538,7 @@ public class SchematicPlacingUtils
                         continue;
                     }
 
-                    if (mirrorMain != Mirror.NONE) { state = state.withMirror(mirrorMain); }
-                    if (mirrorSub != Mirror.NONE)  { state = state.withMirror(mirrorSub); }
-                    if (rotationCombined != Rotation.NONE) { state = state.withRotation(rotationCombined); }
+                    state = transform.getTransformedState(state);
 
                     TileEntity te = world.getTileEntity(pos);
 
@@ -569,10 +564,7 @@ public class SchematicPlacingUtils
                             try
                             {
                                 te.readFromNBT(teNBT);
-
-                                if (mirrorMain != Mirror.NONE) { te.mirror(mirrorMain); }
-                                if (mirrorSub != Mirror.NONE)  { te.mirror(mirrorSub); }
-                                if (rotationCombined != Rotation.NONE) { te.rotate(rotationCombined); }
+                                transform.transformBlockEntity(te);
                             }
                             catch (Exception e)
                             {
@@ -592,10 +584,9 @@ public class SchematicPlacingUtils
                 {
                     for (int x = startX; x <= endX; ++x)
                     {
-                        posMutable.setPos(  posMinRel.getX() + x - regionPos.getX(),
-                                            posMinRel.getY() + y - regionPos.getY(),
-                                            posMinRel.getZ() + z - regionPos.getZ());
-                        BlockPos pos = PositionUtils.getTransformedPlacementPosition(posMutable, schematicPlacement, placement).add(origin);
+                        BlockPos pos = new BlockPos(originX + transform.getRelativeX(x, z),
+                                                    originY + transform.getRelativeY(y),
+                                                    originZ + transform.getRelativeZ(x, z));
                         world.notifyNeighborsRespectDebug(pos, world.getBlockState(pos).getBlock(), false);
                     }
                 }
@@ -627,14 +618,7 @@ public class SchematicPlacingUtils
 
         final Rotation rotationCombined = schematicPlacement.getRotation().add(placement.getRotation());
         final Mirror mirrorMain = schematicPlacement.getMirror();
-        Mirror mirrorSub = placement.getMirror();
-
-        if (mirrorSub != Mirror.NONE &&
-            (schematicPlacement.getRotation() == Rotation.CLOCKWISE_90 ||
-             schematicPlacement.getRotation() == Rotation.COUNTERCLOCKWISE_90))
-        {
-            mirrorSub = mirrorSub == Mirror.FRONT_BACK ? Mirror.LEFT_RIGHT : Mirror.FRONT_BACK;
-        }
+        final Mirror mirrorSub = SubRegionTransform.getAdjustedSubRegionMirror(schematicPlacement.getRotation(), placement.getMirror());
 
         for (EntityInfo info : entityList)
         {
@@ -0,0 +1,162 @@
+package litematica.schematic.util;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.nbt.NBTTagCompound;
+
+import malilib.overlay.message.MessageDispatcher;
+import litematica.Litematica;
+import litematica.schematic.ISchematic;
+import litematica.schematic.LitematicaSchematic;
+import litematica.schematic.LitematicaSchematicWriter;
+
+public class SchematicSaver
+{
+    /** The maximum time to wait for the pending saves to finish when the game is closing */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 60L;
+
+    /**
+     * A single writer thread, so that the saves are written in order, and the same file is never written concurrently.
+     * The game exits via System.exit(), which doesn't wait for any other threads, so any pending saves
+     * are finished in a shutdown hook instead, see {@link #finishPendingWrites()}.
+     */
+    private static final ThreadPoolExecutor WRITER_THREAD = new ThreadPoolExecutor(0, 1, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), SchematicSaver::createWriterThread);
+    private static final Executor MAIN_THREAD_EXECUTOR = (task) -> Minecraft.getMinecraft().addScheduledTask(task);
+
+    static
+    {
+        Runtime.getRuntime().addShutdownHook(new Thread(SchematicSaver::finishPendingWrites, "Litematica Schematic Writer Shutdown"));
+    }
+
+    /**
+     * Writes the given schematic to the given file on a background thread.
+     * A snapshot of the schematic is taken on the current thread, so the schematic
+     * can keep being used and modified while it's being written.
+     * Litematica schematics are written using the streaming writer, and their block data
+     * is shared copy-on-write with the snapshot, so taking the snapshot is cheap.
+     * The file is first written to a temporary file, which then replaces the target file.
+     * @return a future that completes on the main thread, with true if the schematic was written successfully.
+     *         Any error messages have already been shown by then.
+     */
+    public static CompletableFuture<Boolean> writeToFileAsync(ISchematic schematic, Path file, boolean override)
+    {
+        String name = file.toAbsolutePath().toString();
+
+        if (override == false && Files.exists(file))
+        {
+            MessageDispatcher.error("litematica.error.schematic_write_to_file_failed.exists", name);
+            return CompletableFuture.completedFuture(false);
+        }
+
+        StreamWriter writer = createSnapshotWriter(schematic);
+
+        // Note: Any exceptions need to be handled before switching to the main thread,
+        // see the note in SchematicLoader#loadSchematicAsync()
+        return CompletableFuture.supplyAsync(() -> writeFile(writer, file), WRITER_THREAD)
+                                .thenApplyAsync(success -> onWriteFinished(success, name), MAIN_THREAD_EXECUTOR);
+    }
+
+    private static StreamWriter createSnapshotWriter(ISchematic schematic)
+    {
+        if (schematic instanceof LitematicaSchematic)
+        {
+            LitematicaSchematicWriter writer = ((LitematicaSchematic) schematic).createWriter(true);
+            return writer::writeToStream;
+        }
+
+        // The other formats are small enough to just build the tag tree on the current thread
+        NBTTagCompound tag = schematic.toTag();
+        return os -> schematic.writeToStream(tag, os);
+    }
+
+    private static boolean writeFile(StreamWriter writer, Path file)
+    {
+        Path tmpFile = file.resolveSibling(file.getFileName().toString() + ".tmp");
+
+        try
+        {
+            try (FileOutputStream os = new FileOutputStream(tmpFile.toFile()))
+            {
+                writer.write(os);
+            }
+
+            try
+            {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            return true;
+        }
+        catch (Exception e)
+        {
+            Litematica.logger.warn("Failed to write schematic to file '{}'", file.toAbsolutePath().toString(), e);
+
+            try
+            {
+                Files.deleteIfExists(tmpFile);
+            }
+            catch (Exception ignore) {}
+        }
+
+        return false;
+    }
+
+    private static boolean onWriteFinished(boolean success, String fileName)
+    {
+        if (success == false)
+        {
+            MessageDispatcher.error("litematica.error.schematic_write_to_file_failed.exception", fileName);
+        }
+
+        return success;
+    }
+
+    /**
+     * Blocks until the already queued saves have been written, or until the timeout runs out.
+     * If a save still doesn't finish in time, then only its temporary file is left incomplete,
+     * and the previous version of the target file stays intact.
+     */
+    private static void finishPendingWrites()
+    {
+        WRITER_THREAD.shutdown();
+
+        try
+        {
+            if (WRITER_THREAD.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS) == false)
+            {
+                Litematica.logger.warn("Timed out while waiting for the pending schematic saves to finish");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Litematica.logger.warn("Interrupted while waiting for the pending schematic saves to finish");
+        }
+    }
+
+    private static Thread createWriterThread(Runnable runnable)
+    {
+        Thread thread = new Thread(runnable, "Litematica Schematic Writer");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private interface StreamWriter
+    {
+        void write(FileOutputStream os) throws IOException;
+    }
+}
@@ -1,6 +1,8 @@
 package litematica.schematic.verifier;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -9,20 +11,23 @@ import java.util.Set;
 import javax.annotation.Nullable;
 import com.google.common.collect.ArrayListMultimap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Blocks;
+import net.minecraft.util.EnumFacing;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
 
 import malilib.listener.EventListener;
 import malilib.listener.TaskCompletionListener;
 import malilib.util.StringUtils;
 import malilib.util.data.RunStatus;
+import malilib.util.game.wrap.GameUtils;
 import malilib.util.game.wrap.RegistryUtils;
 import malilib.util.position.IntBoundingBox;
 import malilib.util.position.LayerRange;
@@ -37,6 +42,8 @@ import litematica.selection.SelectionBox;
 import litematica.task.SchematicVerifierTask;
 import litematica.util.BlockInfoListType;
 import litematica.util.PositionUtils;
+import litematica.world.SchematicWorldHandler;
+import litematica.world.WorldSchematic;
 
 public class SchematicVerifier implements IInfoHudRenderer
 {
@@ -46,13 +53,15 @@ public class SchematicVerifier implements IInfoHudRenderer
     protected final ArrayListMultimap<ChunkPos, IntBoundingBox> boxesInChunks = ArrayListMultimap.create();
     protected final LongOpenHashSet completedChunks = new LongOpenHashSet();
 
-    protected final Long2ObjectOpenHashMap<Object2ObjectOpenHashMap<BlockStatePair, IntArrayList>> resultsPerChunk = new Long2ObjectOpenHashMap<>();
-    protected final Object2IntOpenHashMap<BlockStatePair> countsPerPair = new Object2IntOpenHashMap<>();
-    protected final Object2IntOpenHashMap<VerifierResultType> countsPerType = new Object2IntOpenHashMap<>();
+    protected final Long2ObjectOpenHashMap<VerifierChunkResults> resultsPerChunk = new Long2ObjectOpenHashMap<>();
+    protected final ArrayList<BlockStatePair> pairsById = new ArrayList<>();
+    protected final Object2IntOpenHashMap<BlockStatePair> pairIds = new Object2IntOpenHashMap<>();
+    protected final IntArrayList countsPerPairId = new IntArrayList();
+    protected final int[] countsPerType = new int[VerifierResultType.values().length];
 
     protected final HashSet<VerifierResultType> selectedTypes = new HashSet<>();
     protected final HashSet<BlockStatePair> selectedPairs = new HashSet<>();
-    protected final HashSet<BlockStatePair> calculatedSelectedPairs = new HashSet<>();
+    protected final BitSet calculatedSelectedPairIds = new BitSet();
     protected final HashSet<BlockStatePair> ignoredPairs = new HashSet<>();
     protected final HashSet<VerifierResultType> visibleCategories = new HashSet<>();
 
@@ -68,7 +77,6 @@ public class SchematicVerifier implements IInfoHudRenderer
     @Nullable protected EventListener statusChangeListener;
     @Nullable BlockPos lastSortPosition;
     protected boolean autoRefresh;
-    protected boolean countsDirty;
     protected boolean infoHudEnabled;
     protected boolean selectedClosestPositionsDirty;
     protected boolean selectedPairsDirty;
@@ -77,6 +85,7 @@ public class SchematicVerifier implements IInfoHudRenderer
     public SchematicVerifier()
     {
         this.visibleCategories.addAll(VerifierResultType.INCORRECT_TYPES);
+        this.pairIds.defaultReturnValue(-1);
     }
 
     public SchematicVerifier(SchematicPlacement placement)
@@ -188,8 +197,7 @@ public class SchematicVerifier implements IInfoHudRenderer
 
     public int getTotalPositionCountFor(VerifierResultType type)
     {
-        this.updateCountsIfDirty();
-        return this.countsPerType.getInt(type);
+        return this.countsPerType[type.ordinal()];
     }
 
     public void start(TaskCompletionListener completionListener)
@@ -274,15 +282,16 @@ public class SchematicVerifier implements IInfoHudRenderer
     {
         this.selectedPairs.clear();
         this.selectedTypes.clear();
-        this.calculatedSelectedPairs.clear();
+        this.calculatedSelectedPairIds.clear();
         this.selectedPositionsDirty = true;
     }
 
     public void ignoreStatePair(BlockStatePair pair)
     {
         this.ignoredPairs.add(pair);
+        int id = this.pairIds.getInt(pair);
 
-        if (this.calculatedSelectedPairs.contains(pair))
+        if (id >= 0 && this.calculatedSelectedPairIds.get(id))
         {
             this.selectedPairsDirty = true;
         }
@@ -333,13 +342,13 @@ public class SchematicVerifier implements IInfoHudRenderer
         int correctBlocks = 0;
         int totalBlocks = 0;
 
-        this.updateCountsIfDirty();
-
-        for (BlockStatePair pair : this.countsPerPair.keySet())
+        for (int id = 0; id < this.pairsById.size(); ++id)
         {
+            BlockStatePair pair = this.pairsById.get(id);
+
             if (pair.expectedState != AIR)
             {
-                int count = this.countsPerPair.getInt(pair);
+                int count = this.countsPerPairId.getInt(id);
                 totalBlocks += count;
 
                 if (pair.type == VerifierResultType.CORRECT_STATE)
@@ -378,36 +387,164 @@ public class SchematicVerifier implements IInfoHudRenderer
         }
     }
 
-    public void addBlockResultsFromWorld(ChunkPos chunkPos, Object2ObjectOpenHashMap<BlockStatePair, IntArrayList> results)
+    /**
+     * Re-checks only the given changed positions and their direct neighbors,
+     * (as the neighbors' actual states may depend on the changed block),
+     * and updates the counts of the affected pairs.
+     * Positions in chunks that have not been verified yet are skipped,
+     * as the task will check those chunks in full.
+     * @param changedPositions the changed positions as BlockPos longs
+     */
+    public void reCheckPositions(LongOpenHashSet changedPositions)
     {
-        long chunkPosLong = ChunkPos.asLong(chunkPos.x, chunkPos.z);
+        if (this.autoRefresh == false || this.status == RunStatus.STOPPED)
+        {
+            return;
+        }
 
-        this.resultsPerChunk.put(chunkPosLong, results);
+        World clientWorld = GameUtils.getClientWorld();
+        WorldSchematic schematicWorld = SchematicWorldHandler.getSchematicWorld();
 
-        /*
-        Object2ObjectOpenHashMap<BlockStatePair, IntArrayList> old = this.resultsPerChunk.get(chunkPosLong);
+        if (clientWorld == null || schematicWorld == null)
+        {
+            return;
+        }
 
-        if (old != null)
+        LongOpenHashSet checkedPositions = new LongOpenHashSet();
+        LongOpenHashSet fallbackChunks = new LongOpenHashSet();
+        boolean changed = false;
+
+        for (long posLong : changedPositions)
+        {
+            BlockPos pos = BlockPos.fromLong(posLong);
+            changed |= this.reCheckPosition(pos, clientWorld, schematicWorld, checkedPositions, fallbackChunks);
+
+            for (EnumFacing side : EnumFacing.values())
+            {
+                changed |= this.reCheckPosition(pos.offset(side), clientWorld, schematicWorld, checkedPositions, fallbackChunks);
+            }
+        }
+
+        if (fallbackChunks.isEmpty() == false)
+        {
+            this.reCheckChunks(fallbackChunks);
+        }
+
+        if (changed)
+        {
+            this.selectedPairsDirty = true;
+            this.selectedPositionsDirty = true;
+
+            if (this.statusChangeListener != null)
+            {
+                this.statusChangeListener.onEvent();
+            }
+        }
+    }
+
+    /**
+     * @return true if the result at the given position changed
+     */
+    protected boolean reCheckPosition(BlockPos pos, World clientWorld, WorldSchematic schematicWorld,
+                                      LongOpenHashSet checkedPositions, LongOpenHashSet fallbackChunks)
+    {
+        if (checkedPositions.add(pos.toLong()) == false)
+        {
+            return false;
+        }
+
+        long chunkPosLong = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+        VerifierChunkResults results = this.resultsPerChunk.get(chunkPosLong);
+
+        if (results == null ||
+            fallbackChunks.contains(chunkPosLong) ||
+            this.isPositionInVerifiedBoxes(pos) == false)
+        {
+            return false;
+        }
+
+        IBlockState expectedState = schematicWorld.getBlockState(pos);
+        IBlockState foundState = clientWorld.getBlockState(pos).getActualState(clientWorld, pos);
+        VerifierResultType type = VerifierResultType.from(expectedState, foundState);
+        int relPos = VerifierChunkResults.getChunkRelativePosition(pos);
+        // The previously stored result of this exact position, so that exactly that pair gets decremented,
+        // even if the schematic has been edited or the block has changed multiple times since
+        int oldPairId = results.getResultPairId(relPos);
+
+        // There is no stored result for this position, re-check the whole chunk instead
+        if (oldPairId == -1)
+        {
+            fallbackChunks.add(chunkPosLong);
+            return false;
+        }
+
+        int newPairId = this.getOrCreatePairId(type, expectedState, foundState);
+
+        if (newPairId == oldPairId)
         {
-            // Subtract the old counts
-            old.forEach((pair, list) -> {
-                int size = list.size();
-                this.countsPerPair.addTo(pair, -size);
-                this.countsPerType.addTo(pair.type, -size);
-            });
+            return false;
         }
 
+        results.updateResult(relPos, oldPairId, newPairId, type != VerifierResultType.CORRECT_STATE);
+        this.addCount(oldPairId, -1);
+        this.addCount(newPairId, 1);
 
-        // Add the new counts
-        results.forEach((pair, list) -> {
-            int size = list.size();
-            this.countsPerPair.addTo(pair, size);
-            this.countsPerType.addTo(pair.type, size);
-        });
-        */
+        return true;
+    }
+
+    protected boolean isPositionInVerifiedBoxes(BlockPos pos)
+    {
+        final int x = pos.getX();
+        final int y = pos.getY();
+        final int z = pos.getZ();
+
+        for (IntBoundingBox bb : this.boxesInChunks.get(new ChunkPos(x >> 4, z >> 4)))
+        {
+            if (x >= bb.minX && x <= bb.maxX &&
+                y >= bb.minY && y <= bb.maxY &&
+                z >= bb.minZ && z <= bb.maxZ)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the interned ID for the given block state pair, creating it if necessary
+     */
+    public int getOrCreatePairId(VerifierResultType type, IBlockState expectedState, IBlockState foundState)
+    {
+        BlockStatePair pair = new BlockStatePair(type, expectedState, foundState);
+        int id = this.pairIds.getInt(pair);
+
+        if (id == -1)
+        {
+            id = this.pairsById.size();
+            this.pairsById.add(pair);
+            this.pairIds.put(pair, id);
+            this.countsPerPairId.add(0);
+        }
+
+        return id;
+    }
+
+    public void addBlockResultsFromWorld(ChunkPos chunkPos, VerifierChunkResults.Builder builder)
+    {
+        long chunkPosLong = ChunkPos.asLong(chunkPos.x, chunkPos.z);
+        VerifierChunkResults results = builder.build(this);
+        VerifierChunkResults old = this.resultsPerChunk.put(chunkPosLong, results);
+
+        // Keep the totals up to date, instead of re-counting all the chunks
+        if (old != null)
+        {
+            this.addCounts(old, -1);
+        }
+
+        this.addCounts(results, 1);
 
         this.completedChunks.add(chunkPosLong);
-        this.countsDirty = true;
         this.selectedPairsDirty = true;
         this.selectedPositionsDirty = true;
 
@@ -417,16 +554,35 @@ public class SchematicVerifier implements IInfoHudRenderer
         }
     }
 
+    protected void addCounts(VerifierChunkResults results, int sign)
+    {
+        final int pairCount = results.getPairCount();
+
+        for (int i = 0; i < pairCount; ++i)
+        {
+            this.addCount(results.getPairId(i), results.getPositionCount(i) * sign);
+        }
+    }
+
+    protected void addCount(int pairId, int amount)
+    {
+        BlockStatePair pair = this.pairsById.get(pairId);
+        this.countsPerPairId.set(pairId, this.countsPerPairId.getInt(pairId) + amount);
+        this.countsPerType[pair.type.ordinal()] += amount;
+    }
+
     public List<BlockStatePairCount> getNonIgnoredBlockPairs()
     {
-        this.updateCountsIfDirty();
         ArrayList<BlockStatePairCount> list = new ArrayList<>();
 
-        for (BlockStatePair pair : this.countsPerPair.keySet())
+        for (int id = 0; id < this.pairsById.size(); ++id)
         {
-            if (this.ignoredPairs.contains(pair) == false)
+            BlockStatePair pair = this.pairsById.get(id);
+            int count = this.countsPerPairId.getInt(id);
+
+            if (count > 0 && this.ignoredPairs.contains(pair) == false)
             {
-                list.add(BlockStatePairCount.of(pair, this.countsPerPair.getInt(pair)));
+                list.add(BlockStatePairCount.of(pair, count));
             }
         }
 
@@ -445,12 +601,14 @@ public class SchematicVerifier implements IInfoHudRenderer
         this.completedChunks.clear();
 
         this.resultsPerChunk.clear();
-        this.countsPerPair.clear();
-        this.countsPerType.clear();
+        this.pairsById.clear();
+        this.pairIds.clear();
+        this.countsPerPairId.clear();
+        Arrays.fill(this.countsPerType, 0);
 
         this.selectedTypes.clear();
         this.selectedPairs.clear();
-        this.calculatedSelectedPairs.clear();
+        this.calculatedSelectedPairIds.clear();
         this.ignoredPairs.clear();
 
         this.allSelectedPositions.clear();
@@ -498,42 +656,18 @@ public class SchematicVerifier implements IInfoHudRenderer
         }
     }
 
-    protected void updateCountsIfDirty()
-    {
-        if (this.countsDirty)
-        {
-            this.updateCounts();
-        }
-    }
-
-    protected void updateCounts()
-    {
-        this.countsPerPair.clear();
-        this.countsPerType.clear();
-
-        for (Object2ObjectOpenHashMap<BlockStatePair, IntArrayList> map : this.resultsPerChunk.values())
-        {
-            for (BlockStatePair pair : map.keySet())
-            {
-                int size = map.get(pair).size();
-                this.countsPerPair.addTo(pair, size);
-                this.countsPerType.addTo(pair.type, size);
-            }
-        }
-
-        this.countsDirty = false;
-    }
-
     protected void updateSelectedPairs()
     {
-        this.updateCountsIfDirty();
-        this.calculatedSelectedPairs.clear();
+        this.calculatedSelectedPairIds.clear();
 
-        for (BlockStatePair pair : this.countsPerPair.keySet())
+        for (int id = 0; id < this.pairsById.size(); ++id)
         {
-            if (this.selectedPairs.contains(pair) || this.selectedTypes.contains(pair.type))
+            BlockStatePair pair = this.pairsById.get(id);
+
+            if (this.countsPerPairId.getInt(id) > 0 &&
+                (this.selectedPairs.contains(pair) || this.selectedTypes.contains(pair.type)))
             {
-                this.calculatedSelectedPairs.add(pair);
+                this.calculatedSelectedPairIds.set(id);
             }
         }
 
@@ -546,26 +680,55 @@ public class SchematicVerifier implements IInfoHudRenderer
         this.updateSelectedPairsIfDirty();
         this.allSelectedPositions.clear();
 
-        for (long chunkPosLong : this.resultsPerChunk.keySet())
+        for (Long2ObjectMap.Entry<VerifierChunkResults> entry : this.resultsPerChunk.long2ObjectEntrySet())
         {
-            Object2ObjectOpenHashMap<BlockStatePair, IntArrayList> results = this.resultsPerChunk.get(chunkPosLong);
+            long chunkPosLong = entry.getLongKey();
+            VerifierChunkResults results = entry.getValue();
+            final int mismatchCount = results.getMismatchCount();
 
-            for (BlockStatePair pair : results.keySet())
+            for (int i = 0; i < mismatchCount; ++i)
             {
-                if (this.calculatedSelectedPairs.contains(pair))
+                long packed = results.getMismatch(i);
+                int pairId = VerifierChunkResults.getPairId(packed);
+
+                if (this.calculatedSelectedPairIds.get(pairId))
                 {
-                    for (int relPos : results.get(pair))
-                    {
-                        this.allSelectedPositions.add(BlockPairTypePosition.of(pair, chunkPosLong, relPos));
-                    }
+                    int relPos = VerifierChunkResults.getChunkRelativePosition(packed);
+                    this.allSelectedPositions.add(BlockPairTypePosition.of(this.pairsById.get(pairId), chunkPosLong, relPos));
                 }
             }
+
+            this.addSelectedCorrectPositions(chunkPosLong, results);
         }
 
         this.selectedPositionsDirty = false;
         this.selectedClosestPositionsDirty = true;
     }
 
+    /**
+     * Adds the stored positions of the selected correct pairs in the given chunk
+     */
+    protected void addSelectedCorrectPositions(long chunkPosLong, VerifierChunkResults results)
+    {
+        final int pairCount = results.getPairCount();
+
+        for (int i = 0; i < pairCount; ++i)
+        {
+            int pairId = results.getPairId(i);
+
+            if (results.isCorrectPair(i) && this.calculatedSelectedPairIds.get(pairId))
+            {
+                BlockStatePair pair = this.pairsById.get(pairId);
+                final int positionCount = results.getPositionCount(i);
+
+                for (int p = 0; p < positionCount; ++p)
+                {
+                    this.allSelectedPositions.add(BlockPairTypePosition.of(pair, chunkPosLong, results.getCorrectPosition(i, p)));
+                }
+            }
+        }
+    }
+
     protected void updateClosestPositionsIfDirty(BlockPos referencePos)
     {
         this.updateSelectedPairsIfDirty();
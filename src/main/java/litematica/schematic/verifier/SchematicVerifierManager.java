@@ -8,6 +8,7 @@ import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 
+import litematica.config.Configs;
 import litematica.data.DataManager;
 import litematica.schematic.placement.SchematicPlacement;
 
@@ -19,6 +20,7 @@ public class SchematicVerifierManager
     protected final ArrayList<SchematicVerifier> allVerifiers = new ArrayList<>();
     protected final LongOpenHashSet touchedChunks = new LongOpenHashSet();
     protected final LongOpenHashSet reCheckChunks = new LongOpenHashSet();
+    protected final LongOpenHashSet changedPositions = new LongOpenHashSet();
     @Nullable protected SchematicVerifier selectedVerifier;
 
     public List<SchematicVerifier> getActiveVerifiers()
@@ -96,7 +98,17 @@ public class SchematicVerifierManager
 
     public void onBlockChanged(BlockPos pos)
     {
-        this.onChunkChanged(pos.getX() >> 4, pos.getZ() >> 4);
+        if (Configs.Generic.VERIFIER_INCREMENTAL_UPDATES.getBooleanValue())
+        {
+            if (this.touchedChunks.contains(ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4)))
+            {
+                this.changedPositions.add(pos.toLong());
+            }
+        }
+        else
+        {
+            this.onChunkChanged(pos.getX() >> 4, pos.getZ() >> 4);
+        }
     }
 
     public void onChunkChanged(int cx, int cz)
@@ -122,6 +134,23 @@ public class SchematicVerifierManager
         this.reCheckChunks.clear();
     }
 
+    /**
+     * Re-checks the individual block positions that have changed since the last call.
+     * This is cheap enough to be called every tick.
+     */
+    public void reCheckChangedPositions()
+    {
+        if (this.changedPositions.isEmpty() == false)
+        {
+            for (SchematicVerifier verifier : this.activeVerifiers)
+            {
+                verifier.reCheckPositions(this.changedPositions);
+            }
+
+            this.changedPositions.clear();
+        }
+    }
+
     protected void createAndAddVerifier(SchematicPlacement placement)
     {
         // TODO
@@ -0,0 +1,392 @@
+package litematica.schematic.verifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.BlockPos;
+
+import malilib.util.position.PositionUtils;
+
+/**
+ * The verifier results of one chunk, stored in primitive arrays.
+ * The block state pairs are referenced by their interned IDs from the verifier.
+ * The incorrect results are stored as packed longs of the pair ID and the position.
+ * The correct results, which are usually the vast majority, are stored more compactly
+ * as a sorted int array of the positions per correct pair, so that the pair ID
+ * is only stored once per pair instead of once per position.
+ * Single positions can be updated afterwards, for the incremental verification.
+ */
+public class VerifierChunkResults
+{
+    /** The IDs of all the distinct pairs found in this chunk, including the correct ones */
+    protected int[] pairIds;
+    /** The number of positions for each of the pairs in pairIds */
+    protected int[] pairCounts;
+    /** The sorted positions of each of the correct pairs in pairIds, the first pairCounts[index] values are used.
+     * Null for the incorrect pairs, whose positions are in the mismatches array instead. */
+    protected int[][] correctPositions;
+    /** The positions of the incorrect results, each packed as (pairId << 32 | chunkRelativePosition) */
+    protected long[] mismatches;
+    protected int mismatchCount;
+    /** Maps the chunk-relative positions to their index in the mismatches array.
+     * Only built once the first single position update happens in this chunk. */
+    @Nullable protected Int2IntOpenHashMap mismatchIndices;
+
+    protected VerifierChunkResults(int[] pairIds, int[] pairCounts, int[][] correctPositions, long[] mismatches)
+    {
+        this.pairIds = pairIds;
+        this.pairCounts = pairCounts;
+        this.correctPositions = correctPositions;
+        this.mismatches = mismatches;
+        this.mismatchCount = mismatches.length;
+    }
+
+    public int getPairCount()
+    {
+        return this.pairIds.length;
+    }
+
+    public int getPairId(int index)
+    {
+        return this.pairIds[index];
+    }
+
+    public int getPositionCount(int index)
+    {
+        return this.pairCounts[index];
+    }
+
+    public int getMismatchCount()
+    {
+        return this.mismatchCount;
+    }
+
+    public long getMismatch(int index)
+    {
+        return this.mismatches[index];
+    }
+
+    /**
+     * @return true if the pair at the given index is a correct pair,
+     *         whose positions are available via {@link #getCorrectPosition(int, int)}
+     */
+    public boolean isCorrectPair(int index)
+    {
+        return this.correctPositions[index] != null;
+    }
+
+    /**
+     * @param index the index of the correct pair
+     * @param positionIndex the index of the position, from 0 to getPositionCount(index) - 1
+     * @return the chunk-relative position
+     */
+    public int getCorrectPosition(int index, int positionIndex)
+    {
+        return this.correctPositions[index][positionIndex];
+    }
+
+    /**
+     * @return the pair ID of the stored result at the given position,
+     *         or -1 if there is no result for that position
+     */
+    public int getResultPairId(int chunkRelativePosition)
+    {
+        int index = this.getMismatchIndices().get(chunkRelativePosition);
+
+        if (index >= 0)
+        {
+            return getPairId(this.mismatches[index]);
+        }
+
+        for (int i = 0; i < this.pairIds.length; ++i)
+        {
+            int[] positions = this.correctPositions[i];
+
+            if (positions != null && Arrays.binarySearch(positions, 0, this.pairCounts[i], chunkRelativePosition) >= 0)
+            {
+                return this.pairIds[i];
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Changes the result of one position from the old pair to the new pair.
+     * @param oldPairId the pair ID the position currently has, see {@link #getResultPairId(int)}
+     * @param newPairId the new pair ID for the position
+     * @param isMismatch true if the new pair is an incorrect result, whose position needs to be stored
+     */
+    public void updateResult(int chunkRelativePosition, int oldPairId, int newPairId, boolean isMismatch)
+    {
+        int oldIndex = this.getPairIndex(oldPairId);
+
+        if (oldIndex >= 0 && this.correctPositions[oldIndex] != null)
+        {
+            this.removeCorrectPosition(oldIndex, chunkRelativePosition);
+        }
+
+        this.addPairCount(oldPairId, -1, false);
+        int newIndex = this.addPairCount(newPairId, 1, isMismatch == false);
+
+        if (isMismatch == false)
+        {
+            this.insertCorrectPosition(newIndex, chunkRelativePosition);
+        }
+
+        Int2IntOpenHashMap indices = this.getMismatchIndices();
+        int index = indices.get(chunkRelativePosition);
+        long packed = ((long) newPairId << 32) | ((long) chunkRelativePosition & 0xFFFFFFFFL);
+
+        if (index >= 0)
+        {
+            if (isMismatch)
+            {
+                this.mismatches[index] = packed;
+            }
+            else
+            {
+                // Move the last entry into the removed slot
+                int lastIndex = --this.mismatchCount;
+                long last = this.mismatches[lastIndex];
+                this.mismatches[index] = last;
+                indices.remove(chunkRelativePosition);
+
+                if (index != lastIndex)
+                {
+                    indices.put(getChunkRelativePosition(last), index);
+                }
+            }
+        }
+        else if (isMismatch)
+        {
+            if (this.mismatchCount >= this.mismatches.length)
+            {
+                this.mismatches = Arrays.copyOf(this.mismatches, Math.max(16, this.mismatches.length * 2));
+            }
+
+            indices.put(chunkRelativePosition, this.mismatchCount);
+            this.mismatches[this.mismatchCount++] = packed;
+        }
+    }
+
+    protected int getPairIndex(int pairId)
+    {
+        for (int i = 0; i < this.pairIds.length; ++i)
+        {
+            if (this.pairIds[i] == pairId)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Adds the given amount to the count of the given pair, adding the pair if it's not in this chunk yet
+     * @param isCorrect true if the pair is a correct pair, for creating its position array if the pair is added
+     * @return the index of the pair
+     */
+    protected int addPairCount(int pairId, int amount, boolean isCorrect)
+    {
+        int index = this.getPairIndex(pairId);
+
+        if (index >= 0)
+        {
+            this.pairCounts[index] += amount;
+            return index;
+        }
+
+        index = this.pairIds.length;
+        this.pairIds = Arrays.copyOf(this.pairIds, index + 1);
+        this.pairCounts = Arrays.copyOf(this.pairCounts, index + 1);
+        this.correctPositions = Arrays.copyOf(this.correctPositions, index + 1);
+        this.pairIds[index] = pairId;
+        this.pairCounts[index] = amount;
+        this.correctPositions[index] = isCorrect ? new int[4] : null;
+
+        return index;
+    }
+
+    /**
+     * Inserts the position into the sorted positions of the given correct pair.
+     * Must be called after the count of the pair has already been incremented.
+     */
+    protected void insertCorrectPosition(int index, int chunkRelativePosition)
+    {
+        int[] arr = this.correctPositions[index];
+        final int oldCount = this.pairCounts[index] - 1;
+        int insertIndex = Arrays.binarySearch(arr, 0, oldCount, chunkRelativePosition);
+
+        if (insertIndex >= 0)
+        {
+            return;
+        }
+
+        insertIndex = -insertIndex - 1;
+
+        if (oldCount >= arr.length)
+        {
+            arr = Arrays.copyOf(arr, Math.max(4, arr.length * 2));
+            this.correctPositions[index] = arr;
+        }
+
+        System.arraycopy(arr, insertIndex, arr, insertIndex + 1, oldCount - insertIndex);
+        arr[insertIndex] = chunkRelativePosition;
+    }
+
+    /**
+     * Removes the position from the sorted positions of the given correct pair.
+     * Must be called before the count of the pair gets decremented.
+     */
+    protected void removeCorrectPosition(int index, int chunkRelativePosition)
+    {
+        int[] arr = this.correctPositions[index];
+        final int count = this.pairCounts[index];
+        int removeIndex = Arrays.binarySearch(arr, 0, count, chunkRelativePosition);
+
+        if (removeIndex >= 0)
+        {
+            System.arraycopy(arr, removeIndex + 1, arr, removeIndex, count - removeIndex - 1);
+        }
+    }
+
+    protected Int2IntOpenHashMap getMismatchIndices()
+    {
+        if (this.mismatchIndices == null)
+        {
+            this.mismatchIndices = new Int2IntOpenHashMap(this.mismatchCount);
+            this.mismatchIndices.defaultReturnValue(-1);
+
+            for (int i = 0; i < this.mismatchCount; ++i)
+            {
+                this.mismatchIndices.put(getChunkRelativePosition(this.mismatches[i]), i);
+            }
+        }
+
+        return this.mismatchIndices;
+    }
+
+    public static int getChunkRelativePosition(BlockPos pos)
+    {
+        return PositionUtils.getPackedChunkRelativePosition(pos);
+    }
+
+    public static int getPairId(long packedMismatch)
+    {
+        return (int) (packedMismatch >>> 32);
+    }
+
+    public static int getChunkRelativePosition(long packedMismatch)
+    {
+        return (int) packedMismatch;
+    }
+
+    /**
+     * Collects the results of one chunk, using chunk-local pair IDs,
+     * so that it doesn't need to access the verifier and can be used from the worker threads.
+     * Adding a result does not allocate anything, other than when the arrays need to grow.
+     */
+    public static class Builder
+    {
+        protected final Reference2IntOpenHashMap<IBlockState> stateIds = new Reference2IntOpenHashMap<>();
+        protected final Long2IntOpenHashMap localPairIds = new Long2IntOpenHashMap();
+        protected final ArrayList<IBlockState> expectedStates = new ArrayList<>();
+        protected final ArrayList<IBlockState> foundStates = new ArrayList<>();
+        protected final ArrayList<VerifierResultType> types = new ArrayList<>();
+        protected final IntArrayList pairCounts = new IntArrayList();
+        protected final ArrayList<IntArrayList> correctPositions = new ArrayList<>();
+        protected final LongArrayList mismatches = new LongArrayList();
+
+        public Builder()
+        {
+            this.stateIds.defaultReturnValue(-1);
+            this.localPairIds.defaultReturnValue(-1);
+        }
+
+        public void add(IBlockState expectedState, IBlockState foundState, int chunkRelativePosition)
+        {
+            long key = ((long) this.getStateId(expectedState) << 32) | (long) this.getStateId(foundState);
+            int localId = this.localPairIds.get(key);
+
+            if (localId == -1)
+            {
+                localId = this.types.size();
+                VerifierResultType type = VerifierResultType.from(expectedState, foundState);
+                this.localPairIds.put(key, localId);
+                this.expectedStates.add(expectedState);
+                this.foundStates.add(foundState);
+                this.types.add(type);
+                this.pairCounts.add(0);
+                this.correctPositions.add(type == VerifierResultType.CORRECT_STATE ? new IntArrayList() : null);
+            }
+
+            this.pairCounts.set(localId, this.pairCounts.getInt(localId) + 1);
+
+            IntArrayList positions = this.correctPositions.get(localId);
+
+            if (positions != null)
+            {
+                positions.add(chunkRelativePosition);
+            }
+            else
+            {
+                this.mismatches.add(((long) localId << 32) | ((long) chunkRelativePosition & 0xFFFFFFFFL));
+            }
+        }
+
+        protected int getStateId(IBlockState state)
+        {
+            int id = this.stateIds.getInt(state);
+
+            if (id == -1)
+            {
+                id = this.stateIds.size();
+                this.stateIds.put(state, id);
+            }
+
+            return id;
+        }
+
+        /**
+         * Builds the final results, by converting the chunk-local pair IDs to
+         * the verifier's interned pair IDs. Must be called on the main thread.
+         */
+        public VerifierChunkResults build(SchematicVerifier verifier)
+        {
+            final int pairCount = this.types.size();
+            int[] pairIds = new int[pairCount];
+            int[] counts = this.pairCounts.toIntArray();
+            int[][] correctPositions = new int[pairCount][];
+            long[] mismatches = this.mismatches.toLongArray();
+
+            for (int i = 0; i < pairCount; ++i)
+            {
+                pairIds[i] = verifier.getOrCreatePairId(this.types.get(i), this.expectedStates.get(i), this.foundStates.get(i));
+                IntArrayList positions = this.correctPositions.get(i);
+
+                if (positions != null)
+                {
+                    correctPositions[i] = positions.toIntArray();
+                    Arrays.sort(correctPositions[i]);
+                }
+            }
+
+            for (int i = 0; i < mismatches.length; ++i)
+            {
+                long packed = mismatches[i];
+                mismatches[i] = ((long) pairIds[getPairId(packed)] << 32) | (packed & 0xFFFFFFFFL);
+            }
+
+            return new VerifierChunkResults(pairIds, counts, correctPositions, mismatches);
+        }
+    }
+}
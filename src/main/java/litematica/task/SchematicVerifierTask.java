@@ -1,24 +1,26 @@
 package litematica.task;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import com.google.common.collect.ArrayListMultimap;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Blocks;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
-import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.IBlockAccess;
 
 import malilib.util.position.IntBoundingBox;
 import malilib.util.position.PositionUtils;
 import litematica.config.Configs;
+import litematica.scheduler.TaskPriority;
 import litematica.scheduler.tasks.TaskProcessChunkBase;
-import litematica.schematic.verifier.BlockStatePair;
 import litematica.schematic.verifier.SchematicVerifier;
-import litematica.schematic.verifier.VerifierResultType;
+import litematica.schematic.verifier.VerifierChunkResults;
 import litematica.world.SchematicWorldHandler;
 import litematica.world.WorldSchematic;
+import litematica.world.WorldSnapshot;
 
 public class SchematicVerifierTask extends TaskProcessChunkBase
 {
@@ -33,6 +35,7 @@ public class SchematicVerifierTask extends TaskProcessChunkBase
 
         this.verifier = verifier;
         this.schematicWorld = SchematicWorldHandler.getSchematicWorld();
+        this.priority = TaskPriority.HIGH;
     }
 
     public void setBoxes(ArrayListMultimap<ChunkPos, IntBoundingBox> boxesInChunks)
@@ -48,6 +51,14 @@ public class SchematicVerifierTask extends TaskProcessChunkBase
         for (ChunkPos pos : boxesInChunks.keySet())
         {
             this.boxesInChunks.removeAll(pos);
+
+            // Discard any in-progress results that were based on the old boxes
+            CompletableFuture<ChunkJob> future = this.pendingJobs.remove(pos);
+
+            if (future != null)
+            {
+                future.cancel(false);
+            }
         }
 
         this.boxesInChunks.putAll(boxesInChunks);
@@ -75,14 +86,39 @@ public class SchematicVerifierTask extends TaskProcessChunkBase
         return true;
     }
 
+    @Override
+    protected ChunkJob createChunkJob(ChunkPos pos)
+    {
+        List<IntBoundingBox> boxes = new ArrayList<>(this.getBoxesInChunk(pos));
+        // The neighbor blocks of the client world are needed for getActualState(),
+        // while the schematic world is only read within the boxes
+        int[] yRangeClient = getSnapshotYRange(boxes, ACTUAL_STATE_NEIGHBOR_MARGIN);
+        int[] yRangeSchematic = getSnapshotYRange(boxes, 0);
+        IBlockAccess clientSnapshot = new WorldSnapshot(this.worldClient, pos, 1, yRangeClient[0], yRangeClient[1]);
+        IBlockAccess schematicSnapshot = new WorldSnapshot(this.schematicWorld, pos, 0, yRangeSchematic[0], yRangeSchematic[1]);
+
+        return new VerifyChunkJob(pos, boxes, clientSnapshot, schematicSnapshot);
+    }
+
     protected void checkBlocksInChunk(ChunkPos pos)
+    {
+        VerifierChunkResults.Builder results = new VerifierChunkResults.Builder();
+        checkBlocksInBoxes(this.getBoxesInChunk(pos), this.worldClient, this.schematicWorld, results);
+        this.verifier.addBlockResultsFromWorld(pos, results);
+    }
+
+    /**
+     * Checks the blocks within the given boxes. This doesn't access the task,
+     * so it can be called from the worker threads, with snapshots of the worlds.
+     */
+    protected static void checkBlocksInBoxes(List<IntBoundingBox> boxes,
+                                             IBlockAccess clientWorld,
+                                             IBlockAccess schematicWorld,
+                                             VerifierChunkResults.Builder results)
     {
         BlockPos.MutableBlockPos mutablePos = new BlockPos.MutableBlockPos();
-        Chunk schematicChunk = this.schematicWorld.getChunk(pos.x, pos.z);
-        Chunk clientChunk = this.worldClient.getChunk(pos.x, pos.z);
-        Object2ObjectOpenHashMap<BlockStatePair, IntArrayList> results = new Object2ObjectOpenHashMap<>();
 
-        for (IntBoundingBox bb : this.getBoxesInChunk(pos))
+        for (IntBoundingBox bb : boxes)
         {
             final int startX = bb.minX;
             final int startY = bb.minY;
@@ -98,26 +134,50 @@ public class SchematicVerifierTask extends TaskProcessChunkBase
                     for (int x = startX; x <= endX; ++x)
                     {
                         mutablePos.setPos(x, y, z);
-                        this.checkBlock(mutablePos, schematicChunk, clientChunk, results);
+                        checkBlock(mutablePos, clientWorld, schematicWorld, results);
                     }
                 }
             }
         }
+    }
 
-        this.verifier.addBlockResultsFromWorld(pos, results);
+    protected static void checkBlock(BlockPos.MutableBlockPos pos,
+                                     IBlockAccess clientWorld,
+                                     IBlockAccess schematicWorld,
+                                     VerifierChunkResults.Builder results)
+    {
+        IBlockState clientBlock = clientWorld.getBlockState(pos).getActualState(clientWorld, pos);
+        IBlockState schematicBlock = schematicWorld.getBlockState(pos);
+
+        results.add(schematicBlock, clientBlock, PositionUtils.getPackedChunkRelativePosition(pos));
     }
 
-    protected void checkBlock(BlockPos.MutableBlockPos pos,
-                              Chunk schematicChunk,
-                              Chunk clientChunk,
-                              Object2ObjectOpenHashMap<BlockStatePair, IntArrayList> results)
+    protected class VerifyChunkJob implements ChunkJob
     {
-        IBlockState clientBlock = clientChunk.getBlockState(pos).getActualState(clientChunk.getWorld(), pos);
-        IBlockState schematicBlock = schematicChunk.getBlockState(pos);
-        VerifierResultType type = VerifierResultType.from(schematicBlock, clientBlock);
-        BlockStatePair pair = new BlockStatePair(type, schematicBlock, clientBlock);
-        int posInt = PositionUtils.getPackedChunkRelativePosition(pos);
+        protected final VerifierChunkResults.Builder results = new VerifierChunkResults.Builder();
+        protected final ChunkPos pos;
+        protected final List<IntBoundingBox> boxes;
+        protected final IBlockAccess clientWorld;
+        protected final IBlockAccess schematicWorld;
+
+        protected VerifyChunkJob(ChunkPos pos, List<IntBoundingBox> boxes, IBlockAccess clientWorld, IBlockAccess schematicWorld)
+        {
+            this.pos = pos;
+            this.boxes = boxes;
+            this.clientWorld = clientWorld;
+            this.schematicWorld = schematicWorld;
+        }
+
+        @Override
+        public void process()
+        {
+            checkBlocksInBoxes(this.boxes, this.clientWorld, this.schematicWorld, this.results);
+        }
 
-        results.computeIfAbsent(pair, (p) -> new IntArrayList()).add(posInt);
+        @Override
+        public void finish()
+        {
+            SchematicVerifierTask.this.verifier.addBlockResultsFromWorld(this.pos, this.results);
+        }
     }
 }
@@ -39,9 +39,7 @@ import malilib.util.game.PlacementUtils;
 import malilib.util.game.RayTraceUtils.RayTraceFluidHandling;
 import malilib.util.game.wrap.GameUtils;
 import malilib.util.game.wrap.ItemWrap;
-import malilib.util.position.ChunkSectionPos;
 import malilib.util.position.HitPosition;
-import malilib.util.position.IntBoundingBox;
 import malilib.util.position.LayerRange;
 import malilib.util.position.PositionUtils;
 import litematica.Litematica;
@@ -49,7 +47,7 @@ import litematica.config.Configs;
 import litematica.config.Hotkeys;
 import litematica.data.DataManager;
 import litematica.materials.MaterialCache;
-import litematica.schematic.placement.SchematicPlacementManager;
+import litematica.schematic.placement.PlacementSpatialIndex;
 import litematica.tool.ToolMode;
 import litematica.util.RayTraceUtils.RayTraceWrapper;
 import litematica.world.SchematicWorldHandler;
@@ -644,41 +642,8 @@ public class EasyPlaceUtils
 
     private static boolean isPositionWithinRangeOfSchematicRegions(BlockPos pos, int range)
     {
-        SchematicPlacementManager manager = DataManager.getSchematicPlacementManager();
-        final int minCX = (pos.getX() - range) >> 4;
-        final int minCY = (pos.getY() - range) >> 4;
-        final int minCZ = (pos.getZ() - range) >> 4;
-        final int maxCX = (pos.getX() + range) >> 4;
-        final int maxCY = (pos.getY() + range) >> 4;
-        final int maxCZ = (pos.getZ() + range) >> 4;
-        final int x = pos.getX();
-        final int y = pos.getY();
-        final int z = pos.getZ();
-
-        for (int cy = minCY; cy <= maxCY; ++cy)
-        {
-            for (int cz = minCZ; cz <= maxCZ; ++cz)
-            {
-                for (int cx = minCX; cx <= maxCX; ++cx)
-                {
-                    List<IntBoundingBox> boxes = manager.getTouchedBoxesInSubChunk(new ChunkSectionPos(cx, cy, cz));
-
-                    for (int i = 0; i < boxes.size(); ++i)
-                    {
-                        IntBoundingBox box = boxes.get(i);
-
-                        if (x >= box.minX - range && x <= box.maxX + range &&
-                            y >= box.minY - range && y <= box.maxY + range &&
-                            z >= box.minZ - range && z <= box.maxZ + range)
-                        {
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-
-        return false;
+        PlacementSpatialIndex index = DataManager.getSchematicPlacementManager().getSpatialIndex();
+        return index.isWithinRange(pos.getX(), pos.getY(), pos.getZ(), range);
     }
 
     private static boolean easyPlaceIsPositionCached(BlockPos pos)
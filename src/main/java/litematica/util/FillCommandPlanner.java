@@ -0,0 +1,191 @@
+package litematica.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Decomposes a volume of block states into cuboids of the same state, so that the volume
+ * can be pasted using /fill commands, instead of one /setblock command per block.
+ * The volume is meshed greedily: starting from each not yet covered position in the
+ * y, z, x order, the cuboid is first extended along the x-axis, then along the z-axis
+ * and then along the y-axis, for as long as all the new positions have the same state
+ * and have not been covered yet, and the volume stays within the /fill command's limit.
+ * The planner only works on the given array, it doesn't access any worlds.
+ */
+public class FillCommandPlanner
+{
+    /** The maximum number of blocks that the vanilla /fill command accepts */
+    public static final int MAX_FILL_VOLUME = 32768;
+
+    /**
+     * Plans the cuboids for the given volume.
+     * @param states the states of the volume, indexed as <b>(y * sizeZ + z) * sizeX + x</b>.
+     *               A null state means that nothing should be placed at that position.
+     * @param needsSupport a test for the states that need a supporting block next to them,
+     *                     for example torches and ladders. These are ordered after the other
+     *                     cuboids that start on the same layer.
+     * @return the cuboids, with the positions relative to the minimum corner of the volume,
+     *         ordered by their bottom y-coordinate, so that the supporting blocks get placed first
+     */
+    public static <T> List<Cuboid<T>> plan(T[] states, int sizeX, int sizeY, int sizeZ, Predicate<T> needsSupport)
+    {
+        List<Cuboid<T>> cuboids = new ArrayList<>();
+        boolean[] covered = new boolean[states.length];
+
+        for (int y = 0; y < sizeY; ++y)
+        {
+            for (int z = 0; z < sizeZ; ++z)
+            {
+                for (int x = 0; x < sizeX; ++x)
+                {
+                    int index = (y * sizeZ + z) * sizeX + x;
+                    T state = states[index];
+
+                    if (state == null || covered[index])
+                    {
+                        continue;
+                    }
+
+                    int maxX = x;
+
+                    while (maxX + 1 < sizeX && maxX + 2 - x <= MAX_FILL_VOLUME &&
+                           isUncovered(states, covered, state, (y * sizeZ + z) * sizeX + maxX + 1))
+                    {
+                        ++maxX;
+                    }
+
+                    int maxZ = z;
+
+                    while (maxZ + 1 < sizeZ && (maxX - x + 1) * (maxZ + 2 - z) <= MAX_FILL_VOLUME &&
+                           isRowUncovered(states, covered, state, x, maxX, y, maxZ + 1, sizeX, sizeZ))
+                    {
+                        ++maxZ;
+                    }
+
+                    int maxY = y;
+                    int layerVolume = (maxX - x + 1) * (maxZ - z + 1);
+
+                    while (maxY + 1 < sizeY && layerVolume * (maxY + 2 - y) <= MAX_FILL_VOLUME &&
+                           isLayerUncovered(states, covered, state, x, maxX, maxY + 1, z, maxZ, sizeX, sizeZ))
+                    {
+                        ++maxY;
+                    }
+
+                    for (int cy = y; cy <= maxY; ++cy)
+                    {
+                        for (int cz = z; cz <= maxZ; ++cz)
+                        {
+                            int rowStart = (cy * sizeZ + cz) * sizeX;
+
+                            for (int cx = x; cx <= maxX; ++cx)
+                            {
+                                covered[rowStart + cx] = true;
+                            }
+                        }
+                    }
+
+                    cuboids.add(new Cuboid<>(state, x, y, z, maxX, maxY, maxZ, needsSupport.test(state)));
+                }
+            }
+        }
+
+        // The cuboids were created in the order of their bottom y-coordinate, and the sort is stable
+        cuboids.sort(Comparator.<Cuboid<T>>comparingInt(c -> c.minY).thenComparing(c -> c.needsSupport));
+
+        return cuboids;
+    }
+
+    /**
+     * @return the number of commands saved by the given plan,
+     *         compared to using one command per block
+     */
+    public static long getCommandsSaved(List<? extends Cuboid<?>> cuboids)
+    {
+        long blocks = 0;
+
+        for (Cuboid<?> cuboid : cuboids)
+        {
+            blocks += cuboid.getVolume();
+        }
+
+        return blocks - cuboids.size();
+    }
+
+    private static <T> boolean isUncovered(T[] states, boolean[] covered, T state, int index)
+    {
+        return covered[index] == false && state.equals(states[index]);
+    }
+
+    private static <T> boolean isRowUncovered(T[] states, boolean[] covered, T state,
+                                              int minX, int maxX, int y, int z, int sizeX, int sizeZ)
+    {
+        int rowStart = (y * sizeZ + z) * sizeX;
+
+        for (int x = minX; x <= maxX; ++x)
+        {
+            if (isUncovered(states, covered, state, rowStart + x) == false)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static <T> boolean isLayerUncovered(T[] states, boolean[] covered, T state,
+                                                int minX, int maxX, int y, int minZ, int maxZ, int sizeX, int sizeZ)
+    {
+        for (int z = minZ; z <= maxZ; ++z)
+        {
+            if (isRowUncovered(states, covered, state, minX, maxX, y, z, sizeX, sizeZ) == false)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public static class Cuboid<T>
+    {
+        public final T state;
+        public final int minX;
+        public final int minY;
+        public final int minZ;
+        public final int maxX;
+        public final int maxY;
+        public final int maxZ;
+        public final boolean needsSupport;
+
+        public Cuboid(T state, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, boolean needsSupport)
+        {
+            this.state = state;
+            this.minX = minX;
+            this.minY = minY;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.maxZ = maxZ;
+            this.needsSupport = needsSupport;
+        }
+
+        public int getVolume()
+        {
+            return (this.maxX - this.minX + 1) * (this.maxY - this.minY + 1) * (this.maxZ - this.minZ + 1);
+        }
+
+        public boolean isSingleBlock()
+        {
+            return this.minX == this.maxX && this.minY == this.maxY && this.minZ == this.maxZ;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("Cuboid{state=%s, min=[%d, %d, %d], max=[%d, %d, %d]}",
+                                 this.state, this.minX, this.minY, this.minZ, this.maxX, this.maxY, this.maxZ);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package litematica.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import javax.annotation.Nullable;
+
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagByte;
+import net.minecraft.nbt.NBTTagByteArray;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagDouble;
+import net.minecraft.nbt.NBTTagFloat;
+import net.minecraft.nbt.NBTTagInt;
+import net.minecraft.nbt.NBTTagIntArray;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.nbt.NBTTagLong;
+import net.minecraft.nbt.NBTTagLongArray;
+import net.minecraft.nbt.NBTTagShort;
+import net.minecraft.nbt.NBTTagString;
+
+import malilib.util.data.Constants;
+import malilib.util.game.wrap.NbtWrap;
+import litematica.Litematica;
+
+/**
+ * A streaming reader for GZIP compressed NBT files. This reads the full tag tree,
+ * same as {@link net.minecraft.nbt.CompressedStreamTools#readCompressed}, but the payload
+ * of the long array tags can be handed over to a custom reader. This way for example
+ * giant block data arrays can be read straight into some other storage,
+ * without first creating a heap array for all the data.
+ * This is the reading counterpart of {@link NbtStreamWriter}.
+ */
+public class NbtStreamReader
+{
+    private static final int MAX_DEPTH = 512;
+
+    /**
+     * Reads the given GZIP compressed NBT file
+     * @param file the file to read from
+     * @param longArrayReader the custom reader for the long array tags
+     * @return the root compound tag, or null if the file could not be read or is not a valid NBT file
+     */
+    @Nullable
+    public static NBTTagCompound readFromFile(Path file, LongArrayReader longArrayReader)
+    {
+        try (InputStream is = Files.newInputStream(file))
+        {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(is), 65536));
+            return read(input, longArrayReader);
+        }
+        catch (Exception e)
+        {
+            Litematica.logger.warn("Failed to read NBT data from file '{}'", file.toAbsolutePath(), e);
+        }
+
+        return null;
+    }
+
+    public static NBTTagCompound read(DataInputStream input, LongArrayReader longArrayReader) throws IOException
+    {
+        // The root tag must be a (named) compound tag
+        if (input.readByte() != Constants.NBT.TAG_COMPOUND)
+        {
+            throw new IOException("Root tag must be a named compound tag");
+        }
+
+        input.readUTF();
+
+        return readCompound(input, longArrayReader, 0);
+    }
+
+    private static NBTTagCompound readCompound(DataInputStream input, LongArrayReader longArrayReader, int depth) throws IOException
+    {
+        NBTTagCompound tag = new NBTTagCompound();
+        byte type;
+
+        while ((type = input.readByte()) != Constants.NBT.TAG_END)
+        {
+            String name = input.readUTF();
+            NbtWrap.putTag(tag, name, readPayload(input, type, name, longArrayReader, depth + 1));
+        }
+
+        return tag;
+    }
+
+    private static NBTBase readPayload(DataInputStream input, byte type, String name,
+                                       LongArrayReader longArrayReader, int depth) throws IOException
+    {
+        if (depth > MAX_DEPTH)
+        {
+            throw new IOException("Tried to read NBT tag with too high complexity, depth > " + MAX_DEPTH);
+        }
+
+        if (type == Constants.NBT.TAG_BYTE)
+        {
+            return new NBTTagByte(input.readByte());
+        }
+        else if (type == Constants.NBT.TAG_SHORT)
+        {
+            return new NBTTagShort(input.readShort());
+        }
+        else if (type == Constants.NBT.TAG_INT)
+        {
+            return new NBTTagInt(input.readInt());
+        }
+        else if (type == Constants.NBT.TAG_LONG)
+        {
+            return new NBTTagLong(input.readLong());
+        }
+        else if (type == Constants.NBT.TAG_FLOAT)
+        {
+            return new NBTTagFloat(input.readFloat());
+        }
+        else if (type == Constants.NBT.TAG_DOUBLE)
+        {
+            return new NBTTagDouble(input.readDouble());
+        }
+        else if (type == Constants.NBT.TAG_BYTE_ARRAY)
+        {
+            byte[] arr = new byte[readLength(input)];
+            input.readFully(arr);
+            return new NBTTagByteArray(arr);
+        }
+        else if (type == Constants.NBT.TAG_STRING)
+        {
+            return new NBTTagString(input.readUTF());
+        }
+        else if (type == Constants.NBT.TAG_LIST)
+        {
+            byte elementType = input.readByte();
+            int length = readLength(input);
+            NBTTagList list = new NBTTagList();
+
+            for (int i = 0; i < length; ++i)
+            {
+                NbtWrap.addTag(list, readPayload(input, elementType, "", longArrayReader, depth + 1));
+            }
+
+            return list;
+        }
+        else if (type == Constants.NBT.TAG_COMPOUND)
+        {
+            return readCompound(input, longArrayReader, depth);
+        }
+        else if (type == Constants.NBT.TAG_INT_ARRAY)
+        {
+            int[] arr = new int[readLength(input)];
+
+            for (int i = 0; i < arr.length; ++i)
+            {
+                arr[i] = input.readInt();
+            }
+
+            return new NBTTagIntArray(arr);
+        }
+        else if (type == Constants.NBT.TAG_LONG_ARRAY)
+        {
+            int length = readLength(input);
+            NBTBase tag = longArrayReader.readLongArray(name, length, input);
+
+            if (tag != null)
+            {
+                return tag;
+            }
+
+            long[] arr = new long[length];
+
+            for (int i = 0; i < arr.length; ++i)
+            {
+                arr[i] = input.readLong();
+            }
+
+            return new NBTTagLongArray(arr);
+        }
+
+        throw new IOException("Invalid NBT tag type " + type);
+    }
+
+    private static int readLength(DataInputStream input) throws IOException
+    {
+        int length = input.readInt();
+
+        if (length < 0)
+        {
+            throw new IOException("Invalid negative NBT array/list length " + length);
+        }
+
+        return length;
+    }
+
+    public interface LongArrayReader
+    {
+        /**
+         * Called for each long array tag. If this returns a tag, then the
+         * entire payload (<b>length</b> longs) must have been read from the input.
+         * @param name the name of the tag, or an empty string for list elements
+         * @param length the number of longs in the array
+         * @return the tag to use for the array, or null to read the array normally into a heap array
+         */
+        @Nullable
+        NBTBase readLongArray(String name, int length, DataInputStream input) throws IOException;
+    }
+}
@@ -0,0 +1,232 @@
+package litematica.util;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTPrimitive;
+import net.minecraft.nbt.NBTTagByteArray;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagIntArray;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.nbt.NBTTagString;
+
+import malilib.mixin.access.NBTTagLongArrayMixin;
+import malilib.util.data.Constants;
+
+/**
+ * A streaming writer for GZIP compressed NBT files. The tags are written
+ * straight to the stream as they are added, so that large files can be written
+ * without first building the entire tag tree in memory. The output is identical
+ * in format to what {@link net.minecraft.nbt.CompressedStreamTools#writeCompressed} writes.
+ * The caller is responsible for opening and closing the compound and list tags in the correct order.
+ */
+public class NbtStreamWriter implements Closeable
+{
+    private final DataOutputStream output;
+
+    public NbtStreamWriter(OutputStream os) throws IOException
+    {
+        this.output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(os, 65536), 65536));
+    }
+
+    /**
+     * Begins the unnamed root compound tag
+     */
+    public void beginRoot() throws IOException
+    {
+        this.writeHeader(Constants.NBT.TAG_COMPOUND, "");
+    }
+
+    /**
+     * Begins a named compound tag. It must be ended with {@link #endCompound()}.
+     */
+    public void beginCompound(String name) throws IOException
+    {
+        this.writeHeader(Constants.NBT.TAG_COMPOUND, name);
+    }
+
+    public void endCompound() throws IOException
+    {
+        this.output.writeByte(Constants.NBT.TAG_END);
+    }
+
+    /**
+     * Begins a named list tag with the given number of elements of the given type.
+     * The elements are then written using the element methods, and there is no end marker.
+     */
+    public void beginList(String name, int elementType, int size) throws IOException
+    {
+        this.writeHeader(Constants.NBT.TAG_LIST, name);
+        this.output.writeByte(size > 0 ? elementType : Constants.NBT.TAG_END);
+        this.output.writeInt(size);
+    }
+
+    public void writeInt(String name, int value) throws IOException
+    {
+        this.writeHeader(Constants.NBT.TAG_INT, name);
+        this.output.writeInt(value);
+    }
+
+    /**
+     * Begins a named long array tag. Exactly <b>length</b> longs must then be written
+     * using {@link #writeLongs(long[], int)}.
+     */
+    public void beginLongArray(String name, int length) throws IOException
+    {
+        this.writeHeader(Constants.NBT.TAG_LONG_ARRAY, name);
+        this.output.writeInt(length);
+    }
+
+    public void writeLongs(long[] values, int count) throws IOException
+    {
+        for (int i = 0; i < count; ++i)
+        {
+            this.output.writeLong(values[i]);
+        }
+    }
+
+    /**
+     * Writes an existing tag as a named entry
+     */
+    public void writeTag(String name, NBTBase tag) throws IOException
+    {
+        this.writeHeader(tag.getId(), name);
+        this.writePayload(tag);
+    }
+
+    /**
+     * Writes the entries of an existing compound tag into the currently open compound,
+     * skipping the given keys.
+     */
+    public void writeCompoundEntries(NBTTagCompound tag, String... skippedKeys) throws IOException
+    {
+        for (String key : tag.getKeySet())
+        {
+            if (isSkipped(key, skippedKeys) == false)
+            {
+                this.writeTag(key, tag.getTag(key));
+            }
+        }
+    }
+
+    /**
+     * Writes an existing compound tag as an element in a compound list tag.
+     * To write the entries of a list element compound individually, just write
+     * the entries and then call {@link #endCompound()}, without beginning the compound.
+     */
+    public void writeListCompound(NBTTagCompound tag) throws IOException
+    {
+        this.writePayload(tag);
+    }
+
+    protected void writeHeader(int type, String name) throws IOException
+    {
+        this.output.writeByte(type);
+        this.output.writeUTF(name);
+    }
+
+    protected void writePayload(NBTBase tag) throws IOException
+    {
+        final int type = tag.getId();
+
+        if (type == Constants.NBT.TAG_COMPOUND)
+        {
+            this.writeCompoundEntries((NBTTagCompound) tag);
+            this.endCompound();
+        }
+        else if (type == Constants.NBT.TAG_LIST)
+        {
+            NBTTagList list = (NBTTagList) tag;
+            final int size = list.tagCount();
+
+            this.output.writeByte(size > 0 ? list.getTagType() : Constants.NBT.TAG_END);
+            this.output.writeInt(size);
+
+            for (int i = 0; i < size; ++i)
+            {
+                this.writePayload(list.get(i));
+            }
+        }
+        else if (type == Constants.NBT.TAG_STRING)
+        {
+            this.output.writeUTF(((NBTTagString) tag).getString());
+        }
+        else if (type == Constants.NBT.TAG_BYTE)
+        {
+            this.output.writeByte(((NBTPrimitive) tag).getByte());
+        }
+        else if (type == Constants.NBT.TAG_SHORT)
+        {
+            this.output.writeShort(((NBTPrimitive) tag).getShort());
+        }
+        else if (type == Constants.NBT.TAG_INT)
+        {
+            this.output.writeInt(((NBTPrimitive) tag).getInt());
+        }
+        else if (type == Constants.NBT.TAG_LONG)
+        {
+            this.output.writeLong(((NBTPrimitive) tag).getLong());
+        }
+        else if (type == Constants.NBT.TAG_FLOAT)
+        {
+            this.output.writeFloat(((NBTPrimitive) tag).getFloat());
+        }
+        else if (type == Constants.NBT.TAG_DOUBLE)
+        {
+            this.output.writeDouble(((NBTPrimitive) tag).getDouble());
+        }
+        else if (type == Constants.NBT.TAG_BYTE_ARRAY)
+        {
+            byte[] arr = ((NBTTagByteArray) tag).getByteArray();
+            this.output.writeInt(arr.length);
+            this.output.write(arr);
+        }
+        else if (type == Constants.NBT.TAG_INT_ARRAY)
+        {
+            int[] arr = ((NBTTagIntArray) tag).getIntArray();
+            this.output.writeInt(arr.length);
+
+            for (int value : arr)
+            {
+                this.output.writeInt(value);
+            }
+        }
+        else if (type == Constants.NBT.TAG_LONG_ARRAY)
+        {
+            long[] arr = ((NBTTagLongArrayMixin) tag).getArray();
+            this.output.writeInt(arr.length);
+            this.writeLongs(arr, arr.length);
+        }
+        else
+        {
+            throw new IOException("Unsupported NBT tag type " + type);
+        }
+    }
+
+    private static boolean isSkipped(String key, String[] skippedKeys)
+    {
+        for (String skipped : skippedKeys)
+        {
+            if (skipped.equals(key))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Flushes and finishes the compressed stream, and closes the underlying output stream
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.output.close();
+    }
+}
@@ -0,0 +1,214 @@
+package litematica.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import javax.annotation.Nullable;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTSizeTracker;
+import net.minecraft.nbt.NBTTagCompound;
+
+import malilib.util.data.Constants;
+import malilib.util.game.wrap.NbtWrap;
+import litematica.Litematica;
+
+/**
+ * A streaming reader for compressed NBT files, which only reads the requested
+ * top level tags and skips over everything else without creating any tag objects for it.
+ * The reading stops as soon as all the requested tags have been found, so any data
+ * stored after those tags in the stream is never even decompressed.
+ */
+public class PartialNbtReader
+{
+    /** The type byte, the name length short and the longest possible (modified UTF-8) name */
+    private static final int MAX_TAG_HEADER_LENGTH = 1 + 2 + 65535;
+    private static final int MAX_DEPTH = 512;
+
+    /**
+     * Reads the requested top level tags from the given GZIP compressed NBT file.
+     * Compound, int, long and string tags are supported, tags of other types are skipped.
+     * @param file the file to read from
+     * @param keys the names of the top level tags to read
+     * @return a compound tag with all the requested tags that were found,
+     *         or null if the file could not be read or is not a valid NBT file
+     */
+    @Nullable
+    public static NBTTagCompound readTopLevelTags(Path file, Set<String> keys)
+    {
+        try (InputStream is = Files.newInputStream(file))
+        {
+            BufferedInputStream bis = new BufferedInputStream(new GZIPInputStream(is), 65536);
+            return readTopLevelTags(bis, keys);
+        }
+        catch (Exception e)
+        {
+            Litematica.logger.warn("Failed to read NBT data from file '{}'", file.toAbsolutePath(), e);
+        }
+
+        return null;
+    }
+
+    @Nullable
+    public static NBTTagCompound readTopLevelTags(BufferedInputStream bis, Set<String> keys) throws IOException
+    {
+        DataInputStream input = new DataInputStream(bis);
+
+        // The root tag must be a (named) compound tag
+        if (input.readByte() != Constants.NBT.TAG_COMPOUND)
+        {
+            return null;
+        }
+
+        input.readUTF();
+
+        NBTTagCompound result = new NBTTagCompound();
+        int remaining = keys.size();
+
+        while (remaining > 0)
+        {
+            bis.mark(MAX_TAG_HEADER_LENGTH);
+
+            byte type = input.readByte();
+
+            if (type == Constants.NBT.TAG_END)
+            {
+                break;
+            }
+
+            String name = input.readUTF();
+
+            if (keys.contains(name) == false)
+            {
+                skipPayload(input, type, 0);
+                continue;
+            }
+
+            --remaining;
+
+            switch (type)
+            {
+                case Constants.NBT.TAG_COMPOUND:
+                    // Rewind back to the start of the tag, so that the vanilla
+                    // reader can read it as if it was a named root tag
+                    bis.reset();
+                    NbtWrap.putTag(result, name, CompressedStreamTools.read(input, NBTSizeTracker.INFINITE));
+                    break;
+                case Constants.NBT.TAG_INT:
+                    NbtWrap.putInt(result, name, input.readInt());
+                    break;
+                case Constants.NBT.TAG_LONG:
+                    NbtWrap.putLong(result, name, input.readLong());
+                    break;
+                case Constants.NBT.TAG_STRING:
+                    NbtWrap.putString(result, name, input.readUTF());
+                    break;
+                default:
+                    skipPayload(input, type, 0);
+            }
+        }
+
+        return result;
+    }
+
+    public static void skipPayload(DataInputStream input, byte type, int depth) throws IOException
+    {
+        if (depth > MAX_DEPTH)
+        {
+            throw new IOException("Tried to read NBT tag with too high complexity, depth > " + MAX_DEPTH);
+        }
+
+        switch (type)
+        {
+            case Constants.NBT.TAG_END:
+                break;
+            case Constants.NBT.TAG_BYTE:
+                skipFully(input, 1);
+                break;
+            case Constants.NBT.TAG_SHORT:
+                skipFully(input, 2);
+                break;
+            case Constants.NBT.TAG_INT:
+            case Constants.NBT.TAG_FLOAT:
+                skipFully(input, 4);
+                break;
+            case Constants.NBT.TAG_LONG:
+            case Constants.NBT.TAG_DOUBLE:
+                skipFully(input, 8);
+                break;
+            case Constants.NBT.TAG_BYTE_ARRAY:
+                skipFully(input, readLength(input));
+                break;
+            case Constants.NBT.TAG_STRING:
+                skipFully(input, input.readUnsignedShort());
+                break;
+            case Constants.NBT.TAG_LIST:
+            {
+                byte elementType = input.readByte();
+                int length = readLength(input);
+
+                for (int i = 0; i < length; ++i)
+                {
+                    skipPayload(input, elementType, depth + 1);
+                }
+
+                break;
+            }
+            case Constants.NBT.TAG_COMPOUND:
+            {
+                byte entryType;
+
+                while ((entryType = input.readByte()) != Constants.NBT.TAG_END)
+                {
+                    skipFully(input, input.readUnsignedShort());
+                    skipPayload(input, entryType, depth + 1);
+                }
+
+                break;
+            }
+            case Constants.NBT.TAG_INT_ARRAY:
+                skipFully(input, (long) readLength(input) * 4L);
+                break;
+            case Constants.NBT.TAG_LONG_ARRAY:
+                skipFully(input, (long) readLength(input) * 8L);
+                break;
+            default:
+                throw new IOException("Invalid NBT tag type " + type);
+        }
+    }
+
+    private static int readLength(DataInputStream input) throws IOException
+    {
+        int length = input.readInt();
+
+        if (length < 0)
+        {
+            throw new IOException("Invalid negative NBT array/list length " + length);
+        }
+
+        return length;
+    }
+
+    private static void skipFully(DataInputStream input, long bytes) throws IOException
+    {
+        while (bytes > 0)
+        {
+            int skipped = input.skipBytes((int) Math.min(bytes, Integer.MAX_VALUE));
+
+            // skipBytes() may skip less than requested without being at the end of the stream,
+            // so only give up if a single byte can't be read either (which throws an EOFException)
+            if (skipped <= 0)
+            {
+                input.readByte();
+                skipped = 1;
+            }
+
+            bytes -= skipped;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package litematica.world;
 
+import java.util.List;
+import javax.annotation.Nullable;
+
 import net.minecraft.block.Block;
 import net.minecraft.block.ITileEntityProvider;
 import net.minecraft.block.state.IBlockState;
@@ -11,8 +14,14 @@ import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 
+import litematica.schematic.placement.VirtualGrid;
+
 public class ChunkSchematic extends Chunk
 {
+    private static final IBlockState AIR = Blocks.AIR.getDefaultState();
+
+    @Nullable private VirtualGrid[] virtualGrids;
+
     public ChunkSchematic(World worldIn, int x, int z)
     {
         super(worldIn, x, z);
@@ -20,6 +29,83 @@ public class ChunkSchematic extends Chunk
         this.setLightPopulated(true);
     }
 
+    /**
+     * Sets the virtual grids whose repeated cells touch this chunk.
+     * Any positions that have no block stored in this chunk are then read from those grids.
+     */
+    public void setVirtualGrids(List<VirtualGrid> grids)
+    {
+        this.virtualGrids = grids.isEmpty() ? null : grids.toArray(new VirtualGrid[0]);
+    }
+
+    public boolean hasVirtualGrids()
+    {
+        return this.virtualGrids != null;
+    }
+
+    /**
+     * @return true if any of the virtual grids have cells within the given chunk section
+     */
+    public boolean hasVirtualBlocksInSection(int section)
+    {
+        if (this.virtualGrids != null)
+        {
+            int minX = this.x << 4;
+            int minY = section << 4;
+            int minZ = this.z << 4;
+
+            for (VirtualGrid grid : this.virtualGrids)
+            {
+                if (grid.intersects(minX, minY, minZ, minX + 15, minY + 15, minZ + 15))
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public IBlockState getBlockState(int x, int y, int z)
+    {
+        IBlockState state = super.getBlockState(x, y, z);
+
+        if (state == AIR && this.virtualGrids != null)
+        {
+            for (VirtualGrid grid : this.virtualGrids)
+            {
+                IBlockState gridState = grid.getBlockState(x, y, z);
+
+                if (gridState != null)
+                {
+                    return gridState;
+                }
+            }
+        }
+
+        return state;
+    }
+
+    @Override
+    public boolean isEmptyBetween(int startY, int endY)
+    {
+        if (super.isEmptyBetween(startY, endY) == false)
+        {
+            return false;
+        }
+
+        for (int section = Math.max(0, startY) >> 4; section <= Math.min(255, endY) >> 4; ++section)
+        {
+            if (this.hasVirtualBlocksInSection(section))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     @Override
     public IBlockState setBlockState(BlockPos pos, IBlockState state)
     {
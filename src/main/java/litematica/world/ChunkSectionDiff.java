@@ -0,0 +1,413 @@
+package litematica.world;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import javax.annotation.Nullable;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.IBlockStatePalette;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import malilib.util.position.IntBoundingBox;
+import litematica.mixin.IMixinBlockStateContainer;
+
+/**
+ * The differences between a schematic world chunk and a real world chunk, within the given boxes.
+ * The chunks are compared one 16 x 16 x 16 section at a time. If both sections have the same
+ * palette and the same packed data array, then they are identical and the section is skipped
+ * without reading any of its blocks. Otherwise the packed palette IDs of both sections are
+ * unpacked in bulk, and compared through translation tables that map the palette IDs of both sections
+ * to common IDs of their meta-based states. This way the palette order doesn't matter, and the
+ * non-meta state information, which depends on the neighbor blocks, doesn't count as a difference.
+ * Only the sections with virtual grid blocks in the schematic chunk are compared block by block.
+ * This way re-pasting a mostly complete build only needs to handle the blocks that differ.
+ */
+public class ChunkSectionDiff
+{
+    private static final IBlockState AIR = Blocks.AIR.getDefaultState();
+
+    /** The changed positions per section, indexed as y << 8 | z << 4 | x. Null if there are no changes in the section. */
+    private final BitSet[] changedPositions = new BitSet[16];
+    private final int[] idsSchematic = new int[4096];
+    private final int[] idsWorld = new int[4096];
+    private int changedCount;
+    private int identicalSectionCount;
+
+    protected ChunkSectionDiff()
+    {
+    }
+
+    /**
+     * Compares the given chunks within the given boxes, which must be inside the chunk
+     * @param chunkSchematic the schematic world chunk
+     * @param chunkWorld the real world chunk, either a client or a server world chunk
+     */
+    public static ChunkSectionDiff compare(Chunk chunkSchematic, Chunk chunkWorld, Collection<IntBoundingBox> boxes)
+    {
+        ChunkSectionDiff diff = new ChunkSectionDiff();
+        ExtendedBlockStorage[] sectionsSchematic = chunkSchematic.getBlockStorageArray();
+        ExtendedBlockStorage[] sectionsWorld = chunkWorld.getBlockStorageArray();
+        int minY = 255;
+        int maxY = 0;
+
+        for (IntBoundingBox box : boxes)
+        {
+            minY = Math.min(minY, box.minY);
+            maxY = Math.max(maxY, box.maxY);
+        }
+
+        for (int section = Math.max(0, minY >> 4); section <= Math.min(15, maxY >> 4); ++section)
+        {
+            ExtendedBlockStorage sectionSchematic = sectionsSchematic[section];
+            ExtendedBlockStorage sectionWorld = sectionsWorld[section];
+            boolean hasVirtualBlocks = chunkSchematic instanceof ChunkSchematic &&
+                                       ((ChunkSchematic) chunkSchematic).hasVirtualBlocksInSection(section);
+
+            if (hasVirtualBlocks == false && areSectionsIdentical(sectionSchematic, sectionWorld))
+            {
+                ++diff.identicalSectionCount;
+                continue;
+            }
+
+            if (hasVirtualBlocks)
+            {
+                diff.compareSectionPerBlock(section, chunkSchematic, sectionWorld, boxes);
+            }
+            else if (diff.compareSectionPacked(section, sectionSchematic, sectionWorld, boxes) == false)
+            {
+                ++diff.identicalSectionCount;
+            }
+        }
+
+        for (BitSet bits : diff.changedPositions)
+        {
+            if (bits != null)
+            {
+                diff.changedCount += bits.cardinality();
+            }
+        }
+
+        return diff;
+    }
+
+    /**
+     * @return true if there are no differences within the compared boxes
+     */
+    public boolean isEmpty()
+    {
+        return this.changedCount == 0;
+    }
+
+    public int getChangedCount()
+    {
+        return this.changedCount;
+    }
+
+    /**
+     * @return the number of sections that had no differences within the compared boxes,
+     *         and were not compared block by block
+     */
+    public int getIdenticalSectionCount()
+    {
+        return this.identicalSectionCount;
+    }
+
+    /**
+     * @return true if the block at the given world position differs
+     */
+    public boolean isChanged(int x, int y, int z)
+    {
+        if (y < 0 || y > 255)
+        {
+            return false;
+        }
+
+        BitSet bits = this.changedPositions[y >> 4];
+
+        return bits != null && bits.get(getLocalIndex(x, y, z));
+    }
+
+    /**
+     * Adds the changed positions within the given box to the given list, in the y, z, x order.
+     * The positions are packed relative to the chunk as y << 8 | z << 4 | x,
+     * see {@link #getLocalX(int)}, {@link #getY(int)} and {@link #getLocalZ(int)}.
+     */
+    public void getChangedPositionsWithin(IntBoundingBox box, IntArrayList positionsOut)
+    {
+        for (int section = Math.max(0, box.minY >> 4); section <= Math.min(15, box.maxY >> 4); ++section)
+        {
+            BitSet bits = this.changedPositions[section];
+
+            if (bits == null)
+            {
+                continue;
+            }
+
+            for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+            {
+                int x = i & 0xF;
+                int y = (section << 4) | (i >> 8);
+                int z = (i >> 4) & 0xF;
+
+                if (y >= box.minY && y <= box.maxY &&
+                    x >= (box.minX & 0xF) && x <= (box.maxX & 0xF) &&
+                    z >= (box.minZ & 0xF) && z <= (box.maxZ & 0xF))
+                {
+                    positionsOut.add(y << 8 | z << 4 | x);
+                }
+            }
+        }
+    }
+
+    public static int getLocalX(int packedPos)
+    {
+        return packedPos & 0xF;
+    }
+
+    public static int getY(int packedPos)
+    {
+        return packedPos >> 8;
+    }
+
+    public static int getLocalZ(int packedPos)
+    {
+        return (packedPos >> 4) & 0xF;
+    }
+
+    /**
+     * Compares the packed palette IDs of the sections through the palette ID translation tables
+     * @return true if there were any differences within the boxes
+     */
+    protected boolean compareSectionPacked(int section,
+                                           @Nullable ExtendedBlockStorage sectionSchematic,
+                                           @Nullable ExtendedBlockStorage sectionWorld,
+                                           Collection<IntBoundingBox> boxes)
+    {
+        final int[] idsSchematic = this.idsSchematic;
+        final int[] idsWorld = this.idsWorld;
+        final int sectionMinY = section << 4;
+        final int sectionMaxY = sectionMinY + 15;
+        Reference2IntOpenHashMap<IBlockState> commonIds = new Reference2IntOpenHashMap<>();
+        commonIds.defaultReturnValue(-1);
+
+        int[] translationSchematic = createTranslationTable(sectionSchematic, idsSchematic, commonIds);
+        int[] translationWorld = createTranslationTable(sectionWorld, idsWorld, commonIds);
+        boolean changed = false;
+
+        for (IntBoundingBox box : boxes)
+        {
+            int minY = Math.max(box.minY, sectionMinY);
+            int maxY = Math.min(box.maxY, sectionMaxY);
+
+            for (int y = minY; y <= maxY; ++y)
+            {
+                for (int z = box.minZ; z <= box.maxZ; ++z)
+                {
+                    for (int x = box.minX; x <= box.maxX; ++x)
+                    {
+                        int index = getLocalIndex(x, y, z);
+
+                        if (translationSchematic[idsSchematic[index]] != translationWorld[idsWorld[index]])
+                        {
+                            this.markChanged(section, index);
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Unpacks all the palette IDs of the section into the given array, and creates a table
+     * that translates the used palette IDs to the common IDs of their meta-based states.
+     * A missing section is all air.
+     */
+    private static int[] createTranslationTable(@Nullable ExtendedBlockStorage section, int[] idsOut,
+                                                Reference2IntOpenHashMap<IBlockState> commonIds)
+    {
+        if (section == null)
+        {
+            Arrays.fill(idsOut, 0);
+            return new int[] { getCommonId(AIR, commonIds) };
+        }
+
+        IMixinBlockStateContainer container = (IMixinBlockStateContainer) section.getData();
+        IBlockStatePalette palette = container.getPalette();
+        int bits = container.getBits();
+        int[] table = new int[1 << bits];
+
+        unpackIds(container.getStorage().getBackingLongArray(), bits, idsOut);
+        Arrays.fill(table, -1);
+
+        // Only translate the IDs that are in use, as the global palette has thousands of IDs
+        for (int id : idsOut)
+        {
+            if (table[id] == -1)
+            {
+                IBlockState state = palette.getBlockState(id);
+                table[id] = getCommonId(state != null ? state : AIR, commonIds);
+            }
+        }
+
+        return table;
+    }
+
+    private static int getCommonId(IBlockState state, Reference2IntOpenHashMap<IBlockState> commonIds)
+    {
+        IBlockState metaState = getMetaState(state);
+        int id = commonIds.getInt(metaState);
+
+        if (id == -1)
+        {
+            id = commonIds.size();
+            commonIds.put(metaState, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Unpacks the 4096 entries of a vanilla section's packed data, where the entries can span two longs
+     */
+    private static void unpackIds(long[] data, int bits, int[] idsOut)
+    {
+        final long mask = (1L << bits) - 1L;
+        long bitPos = 0;
+
+        for (int i = 0; i < idsOut.length; ++i, bitPos += bits)
+        {
+            int longIndex = (int) (bitPos >> 6);
+            int offset = (int) (bitPos & 0x3F);
+            long value = data[longIndex] >>> offset;
+
+            if (offset + bits > 64)
+            {
+                value |= data[longIndex + 1] << (64 - offset);
+            }
+
+            idsOut[i] = (int) (value & mask);
+        }
+    }
+
+    /**
+     * Compares the sections block by block, reading the schematic blocks via the chunk,
+     * which includes the virtual grid blocks
+     */
+    protected void compareSectionPerBlock(int section, Chunk chunkSchematic,
+                                          @Nullable ExtendedBlockStorage sectionWorld,
+                                          Collection<IntBoundingBox> boxes)
+    {
+        final int sectionMinY = section << 4;
+        final int sectionMaxY = sectionMinY + 15;
+
+        for (IntBoundingBox box : boxes)
+        {
+            int minY = Math.max(box.minY, sectionMinY);
+            int maxY = Math.min(box.maxY, sectionMaxY);
+
+            for (int y = minY; y <= maxY; ++y)
+            {
+                for (int z = box.minZ; z <= box.maxZ; ++z)
+                {
+                    for (int x = box.minX; x <= box.maxX; ++x)
+                    {
+                        IBlockState stateSchematic = chunkSchematic.getBlockState(x, y, z);
+                        IBlockState stateWorld = getState(sectionWorld, x, y, z);
+
+                        if (stateSchematic != stateWorld && getMetaState(stateSchematic) != getMetaState(stateWorld))
+                        {
+                            this.markChanged(section, getLocalIndex(x, y, z));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void markChanged(int section, int index)
+    {
+        BitSet bits = this.changedPositions[section];
+
+        if (bits == null)
+        {
+            bits = new BitSet(4096);
+            this.changedPositions[section] = bits;
+        }
+
+        bits.set(index);
+    }
+
+    /**
+     * @return true if the sections are known to be identical, based on their palettes and packed data.
+     *         This can return false for identical sections, for example if their palettes are
+     *         in a different order, in which case the palette IDs get compared via the translation tables.
+     */
+    protected static boolean areSectionsIdentical(@Nullable ExtendedBlockStorage section1, @Nullable ExtendedBlockStorage section2)
+    {
+        if (section1 == null || section2 == null)
+        {
+            return section1 == section2;
+        }
+
+        IMixinBlockStateContainer container1 = (IMixinBlockStateContainer) section1.getData();
+        IMixinBlockStateContainer container2 = (IMixinBlockStateContainer) section2.getData();
+
+        return container1.getBits() == container2.getBits() &&
+               arePalettesIdentical(container1.getPalette(), container2.getPalette()) &&
+               Arrays.equals(container1.getStorage().getBackingLongArray(), container2.getStorage().getBackingLongArray());
+    }
+
+    protected static boolean arePalettesIdentical(IBlockStatePalette palette1, IBlockStatePalette palette2)
+    {
+        // The global registry based palette is shared
+        if (palette1 == palette2)
+        {
+            return true;
+        }
+
+        // The local palettes have at most 256 entries, and the ids are allocated without gaps
+        for (int id = 0; id < 256; ++id)
+        {
+            IBlockState state1 = palette1.getBlockState(id);
+            IBlockState state2 = palette2.getBlockState(id);
+
+            if (state1 != state2)
+            {
+                return false;
+            }
+
+            if (state1 == null)
+            {
+                break;
+            }
+        }
+
+        return true;
+    }
+
+    private static IBlockState getState(@Nullable ExtendedBlockStorage section, int x, int y, int z)
+    {
+        return section != null ? section.get(x & 0xF, y & 0xF, z & 0xF) : AIR;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static IBlockState getMetaState(IBlockState state)
+    {
+        Block block = state.getBlock();
+        return block.getStateFromMeta(block.getMetaFromState(state));
+    }
+
+    private static int getLocalIndex(int x, int y, int z)
+    {
+        return (y & 0xF) << 8 | (z & 0xF) << 4 | (x & 0xF);
+    }
+}
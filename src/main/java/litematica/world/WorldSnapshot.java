@@ -0,0 +1,253 @@
+package litematica.world;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import io.netty.buffer.Unpooled;
+
+import net.minecraft.block.material.Material;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Biomes;
+import net.minecraft.init.Blocks;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.IBlockAccess;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.chunk.BlockStateContainer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+/**
+ * A read-only copy of the block states of a small area of a world, which can be
+ * safely read from other threads while the world itself keeps changing on the main thread.
+ * The block data is copied per chunk section, by copying the section's palette
+ * and its packed data array, so taking the snapshot is much cheaper than reading
+ * each block separately. Only the sections within the given y range are copied,
+ * and everything outside of the snapshotted area reads as air.
+ * The tile entities of the center chunk are copied via NBT into new detached instances,
+ * so that the worker threads never read the live tile entities that the main thread modifies.
+ * The tile entities of the neighbor chunks are not copied, and they read as null.
+ */
+public class WorldSnapshot implements IBlockAccess
+{
+    private static final IBlockState AIR = Blocks.AIR.getDefaultState();
+
+    protected final WorldType worldType;
+    protected final int chunkStartX;
+    protected final int chunkStartZ;
+    protected final int chunkCountX;
+    protected final int chunkCountZ;
+    protected final int minSection;
+    protected final int maxSection;
+    protected final BlockStateContainer[][] sections;
+    protected final byte[][] biomes;
+    protected final Map<BlockPos, TileEntity> tileEntities = new HashMap<>();
+
+    /**
+     * Takes a snapshot of the chunks within the given radius around the center chunk.
+     * Must be called on the thread that owns the world.
+     * @param minY the minimum y coordinate that needs to be readable
+     * @param maxY the maximum y coordinate that needs to be readable
+     */
+    public WorldSnapshot(World world, ChunkPos center, int radius, int minY, int maxY)
+    {
+        this.worldType = world.getWorldType();
+        this.chunkStartX = center.x - radius;
+        this.chunkStartZ = center.z - radius;
+        this.chunkCountX = radius * 2 + 1;
+        this.chunkCountZ = radius * 2 + 1;
+        this.minSection = Math.max(0, minY) >> 4;
+        this.maxSection = Math.min(255, maxY) >> 4;
+        this.sections = new BlockStateContainer[this.chunkCountX * this.chunkCountZ][];
+        this.biomes = new byte[this.chunkCountX * this.chunkCountZ][];
+
+        for (int cz = 0; cz < this.chunkCountZ; ++cz)
+        {
+            for (int cx = 0; cx < this.chunkCountX; ++cx)
+            {
+                Chunk chunk = world.getChunkProvider().getLoadedChunk(this.chunkStartX + cx, this.chunkStartZ + cz);
+
+                if (chunk != null && chunk.isEmpty() == false)
+                {
+                    this.copyChunk(chunk, cz * this.chunkCountX + cx);
+
+                    // The tile entities are only read at the processed positions, for example by getActualState()
+                    if (chunk.x == center.x && chunk.z == center.z)
+                    {
+                        this.copyTileEntities(world, chunk);
+                    }
+                }
+            }
+        }
+    }
+
+    protected void copyChunk(Chunk chunk, int chunkIndex)
+    {
+        ExtendedBlockStorage[] storageArray = chunk.getBlockStorageArray();
+        BlockStateContainer[] copies = new BlockStateContainer[this.maxSection - this.minSection + 1];
+
+        for (int section = this.minSection; section <= this.maxSection; ++section)
+        {
+            ExtendedBlockStorage storage = storageArray[section];
+
+            // The virtual grid blocks are not in the storage arrays, so those sections need to be read block by block
+            if (chunk instanceof ChunkSchematic && ((ChunkSchematic) chunk).hasVirtualBlocksInSection(section))
+            {
+                copies[section - this.minSection] = readContainer(chunk, section);
+            }
+            else if (storage != Chunk.NULL_BLOCK_STORAGE && storage.isEmpty() == false)
+            {
+                copies[section - this.minSection] = copyContainer(storage.getData());
+            }
+        }
+
+        this.sections[chunkIndex] = copies;
+        this.biomes[chunkIndex] = chunk.getBiomeArray().clone();
+    }
+
+    protected void copyTileEntities(World world, Chunk chunk)
+    {
+        for (Map.Entry<BlockPos, TileEntity> entry : chunk.getTileEntityMap().entrySet())
+        {
+            int section = entry.getKey().getY() >> 4;
+
+            if (section >= this.minSection && section <= this.maxSection)
+            {
+                NBTTagCompound tag = entry.getValue().writeToNBT(new NBTTagCompound());
+                TileEntity copy = TileEntity.create(world, tag);
+
+                if (copy != null)
+                {
+                    this.tileEntities.put(entry.getKey(), copy);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the container via its network serialization format,
+     * which copies the palette and the packed long array as-is.
+     */
+    public static BlockStateContainer copyContainer(BlockStateContainer container)
+    {
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer(container.getSerializedSize()));
+        BlockStateContainer copy = new BlockStateContainer();
+
+        container.write(buf);
+        copy.read(buf);
+
+        return copy;
+    }
+
+    protected static BlockStateContainer readContainer(Chunk chunk, int section)
+    {
+        BlockStateContainer container = new BlockStateContainer();
+        final int baseX = chunk.x << 4;
+        final int baseY = section << 4;
+        final int baseZ = chunk.z << 4;
+
+        for (int y = 0; y < 16; ++y)
+        {
+            for (int z = 0; z < 16; ++z)
+            {
+                for (int x = 0; x < 16; ++x)
+                {
+                    container.set(x, y, z, chunk.getBlockState(baseX + x, baseY + y, baseZ + z));
+                }
+            }
+        }
+
+        return container;
+    }
+
+    protected int getChunkIndex(BlockPos pos)
+    {
+        int cx = (pos.getX() >> 4) - this.chunkStartX;
+        int cz = (pos.getZ() >> 4) - this.chunkStartZ;
+
+        if (cx < 0 || cx >= this.chunkCountX || cz < 0 || cz >= this.chunkCountZ)
+        {
+            return -1;
+        }
+
+        return cz * this.chunkCountX + cx;
+    }
+
+    @Override
+    public IBlockState getBlockState(BlockPos pos)
+    {
+        int section = pos.getY() >> 4;
+
+        if (pos.getY() < 0 || section < this.minSection || section > this.maxSection)
+        {
+            return AIR;
+        }
+
+        int chunkIndex = this.getChunkIndex(pos);
+        BlockStateContainer[] chunkSections = chunkIndex >= 0 ? this.sections[chunkIndex] : null;
+
+        if (chunkSections != null)
+        {
+            BlockStateContainer container = chunkSections[section - this.minSection];
+
+            if (container != null)
+            {
+                return container.get(pos.getX() & 0xF, pos.getY() & 0xF, pos.getZ() & 0xF);
+            }
+        }
+
+        return AIR;
+    }
+
+    @Override
+    @Nullable
+    public TileEntity getTileEntity(BlockPos pos)
+    {
+        return this.tileEntities.get(pos);
+    }
+
+    @Override
+    public Biome getBiome(BlockPos pos)
+    {
+        int chunkIndex = this.getChunkIndex(pos);
+        byte[] arr = chunkIndex >= 0 ? this.biomes[chunkIndex] : null;
+
+        if (arr != null)
+        {
+            int id = arr[(pos.getZ() & 0xF) << 4 | (pos.getX() & 0xF)] & 0xFF;
+            return Biome.getBiome(id, Biomes.PLAINS);
+        }
+
+        return Biomes.PLAINS;
+    }
+
+    @Override
+    public boolean isAirBlock(BlockPos pos)
+    {
+        return this.getBlockState(pos).getMaterial() == Material.AIR;
+    }
+
+    @Override
+    public int getCombinedLight(BlockPos pos, int lightValue)
+    {
+        return 15 << 20 | Math.max(0, lightValue) << 4;
+    }
+
+    @Override
+    public int getStrongPower(BlockPos pos, EnumFacing direction)
+    {
+        return this.getBlockState(pos).getStrongPower(this, pos, direction);
+    }
+
+    @Override
+    public WorldType getWorldType()
+    {
+        return this.worldType;
+    }
+}